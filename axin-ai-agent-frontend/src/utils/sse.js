@@ -27,6 +27,21 @@ export class SSEClient {
       this.emit('error', error)
     }
 
+    // 监听运行 ID（断线后可通过 /ai/manus/resume?runId= 恢复）
+    this.eventSource.addEventListener('run', (event) => {
+      this.emit('run', event.data)
+    })
+
+    // 监听智能体思考过程的增量输出
+    this.eventSource.addEventListener('thinking', (event) => {
+      this.emit('thinking', event.data)
+    })
+
+    // 监听工具执行过程中的增量输出（JSON：{ tool, output }）
+    this.eventSource.addEventListener('tool-output', (event) => {
+      this.emit('tool-output', event.data)
+    })
+
     // 监听连接关闭事件
     this.eventSource.addEventListener('close', () => {
       this.emit('close')
@@ -4,6 +4,10 @@ import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,13 +16,43 @@ import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class ImageSearchTool {
 
+    // 缓存的最大条数
+    private static final int CACHE_MAX_ENTRIES = 500;
+
+    // 搜索结果缓存时间（分钟），图片搜索结果变化很慢
+    @Value("${image-search.cache-ttl-minutes:30}")
+    private long cacheTtlMinutes = 30;
+
+    // 按规范化关键词缓存的搜索结果（LRU），由自身同步
+    private final Map<String, CachedImages> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedImages> eldest) {
+            return size() > CACHE_MAX_ENTRIES;
+        }
+    };
+
+    // 执行中的搜索，相同关键词的并发请求共享同一结果
+    private final Map<String, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+
+    // 与主应用的工具结果缓存使用相同的指标名，按 tool 标签区分
+    private final Counter cacheHits;
+
+    private final Counter cacheMisses;
+
+    private final Counter cacheCoalesced;
+
     // 从配置文件中读取 pexels API 密钥
     @Value("${pexels-api.api-key}")
     private String API_KEY;
@@ -26,15 +60,110 @@ public class ImageSearchTool {
     // Pexels 常规搜索接口（请以文档为准）
     private static final String API_URL = "https://api.pexels.com/v1/search";
 
+    // 连接和读取超时（毫秒）
+    private static final int HTTP_TIMEOUT_MILLIS = 15000;
+
+    public ImageSearchTool(MeterRegistry meterRegistry) {
+        this.cacheHits = meterRegistry.counter("tool.cache.hits", "tool", "searchImage");
+        this.cacheMisses = meterRegistry.counter("tool.cache.misses", "tool", "searchImage");
+        this.cacheCoalesced = meterRegistry.counter("tool.cache.coalesced", "tool", "searchImage");
+        Gauge.builder("tool.cache.hit.ratio", this, ImageSearchTool::getHitRatio)
+                .tag("tool", "searchImage")
+                .register(meterRegistry);
+        Gauge.builder("tool.cache.entries", cache, ImageSearchTool::cacheSize)
+                .tag("tool", "searchImage")
+                .register(meterRegistry);
+    }
+
     @Tool(description = "search image from web")
     public String searchImage(@ToolParam(description = "Search query keyword") String query) {
         try {
-            return String.join(",", searchMediumImages(query));
+            return String.join(",", searchMediumImagesCached(query));
         } catch (Exception e) {
             return "Error search image: " + e.getMessage();
         }
     }
 
+    /**
+     * 带缓存的图片搜索，出错的结果不缓存
+     *
+     * @param query 搜索关键词
+     * @return 图片地址列表
+     */
+    public List<String> searchMediumImagesCached(String query) throws InterruptedException {
+        String key = normalizeQuery(query);
+        List<String> cached = getCached(key);
+        if (cached != null) {
+            cacheHits.increment();
+            log.debug("Image search cache hit for '{}'", key);
+            return cached;
+        }
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        CompletableFuture<List<String>> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 相同的搜索正在执行，等待其结果
+            cacheCoalesced.increment();
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException
+                        ? runtimeException : new IllegalStateException(e.getCause());
+            }
+        }
+        try {
+            cacheMisses.increment();
+            List<String> images = List.copyOf(searchMediumImages(query));
+            synchronized (cache) {
+                cache.put(key, new CachedImages(images, System.currentTimeMillis() + cacheTtlMinutes * 60_000));
+            }
+            future.complete(images);
+            return images;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private List<String> getCached(String key) {
+        synchronized (cache) {
+            CachedImages cachedImages = cache.get(key);
+            if (cachedImages == null) {
+                return null;
+            }
+            if (cachedImages.expiresAt() > System.currentTimeMillis()) {
+                return cachedImages.images();
+            }
+            cache.remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * 缓存命中率（合并到执行中搜索的请求也算命中）
+     *
+     * @return 命中率
+     */
+    public double getHitRatio() {
+        double hit = cacheHits.count() + cacheCoalesced.count();
+        double total = hit + cacheMisses.count();
+        return total == 0 ? 0 : hit / total;
+    }
+
+    private static double cacheSize(Map<String, CachedImages> cache) {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * 规范化关键词：去除首尾空白、合并连续空白并转小写
+     */
+    static String normalizeQuery(String query) {
+        return StrUtil.nullToEmpty(query).trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
     /**
      * 搜索中等尺寸的图片列表
      *
@@ -54,6 +183,8 @@ public class ImageSearchTool {
         String response = HttpUtil.createGet(API_URL)
                 .addHeaders(headers)
                 .form(params)
+                .timeout(HTTP_TIMEOUT_MILLIS)
+                .keepAlive(true)
                 .execute()
                 .body();
 
@@ -67,4 +198,10 @@ public class ImageSearchTool {
                 .filter(StrUtil::isNotBlank)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * 缓存的搜索结果
+     */
+    private record CachedImages(List<String> images, long expiresAt) {
+    }
 }
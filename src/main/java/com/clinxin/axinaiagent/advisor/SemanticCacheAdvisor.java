@@ -0,0 +1,255 @@
+package com.clinxin.axinaiagent.advisor;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
+
+/**
+ * 语义缓存 Advisor
+ *
+ * 对带有路由参数（ROUTE_KEY）的请求，用用户问题的嵌入向量在 SemanticResponseCache 中查找相似的历史问题，
+ * 相似度达到阈值时直接返回缓存的回答，跳过后续的 Advisor（查询重写、检索增强）和模型调用；未命中时调用模型并缓存回答。
+ * 未声明路由的请求（结构化输出、工具调用等）不经过缓存。
+ *
+ * 会话相关的规则：会话的第一轮问题在同一路由内共享缓存；已有历史消息时，问题中出现指代上文的词语则不读写缓存，
+ * 否则只在当前会话内缓存（省略了上下文的追问在不同会话中含义不同）。路由可以配置为始终只在会话内缓存。
+ *
+ * 顺序在对话记忆 Advisor 之后，命中时回答同样写入对话记忆。
+ */
+@Slf4j
+public class SemanticCacheAdvisor implements CallAroundAdvisor, StreamAroundAdvisor {
+
+    /**
+     * 路由参数，值为路由名称
+     */
+    public static final String ROUTE_KEY = "semantic_cache_route";
+
+    /**
+     * 命中缓存时写入上下文的标记
+     */
+    public static final String CACHE_HIT_KEY = "semantic_cache_hit";
+
+    private final EmbeddingModel embeddingModel;
+
+    private final SemanticResponseCache cache;
+
+    private final float similarityThreshold;
+
+    private final Map<String, Route> routes;
+
+    private final List<String> contextMarkers;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, RouteMeters> routeMeters = new HashMap<>();
+
+    /**
+     * 路由的缓存规则
+     *
+     * @param ttl                缓存时间
+     * @param conversationScoped 是否始终只在会话内缓存（回答依赖用户个人信息的路由）
+     */
+    public record Route(Duration ttl, boolean conversationScoped) {
+    }
+
+    /**
+     * @param embeddingModel      嵌入模型
+     * @param cache               语义回答缓存
+     * @param similarityThreshold 命中的最低余弦相似度
+     * @param routes              路由名称 -> 缓存规则
+     * @param contextMarkers      指代上文的词语
+     * @param meterRegistry       指标注册表
+     */
+    public SemanticCacheAdvisor(EmbeddingModel embeddingModel, SemanticResponseCache cache, float similarityThreshold,
+                                Map<String, Route> routes, List<String> contextMarkers, MeterRegistry meterRegistry) {
+        this.embeddingModel = embeddingModel;
+        this.cache = cache;
+        this.similarityThreshold = similarityThreshold;
+        this.routes = Map.copyOf(routes);
+        this.contextMarkers = List.copyOf(contextMarkers);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("semantic.cache.entries", cache, SemanticResponseCache::size).register(meterRegistry);
+        Gauge.builder("semantic.cache.bytes", cache, SemanticResponseCache::getTotalBytes).register(meterRegistry);
+        routes.keySet().forEach(this::metersFor);
+    }
+
+    @Override
+    public String getName() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public int getOrder() {
+        // 对话记忆 Advisor 为 HIGHEST_PRECEDENCE + 1000
+        return Ordered.HIGHEST_PRECEDENCE + 2000;
+    }
+
+    @Override
+    public AdvisedResponse aroundCall(AdvisedRequest advisedRequest, CallAroundAdvisorChain chain) {
+        Lookup lookup = lookup(advisedRequest);
+        if (lookup.hit != null) {
+            return cachedResponse(advisedRequest, lookup.hit);
+        }
+        long start = System.nanoTime();
+        AdvisedResponse advisedResponse = chain.nextAroundCall(advisedRequest);
+        store(lookup, advisedResponse, start);
+        return advisedResponse;
+    }
+
+    @Override
+    public Flux<AdvisedResponse> aroundStream(AdvisedRequest advisedRequest, StreamAroundAdvisorChain chain) {
+        // 嵌入请求是阻塞调用，不占用订阅线程
+        return Mono.fromCallable(() -> lookup(advisedRequest))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(lookup -> {
+                    if (lookup.hit != null) {
+                        return Flux.just(cachedResponse(advisedRequest, lookup.hit));
+                    }
+                    Flux<AdvisedResponse> advisedResponses = chain.nextAroundStream(advisedRequest);
+                    if (lookup.partition == null) {
+                        return advisedResponses;
+                    }
+                    long start = System.nanoTime();
+                    return new MessageAggregator().aggregateAdvisedResponse(advisedResponses,
+                            aggregated -> store(lookup, aggregated, start));
+                });
+    }
+
+    /**
+     * 查找缓存，无需缓存的请求返回不带分区的结果
+     */
+    private Lookup lookup(AdvisedRequest advisedRequest) {
+        Object routeName = advisedRequest.adviseContext().get(ROUTE_KEY);
+        Route route = routeName == null ? null : routes.get(routeName.toString());
+        String query = advisedRequest.userText();
+        if (route == null || StrUtil.isBlank(query)) {
+            return Lookup.BYPASS;
+        }
+        RouteMeters meters = metersFor(routeName.toString());
+        boolean hasHistory = !advisedRequest.messages().isEmpty();
+        if (hasHistory && contextMarkers.stream().anyMatch(query::contains)) {
+            meters.bypassed.increment();
+            return Lookup.BYPASS;
+        }
+        String partition = partition(routeName.toString(), advisedRequest, route.conversationScoped() || hasHistory);
+        long start = System.nanoTime();
+        SemanticResponseCache.Hit hit = cache.lookupExact(partition, query);
+        float[] embedding = null;
+        if (hit == null) {
+            try {
+                embedding = embeddingModel.embed(query);
+            } catch (RuntimeException e) {
+                // 嵌入服务不可用时不影响对话
+                log.warn("Semantic cache lookup skipped, embedding failed: {}", e.getMessage());
+                meters.bypassed.increment();
+                return Lookup.BYPASS;
+            }
+            hit = cache.lookupSimilar(partition, embedding, similarityThreshold);
+        }
+        long lookupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (hit == null) {
+            meters.misses.increment();
+            return new Lookup(route, partition, query, embedding, null);
+        }
+        meters.hits.increment();
+        meters.latencySaved.record(Math.max(0, hit.latencyMillis() - lookupMillis), TimeUnit.MILLISECONDS);
+        log.info("Semantic cache hit on route {} with similarity {}", routeName, hit.similarity());
+        return new Lookup(route, partition, query, embedding, hit);
+    }
+
+    /**
+     * 缓存完整、正常结束且不含工具调用的回答
+     */
+    private void store(Lookup lookup, AdvisedResponse advisedResponse, long start) {
+        if (lookup.partition == null || lookup.embedding == null) {
+            return;
+        }
+        ChatResponse response = advisedResponse.response();
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return;
+        }
+        AssistantMessage output = response.getResult().getOutput();
+        String finishReason = response.getResult().getMetadata() == null
+                ? null : response.getResult().getMetadata().getFinishReason();
+        if (StrUtil.isBlank(output.getText()) || !output.getToolCalls().isEmpty()
+                || (finishReason != null && !"stop".equalsIgnoreCase(finishReason))) {
+            return;
+        }
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        cache.put(lookup.partition, lookup.query, lookup.embedding, output.getText(), lookup.route.ttl(), latencyMillis);
+    }
+
+    private AdvisedResponse cachedResponse(AdvisedRequest advisedRequest, SemanticResponseCache.Hit hit) {
+        ChatResponse chatResponse = new ChatResponse(List.of(new Generation(new AssistantMessage(hit.answer()))));
+        Map<String, Object> adviseContext = new HashMap<>(advisedRequest.adviseContext());
+        adviseContext.put(CACHE_HIT_KEY, true);
+        return new AdvisedResponse(chatResponse, adviseContext);
+    }
+
+    /**
+     * 分区：路由 + 系统提示词的 SHA-256（不同提示词的回答不能互相替代），会话内缓存时再加上会话 id
+     */
+    private static String partition(String routeName, AdvisedRequest advisedRequest, boolean conversationScoped) {
+        String partition = routeName + '\u0000' + DigestUtil.sha256Hex(StrUtil.nullToEmpty(advisedRequest.systemText()));
+        if (conversationScoped) {
+            partition += '\u0000' + String.valueOf(advisedRequest.adviseContext().get(CHAT_MEMORY_CONVERSATION_ID_KEY));
+        }
+        return partition;
+    }
+
+    private RouteMeters metersFor(String routeName) {
+        synchronized (routeMeters) {
+            return routeMeters.computeIfAbsent(routeName, name -> new RouteMeters(
+                    meterRegistry.counter("semantic.cache.hits", "route", name),
+                    meterRegistry.counter("semantic.cache.misses", "route", name),
+                    meterRegistry.counter("semantic.cache.bypassed", "route", name),
+                    Timer.builder("semantic.cache.latency.saved").tag("route", name).register(meterRegistry)));
+        }
+    }
+
+    /**
+     * 一次查找的结果
+     *
+     * @param partition 分区（为空时不缓存）
+     * @param embedding 问题的嵌入向量（精确命中时为空）
+     * @param hit       命中结果（为空表示未命中）
+     */
+    private record Lookup(Route route, String partition, String query, float[] embedding,
+                          SemanticResponseCache.Hit hit) {
+
+        static final Lookup BYPASS = new Lookup(null, null, null, null, null);
+    }
+
+    /**
+     * 单个路由的指标
+     */
+    private record RouteMeters(Counter hits, Counter misses, Counter bypassed, Timer latencySaved) {
+    }
+}
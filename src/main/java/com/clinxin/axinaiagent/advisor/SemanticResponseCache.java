@@ -0,0 +1,215 @@
+package com.clinxin.axinaiagent.advisor;
+
+import com.clinxin.axinaiagent.rag.OffHeapVectorIndex;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 语义回答缓存
+ *
+ * 以问题的嵌入向量为键缓存模型回答：先按规范化后的问题文本精确匹配（无需嵌入），
+ * 未命中再在堆外暴力检索索引中查找同一分区内余弦相似度最高的问题。分区由调用方决定（路由、系统提示词、会话等），
+ * 不同分区的条目互不命中。每个条目有独立的过期时间，过期条目在查找时跳过、在淘汰时优先移除；
+ * 总条数和总字节数（回答、问题文本与向量）有上限，超出时按 LRU 淘汰。
+ *
+ * 线程安全（由 this 同步），嵌入向量由调用方在锁外计算。
+ */
+public class SemanticResponseCache {
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    // 首次写入时按向量维度创建
+    private OffHeapVectorIndex index;
+
+    // 槽位 -> 条目
+    private Entry[] bySlot = new Entry[64];
+
+    // 按访问顺序排列的槽位，用于 LRU 淘汰
+    private final LinkedHashMap<Integer, Entry> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    // 分区 + 规范化问题 -> 槽位
+    private final Map<String, Integer> exact = new HashMap<>();
+
+    private long totalBytes;
+
+    /**
+     * @param maxEntries 最大条数
+     * @param maxBytes   最大字节数
+     */
+    public SemanticResponseCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 命中结果
+     *
+     * @param answer        缓存的回答
+     * @param similarity    与缓存问题的相似度（精确匹配为 1）
+     * @param latencyMillis 生成该回答时的耗时
+     */
+    public record Hit(String answer, float similarity, long latencyMillis) {
+    }
+
+    /**
+     * 按问题文本精确查找
+     *
+     * @param partition 分区
+     * @param query     问题
+     * @return 命中结果，未命中返回 null
+     */
+    public synchronized Hit lookupExact(String partition, String query) {
+        Integer slot = exact.get(exactKey(partition, query));
+        if (slot == null) {
+            return null;
+        }
+        Entry entry = bySlot[slot];
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            remove(slot);
+            return null;
+        }
+        lru.get(slot);
+        return new Hit(entry.answer, 1f, entry.latencyMillis);
+    }
+
+    /**
+     * 查找同一分区内最相似的问题
+     *
+     * @param partition 分区
+     * @param embedding 问题的嵌入向量
+     * @param threshold 最低相似度
+     * @return 命中结果，未命中返回 null
+     */
+    public synchronized Hit lookupSimilar(String partition, float[] embedding, float threshold) {
+        if (index == null || index.dimensions() != embedding.length) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        OffHeapVectorIndex.Hits hits = index.search(embedding, 1, threshold, slot -> {
+            Entry entry = bySlot[slot];
+            return entry.expiresAt > now && entry.partition.equals(partition);
+        });
+        if (hits.slots().length == 0) {
+            return null;
+        }
+        int slot = hits.slots()[0];
+        Entry entry = lru.get(slot);
+        return new Hit(entry.answer, hits.scores()[0], entry.latencyMillis);
+    }
+
+    /**
+     * 写入回答（同一分区的相同问题覆盖原条目）
+     *
+     * @param partition     分区
+     * @param query         问题
+     * @param embedding     问题的嵌入向量
+     * @param answer        回答
+     * @param ttl           缓存时间
+     * @param latencyMillis 生成回答的耗时
+     */
+    public synchronized void put(String partition, String query, float[] embedding, String answer, Duration ttl,
+                                 long latencyMillis) {
+        if (index == null || index.dimensions() != embedding.length) {
+            // 嵌入模型变更后旧向量不可比较，清空重建
+            clear();
+            index = new OffHeapVectorIndex(embedding.length);
+        }
+        String key = exactKey(partition, query);
+        Integer previous = exact.get(key);
+        if (previous != null) {
+            remove(previous);
+        }
+        long bytes = (long) (answer.length() + key.length()) * Character.BYTES + (long) embedding.length * Float.BYTES;
+        Entry entry = new Entry(partition, key, answer, System.currentTimeMillis() + ttl.toMillis(), latencyMillis, bytes);
+        int slot = index.add(embedding);
+        if (slot >= bySlot.length) {
+            bySlot = Arrays.copyOf(bySlot, Math.max(bySlot.length * 2, slot + 1));
+        }
+        bySlot[slot] = entry;
+        lru.put(slot, entry);
+        exact.put(key, slot);
+        totalBytes += bytes;
+        evict(slot);
+    }
+
+    public synchronized int size() {
+        return lru.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized void clear() {
+        lru.clear();
+        exact.clear();
+        Arrays.fill(bySlot, null);
+        totalBytes = 0;
+        index = null;
+    }
+
+    /**
+     * 超出条数或字节上限时先移除过期条目，仍超出再淘汰最久未访问的条目（刚写入的条目除外）
+     */
+    private void evict(int newest) {
+        if (lru.size() <= maxEntries && totalBytes <= maxBytes) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        lru.values().removeIf(entry -> {
+            if (entry.expiresAt > now) {
+                return false;
+            }
+            release(entry);
+            return true;
+        });
+        Iterator<Map.Entry<Integer, Entry>> iterator = lru.entrySet().iterator();
+        while ((lru.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<Integer, Entry> eldest = iterator.next();
+            if (eldest.getKey() == newest) {
+                continue;
+            }
+            iterator.remove();
+            release(eldest.getValue());
+        }
+    }
+
+    private void remove(int slot) {
+        Entry entry = lru.remove(slot);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /**
+     * 释放条目占用的槽位和精确匹配键（条目已从 LRU 中移除）
+     */
+    private void release(Entry entry) {
+        int slot = exact.remove(entry.exactKey);
+        index.remove(slot);
+        bySlot[slot] = null;
+        totalBytes -= entry.bytes;
+    }
+
+    /**
+     * 精确匹配键：分区 + 去除首尾空白、合并连续空白并转为小写的问题
+     */
+    private static String exactKey(String partition, String query) {
+        return partition + '\u0000' + query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 缓存条目
+     */
+    private record Entry(String partition, String exactKey, String answer, long expiresAt, long latencyMillis,
+                         long bytes) {
+    }
+}
@@ -0,0 +1,136 @@
+package com.clinxin.axinaiagent.agent;
+
+import com.clinxin.axinaiagent.exception.AgentBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 智能体执行器
+ *
+ * 每次智能体运行使用独立的虚拟线程，避免长时间阻塞在大模型和工具 I/O 上的运行占满公共线程池；
+ * 同时运行的数量受并发上限约束，超出的运行排队等待，排队也满时直接拒绝（HTTP 429）。
+ */
+@Component
+@Slf4j
+public class AgentExecutor {
+
+    private final int maxConcurrentRuns;
+
+    private final int maxQueuedRuns;
+
+    // 运行许可
+    private final Semaphore permits;
+
+    // 已接纳的运行数（排队中 + 运行中）
+    private final AtomicInteger admitted = new AtomicInteger();
+
+    // 运行中的数量
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("agent-run-", 0).factory());
+
+    private final Counter rejectedCounter;
+    private final Timer queueWaitTimer;
+    private final Timer runTimer;
+
+    public AgentExecutor(@Value("${agent.executor.max-concurrent-runs:16}") int maxConcurrentRuns,
+                         @Value("${agent.executor.max-queued-runs:32}") int maxQueuedRuns,
+                         MeterRegistry meterRegistry) {
+        this.maxConcurrentRuns = maxConcurrentRuns;
+        this.maxQueuedRuns = maxQueuedRuns;
+        this.permits = new Semaphore(maxConcurrentRuns, true);
+        Gauge.builder("agent.runs.active", running, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("agent.runs.queued", this, AgentExecutor::getQueueDepth).register(meterRegistry);
+        this.rejectedCounter = meterRegistry.counter("agent.runs.rejected");
+        this.queueWaitTimer = meterRegistry.timer("agent.runs.queue.wait");
+        this.runTimer = meterRegistry.timer("agent.runs.duration");
+    }
+
+    /**
+     * 提交一次智能体运行
+     *
+     * @param run 运行任务
+     * @return 可用于取消（中断）运行的 Future
+     * @throws AgentBusyException 并发和排队均已满
+     */
+    public Future<?> submit(Runnable run) {
+        if (admitted.incrementAndGet() > maxConcurrentRuns + maxQueuedRuns) {
+            admitted.decrementAndGet();
+            rejectedCounter.increment();
+            throw new AgentBusyException("智能体繁忙，请稍后再试");
+        }
+        long enqueuedAt = System.nanoTime();
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                admitted.decrementAndGet();
+            }
+        };
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            started.set(true);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                // 排队期间被取消
+                release.run();
+                return;
+            }
+            queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+            running.incrementAndGet();
+            long startedAt = System.nanoTime();
+            try {
+                run.run();
+            } finally {
+                runTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                running.decrementAndGet();
+                permits.release();
+                release.run();
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                // 尚未开始执行就被取消时，任务体不会运行，需要在这里归还名额
+                if (!started.get()) {
+                    release.run();
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * 排队等待运行的数量
+     */
+    public int getQueueDepth() {
+        return Math.max(0, admitted.get() - running.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("关闭智能体执行器，运行中 {} 个，排队中 {} 个", running.get(), getQueueDepth());
+        executor.shutdownNow();
+    }
+}
@@ -1,6 +1,7 @@
 package com.clinxin.axinaiagent.agent;
 
 import com.clinxin.axinaiagent.advisor.MyLoggerAdvisor;
+import com.clinxin.axinaiagent.agent.context.TokenBudgetContextWindowManager;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.tool.ToolCallback;
@@ -33,5 +34,7 @@ public class AxinManus extends ToolCallAgent {
                 .defaultAdvisors(new MyLoggerAdvisor())
                 .build();
         this.setChatClient(chatClient);
+        // 上下文预算：超出后压缩较早步骤的工具结果，最近 3 步原样保留
+        this.setContextWindowManager(new TokenBudgetContextWindowManager(32000, 3, 800));
     }
 }
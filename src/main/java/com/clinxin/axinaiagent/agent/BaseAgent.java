@@ -1,7 +1,14 @@
 package com.clinxin.axinaiagent.agent;
 
+import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.clinxin.axinaiagent.agent.checkpoint.AgentCheckpointStore;
+import com.clinxin.axinaiagent.agent.checkpoint.AgentRunCheckpoint;
+import com.clinxin.axinaiagent.agent.context.ContextWindowManager;
+import com.clinxin.axinaiagent.agent.context.TokenBudgetContextWindowManager;
 import com.clinxin.axinaiagent.agent.model.AgentState;
+import io.micrometer.core.instrument.Metrics;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
@@ -12,7 +19,9 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 抽象基础代理类，用于管理代理状态和执行流程。
@@ -31,8 +40,11 @@ public abstract class BaseAgent {
     private String systemPrompt;
     private String nextStepPrompt;
 
-    // 代理状态
-    private AgentState state = AgentState.IDLE;
+    // 代理状态（会被 SSE 回调线程修改）
+    private volatile AgentState state = AgentState.IDLE;
+
+    // 是否已被中断（客户端断开、连接超时或输出失败），中断的运行保持运行中状态，可通过运行 ID 恢复
+    private volatile boolean cancelled = false;
 
     // 执行控制
     private int maxSteps = 10;
@@ -44,6 +56,27 @@ public abstract class BaseAgent {
     // Memory 记忆上下文（需要自主维护会话上下文）
     private List<Message> messageList = new ArrayList<>();
 
+    // 上下文窗口管理器：调用大模型前按 token 预算整理消息上下文
+    private ContextWindowManager contextWindowManager = new TokenBudgetContextWindowManager();
+
+    // 流式运行时的当前 SSE 连接（重新接入时会被替换）
+    private volatile SseEmitter sseEmitter;
+
+    // 流式运行对应的 Future，用于取消
+    private Future<?> runFuture;
+
+    // 检查点存储（为空时不保存检查点）
+    private AgentCheckpointStore checkpointStore;
+
+    // 运行 ID（启用检查点时分配，用于断线后恢复或重新接入）
+    private String runId;
+
+    // 已输出的步骤结果，重新接入时回放
+    private final List<String> stepResults = new ArrayList<>();
+
+    // 输出步骤结果与切换连接之间的互斥锁
+    private final Object emitLock = new Object();
+
     /**
      * 运行代理
      *
@@ -71,7 +104,9 @@ public abstract class BaseAgent {
                 currentStep = stepNumber;
                 log.info("Executing step {} / {}", stepNumber, maxSteps);
                 // 单步执行  
+                long stepStartedAt = System.nanoTime();
                 String stepResult = step();
+                recordStepLatency(stepNumber, stepStartedAt);
                 String result = "Step " + stepNumber + ": " + stepResult;
                 results.add(result);
             }
@@ -95,14 +130,17 @@ public abstract class BaseAgent {
     /**
      * 运行代理（流式输出）
      *
-     * @param userPrompt 用户提示词
+     * @param userPrompt    用户提示词
+     * @param agentExecutor 智能体执行器
      * @return 执行结果
+     * @throws com.clinxin.axinaiagent.exception.AgentBusyException 执行器已满载
      */
-    public SseEmitter runStream(String userPrompt) {
+    public SseEmitter runStream(String userPrompt, AgentExecutor agentExecutor) {
         // 创建带超时时间的 SseEmitter
         SseEmitter sseEmitter = new SseEmitter(300000L); // 5 分钟超时
-        // 使用线程异步处理，避免阻塞主线程
-        CompletableFuture.runAsync(() -> {
+        this.sseEmitter = sseEmitter;
+        // 提交到专用的虚拟线程执行器，避免阻塞主线程和公共线程池
+        this.runFuture = agentExecutor.submit(() -> {
             try {
                 // 1.基础校验
                 if (this.state != AgentState.IDLE) {
@@ -122,73 +160,320 @@ public abstract class BaseAgent {
             state = AgentState.RUNNING;
             // 记录消息上下文
             messageList.add(new UserMessage(userPrompt));
-            // 保存结果列表
-            List<String> results = new ArrayList<>();
-            // 快速结束，连续 3 次无需执行就结束
-            int repeatCount = 0;
-            try {
-                // 执行循环
-                for (int i = 0; i < maxSteps && state != AgentState.FINISHED; i++) {
-                    int stepNumber = i + 1;
-                    currentStep = stepNumber;
-                    log.info("Executing step {} / {}", stepNumber, maxSteps);
-                    // 单步执行
-                    String stepResult = step();
-                    String result = "Step " + stepNumber + ": " + stepResult;
-                    if (repeatCount >= 3) {
-                        state = AgentState.FINISHED;
-                        results.add("连续 3 次没有行动，终止执行");
-                        sseEmitter.send("连续 3 次没有行动，终止执行");
-                        break;
+            // 启用检查点时分配运行 ID，用于断线后恢复或重新接入
+            if (checkpointStore != null) {
+                this.runId = IdUtil.fastSimpleUUID();
+                checkpointStore.register(runId, this);
+                try {
+                    sendRunId(sseEmitter);
+                } catch (IOException e) {
+                    log.warn("Failed to send run id: {}", e.getMessage());
+                }
+                checkpoint();
+            }
+            executeSteps(0);
+        });
+        registerCallbacks(sseEmitter);
+        return sseEmitter;
+    }
+
+    /**
+     * 从检查点恢复运行（流式输出）：先回放已输出的步骤结果，再从下一步继续执行
+     * 调用前需通过 {@link AgentCheckpointStore#register} 占用该运行 ID
+     *
+     * @param checkpoint    运行检查点
+     * @param agentExecutor 智能体执行器
+     * @return 执行结果
+     * @throws com.clinxin.axinaiagent.exception.AgentBusyException 执行器已满载
+     */
+    public SseEmitter resumeStream(AgentRunCheckpoint checkpoint, AgentExecutor agentExecutor) {
+        SseEmitter sseEmitter = new SseEmitter(300000L); // 5 分钟超时
+        this.sseEmitter = sseEmitter;
+        // 恢复状态和消息上下文
+        this.runId = checkpoint.getRunId();
+        this.state = checkpoint.getState();
+        this.currentStep = checkpoint.getCurrentStep();
+        this.messageList = new ArrayList<>(checkpoint.getMessageList());
+        this.stepResults.addAll(checkpoint.getStepResults());
+        Future<?> submitted;
+        try {
+            submitted = agentExecutor.submit(() -> {
+                try {
+                    sendRunId(sseEmitter);
+                    // 回放已输出的步骤结果，不再重复执行
+                    for (String result : stepResults) {
+                        sseEmitter.send(result);
                     }
-                    if ("思考完成 - 无需行动".equals(stepResult)) {
-                        repeatCount++;
-                        continue;
+                    if (state != AgentState.RUNNING) {
+                        sseEmitter.complete();
+                        checkpointStore.release(runId, this);
+                        return;
                     }
-                    repeatCount = 0;
-                    results.add(result);
-                    // 输出当前每一步的结构到 SSE
-                    sseEmitter.send(result);
+                } catch (Exception e) {
+                    sseEmitter.completeWithError(e);
+                    checkpointStore.release(runId, this);
+                    return;
                 }
-                // 检查是否超出步骤限制
-                if (currentStep >= maxSteps) {
-                    state = AgentState.FINISHED;
-                    results.add("Terminated: Reached max steps (" + maxSteps + ")");
-                    sseEmitter.send("执行结束，达到最大步骤（" + maxSteps + "）");
+                log.info("Resuming run {} from step {}", runId, currentStep + 1);
+                executeSteps(currentStep);
+            });
+        } catch (RuntimeException e) {
+            // 执行器满载，释放运行 ID 以便稍后重试
+            checkpointStore.release(runId, this);
+            throw e;
+        }
+        this.runFuture = submitted;
+        registerCallbacks(sseEmitter);
+        return sseEmitter;
+    }
+
+    /**
+     * 将新的 SSE 连接接入仍在运行中的代理：回放已输出的步骤结果，之后的输出发送到新连接
+     *
+     * @param newEmitter 新的 SSE 连接
+     * @return 是否接入成功（运行已结束或已取消时返回 false）
+     */
+    public boolean attach(SseEmitter newEmitter) {
+        SseEmitter previous;
+        synchronized (emitLock) {
+            if (cancelled || state != AgentState.RUNNING) {
+                return false;
+            }
+            try {
+                sendRunId(newEmitter);
+                for (String result : stepResults) {
+                    newEmitter.send(result);
                 }
-                // 正常结束
-                sseEmitter.complete();
-            } catch (Exception e) {
-                state = AgentState.ERROR;
-                log.error("Error executing agent", e);
-                try {
-                    sseEmitter.send("执行错误" + e.getMessage());
-                    sseEmitter.complete();
-                } catch (IOException ex) {
-                    sseEmitter.completeWithError(ex);
+            } catch (IOException e) {
+                return false;
+            }
+            previous = this.sseEmitter;
+            this.sseEmitter = newEmitter;
+        }
+        registerCallbacks(newEmitter);
+        // 旧连接已不是当前连接，关闭时不会取消运行
+        previous.complete();
+        return true;
+    }
+
+    /**
+     * 执行步骤循环，每步结束后输出结果并保存检查点
+     *
+     * @param fromStep 已完成的步骤数
+     */
+    private void executeSteps(int fromStep) {
+        // 快速结束，连续 3 次无需执行就结束
+        int repeatCount = 0;
+        try {
+            // 执行循环
+            for (int i = fromStep; i < maxSteps && state != AgentState.FINISHED && !cancelled; i++) {
+                int stepNumber = i + 1;
+                currentStep = stepNumber;
+                log.info("Executing step {} / {}", stepNumber, maxSteps);
+                // 单步执行
+                long stepStartedAt = System.nanoTime();
+                String stepResult = step();
+                recordStepLatency(stepNumber, stepStartedAt);
+                String result = "Step " + stepNumber + ": " + stepResult;
+                if (repeatCount >= 3) {
+                    state = AgentState.FINISHED;
+                    emit("连续 3 次没有行动，终止执行");
+                } else if ("思考完成 - 无需行动".equals(stepResult)) {
+                    repeatCount++;
+                } else {
+                    repeatCount = 0;
+                    // 输出当前每一步的结构到 SSE
+                    emit(result);
                 }
-            } finally {
-                // 3.清理资源
-                this.cleanup();
+                // 每步结束后保存检查点，恢复时从下一步继续
+                checkpoint();
             }
-        });
+            // 已中断时连接已关闭，无需再输出（检查点保留，可通过运行 ID 恢复）
+            if (cancelled) {
+                log.warn("Agent run interrupted at step {}", currentStep);
+                return;
+            }
+            // 检查是否超出步骤限制
+            if (currentStep >= maxSteps) {
+                state = AgentState.FINISHED;
+                emit("执行结束，达到最大步骤（" + maxSteps + "）");
+            }
+            checkpoint();
+            // 正常结束
+            complete();
+        } catch (Exception e) {
+            if (cancelled) {
+                // 中断打断了当前步骤，保留上一步结束时的检查点，恢复时重新执行该步骤
+                log.warn("Agent run interrupted during step {}: {}", currentStep, e.getMessage());
+                return;
+            }
+            state = AgentState.ERROR;
+            log.error("Error executing agent", e);
+            checkpoint();
+            emit("执行错误" + e.getMessage());
+            complete();
+        } finally {
+            if (checkpointStore != null) {
+                checkpointStore.release(runId, this);
+            }
+            // 3.清理资源
+            this.cleanup();
+        }
+    }
 
-        // 设置超时和完成回调
-        sseEmitter.onTimeout(() -> {
-            this.state = AgentState.ERROR;
+    /**
+     * 设置超时和完成回调，中断仍在执行的运行（已被新连接替换的旧连接不影响运行）
+     * 连接超时、出错或被客户端关闭都视为中断：运行保持运行中状态，当前步骤结束后不再继续，可通过运行 ID 恢复
+     *
+     * @param emitter SSE 连接
+     */
+    private void registerCallbacks(SseEmitter emitter) {
+        emitter.onTimeout(() -> {
+            if (emitter != this.sseEmitter) {
+                return;
+            }
+            interrupt();
             this.cleanup();
             log.warn("SSE connection timed out");
         });
-        // 设置完成动作
-        sseEmitter.onCompletion(() -> {
+        // 客户端断开连接
+        emitter.onError(e -> {
+            if (emitter != this.sseEmitter) {
+                return;
+            }
+            interrupt();
+            log.warn("SSE connection error: {}", e.getMessage());
+        });
+        // 设置完成动作（正常结束时状态已不是运行中）
+        emitter.onCompletion(() -> {
+            if (emitter != this.sseEmitter) {
+                return;
+            }
             if (this.state == AgentState.RUNNING) {
-                this.state = AgentState.FINISHED;
+                interrupt();
             }
             this.cleanup();
             log.info("SSE connection completed");
         });
+    }
 
-        return sseEmitter;
+    /**
+     * 输出步骤结果到当前连接，并记录下来用于断线后回放
+     * 输出失败说明客户端已断开，中断运行（结果已记录，恢复时回放）
+     *
+     * @param result 步骤结果
+     */
+    private void emit(String result) {
+        synchronized (emitLock) {
+            stepResults.add(result);
+            if (cancelled) {
+                return;
+            }
+            try {
+                sseEmitter.send(result);
+            } catch (Exception e) {
+                log.warn("Failed to emit step result, interrupting run {}: {}", runId, e.getMessage());
+                this.cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * 正常结束当前连接
+     */
+    private void complete() {
+        synchronized (emitLock) {
+            if (!cancelled) {
+                sseEmitter.complete();
+            }
+        }
+    }
+
+    /**
+     * 以 run 事件告知客户端运行 ID（未启用检查点时忽略）
+     *
+     * @param emitter SSE 连接
+     */
+    private void sendRunId(SseEmitter emitter) throws IOException {
+        if (runId != null) {
+            emitter.send(SseEmitter.event().name("run").data(runId));
+        }
+    }
+
+    /**
+     * 保存当前步骤的检查点（未启用检查点时忽略）
+     */
+    private void checkpoint() {
+        if (checkpointStore == null || runId == null) {
+            return;
+        }
+        // 连接断开导致的中断可以恢复，按运行中保存
+        AgentState checkpointState = cancelled && state != AgentState.FINISHED ? AgentState.RUNNING : state;
+        try {
+            checkpointStore.save(runId, checkpointState, currentStep, messageList, stepResults);
+        } catch (Exception e) {
+            log.warn("Failed to checkpoint run {}: {}", runId, e.getMessage());
+        }
+    }
+
+    /**
+     * 向流式客户端推送思考过程的增量输出（以 thinking 事件发送，非流式运行时忽略）
+     *
+     * @param chunk 增量内容
+     */
+    protected void emitThinking(String chunk) {
+        SseEmitter emitter = this.sseEmitter;
+        if (emitter == null || cancelled) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name("thinking").data(chunk));
+        } catch (Exception e) {
+            log.debug("Failed to emit thinking chunk: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 向流式客户端推送工具执行过程中的增量输出（以 tool-output 事件发送，非流式运行时忽略）
+     *
+     * @param toolName 工具名称
+     * @param chunk    增量内容
+     */
+    protected void emitToolOutput(String toolName, String chunk) {
+        SseEmitter emitter = this.sseEmitter;
+        if (emitter == null || cancelled) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name("tool-output")
+                    .data(JSONUtil.toJsonStr(Map.of("tool", toolName, "output", chunk))));
+        } catch (Exception e) {
+            log.debug("Failed to emit tool output: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录单步耗时
+     *
+     * @param stepNumber    步骤序号
+     * @param stepStartedAt 步骤开始时间（纳秒）
+     */
+    private void recordStepLatency(int stepNumber, long stepStartedAt) {
+        long elapsedNanos = System.nanoTime() - stepStartedAt;
+        Metrics.timer("agent.step.latency", "agent", StrUtil.blankToDefault(name, getClass().getSimpleName()))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.info("Step {} took {} ms", stepNumber, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    /**
+     * 中断流式运行：设置中断标记并中断执行线程，状态保持不变
+     */
+    private void interrupt() {
+        this.cancelled = true;
+        Future<?> future = this.runFuture;
+        if (future != null) {
+            future.cancel(true);
+        }
     }
 
     /**
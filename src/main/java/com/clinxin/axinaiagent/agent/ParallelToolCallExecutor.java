@@ -0,0 +1,190 @@
+package com.clinxin.axinaiagent.agent;
+
+import com.clinxin.axinaiagent.tools.ExecutionPolicyToolCallback;
+import com.clinxin.axinaiagent.tools.ToolProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+/**
+ * 并行工具调用执行器
+ *
+ * 模型在一次响应中返回多个工具调用时，相邻的可并行工具并发执行，
+ * 声明为不可并行的工具（见 {@link com.clinxin.axinaiagent.tools.ToolExecution}）作为屏障单独执行，
+ * 每个调用有独立的超时时间，最终按原始顺序组装 ToolResponseMessage。
+ */
+@Slf4j
+public class ParallelToolCallExecutor {
+
+    // 未声明执行策略的工具默认超时时间
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
+    // 工具调用以 I/O 为主，每个调用使用独立的虚拟线程
+    private static final ExecutorService TOOL_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("tool-call-", 0).factory());
+
+    private final Map<String, ToolCallback> toolCallbacks = new HashMap<>();
+
+    // 工具增量输出的监听器（工具名, 输出片段）
+    private volatile BiConsumer<String, String> outputListener;
+
+    public ParallelToolCallExecutor(ToolCallback[] availableTools) {
+        for (ToolCallback toolCallback : availableTools) {
+            toolCallbacks.put(toolCallback.getToolDefinition().name(), toolCallback);
+        }
+    }
+
+    /**
+     * 执行助手消息中的全部工具调用
+     *
+     * @param assistantMessage 包含工具调用的助手消息
+     * @return 按工具调用原始顺序排列的工具响应消息
+     */
+    public ToolResponseMessage execute(AssistantMessage assistantMessage) {
+        return execute(assistantMessage, Map.of());
+    }
+
+    /**
+     * 执行助手消息中的全部工具调用，已提前开始的调用直接等待其结果
+     *
+     * @param assistantMessage 包含工具调用的助手消息
+     * @param startedCalls     已通过 {@link #start} 提前开始的调用（按工具调用下标）
+     * @return 按工具调用原始顺序排列的工具响应消息
+     */
+    public ToolResponseMessage execute(AssistantMessage assistantMessage, Map<Integer, Future<String>> startedCalls) {
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        ToolResponseMessage.ToolResponse[] responses = new ToolResponseMessage.ToolResponse[toolCalls.size()];
+        // 当前批次中可并发执行的调用下标
+        List<Integer> batch = new ArrayList<>();
+        for (int i = 0; i < toolCalls.size(); i++) {
+            if (isParallel(toolCalls.get(i))) {
+                batch.add(i);
+                continue;
+            }
+            // 不可并行的调用作为屏障：先等待之前的批次完成，再单独执行
+            runBatch(toolCalls, batch, startedCalls, responses);
+            batch.clear();
+            runBatch(toolCalls, List.of(i), startedCalls, responses);
+        }
+        runBatch(toolCalls, batch, startedCalls, responses);
+        return new ToolResponseMessage(List.of(responses));
+    }
+
+    /**
+     * 提前开始单个工具调用（流式思考时参数一旦完整即可开始执行）
+     *
+     * @param toolCall 工具调用
+     * @return 调用结果
+     */
+    public Future<String> start(AssistantMessage.ToolCall toolCall) {
+        return TOOL_EXECUTOR.submit(() -> call(toolCall));
+    }
+
+    /**
+     * 设置工具增量输出的监听器
+     *
+     * @param outputListener 监听器（工具名, 输出片段）
+     */
+    public void setOutputListener(BiConsumer<String, String> outputListener) {
+        this.outputListener = outputListener;
+    }
+
+    /**
+     * 工具是否允许并发执行
+     *
+     * @param toolCall 工具调用
+     * @return 是否允许并发执行
+     */
+    public boolean isParallel(AssistantMessage.ToolCall toolCall) {
+        return !(toolCallbacks.get(toolCall.name()) instanceof ExecutionPolicyToolCallback policy)
+                || policy.isParallel();
+    }
+
+    /**
+     * 工具是否允许在助手消息完整之前提前开始执行：只有声明为只读且可并行的工具才提前执行，
+     * 有副作用的工具等待完整的助手消息，避免流式响应出错或被丢弃时副作用已经发生
+     *
+     * @param toolCall 工具调用
+     * @return 是否允许提前执行
+     */
+    public boolean isPrestartable(AssistantMessage.ToolCall toolCall) {
+        return toolCallbacks.get(toolCall.name()) instanceof ExecutionPolicyToolCallback policy
+                && policy.isParallel() && policy.isReadOnly();
+    }
+
+    /**
+     * 并发执行一批调用并等待全部完成
+     */
+    private void runBatch(List<AssistantMessage.ToolCall> toolCalls, List<Integer> batch,
+                          Map<Integer, Future<String>> startedCalls,
+                          ToolResponseMessage.ToolResponse[] responses) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Integer, Future<String>> futures = new HashMap<>();
+        for (int index : batch) {
+            Future<String> started = startedCalls.get(index);
+            futures.put(index, started != null ? started : start(toolCalls.get(index)));
+        }
+        // 各调用的超时从同一起点计算
+        long startedAt = System.nanoTime();
+        for (int index : batch) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(index);
+            long remainingNanos = timeoutOf(toolCall).toNanos() - (System.nanoTime() - startedAt);
+            responses[index] = new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(),
+                    await(toolCall, futures.get(index), remainingNanos));
+        }
+    }
+
+    private String await(AssistantMessage.ToolCall toolCall, Future<String> future, long timeoutNanos) {
+        try {
+            return future.get(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("工具 {} 执行超时", toolCall.name());
+            return "Error: tool " + toolCall.name() + " timed out after " + timeoutOf(toolCall).toSeconds() + "s";
+        } catch (ExecutionException e) {
+            log.error("工具 {} 执行失败", toolCall.name(), e.getCause());
+            return "Error executing tool " + toolCall.name() + ": " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            // 运行被取消，停止等待并中断工具调用
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return "Error: tool " + toolCall.name() + " was cancelled";
+        }
+    }
+
+    private String call(AssistantMessage.ToolCall toolCall) {
+        ToolCallback toolCallback = toolCallbacks.get(toolCall.name());
+        if (toolCallback == null) {
+            return "Error: no tool named " + toolCall.name();
+        }
+        BiConsumer<String, String> listener = this.outputListener;
+        if (listener == null) {
+            return toolCallback.call(toolCall.arguments());
+        }
+        return ToolProgress.withListener(chunk -> listener.accept(toolCall.name(), chunk),
+                () -> toolCallback.call(toolCall.arguments()));
+    }
+
+    private Duration timeoutOf(AssistantMessage.ToolCall toolCall) {
+        if (toolCallbacks.get(toolCall.name()) instanceof ExecutionPolicyToolCallback policy) {
+            return policy.getTimeout();
+        }
+        return DEFAULT_TIMEOUT;
+    }
+}
@@ -1,23 +1,27 @@
 package com.clinxin.axinaiagent.agent;
 
-import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.clinxin.axinaiagent.agent.context.ContextWindowStats;
+import com.clinxin.axinaiagent.agent.context.StepPromptAssembler;
 import com.clinxin.axinaiagent.agent.model.AgentState;
+import io.micrometer.core.instrument.Metrics;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.messages.AssistantMessage;
-import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.ToolResponseMessage;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.model.tool.ToolCallingManager;
-import org.springframework.ai.model.tool.ToolExecutionResult;
 import org.springframework.ai.tool.ToolCallback;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -34,20 +38,34 @@ public class ToolCallAgent extends ReActAgent {
     // 保存工具调用信息的响应结果（要调用哪些工具）
     private ChatResponse toolCallChatResponse;
 
-    // 工具调用管理者
-    private final ToolCallingManager toolCallingManager;
+    // 工具调用执行器（同一步中的多个独立工具调用并发执行）
+    private final ParallelToolCallExecutor toolCallExecutor;
 
     // 禁用 Spring AI 内置的工具调用机制，自己维护选项和消息上下文
     private final ChatOptions chatOptions;
 
+    // 单步提示词组装器（步骤提示不写入上下文，保持静态前缀一致）
+    private final StepPromptAssembler stepPromptAssembler;
+
+    // 流式运行时是否逐 token 推送思考过程
+    private boolean streamThinking = true;
+
+    // 流式思考过程中已提前开始执行的工具调用（按工具调用下标）
+    private final Map<Integer, Future<String>> prestartedCalls = new HashMap<>();
+
+    // 本次思考是否遇到了不可并行的工具（之后的调用不再提前执行）
+    private boolean prestartBlocked = false;
+
     public ToolCallAgent(ToolCallback[] availableTools) {
         super();
         this.availableTools = availableTools;
-        this.toolCallingManager = ToolCallingManager.builder().build();
+        this.toolCallExecutor = new ParallelToolCallExecutor(availableTools);
+        this.toolCallExecutor.setOutputListener(this::emitToolOutput);
         // 禁用 Spring AI 内置的工具调用机制，自己维护选项和消息上下文  
         this.chatOptions = DashScopeChatOptions.builder()
                 .withProxyToolCalls(true)
                 .build();
+        this.stepPromptAssembler = new StepPromptAssembler(chatOptions);
     }
 
     /**
@@ -57,24 +75,23 @@ public class ToolCallAgent extends ReActAgent {
      */
     @Override
     public boolean think() {
-        // 1.校验提示词，拼接用户提示词
-        if (getNextStepPrompt() != null && !getNextStepPrompt().isEmpty()) {
-            UserMessage userMessage = new UserMessage(getNextStepPrompt());
-            getMessageList().add(userMessage);
-        }
-        // 2.调用 AI 大模型，获取工具调用结果
-        List<Message> messageList = getMessageList();
-        Prompt prompt = new Prompt(messageList, chatOptions);
+        // 1.按 token 预算整理上下文，记录本步提示词大小
+        ContextWindowStats contextWindowStats = getContextWindowManager().compact(getMessageList(), getSystemPrompt());
+        Metrics.summary("agent.prompt.tokens", "agent", getName()).record(contextWindowStats.tokensAfter());
+        log.info("第 {} 步提示词约 {} tokens（整理前 {} tokens），{} 条消息（整理前 {} 条）", getCurrentStep(),
+                contextWindowStats.tokensAfter(), contextWindowStats.tokensBefore(),
+                contextWindowStats.messagesAfter(), contextWindowStats.messagesBefore());
+        // 2.组装提示词：步骤提示作为临时的末尾消息发送，不写入消息上下文
+        Prompt prompt = stepPromptAssembler.assemble(getSystemPrompt(), availableTools,
+                getMessageList(), getNextStepPrompt());
+        // 3.调用 AI 大模型，获取工具调用结果
         try {
-            // 获取带工具选项的响应
-            ChatResponse chatResponse = getChatClient().prompt(prompt)
-                    .system(getSystemPrompt())
-                    .tools(availableTools)
-                    .call()
-                    .chatResponse();
+            // 流式运行时逐 token 推送思考内容，否则阻塞等待完整响应
+            boolean streaming = streamThinking && getSseEmitter() != null;
+            ChatResponse chatResponse = streaming ? streamChatResponse(prompt) : callChatResponse(prompt);
             // 记录响应，用于 Act
             this.toolCallChatResponse = chatResponse;
-            // 3.解析工具调用结果，获取要调用的工具
+            // 4.解析工具调用结果，获取要调用的工具
             // 助手提示信息
             AssistantMessage assistantMessage = chatResponse.getResult().getOutput();
             // 获取要调用的工具列表
@@ -96,17 +113,127 @@ public class ToolCallAgent extends ReActAgent {
                 getMessageList().add(assistantMessage);
                 return false;
             } else {
-                // 需要调用工具时，无需记录助手消息，因为调用工具时会自动记录
+                // 需要调用工具时，无需记录助手消息，act 执行工具后会连同结果一起记录
                 return true;
             }
         } catch (Exception e) {
             log.error(getName() + "的思考过程遇到了问题: " + e.getMessage());
+            cancelPrestartedCalls();
             getMessageList().add(
                     new AssistantMessage("处理时遇到错误: " + e.getMessage()));
             return false;
         }
     }
 
+    /**
+     * 阻塞调用大模型，获取带工具选项的完整响应
+     *
+     * @param prompt 提示词
+     * @return 完整响应
+     */
+    private ChatResponse callChatResponse(Prompt prompt) {
+        long startedAt = System.nanoTime();
+        ChatResponse chatResponse = getChatClient().prompt(prompt)
+                .system(getSystemPrompt())
+                .tools(availableTools)
+                .call()
+                .chatResponse();
+        // 阻塞模式下首个 token 与完整响应同时到达
+        long elapsedNanos = System.nanoTime() - startedAt;
+        recordThinkLatency("blocking", elapsedNanos, elapsedNanos);
+        return chatResponse;
+    }
+
+    /**
+     * 流式调用大模型：思考内容逐 token 推送给客户端，工具调用参数一旦完整即提前开始执行
+     *
+     * @param prompt 提示词
+     * @return 由流式分片组装的完整响应
+     */
+    private ChatResponse streamChatResponse(Prompt prompt) {
+        long startedAt = System.nanoTime();
+        long firstTokenNanos = -1;
+        StringBuilder text = new StringBuilder();
+        ToolCallAssembler assembler = new ToolCallAssembler();
+        Iterable<ChatResponse> chunks = getChatClient().prompt(prompt)
+                .system(getSystemPrompt())
+                .tools(availableTools)
+                .stream()
+                .chatResponse()
+                .toIterable();
+        for (ChatResponse chunk : chunks) {
+            if (chunk == null || chunk.getResult() == null || chunk.getResult().getOutput() == null) {
+                continue;
+            }
+            AssistantMessage output = chunk.getResult().getOutput();
+            boolean hasText = StrUtil.isNotEmpty(output.getText());
+            boolean hasToolCalls = output.getToolCalls() != null && !output.getToolCalls().isEmpty();
+            if (firstTokenNanos < 0 && (hasText || hasToolCalls)) {
+                firstTokenNanos = System.nanoTime() - startedAt;
+            }
+            if (hasText) {
+                text.append(output.getText());
+                emitThinking(output.getText());
+            }
+            if (hasToolCalls) {
+                prestart(assembler, assembler.merge(output.getToolCalls()));
+            }
+        }
+        prestart(assembler, assembler.finish());
+        long elapsedNanos = System.nanoTime() - startedAt;
+        recordThinkLatency("stream", firstTokenNanos < 0 ? elapsedNanos : firstTokenNanos, elapsedNanos);
+        AssistantMessage assistantMessage = new AssistantMessage(text.toString(), Map.of(), assembler.toolCalls());
+        return new ChatResponse(List.of(new Generation(assistantMessage)));
+    }
+
+    /**
+     * 提前开始已完整的只读工具调用
+     * 有副作用的工具等待完整的助手消息后由 act 执行；遇到不可并行的工具后停止提前执行，其后的调用交由 act 按屏障顺序执行
+     *
+     * @param assembler 工具调用组装器
+     * @param completed 新完成的工具调用下标
+     */
+    private void prestart(ToolCallAssembler assembler, List<Integer> completed) {
+        for (int index : completed) {
+            if (prestartBlocked) {
+                return;
+            }
+            AssistantMessage.ToolCall toolCall = assembler.get(index);
+            if (!toolCallExecutor.isParallel(toolCall)) {
+                prestartBlocked = true;
+                return;
+            }
+            if (!toolCallExecutor.isPrestartable(toolCall)) {
+                continue;
+            }
+            log.info("工具 {} 参数已完整，提前开始执行", toolCall.name());
+            prestartedCalls.put(index, toolCallExecutor.start(toolCall));
+        }
+    }
+
+    /**
+     * 取消提前开始但不再需要的工具调用
+     */
+    private void cancelPrestartedCalls() {
+        prestartedCalls.values().forEach(future -> future.cancel(true));
+        prestartedCalls.clear();
+        prestartBlocked = false;
+    }
+
+    /**
+     * 记录思考阶段耗时（首 token 延迟与完整响应延迟），按流式/阻塞模式区分
+     *
+     * @param mode         stream 或 blocking
+     * @param ttftNanos    首 token 延迟（纳秒）
+     * @param elapsedNanos 完整响应延迟（纳秒）
+     */
+    private void recordThinkLatency(String mode, long ttftNanos, long elapsedNanos) {
+        Metrics.timer("agent.think.ttft", "mode", mode).record(ttftNanos, TimeUnit.NANOSECONDS);
+        Metrics.timer("agent.think.latency", "mode", mode).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.info("{} 思考耗时（{}）：首 token {} ms，完整响应 {} ms", getName(), mode,
+                TimeUnit.NANOSECONDS.toMillis(ttftNanos), TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
     /**
      * 执行工具调用并处理结果
      *
@@ -117,12 +244,19 @@ public class ToolCallAgent extends ReActAgent {
         if (!toolCallChatResponse.hasToolCalls()) {
             return "没有工具调用";
         }
-        // 调用工具
-        Prompt prompt = new Prompt(getMessageList(), chatOptions);
-        ToolExecutionResult toolExecutionResult = toolCallingManager.executeToolCalls(prompt, toolCallChatResponse);
-        // 记录消息上下文，conversationHistory 已经包含了助手消息和工具调用返回的结果
-        setMessageList(toolExecutionResult.conversationHistory());
-        ToolResponseMessage toolResponseMessage = (ToolResponseMessage) CollUtil.getLast(toolExecutionResult.conversationHistory());
+        // 调用工具（独立的工具调用并发执行，结果保持原始顺序）
+        AssistantMessage assistantMessage = toolCallChatResponse.getResult().getOutput();
+        ToolResponseMessage toolResponseMessage;
+        try {
+            // 流式思考时已提前开始的调用直接等待结果
+            toolResponseMessage = toolCallExecutor.execute(assistantMessage, prestartedCalls);
+        } finally {
+            prestartedCalls.clear();
+            prestartBlocked = false;
+        }
+        // 记录消息上下文：助手消息和工具调用返回的结果
+        getMessageList().add(assistantMessage);
+        getMessageList().add(toolResponseMessage);
         // 判断是否调用了终止工具
         boolean terminateToolCalled = toolResponseMessage.getResponses().stream()
                 .anyMatch(response -> "doTerminate".equals(response.name()));
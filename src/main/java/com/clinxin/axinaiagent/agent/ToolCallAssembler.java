@@ -0,0 +1,127 @@
+package com.clinxin.axinaiagent.agent;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式响应中的工具调用增量组装器
+ *
+ * 模型流式返回工具调用时，名称和参数会分散在多个分片中。
+ * 组装器按 id 合并分片，并在参数已是完整 JSON 或下一个工具调用开始时判定该调用已完整，
+ * 便于在流结束前提前开始执行工具。
+ */
+class ToolCallAssembler {
+
+    private final List<PartialToolCall> calls = new ArrayList<>();
+
+    // 已判定完整的工具调用数量（完整的调用总是按顺序出现）
+    private int completedCount = 0;
+
+    /**
+     * 合并一个分片中的工具调用增量
+     *
+     * @param deltas 分片中的工具调用
+     * @return 本次新完成的工具调用下标
+     */
+    List<Integer> merge(List<AssistantMessage.ToolCall> deltas) {
+        for (AssistantMessage.ToolCall delta : deltas) {
+            PartialToolCall current = calls.isEmpty() ? null : calls.get(calls.size() - 1);
+            boolean startsNewCall = current == null
+                    || (StrUtil.isNotEmpty(delta.id()) && StrUtil.isNotEmpty(current.id) && !delta.id().equals(current.id));
+            if (startsNewCall) {
+                current = new PartialToolCall();
+                calls.add(current);
+            }
+            current.append(delta);
+        }
+        List<Integer> completed = new ArrayList<>();
+        // 除最后一个调用外，之前的调用都已完整；最后一个调用在参数是合法 JSON 时完整
+        while (completedCount < calls.size()) {
+            boolean isLast = completedCount == calls.size() - 1;
+            if (isLast && !calls.get(completedCount).hasCompleteArguments()) {
+                break;
+            }
+            completed.add(completedCount++);
+        }
+        return completed;
+    }
+
+    /**
+     * 流结束，剩余的调用全部视为完整
+     *
+     * @return 本次新完成的工具调用下标
+     */
+    List<Integer> finish() {
+        List<Integer> completed = new ArrayList<>();
+        while (completedCount < calls.size()) {
+            completed.add(completedCount++);
+        }
+        return completed;
+    }
+
+    /**
+     * 获取指定下标的工具调用
+     */
+    AssistantMessage.ToolCall get(int index) {
+        return calls.get(index).toToolCall();
+    }
+
+    /**
+     * 获取组装完成的全部工具调用
+     */
+    List<AssistantMessage.ToolCall> toolCalls() {
+        return calls.stream().map(PartialToolCall::toToolCall).toList();
+    }
+
+    /**
+     * 组装中的工具调用
+     */
+    private static class PartialToolCall {
+        String id = "";
+        String type = "";
+        String name = "";
+        final StringBuilder arguments = new StringBuilder();
+
+        void append(AssistantMessage.ToolCall delta) {
+            if (StrUtil.isEmpty(id) && StrUtil.isNotEmpty(delta.id())) {
+                id = delta.id();
+            }
+            if (StrUtil.isEmpty(type) && StrUtil.isNotEmpty(delta.type())) {
+                type = delta.type();
+            }
+            if (StrUtil.isEmpty(name) && StrUtil.isNotEmpty(delta.name())) {
+                name = delta.name();
+            }
+            String deltaArguments = delta.arguments();
+            if (StrUtil.isEmpty(deltaArguments)) {
+                return;
+            }
+            // 部分模型每个分片返回累计的完整参数，而非增量
+            if (!arguments.isEmpty() && deltaArguments.startsWith(arguments.toString())) {
+                arguments.setLength(0);
+            }
+            arguments.append(deltaArguments);
+        }
+
+        boolean hasCompleteArguments() {
+            String json = arguments.toString();
+            if (StrUtil.isEmpty(name) || !JSONUtil.isTypeJSONObject(json)) {
+                return false;
+            }
+            try {
+                JSONUtil.parseObj(json);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        AssistantMessage.ToolCall toToolCall() {
+            return new AssistantMessage.ToolCall(id, type, name, arguments.toString());
+        }
+    }
+}
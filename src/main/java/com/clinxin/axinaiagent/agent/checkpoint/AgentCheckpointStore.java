@@ -0,0 +1,353 @@
+package com.clinxin.axinaiagent.agent.checkpoint;
+
+import com.clinxin.axinaiagent.agent.BaseAgent;
+import com.clinxin.axinaiagent.agent.model.AgentState;
+import com.clinxin.axinaiagent.chatmemory.ConversationLog;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 智能体运行检查点存储
+ *
+ * 每个运行一个分段追加日志（{baseDir}/{runId}/），每步追加一条 Kryo 序列化的检查点记录，
+ * 消息上下文只追加新增部分，被整理过时写入完整快照并丢弃快照之前的分段。
+ * 同时登记本节点上仍在执行的运行，用于断线后重新接入，并保证同一运行同时只有一个执行者。
+ */
+@Component
+@Slf4j
+public class AgentCheckpointStore {
+
+    private static final int POOL_CAPACITY = 16;
+
+    // 运行 ID 只允许字母、数字、下划线和短横线，防止路径穿越
+    private static final Pattern RUN_ID_PATTERN = Pattern.compile("[0-9A-Za-z_-]{1,64}");
+
+    // Kryo 非线程安全，每次序列化时从池中借用
+    private static final Pool<Kryo> KRYO_POOL = new Pool<>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo();
+            // 设置为不需要手动注册
+            kryo.setRegistrationRequired(false);
+            // 设置标准实例化策略
+            kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+            return kryo;
+        }
+    };
+
+    // 可复用的序列化缓冲区
+    private static final Pool<Output> OUTPUT_POOL = new Pool<>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Output create() {
+            return new Output(4096, -1);
+        }
+    };
+
+    private final File baseDir;
+
+    private final long segmentBytes;
+
+    // 运行结束后检查点的保留时长
+    private final Duration retention;
+
+    // 正在写入的运行
+    private final Map<String, RunWriter> writers = new ConcurrentHashMap<>();
+
+    // 本节点上仍在执行的运行
+    private final Map<String, LiveRun> liveRuns = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService cleanupExecutor;
+
+    public AgentCheckpointStore(@Value("${agent.checkpoint.dir:${user.dir}/tmp/agent-runs}") String dir,
+                                @Value("${agent.checkpoint.segment-bytes:1048576}") long segmentBytes,
+                                @Value("${agent.checkpoint.retention-hours:24}") long retentionHours) {
+        this.baseDir = new File(dir);
+        this.segmentBytes = segmentBytes;
+        this.retention = Duration.ofHours(retentionHours);
+        if (!baseDir.exists()) {
+            baseDir.mkdirs();
+        }
+        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "agent-checkpoint-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleanupExecutor.scheduleWithFixedDelay(this::purgeExpired, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 登记本节点上开始执行的运行
+     *
+     * @param runId 运行 ID
+     * @param agent 执行该运行的代理
+     * @return 是否登记成功（该运行已有执行者时返回 false）
+     */
+    public boolean register(String runId, BaseAgent agent) {
+        checkRunId(runId);
+        return liveRuns.putIfAbsent(runId, new LiveRun(agent, new CountDownLatch(1))) == null;
+    }
+
+    /**
+     * 运行结束（完成、失败或取消），释放登记
+     *
+     * @param runId 运行 ID
+     * @param agent 执行该运行的代理
+     */
+    public void release(String runId, BaseAgent agent) {
+        LiveRun liveRun = liveRuns.get(runId);
+        if (liveRun != null && liveRun.agent() == agent && liveRuns.remove(runId, liveRun)) {
+            writers.remove(runId);
+            liveRun.released().countDown();
+        }
+    }
+
+    /**
+     * 获取本节点上仍在执行的运行
+     *
+     * @param runId 运行 ID
+     * @return 执行该运行的代理，不存在时返回 null
+     */
+    public BaseAgent getLiveRun(String runId) {
+        LiveRun liveRun = liveRuns.get(runId);
+        return liveRun == null ? null : liveRun.agent();
+    }
+
+    /**
+     * 等待运行释放（已取消的运行在当前步骤结束并保存检查点后释放）
+     *
+     * @param runId   运行 ID
+     * @param timeout 最长等待时间
+     * @return 是否已释放
+     */
+    public boolean awaitRelease(String runId, Duration timeout) {
+        LiveRun liveRun = liveRuns.get(runId);
+        if (liveRun == null) {
+            return true;
+        }
+        try {
+            return liveRun.released().await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 保存一步的检查点
+     *
+     * @param runId       运行 ID
+     * @param state       代理状态
+     * @param currentStep 已完成的步骤数
+     * @param messageList 消息上下文
+     * @param stepResults 已输出的步骤结果
+     */
+    public void save(String runId, AgentState state, int currentStep,
+                     List<Message> messageList, List<String> stepResults) throws IOException {
+        checkRunId(runId);
+        RunWriter writer = writers.computeIfAbsent(runId,
+                id -> new RunWriter(new ConversationLog(getRunDir(id), segmentBytes)));
+        synchronized (writer) {
+            StepCheckpoint checkpoint = new StepCheckpoint();
+            checkpoint.setStep(currentStep);
+            checkpoint.setState(state);
+            boolean appendOnly = startsWith(messageList, writer.writtenMessages);
+            checkpoint.setSnapshot(!appendOnly);
+            checkpoint.setMessages(new ArrayList<>(appendOnly
+                    ? messageList.subList(writer.writtenMessages.size(), messageList.size())
+                    : messageList));
+            checkpoint.setResults(new ArrayList<>(stepResults.subList(writer.writtenResults, stepResults.size())));
+            writer.conversationLog.append(List.of(serialize(checkpoint)), false);
+            writer.writtenMessages = new ArrayList<>(messageList);
+            writer.writtenResults = stepResults.size();
+            writer.recordsSinceSnapshot = appendOnly ? writer.recordsSinceSnapshot + 1 : 1;
+            if (!appendOnly) {
+                // 快照之前的记录已无用，丢弃完整落在其之前的分段
+                writer.conversationLog.compact(writer.recordsSinceSnapshot);
+            }
+        }
+    }
+
+    /**
+     * 读取运行的检查点，之后的保存接着该检查点追加
+     *
+     * @param runId 运行 ID
+     * @return 检查点，不存在时返回 null
+     */
+    public AgentRunCheckpoint load(String runId) throws IOException {
+        checkRunId(runId);
+        File runDir = getRunDir(runId);
+        if (!runDir.isDirectory()) {
+            return null;
+        }
+        ConversationLog conversationLog = new ConversationLog(runDir, segmentBytes);
+        List<byte[]> records = conversationLog.readLast(Integer.MAX_VALUE);
+        if (records.isEmpty()) {
+            return null;
+        }
+        RunWriter writer = new RunWriter(conversationLog);
+        List<Message> messageList = new ArrayList<>();
+        List<String> stepResults = new ArrayList<>();
+        AgentState state = AgentState.IDLE;
+        int currentStep = 0;
+        for (byte[] record : records) {
+            StepCheckpoint checkpoint = deserialize(record);
+            if (checkpoint.isSnapshot()) {
+                messageList.clear();
+                writer.recordsSinceSnapshot = 0;
+            }
+            messageList.addAll(checkpoint.getMessages());
+            stepResults.addAll(checkpoint.getResults());
+            state = checkpoint.getState();
+            currentStep = checkpoint.getStep();
+            writer.recordsSinceSnapshot++;
+        }
+        writer.writtenMessages = new ArrayList<>(messageList);
+        writer.writtenResults = stepResults.size();
+        writers.put(runId, writer);
+        return new AgentRunCheckpoint(runId, state, currentStep, messageList, stepResults);
+    }
+
+    /**
+     * 删除运行的检查点
+     *
+     * @param runId 运行 ID
+     */
+    public void delete(String runId) {
+        checkRunId(runId);
+        writers.remove(runId);
+        new ConversationLog(getRunDir(runId), segmentBytes).delete();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdownNow();
+    }
+
+    /**
+     * 清理超出保留时长且不在执行中的运行
+     */
+    private void purgeExpired() {
+        File[] runDirs = baseDir.listFiles(File::isDirectory);
+        if (runDirs == null) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - retention.toMillis();
+        for (File runDir : runDirs) {
+            String runId = runDir.getName();
+            if (liveRuns.containsKey(runId) || !RUN_ID_PATTERN.matcher(runId).matches()) {
+                continue;
+            }
+            File[] files = runDir.listFiles();
+            long lastModified = runDir.lastModified();
+            if (files != null) {
+                for (File file : files) {
+                    lastModified = Math.max(lastModified, file.lastModified());
+                }
+            }
+            if (lastModified < expireBefore) {
+                log.info("Purging expired agent run checkpoint {}", runId);
+                delete(runId);
+            }
+        }
+    }
+
+    /**
+     * 当前消息上下文是否只在已保存的消息末尾追加（按引用比较）
+     */
+    private static boolean startsWith(List<Message> messageList, List<Message> writtenMessages) {
+        if (messageList.size() < writtenMessages.size()) {
+            return false;
+        }
+        for (int i = 0; i < writtenMessages.size(); i++) {
+            if (messageList.get(i) != writtenMessages.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 运行 ID 是否合法（只允许字母、数字、下划线和短横线）
+     *
+     * @param runId 运行 ID
+     * @return 是否合法
+     */
+    public static boolean isValidRunId(String runId) {
+        return runId != null && RUN_ID_PATTERN.matcher(runId).matches();
+    }
+
+    private static void checkRunId(String runId) {
+        if (!isValidRunId(runId)) {
+            throw new IllegalArgumentException("Invalid run id: " + runId);
+        }
+    }
+
+    private File getRunDir(String runId) {
+        return new File(baseDir, runId);
+    }
+
+    private byte[] serialize(StepCheckpoint checkpoint) {
+        Kryo kryo = KRYO_POOL.obtain();
+        Output output = OUTPUT_POOL.obtain();
+        try {
+            output.reset();
+            kryo.writeObject(output, checkpoint);
+            return output.toBytes();
+        } finally {
+            OUTPUT_POOL.free(output);
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    private StepCheckpoint deserialize(byte[] record) {
+        Kryo kryo = KRYO_POOL.obtain();
+        try (Input input = new Input(record)) {
+            return kryo.readObject(input, StepCheckpoint.class);
+        } finally {
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    /**
+     * 单个运行的写入状态
+     */
+    private static class RunWriter {
+        final ConversationLog conversationLog;
+        // 已保存的消息（按引用判断之后是否只是追加）
+        List<Message> writtenMessages = new ArrayList<>();
+        int writtenResults;
+        // 最近一次快照（含）以来的记录数
+        int recordsSinceSnapshot;
+
+        RunWriter(ConversationLog conversationLog) {
+            this.conversationLog = conversationLog;
+        }
+    }
+
+    /**
+     * 执行中的运行
+     */
+    private record LiveRun(BaseAgent agent, CountDownLatch released) {
+    }
+}
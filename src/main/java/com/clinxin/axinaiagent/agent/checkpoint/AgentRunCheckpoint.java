@@ -0,0 +1,31 @@
+package com.clinxin.axinaiagent.agent.checkpoint;
+
+import com.clinxin.axinaiagent.agent.model.AgentState;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 智能体运行的检查点（由逐步追加的检查点记录重建）
+ */
+@Data
+@AllArgsConstructor
+public class AgentRunCheckpoint {
+
+    // 运行 ID
+    private String runId;
+
+    // 最近一次保存时的代理状态
+    private AgentState state;
+
+    // 已完成的步骤数
+    private int currentStep;
+
+    // 消息上下文
+    private List<Message> messageList;
+
+    // 已输出的步骤结果
+    private List<String> stepResults;
+}
@@ -0,0 +1,30 @@
+package com.clinxin.axinaiagent.agent.checkpoint;
+
+import com.clinxin.axinaiagent.agent.model.AgentState;
+import lombok.Data;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 单步检查点记录
+ *
+ * 消息上下文只在末尾追加时仅保存新增的消息；上下文被整理（压缩、摘要）过时保存完整快照。
+ */
+@Data
+class StepCheckpoint {
+
+    // 已完成的步骤数
+    private int step;
+
+    private AgentState state;
+
+    // messages 是否为完整的消息上下文
+    private boolean snapshot;
+
+    // 新增的消息或完整快照
+    private List<Message> messages;
+
+    // 本次新增的步骤结果
+    private List<String> results;
+}
@@ -0,0 +1,22 @@
+package com.clinxin.axinaiagent.agent.context;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * 上下文窗口管理器
+ *
+ * 每次调用大模型前整理智能体的消息上下文，使提示词不超过 token 预算
+ */
+public interface ContextWindowManager {
+
+    /**
+     * 整理消息上下文（原地修改）
+     *
+     * @param messageList  消息上下文
+     * @param systemPrompt 系统提示词
+     * @return 整理前后的提示词大小
+     */
+    ContextWindowStats compact(List<Message> messageList, String systemPrompt);
+}
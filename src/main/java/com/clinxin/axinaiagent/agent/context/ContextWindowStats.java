@@ -0,0 +1,12 @@
+package com.clinxin.axinaiagent.agent.context;
+
+/**
+ * 一次上下文整理前后的提示词大小
+ *
+ * @param tokensBefore   整理前 token 数
+ * @param tokensAfter    整理后 token 数
+ * @param messagesBefore 整理前消息数
+ * @param messagesAfter  整理后消息数
+ */
+public record ContextWindowStats(int tokensBefore, int tokensAfter, int messagesBefore, int messagesAfter) {
+}
@@ -0,0 +1,104 @@
+package com.clinxin.axinaiagent.agent.context;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单步提示词组装器
+ *
+ * 步骤提示作为临时的末尾消息随本次请求发送，不写入消息上下文，避免每步重复累积；
+ * 同时对系统提示词和工具定义组成的静态前缀计算哈希，确保各步之间前缀逐字节一致，
+ * 使模型服务端的前缀缓存能够命中。
+ */
+@Slf4j
+public class StepPromptAssembler {
+
+    private final ChatOptions chatOptions;
+
+    // 上一次的静态前缀哈希
+    private String prefixHash;
+
+    // 上一次计算哈希时的系统提示词和工具（引用不变时无需重新计算）
+    private String lastSystemPrompt;
+
+    private ToolCallback[] lastTools;
+
+    public StepPromptAssembler(ChatOptions chatOptions) {
+        this.chatOptions = chatOptions;
+    }
+
+    /**
+     * 组装本步的提示词
+     *
+     * @param systemPrompt   系统提示词
+     * @param tools          可用工具
+     * @param messageList    消息上下文（不会被修改）
+     * @param nextStepPrompt 步骤提示
+     * @return 本步发送的提示词
+     */
+    public Prompt assemble(String systemPrompt, ToolCallback[] tools, List<Message> messageList, String nextStepPrompt) {
+        checkPrefix(systemPrompt, tools);
+        if (StrUtil.isEmpty(nextStepPrompt)) {
+            return new Prompt(messageList, chatOptions);
+        }
+        List<Message> messages = new ArrayList<>(messageList.size() + 1);
+        messages.addAll(messageList);
+        messages.add(new UserMessage(nextStepPrompt));
+        return new Prompt(messages, chatOptions);
+    }
+
+    /**
+     * 获取静态前缀哈希
+     */
+    public String getPrefixHash() {
+        return prefixHash;
+    }
+
+    /**
+     * 校验静态前缀是否与上一步一致，不一致时记录告警
+     */
+    private void checkPrefix(String systemPrompt, ToolCallback[] tools) {
+        if (prefixHash != null && systemPrompt == lastSystemPrompt && tools == lastTools) {
+            return;
+        }
+        String hash = hashPrefix(systemPrompt, tools);
+        if (prefixHash != null && !prefixHash.equals(hash)) {
+            Metrics.counter("agent.prompt.prefix.changes").increment();
+            log.warn("提示词静态前缀发生变化（{} -> {}），前缀缓存将失效", prefixHash, hash);
+        }
+        prefixHash = hash;
+        lastSystemPrompt = systemPrompt;
+        lastTools = tools;
+    }
+
+    /**
+     * 计算系统提示词和工具定义的哈希
+     *
+     * @param systemPrompt 系统提示词
+     * @param tools        可用工具
+     * @return SHA-256 十六进制哈希
+     */
+    public static String hashPrefix(String systemPrompt, ToolCallback[] tools) {
+        StringBuilder prefix = new StringBuilder(StrUtil.nullToEmpty(systemPrompt));
+        if (tools != null) {
+            for (ToolCallback tool : tools) {
+                ToolDefinition definition = tool.getToolDefinition();
+                prefix.append('\u0000').append(definition.name())
+                        .append('\u0000').append(definition.description())
+                        .append('\u0000').append(definition.inputSchema());
+            }
+        }
+        return DigestUtil.sha256Hex(prefix.toString());
+    }
+}
@@ -0,0 +1,286 @@
+package com.clinxin.axinaiagent.agent.context;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于 token 预算的上下文窗口管理器
+ *
+ * 系统提示词、用户目标和最近若干步原样保留；超出预算时，
+ * 先从最早的步骤开始压缩工具返回结果，仍超出则将较早的步骤滚动合并为一条摘要消息。
+ * 每个智能体实例独享一个管理器，非线程安全。
+ */
+@Slf4j
+public class TokenBudgetContextWindowManager implements ContextWindowManager {
+
+    // 历史步骤摘要消息的前缀，用于识别已有摘要并滚动合并
+    static final String SUMMARY_PREFIX = "[历史步骤摘要]\n";
+
+    // 被压缩的工具返回结果的标记
+    private static final String COMPRESSED_MARKER = "\n...[内容已压缩，原始约 ";
+
+    // 每条消息的固定开销（角色、分隔符等）
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    // 确定性摘要中每条记录保留的字符数
+    private static final int DIGEST_ENTRY_CHARS = 200;
+
+    // 摘要的最大字符数，滚动合并时保留最近的部分
+    private static final int MAX_SUMMARY_CHARS = 4000;
+
+    private static final String SUMMARY_SYSTEM_PROMPT = """
+            你负责压缩智能体的执行记录。请将给定的历史摘要和执行记录合并为一段简洁的摘要，
+            保留已获得的关键事实、数据、文件路径和结论，省略重复内容和原始网页、命令输出等细节。
+            """;
+
+    // JTokkit 编码器线程安全，所有实例共享
+    private static final TokenCountEstimator DEFAULT_TOKEN_COUNT_ESTIMATOR = new JTokkitTokenCountEstimator();
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    // 提示词 token 预算（系统提示词 + 消息上下文）
+    private final int maxPromptTokens;
+
+    // 原样保留的最近步骤数
+    private final int keepRecentSteps;
+
+    // 压缩后每个工具返回结果保留的字符数
+    private final int compressedToolResponseChars;
+
+    // 可选：用于生成摘要的对话客户端，未设置时使用确定性摘要
+    private ChatClient summaryChatClient;
+
+    // 消息 token 数缓存（消息对象不可变，按引用缓存，避免每步重复计算整个上下文）
+    private final Map<Message, Integer> tokenCache = new IdentityHashMap<>();
+
+    public TokenBudgetContextWindowManager() {
+        this(32000, 3, 800);
+    }
+
+    public TokenBudgetContextWindowManager(int maxPromptTokens, int keepRecentSteps, int compressedToolResponseChars) {
+        this(DEFAULT_TOKEN_COUNT_ESTIMATOR, maxPromptTokens, keepRecentSteps, compressedToolResponseChars);
+    }
+
+    public TokenBudgetContextWindowManager(TokenCountEstimator tokenCountEstimator, int maxPromptTokens,
+                                           int keepRecentSteps, int compressedToolResponseChars) {
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.maxPromptTokens = maxPromptTokens;
+        this.keepRecentSteps = Math.max(1, keepRecentSteps);
+        this.compressedToolResponseChars = compressedToolResponseChars;
+    }
+
+    /**
+     * 设置用于生成摘要的对话客户端
+     *
+     * @param summaryChatClient 对话客户端
+     */
+    public void setSummaryChatClient(ChatClient summaryChatClient) {
+        this.summaryChatClient = summaryChatClient;
+    }
+
+    @Override
+    public ContextWindowStats compact(List<Message> messageList, String systemPrompt) {
+        // 只保留当前上下文中消息的缓存
+        Set<Message> liveMessages = Collections.newSetFromMap(new IdentityHashMap<>());
+        liveMessages.addAll(messageList);
+        tokenCache.keySet().retainAll(liveMessages);
+
+        int messagesBefore = messageList.size();
+        int tokensBefore = estimate(systemPrompt) + MESSAGE_OVERHEAD_TOKENS;
+        for (Message message : messageList) {
+            tokensBefore += tokens(message);
+        }
+        int total = tokensBefore;
+        if (total <= maxPromptTokens) {
+            return new ContextWindowStats(tokensBefore, total, messagesBefore, messagesBefore);
+        }
+        // 1.确定原样保留的部分：用户目标和最近的若干步
+        int oldStart = indexOfGoal(messageList) + 1;
+        int recentStart = indexOfRecentSteps(messageList, oldStart);
+        if (recentStart > oldStart) {
+            // 2.从最早的步骤开始压缩工具返回结果
+            for (int i = oldStart; i < recentStart && total > maxPromptTokens; i++) {
+                if (messageList.get(i) instanceof ToolResponseMessage toolResponseMessage) {
+                    ToolResponseMessage compressed = compress(toolResponseMessage);
+                    if (compressed != toolResponseMessage) {
+                        total += tokens(compressed) - tokens(toolResponseMessage);
+                        messageList.set(i, compressed);
+                    }
+                }
+            }
+            // 3.仍超出预算：将较早的步骤滚动合并为一条摘要
+            List<Message> folded = messageList.subList(oldStart, recentStart);
+            boolean onlySummary = folded.size() == 1 && isSummary(folded.get(0));
+            if (total > maxPromptTokens && !onlySummary) {
+                Message summary = summarize(new ArrayList<>(folded));
+                for (Message message : folded) {
+                    total -= tokens(message);
+                }
+                folded.clear();
+                messageList.add(oldStart, summary);
+                total += tokens(summary);
+            }
+        }
+        if (total > maxPromptTokens) {
+            log.warn("上下文整理后仍超出预算：{} / {} tokens，最近 {} 步原样保留", total, maxPromptTokens, keepRecentSteps);
+        }
+        return new ContextWindowStats(tokensBefore, total, messagesBefore, messageList.size());
+    }
+
+    /**
+     * 用户目标的位置（第一条非摘要的用户消息）
+     */
+    private int indexOfGoal(List<Message> messageList) {
+        for (int i = 0; i < messageList.size(); i++) {
+            if (messageList.get(i) instanceof UserMessage && !isSummary(messageList.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 最近若干步的起始位置：从倒数第 keepRecentSteps 条助手消息向前包含该步的用户提示
+     */
+    private int indexOfRecentSteps(List<Message> messageList, int oldStart) {
+        int steps = 0;
+        int index = messageList.size();
+        while (index > oldStart && steps < keepRecentSteps) {
+            index--;
+            if (messageList.get(index) instanceof AssistantMessage) {
+                steps++;
+            }
+        }
+        if (steps < keepRecentSteps) {
+            return oldStart;
+        }
+        while (index > oldStart && messageList.get(index - 1) instanceof UserMessage
+                && !isSummary(messageList.get(index - 1))) {
+            index--;
+        }
+        return index;
+    }
+
+    /**
+     * 压缩工具返回结果，只保留开头部分
+     */
+    private ToolResponseMessage compress(ToolResponseMessage toolResponseMessage) {
+        boolean changed = false;
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+            String data = response.responseData();
+            if (data == null || data.length() <= compressedToolResponseChars || data.contains(COMPRESSED_MARKER)) {
+                responses.add(response);
+                continue;
+            }
+            String compressed = data.substring(0, compressedToolResponseChars)
+                    + COMPRESSED_MARKER + estimate(data) + " tokens]";
+            responses.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(), compressed));
+            changed = true;
+        }
+        return changed ? new ToolResponseMessage(responses, toolResponseMessage.getMetadata()) : toolResponseMessage;
+    }
+
+    /**
+     * 将较早的步骤合并为摘要消息（与已有摘要滚动合并）
+     */
+    private Message summarize(List<Message> folded) {
+        String previousSummary = "";
+        StringBuilder digest = new StringBuilder();
+        for (Message message : folded) {
+            if (isSummary(message)) {
+                previousSummary = message.getText().substring(SUMMARY_PREFIX.length());
+            } else {
+                appendDigest(digest, message);
+            }
+        }
+        if (summaryChatClient != null) {
+            try {
+                String summary = summaryChatClient.prompt()
+                        .system(SUMMARY_SYSTEM_PROMPT)
+                        .user("历史摘要：\n" + previousSummary + "\n执行记录：\n" + digest)
+                        .call()
+                        .content();
+                if (StrUtil.isNotBlank(summary)) {
+                    return new UserMessage(SUMMARY_PREFIX + summary);
+                }
+            } catch (Exception e) {
+                log.warn("生成上下文摘要失败，使用确定性摘要: {}", e.getMessage());
+            }
+        }
+        String summary = previousSummary + digest;
+        if (summary.length() > MAX_SUMMARY_CHARS) {
+            summary = "..." + summary.substring(summary.length() - MAX_SUMMARY_CHARS);
+        }
+        return new UserMessage(SUMMARY_PREFIX + summary);
+    }
+
+    private void appendDigest(StringBuilder digest, Message message) {
+        if (message instanceof AssistantMessage assistantMessage) {
+            if (StrUtil.isNotBlank(assistantMessage.getText())) {
+                digest.append("思考：").append(abbreviate(assistantMessage.getText())).append('\n');
+            }
+            for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                digest.append("调用 ").append(toolCall.name())
+                        .append('(').append(abbreviate(toolCall.arguments())).append(")\n");
+            }
+        } else if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                digest.append(response.name()).append(" 返回：")
+                        .append(abbreviate(response.responseData())).append('\n');
+            }
+        }
+        // 每步重复的用户提示不进入摘要
+    }
+
+    private static String abbreviate(String text) {
+        if (text == null) {
+            return "";
+        }
+        String head = text.length() > DIGEST_ENTRY_CHARS * 2 ? text.substring(0, DIGEST_ENTRY_CHARS * 2) : text;
+        return StrUtil.maxLength(head.replaceAll("\\s+", " ").trim(), DIGEST_ENTRY_CHARS);
+    }
+
+    private static boolean isSummary(Message message) {
+        return message instanceof UserMessage && StrUtil.startWith(message.getText(), SUMMARY_PREFIX);
+    }
+
+    private int tokens(Message message) {
+        return tokenCache.computeIfAbsent(message, this::estimate);
+    }
+
+    private int estimate(Message message) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS;
+        if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                tokens += estimate(response.name()) + estimate(response.responseData());
+            }
+        } else if (message instanceof AssistantMessage assistantMessage) {
+            tokens += estimate(assistantMessage.getText());
+            for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                tokens += estimate(toolCall.name()) + estimate(toolCall.arguments());
+            }
+        } else {
+            tokens += estimate(message.getText());
+        }
+        return tokens;
+    }
+
+    private int estimate(String text) {
+        return StrUtil.isEmpty(text) ? 0 : tokenCountEstimator.estimate(text);
+    }
+}
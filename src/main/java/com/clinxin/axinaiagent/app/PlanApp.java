@@ -1,13 +1,13 @@
 package com.clinxin.axinaiagent.app;
 
 import com.clinxin.axinaiagent.advisor.MyLoggerAdvisor;
-import com.clinxin.axinaiagent.chatmemory.FileBasedChatMemory;
-import com.clinxin.axinaiagent.rag.QueryRewriter;
+import com.clinxin.axinaiagent.advisor.SemanticCacheAdvisor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
-import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
@@ -15,10 +15,13 @@ import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbackProvider;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
 import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_RETRIEVE_SIZE_KEY;
@@ -27,17 +30,25 @@ import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvis
 @Slf4j
 public class PlanApp {
 
+    // 语义缓存路由：基础对话（含流式）与知识库问答
+    static final String CHAT_ROUTE = "chat";
+
+    static final String RAG_ROUTE = "rag";
+
     @Resource
     private VectorStore planAppVectorStore;
 
     @Resource
     private Advisor planAppRagCloudAdvisor;
 
+    @Resource
+    private Advisor planAppRagAdvisor;
+
 //    @Resource
 //    private VectorStore pgVectorVectorStore;
 
     @Resource
-    private QueryRewriter queryRewriter;
+    private MeterRegistry meterRegistry;
 
     @Resource
     private ToolCallback[] allTools;
@@ -57,23 +68,28 @@ public class PlanApp {
      * 初始化 ChatClient
      *
      * @param dashscopeChatModel
+     * @param planAppChatMemory  基于文件的对话记忆（带写回缓存）
+     * @param planAppSemanticCacheAdvisor 语义缓存（semantic-cache.enabled 为 false 时不存在）
      */
-    public PlanApp(ChatModel dashscopeChatModel) {
-        // 初始化基于文件的对话记忆
-        String fileDir = System.getProperty("user.dir") + "/tmp/chat-memory";
-        ChatMemory chatMemory = new FileBasedChatMemory(fileDir);
+    public PlanApp(ChatModel dashscopeChatModel, ChatMemory planAppChatMemory,
+                   ObjectProvider<SemanticCacheAdvisor> planAppSemanticCacheAdvisor) {
+        // 基于文件的对话记忆（带写回内存缓存）
+        ChatMemory chatMemory = planAppChatMemory;
 
         // 初始基于内存的对话记忆
 //        InMemoryChatMemory chatMemory = new InMemoryChatMemory();
+        List<Advisor> advisors = new ArrayList<>(List.of(
+                new MessageChatMemoryAdvisor(chatMemory),
+                // 自定义日志 Advisor，打印 INFO 级别日志
+                new MyLoggerAdvisor()
+                // 自定义推理增强 Advisor，用于增强模型推理能力
+//                new ReReadingAdvisor()
+        ));
+        // 语义缓存，只对声明了路由的请求生效
+        planAppSemanticCacheAdvisor.ifAvailable(advisors::add);
         chatClient = ChatClient.builder(dashscopeChatModel)
                 .defaultSystem(SYSTEM_PROMPT)
-                .defaultAdvisors(
-                        new MessageChatMemoryAdvisor(chatMemory),
-                        // 自定义日志 Advisor，打印 INFO 级别日志
-                        new MyLoggerAdvisor()
-                        // 自定义推理增强 Advisor，用于增强模型推理能力
-//                        new ReReadingAdvisor()
-                )
+                .defaultAdvisors(advisors)
                 .build();
     }
 
@@ -89,7 +105,8 @@ public class PlanApp {
                 .prompt()
                 .user(message)
                 .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10)
+                        .param(SemanticCacheAdvisor.ROUTE_KEY, CHAT_ROUTE))
                 .call()
                 .chatResponse();
         String content = chatResponse.getResult().getOutput().getText();
@@ -110,7 +127,8 @@ public class PlanApp {
                 .prompt()
                 .user(message)
                 .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10)
+                        .param(SemanticCacheAdvisor.ROUTE_KEY, CHAT_ROUTE))
                 .stream()
                 .content();
     }
@@ -142,18 +160,20 @@ public class PlanApp {
      * RAG 知识库问答功能
      */
     public String doChatWithRag(String message, String chatId) {
-        // 查询重写
-        String rewrittenMessage = queryRewriter.doQueryRewrite(message);
+        long start = System.nanoTime();
         ChatResponse chatResponse = chatClient
                 .prompt()
-                // 使用改写后的查询
-                .user(rewrittenMessage)
+                .user(message)
+                // 语义缓存按原始问题查找，命中时跳过查询重写、检索和回答
                 .advisors(spec -> spec.param(CHAT_MEMORY_CONVERSATION_ID_KEY, chatId)
-                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10))
+                        .param(CHAT_MEMORY_RETRIEVE_SIZE_KEY, 10)
+                        .param(SemanticCacheAdvisor.ROUTE_KEY, RAG_ROUTE))
                 // 开启日志，便于观察效果
                 .advisors(new MyLoggerAdvisor())
-                // 应用知识库问答
-                .advisors(new QuestionAnswerAdvisor(planAppVectorStore))
+                // 应用知识库问答（查询重写 + 向量检索与 BM25 关键词检索融合）
+                .advisors(planAppRagAdvisor)
+                // 应用知识库问答（仅向量检索）
+//                .advisors(new QuestionAnswerAdvisor(planAppVectorStore))
                 // 应用 RAG 检索增强服务（基于云知识库）
 //                .advisors(planAppRagCloudAdvisor)
                 // 应用 RAG 检索增强服务（基于 PgVector 向量存储）
@@ -165,6 +185,9 @@ public class PlanApp {
 //                )
                 .call()
                 .chatResponse();
+        // 整个请求的耗时，减去 rag.stage.duration 中检索阶段的耗时即为生成回答的耗时
+        Timer.builder("rag.stage.duration").tag("stage", "total").register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         String content = chatResponse.getResult().getOutput().getText();
         log.info("content: {}", content);
         return content;
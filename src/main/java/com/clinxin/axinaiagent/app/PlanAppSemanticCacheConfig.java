@@ -0,0 +1,38 @@
+package com.clinxin.axinaiagent.app;
+
+import com.clinxin.axinaiagent.advisor.SemanticCacheAdvisor;
+import com.clinxin.axinaiagent.advisor.SemanticResponseCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 计划大师语义缓存配置（基础对话和知识库问答的相似问题直接返回缓存的回答）
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "semantic-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class PlanAppSemanticCacheConfig {
+
+    @Bean
+    SemanticCacheAdvisor planAppSemanticCacheAdvisor(EmbeddingModel dashscopeEmbeddingModel, MeterRegistry meterRegistry,
+            @Value("${semantic-cache.similarity-threshold:0.93}") float similarityThreshold,
+            @Value("${semantic-cache.max-entries:2000}") int maxEntries,
+            @Value("${semantic-cache.max-bytes:33554432}") long maxBytes,
+            @Value("${semantic-cache.chat-ttl-seconds:86400}") long chatTtlSeconds,
+            @Value("${semantic-cache.rag-ttl-seconds:3600}") long ragTtlSeconds,
+            @Value("${semantic-cache.context-markers:刚才,上面,前面,之前,继续,你说的,上一个}") List<String> contextMarkers) {
+        // 基础对话的回答可能包含用户在问题中提到的个人信息，只在会话内缓存；知识库问答在会话间共享
+        Map<String, SemanticCacheAdvisor.Route> routes = Map.of(
+                PlanApp.CHAT_ROUTE, new SemanticCacheAdvisor.Route(Duration.ofSeconds(chatTtlSeconds), true),
+                PlanApp.RAG_ROUTE, new SemanticCacheAdvisor.Route(Duration.ofSeconds(ragTtlSeconds), false));
+        return new SemanticCacheAdvisor(dashscopeEmbeddingModel, new SemanticResponseCache(maxEntries, maxBytes),
+                similarityThreshold, routes, contextMarkers, meterRegistry);
+    }
+}
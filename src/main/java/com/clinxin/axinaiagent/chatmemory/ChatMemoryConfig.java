@@ -0,0 +1,59 @@
+package com.clinxin.axinaiagent.chatmemory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆配置（文件持久化 + 写回内存缓存）
+ */
+@Configuration
+public class ChatMemoryConfig {
+
+    @Value("${chat-memory.fsync-policy:INTERVAL}")
+    private FsyncPolicy fsyncPolicy;
+
+    @Value("${chat-memory.fsync-interval-ms:1000}")
+    private long fsyncIntervalMillis;
+
+    @Value("${chat-memory.segment-bytes:1048576}")
+    private long segmentBytes;
+
+    @Value("${chat-memory.retain-messages:0}")
+    private int retainMessages;
+
+    @Value("${chat-memory.compact-interval-seconds:60}")
+    private long compactIntervalSeconds;
+
+    @Value("${chat-memory.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${chat-memory.cache.idle-seconds:1800}")
+    private long idleSeconds;
+
+    @Value("${chat-memory.cache.max-messages-per-conversation:100}")
+    private int maxMessagesPerConversation;
+
+    @Value("${chat-memory.cache.flush-batch-size:32}")
+    private int flushBatchSize;
+
+    @Value("${chat-memory.cache.flush-interval-ms:500}")
+    private long flushIntervalMillis;
+
+    /**
+     * 计划大师应用的对话记忆，关闭容器时同步刷盘
+     *
+     * @param meterRegistry
+     * @return
+     */
+    @Bean(destroyMethod = "close")
+    public ChatMemory planAppChatMemory(MeterRegistry meterRegistry) {
+        String fileDir = System.getProperty("user.dir") + "/tmp/chat-memory";
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(fileDir, segmentBytes, retainMessages,
+                compactIntervalSeconds, fsyncPolicy, fsyncIntervalMillis);
+        return new WriteBehindChatMemory(fileBasedChatMemory, meterRegistry,
+                maxBytes, idleSeconds * 1000, maxMessagesPerConversation, flushBatchSize, flushIntervalMillis);
+    }
+}
@@ -0,0 +1,474 @@
+package com.clinxin.axinaiagent.chatmemory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 单个会话的分段追加日志（只负责字节记录的读写，不关心消息的序列化方式）
+ *
+ * 目录结构：{baseDir}/{conversationId}/{起始序号}.log 与 {起始序号}.idx
+ * log 文件中每条记录为 [长度 int][CRC32 int][记录内容]，
+ * idx 文件按顺序保存每条记录在 log 文件中的起始位置（int），get(lastN) 时从尾部反向定位，无需读取全部历史。
+ * 位置相对于所在分段，因此单个分段（包括压缩合并后的分段）不超过 MAX_SEGMENT_BYTES。
+ *
+ * 也用于保存智能体运行的检查点（见 AgentCheckpointStore）。
+ *
+ * 非线程安全，由调用方保证同一会话的串行访问。
+ */
+@Slf4j
+public class ConversationLog {
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 4;
+
+    // 索引以 int 保存分段内的位置，单个分段不能超过 2 GB
+    static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    // 压缩时合并出的分段的大小上限，超出后另起一个分段，避免每次压缩都复制全部历史
+    static final long MAX_MERGED_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    private final File dir;
+
+    // 单个分段文件的滚动阈值（字节）
+    private final long segmentBytes;
+
+    // 按起始序号升序排列的分段，最后一个为活跃分段
+    private final List<Segment> segments = new ArrayList<>();
+
+    public ConversationLog(File dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        load();
+    }
+
+    /**
+     * 追加一批记录
+     *
+     * @param records 记录内容
+     * @param force   是否在写入后立即 fsync
+     */
+    public void append(List<byte[]> records, boolean force) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        long batchBytes = records.stream().mapToLong(r -> r.length + HEADER_BYTES).sum();
+        if (batchBytes > MAX_SEGMENT_BYTES) {
+            throw new IOException("Batch of " + batchBytes + " bytes exceeds the segment size limit");
+        }
+        Segment active = segments.isEmpty() ? newSegment(0) : segments.get(segments.size() - 1);
+        if (active.logSize >= segmentBytes || active.logSize + batchBytes > MAX_SEGMENT_BYTES) {
+            active = newSegment(active.baseSeq + active.count);
+        }
+        ByteBuffer logBuffer = ByteBuffer.allocate((int) batchBytes);
+        ByteBuffer indexBuffer = ByteBuffer.allocate(records.size() * INDEX_ENTRY_BYTES);
+        long position = active.logSize;
+        for (byte[] record : records) {
+            indexBuffer.putInt((int) position);
+            logBuffer.putInt(record.length).putInt(crc(record)).put(record);
+            position += record.length + HEADER_BYTES;
+        }
+        logBuffer.flip();
+        indexBuffer.flip();
+        // 先写数据再写索引，崩溃时最多留下未被索引的尾部记录，加载时会重建
+        try {
+            try (FileChannel channel = FileChannel.open(active.log.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(channel, logBuffer);
+                if (force) {
+                    channel.force(false);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(active.index.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                writeFully(channel, indexBuffer);
+                if (force) {
+                    channel.force(false);
+                }
+            }
+        } catch (IOException e) {
+            // 回滚写了一半的批次，调用方重试时不会重复或错位
+            rollback(active);
+            throw e;
+        }
+        active.logSize = position;
+        active.count += records.size();
+    }
+
+    /**
+     * 将活跃分段刷到磁盘（已封存分段在压缩时已经 fsync）
+     */
+    void sync() throws IOException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        Segment active = segments.get(segments.size() - 1);
+        for (File file : List.of(active.log, active.index)) {
+            if (file.exists()) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.force(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取最近的 n 条记录（按写入顺序返回）
+     *
+     * @param n 条数
+     * @return 记录内容
+     */
+    public List<byte[]> readLast(int n) throws IOException {
+        List<byte[]> result = new ArrayList<>();
+        int remaining = n;
+        for (int i = segments.size() - 1; i >= 0 && remaining > 0; i--) {
+            Segment segment = segments.get(i);
+            int take = Math.min(remaining, segment.count);
+            // readTail 按从新到旧的顺序返回，最后统一反转
+            result.addAll(readTail(segment, take));
+            remaining -= take;
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * 记录总数
+     */
+    public long size() {
+        return segments.stream().mapToLong(segment -> segment.count).sum();
+    }
+
+    /**
+     * 分段数量
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 删除整个会话日志
+     */
+    public void delete() {
+        for (Segment segment : segments) {
+            segment.log.delete();
+            segment.index.delete();
+        }
+        segments.clear();
+        dir.delete();
+    }
+
+    /**
+     * 压缩：丢弃超出保留条数的旧分段，并把剩余的相邻已封存分段合并（合并后的分段不超过 MAX_MERGED_SEGMENT_BYTES）
+     *
+     * @param retainRecords 至少保留的最近记录条数，不大于 0 时保留全部记录、只合并分段
+     */
+    public void compact(int retainRecords) throws IOException {
+        if (segments.size() <= 1) {
+            return;
+        }
+        // 1.丢弃完全落在保留窗口之外的旧分段（活跃分段不参与）
+        if (retainRecords > 0) {
+            long total = size();
+            while (segments.size() > 1 && total - segments.get(0).count >= retainRecords) {
+                Segment expired = segments.remove(0);
+                total -= expired.count;
+                expired.log.delete();
+                expired.index.delete();
+            }
+        }
+        // 2.按大小上限把相邻的已封存分段分组，每组合并为一个分段
+        List<Segment> sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+        List<Segment> group = new ArrayList<>();
+        long groupBytes = 0;
+        for (Segment segment : sealed) {
+            if (!group.isEmpty() && groupBytes + segment.logSize > MAX_MERGED_SEGMENT_BYTES) {
+                merge(group);
+                group.clear();
+                groupBytes = 0;
+            }
+            group.add(segment);
+            groupBytes += segment.logSize;
+        }
+        merge(group);
+    }
+
+    /**
+     * 把相邻的若干分段合并为一个（以第一个分段的起始序号命名）
+     */
+    private void merge(List<Segment> group) throws IOException {
+        if (group.size() <= 1) {
+            return;
+        }
+        Segment merged = new Segment(group.get(0).baseSeq, dir);
+        File mergedLog = new File(dir, merged.log.getName() + COMPACTING_SUFFIX);
+        File mergedIndex = new File(dir, merged.index.getName() + COMPACTING_SUFFIX);
+        long position = 0;
+        try (FileChannel logOut = FileChannel.open(mergedLog.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel indexOut = FileChannel.open(mergedIndex.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Segment segment : group) {
+                ByteBuffer indexBuffer = ByteBuffer.allocate(segment.count * INDEX_ENTRY_BYTES);
+                for (int position0 : readPositions(segment, 0, segment.count)) {
+                    indexBuffer.putInt((int) (position + position0));
+                }
+                indexBuffer.flip();
+                writeFully(indexOut, indexBuffer);
+                try (FileChannel logIn = FileChannel.open(segment.log.toPath(), StandardOpenOption.READ)) {
+                    long transferred = 0;
+                    while (transferred < segment.logSize) {
+                        transferred += logIn.transferTo(transferred, segment.logSize - transferred, logOut);
+                    }
+                }
+                position += segment.logSize;
+            }
+            logOut.force(true);
+            indexOut.force(true);
+        }
+        // 先原子替换第一个分段，再删除其余分段；中途崩溃时重复的分段会在加载时被丢弃
+        Files.move(mergedLog.toPath(), merged.log.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(mergedIndex.toPath(), merged.index.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Segment segment : group.subList(1, group.size())) {
+            segment.log.delete();
+            segment.index.delete();
+        }
+        merged.logSize = position;
+        merged.count = group.stream().mapToInt(segment -> segment.count).sum();
+        int first = segments.indexOf(group.get(0));
+        segments.removeAll(group);
+        segments.add(first, merged);
+    }
+
+    /**
+     * 从磁盘加载分段元信息，必要时修复索引
+     */
+    private void load() {
+        // 清理压缩中途崩溃留下的临时文件（原分段仍完整）
+        File[] compactingFiles = dir.listFiles((d, name) -> name.endsWith(COMPACTING_SUFFIX));
+        if (compactingFiles != null) {
+            for (File compactingFile : compactingFiles) {
+                log.warn("删除压缩残留的临时文件: {}", compactingFile);
+                compactingFile.delete();
+            }
+        }
+        File[] logFiles = dir.listFiles((d, name) -> name.endsWith(LOG_SUFFIX));
+        if (logFiles == null) {
+            return;
+        }
+        for (File logFile : logFiles) {
+            String name = logFile.getName();
+            long baseSeq = Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+            Segment segment = new Segment(baseSeq, dir);
+            segment.logSize = logFile.length();
+            segment.count = (int) (segment.index.length() / INDEX_ENTRY_BYTES);
+            segments.add(segment);
+        }
+        segments.sort((a, b) -> Long.compare(a.baseSeq, b.baseSeq));
+        for (Segment segment : segments) {
+            try {
+                recover(segment);
+            } catch (IOException e) {
+                log.error("修复会话日志分段失败: {}", segment.log, e);
+            }
+        }
+        // 丢弃已被压缩分段覆盖的残留分段
+        long nextSeq = Long.MIN_VALUE;
+        for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+            if (segment.baseSeq < nextSeq) {
+                log.warn("丢弃压缩残留的会话日志分段: {}", segment.log);
+                segment.log.delete();
+                segment.index.delete();
+                iterator.remove();
+                continue;
+            }
+            nextSeq = segment.baseSeq + segment.count;
+        }
+    }
+
+    /**
+     * 校验索引末尾是否与数据文件末尾对齐，不一致时扫描数据文件重建索引并截断残缺记录
+     */
+    private void recover(Segment segment) throws IOException {
+        long expectedEnd = 0;
+        if (segment.count > 0) {
+            try {
+                int lastPosition = readPositions(segment, segment.count - 1, 1)[0];
+                expectedEnd = lastPosition + HEADER_BYTES + readHeader(segment, lastPosition).getInt(0);
+            } catch (IOException e) {
+                // 索引指向了数据文件之外的位置
+                expectedEnd = -1;
+            }
+        }
+        if (expectedEnd == segment.logSize) {
+            return;
+        }
+        log.warn("会话日志分段索引不一致，开始重建: {}", segment.log);
+        List<Integer> positions = new ArrayList<>();
+        long position = 0;
+        try (RandomAccessFile file = new RandomAccessFile(segment.log, "r")) {
+            while (position + HEADER_BYTES <= segment.logSize) {
+                file.seek(position);
+                int length = file.readInt();
+                int checksum = file.readInt();
+                if (length < 0 || position + HEADER_BYTES + length > segment.logSize) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                file.readFully(record);
+                if (crc(record) != checksum) {
+                    break;
+                }
+                positions.add((int) position);
+                position += HEADER_BYTES + length;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(segment.log.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+        }
+        ByteBuffer indexBuffer = ByteBuffer.allocate(positions.size() * INDEX_ENTRY_BYTES);
+        positions.forEach(indexBuffer::putInt);
+        indexBuffer.flip();
+        try (FileChannel channel = FileChannel.open(segment.index.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, indexBuffer);
+        }
+        segment.logSize = position;
+        segment.count = positions.size();
+    }
+
+    /**
+     * 把分段文件截断回最近一次成功追加后的长度
+     */
+    private static void rollback(Segment segment) {
+        try {
+            truncate(segment.log, segment.logSize);
+            truncate(segment.index, (long) segment.count * INDEX_ENTRY_BYTES);
+        } catch (IOException e) {
+            // 截断失败时残缺的尾部记录会在下次加载时由 recover 修复
+            log.error("回滚会话日志分段失败: {}", segment.log, e);
+        }
+    }
+
+    private static void truncate(File file, long size) throws IOException {
+        if (file.exists() && file.length() > size) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+        }
+    }
+
+    private List<byte[]> readTail(Segment segment, int take) throws IOException {
+        List<byte[]> records = new ArrayList<>(take);
+        if (take <= 0) {
+            return records;
+        }
+        int[] positions = readPositions(segment, segment.count - take, take);
+        try (FileChannel channel = FileChannel.open(segment.log.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            for (int i = positions.length - 1; i >= 0; i--) {
+                header.clear();
+                readFully(channel, header, positions[i]);
+                int length = header.getInt(0);
+                int checksum = header.getInt(4);
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(channel, body, positions[i] + HEADER_BYTES);
+                byte[] record = body.array();
+                if (crc(record) != checksum) {
+                    throw new IOException("Corrupted record at " + positions[i] + " in " + segment.log);
+                }
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private int[] readPositions(Segment segment, int from, int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count * INDEX_ENTRY_BYTES);
+        try (FileChannel channel = FileChannel.open(segment.index.toPath(), StandardOpenOption.READ)) {
+            readFully(channel, buffer, (long) from * INDEX_ENTRY_BYTES);
+        }
+        buffer.flip();
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = buffer.getInt();
+        }
+        return positions;
+    }
+
+    private ByteBuffer readHeader(Segment segment, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(segment.log.toPath(), StandardOpenOption.READ)) {
+            readFully(channel, header, position);
+        }
+        return header;
+    }
+
+    private Segment newSegment(long baseSeq) {
+        Segment segment = new Segment(baseSeq, dir);
+        segments.add(segment);
+        return segment;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int crc(byte[] record) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(record);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * 日志分段
+     */
+    private static class Segment {
+        final long baseSeq;
+        final File log;
+        final File index;
+        long logSize;
+        int count;
+
+        Segment(long baseSeq, File dir) {
+            this.baseSeq = baseSeq;
+            String name = String.format("%020d", baseSeq);
+            this.log = new File(dir, name + LOG_SUFFIX);
+            this.index = new File(dir, name + INDEX_SUFFIX);
+        }
+    }
+}
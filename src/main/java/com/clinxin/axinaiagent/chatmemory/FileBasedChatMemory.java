@@ -3,105 +3,507 @@ package com.clinxin.axinaiagent.chatmemory;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.Pool;
+import lombok.extern.slf4j.Slf4j;
 import org.objenesis.strategy.StdInstantiatorStrategy;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
 /**
  * 基于文件持久化的对话记忆
+ *
+ * 每个会话对应一个分段追加日志（见 {@link ConversationLog}），add 只追加新消息，
+ * get(lastN) 通过尾部索引只读取最近的 N 条消息，旧分段由后台任务定期合并。
+ * 默认保留全部历史；指定 retainMessages 时压缩会删除保留窗口之外的旧分段。
+ * 落盘的持久化程度由 {@link FsyncPolicy} 控制。
+ *
+ * 会话目录名由 conversationId 转义得到（见 {@link #toFileName}），任意 id 都不会逃出保存目录；
+ * 已打开的会话日志只缓存元信息，闲置超过 idle 时间或超出数量上限时由后台任务关闭。
+ *
+ * 线程安全：Kryo 与 Output 缓冲区从对象池借用（不依赖 ThreadLocal，虚拟线程下同样适用），
+ * 同一会话的读写通过按 conversationId 分段的锁串行化，不同会话之间互不阻塞。
  */
+@Slf4j
 public class FileBasedChatMemory implements ChatMemory {
 
+    // 默认分段滚动阈值：1 MB
+    private static final long DEFAULT_SEGMENT_BYTES = 1024 * 1024;
+
+    // 默认不限制每个会话保留的消息条数（保留全部历史）
+    private static final int DEFAULT_RETAIN_MESSAGES = 0;
+
+    // 默认压缩间隔（秒）
+    private static final long DEFAULT_COMPACT_INTERVAL_SECONDS = 60;
+
+    // 默认 fsync 间隔（毫秒）
+    private static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+    // 分段锁数量（2 的幂）
+    private static final int LOCK_STRIPES = 64;
+
+    // 对象池最多缓存的实例数
+    private static final int POOL_CAPACITY = 32;
+
+    // 同时缓存的会话日志上限
+    private static final int MAX_OPEN_CONVERSATIONS = 1024;
+
+    // 会话日志闲置多久后关闭（毫秒）
+    private static final long OPEN_CONVERSATION_IDLE_MILLIS = 10 * 60 * 1000;
+
+    // 可直接作为目录名的 conversationId（不含 '.'，排除 "." 和 ".."）
+    private static final int SAFE_FILE_NAME_MAX_CHARS = 128;
+
+    private static final Pattern SAFE_FILE_NAME = Pattern.compile("[A-Za-z0-9_-]{1," + SAFE_FILE_NAME_MAX_CHARS + "}");
+
     private final String BASE_DIR;
-    private static final Kryo kryo = new Kryo();
 
-    static {
-        // 设置为不需要手动注册
-        kryo.setRegistrationRequired(false);
-        // 设置标准实例化策略
-        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
-    }
+    // Kryo 非线程安全，每次序列化时从池中借用
+    private static final Pool<Kryo> KRYO_POOL = new Pool<>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Kryo create() {
+            Kryo kryo = new Kryo();
+            // 设置为不需要手动注册
+            kryo.setRegistrationRequired(false);
+            // 设置标准实例化策略
+            kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+            return kryo;
+        }
+    };
+
+    // 可复用的序列化缓冲区
+    private static final Pool<Output> OUTPUT_POOL = new Pool<>(true, false, POOL_CAPACITY) {
+        @Override
+        protected Output create() {
+            return new Output(1024, -1);
+        }
+    };
+
+    // 按 conversationId 分段的锁
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final long segmentBytes;
+
+    private final int retainMessages;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    // 自上次 fsync 以来有写入的会话（仅 INTERVAL 策略使用）
+    private final Set<String> unsyncedConversations = ConcurrentHashMap.newKeySet();
+
+    // 已打开的会话日志
+    private final Map<String, OpenConversation> conversationLogs = new ConcurrentHashMap<>();
+
+    // 自上次压缩以来有写入的会话
+    private final Set<String> dirtyConversations = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService compactExecutor;
 
     // 构造对象时，指定文件保存目录
     public FileBasedChatMemory(String dir) {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_RETAIN_MESSAGES, DEFAULT_COMPACT_INTERVAL_SECONDS);
+    }
+
+    public FileBasedChatMemory(String dir, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
+        this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_RETAIN_MESSAGES, DEFAULT_COMPACT_INTERVAL_SECONDS,
+                fsyncPolicy, fsyncIntervalMillis);
+    }
+
+    public FileBasedChatMemory(String dir, long segmentBytes, int retainMessages, long compactIntervalSeconds) {
+        this(dir, segmentBytes, retainMessages, compactIntervalSeconds,
+                FsyncPolicy.INTERVAL, DEFAULT_FSYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param dir                    文件保存目录
+     * @param segmentBytes           单个分段文件的滚动阈值（字节）
+     * @param retainMessages         压缩时每个会话至少保留的最近消息条数，不大于 0 时保留全部历史
+     * @param compactIntervalSeconds 后台压缩间隔（秒）
+     * @param fsyncPolicy            fsync 策略
+     * @param fsyncIntervalMillis    INTERVAL 策略下的 fsync 间隔（毫秒）
+     */
+    public FileBasedChatMemory(String dir, long segmentBytes, int retainMessages, long compactIntervalSeconds,
+                               FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) {
         this.BASE_DIR = dir;
+        this.segmentBytes = segmentBytes;
+        this.retainMessages = retainMessages;
+        this.fsyncPolicy = fsyncPolicy;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
         File baseDir = new File(dir);
         if (!baseDir.exists()) {
             baseDir.mkdirs();
         }
+        this.compactExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactExecutor.scheduleWithFixedDelay(() -> {
+            compactDirtyConversations();
+            closeIdleConversations();
+        }, compactIntervalSeconds, compactIntervalSeconds, TimeUnit.SECONDS);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            compactExecutor.scheduleWithFixedDelay(this::flush,
+                    fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void add(String conversationId, List<Message> messages) {
-        List<Message> messageList = getOrCreateConversation(conversationId);
-        messageList.addAll(messages);
-        saveConversation(conversationId, messageList);
+        // 序列化在锁外完成，缩短临界区
+        List<byte[]> records = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            records.add(serialize(message));
+        }
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            openConversation(conversationId, true).append(records, fsyncPolicy == FsyncPolicy.ALWAYS);
+            dirtyConversations.add(conversationId);
+            if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+                unsyncedConversations.add(conversationId);
+            }
+        } catch (IOException e) {
+            // 写入失败的批次已回滚，交给调用方决定是否重试
+            throw new UncheckedIOException("Failed to append messages to conversation " + conversationId, e);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public List<Message> get(String conversationId, int lastN) {
-        List<Message> messageList = getOrCreateConversation(conversationId);
-        return messageList.stream()
-                .skip(Math.max(0, messageList.size() - lastN))
-                .toList();
+        List<Message> messages = new ArrayList<>();
+        if (lastN <= 0) {
+            return messages;
+        }
+        List<byte[]> records = List.of();
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            // 不存在的会话直接返回空列表，不创建和缓存日志
+            ConversationLog conversationLog = openConversation(conversationId, false);
+            if (conversationLog != null) {
+                records = conversationLog.readLast(lastN);
+            }
+        } catch (IOException e) {
+            log.error("读取会话消息失败: {}", conversationId, e);
+        } finally {
+            lock.unlock();
+        }
+        // 反序列化在锁外完成
+        for (byte[] record : records) {
+            messages.add(deserialize(record));
+        }
+        return messages;
     }
 
     @Override
     public void clear(String conversationId) {
-        File file = getConversationFile(conversationId);
-        if (file.exists()) {
-            file.delete();
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            OpenConversation openConversation = conversationLogs.remove(conversationId);
+            ConversationLog conversationLog = openConversation != null ? openConversation.conversationLog
+                    : new ConversationLog(getConversationDir(conversationId), segmentBytes);
+            conversationLog.delete();
+            dirtyConversations.remove(conversationId);
+            unsyncedConversations.remove(conversationId);
+            File legacyFile = getLegacyConversationFile(conversationId);
+            if (legacyFile != null && legacyFile.exists()) {
+                legacyFile.delete();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将尚未 fsync 的会话刷到磁盘
+     */
+    public void flush() {
+        for (String conversationId : unsyncedConversations) {
+            ReentrantLock lock = lockFor(conversationId);
+            lock.lock();
+            try {
+                unsyncedConversations.remove(conversationId);
+                OpenConversation openConversation = conversationLogs.get(conversationId);
+                if (openConversation != null) {
+                    openConversation.conversationLog.sync();
+                }
+            } catch (IOException e) {
+                log.error("会话日志 fsync 失败: {}", conversationId, e);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
     /**
-     * 获取或创建会话消息的列表
+     * 刷盘并关闭后台任务
+     */
+    public void close() {
+        compactExecutor.shutdown();
+        flush();
+    }
+
+    /**
+     * 获取会话对应的分段锁
      *
      * @param conversationId
      * @return
      */
-    private List<Message> getOrCreateConversation(String conversationId) {
-        File file = getConversationFile(conversationId);
-        List<Message> messages = new ArrayList<>();
-        if (file.exists()) {
-            try (Input input = new Input(new FileInputStream(file))) {
-                messages = kryo.readObject(input, ArrayList.class);
+    private ReentrantLock lockFor(String conversationId) {
+        int hash = conversationId.hashCode();
+        // 扰动高位，避免相近的 id 落在同一分段
+        hash ^= (hash >>> 16);
+        return locks[hash & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * 获取或打开会话日志，首次打开时迁移旧版整文件格式的会话（调用方需持有该会话的锁）
+     *
+     * @param conversationId
+     * @param create         会话在磁盘上不存在时是否创建
+     * @return 会话日志，不创建且会话不存在时返回 null
+     */
+    private ConversationLog openConversation(String conversationId, boolean create) throws IOException {
+        OpenConversation openConversation = conversationLogs.get(conversationId);
+        if (openConversation == null) {
+            File conversationDir = getConversationDir(conversationId);
+            File legacyFile = getLegacyConversationFile(conversationId);
+            if (!create && !conversationDir.exists() && (legacyFile == null || !legacyFile.exists())) {
+                return null;
+            }
+            ConversationLog conversationLog = new ConversationLog(conversationDir, segmentBytes);
+            migrateLegacyConversation(conversationId, conversationLog);
+            openConversation = new OpenConversation(conversationLog);
+            conversationLogs.put(conversationId, openConversation);
+        }
+        openConversation.lastAccessMillis = System.currentTimeMillis();
+        return openConversation.conversationLog;
+    }
+
+    /**
+     * 关闭闲置的会话日志，缓存数量超出上限时从最久未访问的开始关闭（关闭前完成压缩和 fsync）
+     */
+    void closeIdleConversations() {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, OpenConversation>> entries = new ArrayList<>(conversationLogs.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessMillis));
+        int excess = entries.size() - MAX_OPEN_CONVERSATIONS;
+        for (Map.Entry<String, OpenConversation> entry : entries) {
+            boolean idle = now - entry.getValue().lastAccessMillis >= OPEN_CONVERSATION_IDLE_MILLIS;
+            if (!idle && excess <= 0) {
+                break;
+            }
+            String conversationId = entry.getKey();
+            ReentrantLock lock = lockFor(conversationId);
+            lock.lock();
+            try {
+                // 等待锁期间可能已被访问或清除
+                if (conversationLogs.get(conversationId) != entry.getValue()) {
+                    continue;
+                }
+                ConversationLog conversationLog = entry.getValue().conversationLog;
+                if (dirtyConversations.remove(conversationId)) {
+                    compact(conversationLog);
+                }
+                if (unsyncedConversations.remove(conversationId)) {
+                    conversationLog.sync();
+                }
+                conversationLogs.remove(conversationId);
+                excess--;
             } catch (IOException e) {
-                e.printStackTrace();
+                log.error("关闭会话日志失败: {}", conversationId, e);
+            } finally {
+                lock.unlock();
             }
         }
-        return messages;
     }
 
     /**
-     * 保存会话消息
+     * 当前缓存的会话日志数量
+     */
+    int openConversationCount() {
+        return conversationLogs.size();
+    }
+
+    /**
+     * 把旧版 {conversationId}.kryo 文件中的消息列表导入追加日志
+     */
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyConversation(String conversationId, ConversationLog conversationLog) throws IOException {
+        File legacyFile = getLegacyConversationFile(conversationId);
+        if (legacyFile == null || !legacyFile.exists()) {
+            return;
+        }
+        List<Message> messages;
+        Kryo kryo = KRYO_POOL.obtain();
+        try (Input input = new Input(new FileInputStream(legacyFile))) {
+            messages = kryo.readObject(input, ArrayList.class);
+        } finally {
+            KRYO_POOL.free(kryo);
+        }
+        List<byte[]> records = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            records.add(serialize(message));
+        }
+        conversationLog.append(records, true);
+        legacyFile.delete();
+        log.info("已迁移旧版会话文件: {}，共 {} 条消息", legacyFile.getName(), messages.size());
+    }
+
+    /**
+     * 压缩自上次压缩以来有写入的会话
+     */
+    private void compactDirtyConversations() {
+        for (String conversationId : dirtyConversations) {
+            ReentrantLock lock = lockFor(conversationId);
+            lock.lock();
+            try {
+                dirtyConversations.remove(conversationId);
+                OpenConversation openConversation = conversationLogs.get(conversationId);
+                if (openConversation != null) {
+                    compact(openConversation.conversationLog);
+                }
+            } catch (Exception e) {
+                log.error("压缩会话日志失败: {}", conversationId, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void compact(ConversationLog conversationLog) throws IOException {
+        if (conversationLog.segmentCount() > 2) {
+            conversationLog.compact(retainMessages);
+        }
+    }
+
+    private byte[] serialize(Message message) {
+        Kryo kryo = KRYO_POOL.obtain();
+        Output output = OUTPUT_POOL.obtain();
+        try {
+            output.reset();
+            kryo.writeClassAndObject(output, message);
+            return output.toBytes();
+        } finally {
+            OUTPUT_POOL.free(output);
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    private Message deserialize(byte[] record) {
+        Kryo kryo = KRYO_POOL.obtain();
+        try (Input input = new Input(record)) {
+            return (Message) kryo.readClassAndObject(input);
+        } finally {
+            KRYO_POOL.free(kryo);
+        }
+    }
+
+    /**
+     * 每个会话单独一个日志目录
      *
      * @param conversationId
-     * @param messages
+     * @return
      */
-    private void saveConversation(String conversationId, List<Message> messages) {
-        File file = getConversationFile(conversationId);
-        try (Output output = new Output(new FileOutputStream(file))) {
-            kryo.writeObject(output, messages);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private File getConversationDir(String conversationId) {
+        return new File(BASE_DIR, toFileName(conversationId));
+    }
+
+    /**
+     * 旧版整文件格式的会话文件：旧版直接以未转义的 {conversationId}.kryo 命名，
+     * 只接受保存目录下的直接子文件，含路径分隔符、"." 或 ".." 路径段的 id 不会读取或删除保存目录之外的文件
+     *
+     * @param conversationId
+     * @return 旧版会话文件，id 无法对应到保存目录下的文件时返回 null
+     */
+    private File getLegacyConversationFile(String conversationId) {
+        Path baseDir = Paths.get(BASE_DIR).toAbsolutePath().normalize();
+        Path legacyFile;
+        try {
+            legacyFile = baseDir.resolve(conversationId + ".kryo");
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!baseDir.equals(legacyFile.getParent()) || !legacyFile.equals(legacyFile.normalize())) {
+            return null;
         }
+        return legacyFile.toFile();
     }
 
     /**
-     * 每个会话文件单独保存
+     * 把 conversationId 转为安全的文件名：只含字母、数字、'_'、'-' 的 id 原样使用（与已有目录兼容），
+     * 其余 id 按 UTF-8 字节把其他字符转义为 %XX，转义后过长时使用 SHA-256 摘要。
+     * 转义结果总含有 '%'，不会与原样使用的 id 冲突。
      *
      * @param conversationId
      * @return
      */
-    public File getConversationFile(String conversationId) {
-        return new File(BASE_DIR, conversationId + ".kryo");
+    static String toFileName(String conversationId) {
+        if (SAFE_FILE_NAME.matcher(conversationId).matches()) {
+            return conversationId;
+        }
+        StringBuilder name = new StringBuilder("%");
+        for (byte b : conversationId.getBytes(StandardCharsets.UTF_8)) {
+            if ((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_' || b == '-') {
+                name.append((char) b);
+            } else {
+                name.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+            }
+        }
+        if (name.length() <= SAFE_FILE_NAME_MAX_CHARS) {
+            return name.toString();
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(conversationId.getBytes(StandardCharsets.UTF_8));
+            return "%sha256-" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 已打开的会话日志及其最近访问时间
+     */
+    private static final class OpenConversation {
+
+        final ConversationLog conversationLog;
+
+        volatile long lastAccessMillis;
+
+        OpenConversation(ConversationLog conversationLog) {
+            this.conversationLog = conversationLog;
+        }
     }
 }
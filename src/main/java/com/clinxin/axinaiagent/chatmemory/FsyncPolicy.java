@@ -0,0 +1,22 @@
+package com.clinxin.axinaiagent.chatmemory;
+
+/**
+ * 对话记忆落盘时的 fsync 策略
+ */
+public enum FsyncPolicy {
+
+    /**
+     * 每次写入后立即 fsync
+     */
+    ALWAYS,
+
+    /**
+     * 按固定间隔批量 fsync
+     */
+    INTERVAL,
+
+    /**
+     * 从不主动 fsync，交给操作系统回写
+     */
+    NEVER
+}
@@ -0,0 +1,479 @@
+package com.clinxin.axinaiagent.chatmemory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 带写回（write-behind）内存缓存层的对话记忆
+ *
+ * 热点会话的最近消息缓存在堆内，按字节数上限和空闲时间进行 LRU 淘汰；
+ * 新消息先写入缓存，再由后台任务按批异步落盘到 {@link FileBasedChatMemory}，关闭时同步刷盘。
+ * 当底层 fsync 策略为 {@link FsyncPolicy#ALWAYS} 时退化为直写：先同步落盘，成功后才写入缓存，
+ * 落盘失败时抛出异常，这批消息既不进入缓存也不进入待落盘队列，由调用方决定是否重试。
+ *
+ * 落盘失败的批次放回待落盘队列的队首，按指数退避重试（最长间隔 MAX_RETRY_DELAY_MILLIS），
+ * 失败次数记录到 chat.memory.flush.failures，重试中的会话数和待落盘消息数分别通过
+ * chat.memory.flush.retrying、chat.memory.pending.messages 暴露。
+ */
+@Slf4j
+public class WriteBehindChatMemory implements ChatMemory {
+
+    // 分段锁数量（2 的幂）
+    private static final int LOCK_STRIPES = 64;
+
+    // 单条消息除文本外的估算开销（对象头、元数据等）
+    private static final int MESSAGE_OVERHEAD_BYTES = 64;
+
+    // 落盘失败后的最长重试间隔（毫秒）
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+
+    private final FileBasedChatMemory delegate;
+
+    // 缓存总字节数上限
+    private final long maxBytes;
+
+    // 空闲淘汰时间（毫秒）
+    private final long idleMillis;
+
+    // 每个会话最多缓存的最近消息条数
+    private final int maxCachedMessages;
+
+    // 单个会话待落盘消息达到该条数时立即触发异步刷盘
+    private final int flushBatchSize;
+
+    // 后台刷盘间隔，也是落盘失败后的首次重试间隔（毫秒）
+    private final long flushIntervalMillis;
+
+    // 按插入顺序排列，访问时移动到末尾，头部即最久未使用的会话
+    private final LinkedHashMap<String, CachedConversation> lru = new LinkedHashMap<>();
+
+    // 存在未落盘消息的会话
+    private final Map<String, CachedConversation> dirtyConversations = new ConcurrentHashMap<>();
+
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final ScheduledExecutorService flushExecutor;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+    private final Counter flushFailureCounter;
+    private final Timer flushTimer;
+
+    /**
+     * @param delegate            底层文件存储
+     * @param meterRegistry       指标注册表
+     * @param maxBytes            缓存总字节数上限
+     * @param idleMillis          空闲淘汰时间（毫秒）
+     * @param maxCachedMessages   每个会话最多缓存的消息条数
+     * @param flushBatchSize      触发立即刷盘的待落盘消息条数
+     * @param flushIntervalMillis 后台刷盘间隔（毫秒）
+     */
+    public WriteBehindChatMemory(FileBasedChatMemory delegate, MeterRegistry meterRegistry,
+                                 long maxBytes, long idleMillis, int maxCachedMessages,
+                                 int flushBatchSize, long flushIntervalMillis) {
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.idleMillis = idleMillis;
+        this.maxCachedMessages = maxCachedMessages;
+        this.flushBatchSize = flushBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.hitCounter = meterRegistry.counter("chat.memory.cache.hits");
+        this.missCounter = meterRegistry.counter("chat.memory.cache.misses");
+        this.evictionCounter = meterRegistry.counter("chat.memory.cache.evictions");
+        this.flushFailureCounter = meterRegistry.counter("chat.memory.flush.failures");
+        this.flushTimer = Timer.builder("chat.memory.flush")
+                .description("Latency of flushing one conversation's pending messages to disk")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.cache.bytes", cachedBytes, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("chat.memory.cache.dirty", dirtyConversations, Map::size).register(meterRegistry);
+        Gauge.builder("chat.memory.flush.retrying", this, WriteBehindChatMemory::getRetryingConversations)
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.pending.messages", this, WriteBehindChatMemory::getPendingMessages)
+                .register(meterRegistry);
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(() -> {
+            flushDue();
+            evict();
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        boolean flushNow = false;
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            CachedConversation entry = lookup(conversationId);
+            if (entry == null) {
+                // 未缓存的会话历史未知，窗口只包含新消息
+                entry = new CachedConversation();
+                putEntry(conversationId, entry);
+            }
+            if (delegate.getFsyncPolicy() == FsyncPolicy.ALWAYS) {
+                writeThrough(conversationId, messages);
+                appendRecent(entry, messages);
+            } else {
+                appendRecent(entry, messages);
+                entry.pending.addAll(messages);
+                dirtyConversations.put(conversationId, entry);
+                flushNow = entry.pending.size() >= flushBatchSize;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (flushNow) {
+            flushExecutor.execute(() -> flush(conversationId, false));
+        }
+        evictIfOversized();
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        if (lastN <= 0) {
+            return new ArrayList<>();
+        }
+        List<Message> result;
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            CachedConversation entry = lookup(conversationId);
+            if (entry != null && (entry.complete || entry.recent.size() >= lastN)) {
+                hitCounter.increment();
+                return tail(entry.recent, lastN);
+            }
+            missCounter.increment();
+            // 缓存中的消息不足，先把未落盘的消息写入磁盘，再从磁盘读取
+            boolean flushed = entry == null || flushEntry(conversationId, entry, true);
+            int loadSize = Math.max(lastN, maxCachedMessages);
+            List<Message> loaded = delegate.get(conversationId, loadSize);
+            CachedConversation loadedEntry = new CachedConversation();
+            // 读到的消息少于请求条数，说明已经是完整历史
+            loadedEntry.complete = loaded.size() < loadSize && loaded.size() <= maxCachedMessages;
+            if (!flushed) {
+                // 落盘失败的消息比磁盘上的都新，接在后面并继续等待重试
+                loaded = new ArrayList<>(loaded);
+                loaded.addAll(entry.pending);
+                loadedEntry.pending = entry.pending;
+                loadedEntry.failures = entry.failures;
+                loadedEntry.retryAtMillis = entry.retryAtMillis;
+                loadedEntry.complete = loadedEntry.complete && loaded.size() <= maxCachedMessages;
+                dirtyConversations.put(conversationId, loadedEntry);
+            }
+            loadedEntry.recent.addAll(tail(loaded, maxCachedMessages));
+            for (Message message : loadedEntry.recent) {
+                loadedEntry.bytes += estimateBytes(message);
+            }
+            if (entry != null) {
+                removeEntry(conversationId, entry);
+            }
+            cachedBytes.addAndGet(loadedEntry.bytes);
+            putEntry(conversationId, loadedEntry);
+            result = tail(loaded, lastN);
+        } finally {
+            lock.unlock();
+        }
+        evictIfOversized();
+        return result;
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            CachedConversation entry = lookup(conversationId);
+            if (entry != null) {
+                removeEntry(conversationId, entry);
+            }
+            dirtyConversations.remove(conversationId);
+            delegate.clear(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 将所有未落盘的会话写入磁盘（包括处于重试退避中的会话）
+     */
+    public void flushAll() {
+        for (String conversationId : dirtyConversations.keySet()) {
+            flush(conversationId, true);
+        }
+    }
+
+    /**
+     * 后台刷盘：跳过尚未到重试时间的会话
+     */
+    private void flushDue() {
+        for (String conversationId : dirtyConversations.keySet()) {
+            flush(conversationId, false);
+        }
+    }
+
+    /**
+     * @return 落盘失败、等待重试的会话数
+     */
+    public int getRetryingConversations() {
+        return (int) dirtyConversations.values().stream().filter(entry -> entry.failures > 0).count();
+    }
+
+    /**
+     * @return 尚未落盘的消息数（近似值，不加锁读取）
+     */
+    public int getPendingMessages() {
+        return dirtyConversations.values().stream().mapToInt(entry -> entry.pending.size()).sum();
+    }
+
+    /**
+     * 同步刷盘并关闭后台任务与底层存储
+     */
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        int pending = getPendingMessages();
+        if (pending > 0) {
+            log.error("关闭时仍有 {} 条消息落盘失败，涉及 {} 个会话", pending, dirtyConversations.size());
+        }
+        delegate.close();
+        log.info("对话记忆缓存已关闭，命中 {} 次，未命中 {} 次，淘汰 {} 次",
+                (long) hitCounter.count(), (long) missCounter.count(), (long) evictionCounter.count());
+    }
+
+    private void flush(String conversationId, boolean force) {
+        ReentrantLock lock = lockFor(conversationId);
+        lock.lock();
+        try {
+            CachedConversation entry = dirtyConversations.get(conversationId);
+            if (entry != null) {
+                flushEntry(conversationId, entry, force);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把会话的待落盘消息一次性写入底层存储（调用方需持有该会话的锁）
+     *
+     * @param force 是否忽略重试退避立即写入
+     * @return 是否已全部落盘；失败时批次放回队首并安排退避重试
+     */
+    private boolean flushEntry(String conversationId, CachedConversation entry, boolean force) {
+        if (entry.pending.isEmpty()) {
+            dirtyConversations.remove(conversationId, entry);
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now < entry.retryAtMillis) {
+            return false;
+        }
+        List<Message> batch = entry.pending;
+        entry.pending = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            delegate.add(conversationId, batch);
+        } catch (RuntimeException e) {
+            // 持有会话锁期间没有新消息加入，整批放回即可保持顺序
+            entry.pending = batch;
+            entry.failures++;
+            long delay = Math.min(MAX_RETRY_DELAY_MILLIS, flushIntervalMillis << Math.min(entry.failures - 1, 20));
+            entry.retryAtMillis = now + delay;
+            flushFailureCounter.increment();
+            log.warn("会话消息落盘失败（第 {} 次），{} 条消息将在 {} ms 后重试: {}",
+                    entry.failures, batch.size(), delay, conversationId, e);
+            return false;
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        entry.failures = 0;
+        entry.retryAtMillis = 0;
+        dirtyConversations.remove(conversationId, entry);
+        return true;
+    }
+
+    /**
+     * 直写模式下同步落盘（调用方需持有该会话的锁），失败时不保留这批消息，调用方重试不会产生重复
+     */
+    private void writeThrough(String conversationId, List<Message> messages) {
+        long start = System.nanoTime();
+        try {
+            delegate.add(conversationId, messages);
+        } catch (RuntimeException e) {
+            flushFailureCounter.increment();
+            throw new IllegalStateException("Failed to persist messages of conversation " + conversationId, e);
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 把消息追加到会话的缓存窗口
+     */
+    private void appendRecent(CachedConversation entry, List<Message> messages) {
+        for (Message message : messages) {
+            entry.recent.addLast(message);
+            long size = estimateBytes(message);
+            entry.bytes += size;
+            cachedBytes.addAndGet(size);
+        }
+        trimWindow(entry);
+    }
+
+    /**
+     * 超出字节上限时同步淘汰
+     */
+    private void evictIfOversized() {
+        if (cachedBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * 从最久未使用的会话开始淘汰，直到不超过字节上限且不再有空闲超时的会话
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        List<String> victims = new ArrayList<>();
+        synchronized (lru) {
+            long projected = cachedBytes.get();
+            for (Map.Entry<String, CachedConversation> candidate : lru.entrySet()) {
+                boolean idle = now - candidate.getValue().lastAccessMillis > idleMillis;
+                if (!idle && projected <= maxBytes) {
+                    break;
+                }
+                victims.add(candidate.getKey());
+                projected -= candidate.getValue().bytes;
+            }
+        }
+        // 释放 LRU 锁后逐个加会话锁淘汰，脏数据先落盘再移出缓存
+        for (String conversationId : victims) {
+            ReentrantLock lock = lockFor(conversationId);
+            lock.lock();
+            try {
+                CachedConversation entry;
+                synchronized (lru) {
+                    entry = lru.get(conversationId);
+                }
+                if (entry == null) {
+                    continue;
+                }
+                if (!flushEntry(conversationId, entry, true)) {
+                    // 未落盘的消息只在缓存中，不能淘汰
+                    continue;
+                }
+                removeEntry(conversationId, entry);
+                evictionCounter.increment();
+            } catch (Exception e) {
+                log.error("淘汰会话缓存失败: {}", conversationId, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 查找缓存并刷新最近访问顺序
+     */
+    private CachedConversation lookup(String conversationId) {
+        synchronized (lru) {
+            CachedConversation entry = lru.remove(conversationId);
+            if (entry != null) {
+                entry.lastAccessMillis = System.currentTimeMillis();
+                lru.put(conversationId, entry);
+            }
+            return entry;
+        }
+    }
+
+    private void putEntry(String conversationId, CachedConversation entry) {
+        entry.lastAccessMillis = System.currentTimeMillis();
+        synchronized (lru) {
+            lru.put(conversationId, entry);
+        }
+    }
+
+    private void removeEntry(String conversationId, CachedConversation entry) {
+        synchronized (lru) {
+            lru.remove(conversationId, entry);
+        }
+        cachedBytes.addAndGet(-entry.bytes);
+    }
+
+    /**
+     * 窗口超出条数上限时丢弃最旧的消息（未落盘消息仍保留在 pending 中）
+     */
+    private void trimWindow(CachedConversation entry) {
+        while (entry.recent.size() > maxCachedMessages) {
+            long size = estimateBytes(entry.recent.removeFirst());
+            entry.bytes -= size;
+            cachedBytes.addAndGet(-size);
+            entry.complete = false;
+        }
+    }
+
+    private ReentrantLock lockFor(String conversationId) {
+        int hash = conversationId.hashCode();
+        hash ^= (hash >>> 16);
+        return locks[hash & (LOCK_STRIPES - 1)];
+    }
+
+    private static List<Message> tail(Iterable<Message> messages, int n) {
+        List<Message> list = new ArrayList<>();
+        messages.forEach(list::add);
+        return new ArrayList<>(list.subList(Math.max(0, list.size() - n), list.size()));
+    }
+
+    private static long estimateBytes(Message message) {
+        String text = message.getText();
+        return MESSAGE_OVERHEAD_BYTES + (text == null ? 0 : 2L * text.length());
+    }
+
+    /**
+     * 缓存中的单个会话
+     */
+    private static class CachedConversation {
+        // 最近的消息窗口（包含尚未落盘的消息）
+        final Deque<Message> recent = new ArrayDeque<>();
+        // 尚未落盘的消息
+        volatile List<Message> pending = new ArrayList<>();
+        // 连续落盘失败次数与下次重试时间
+        volatile int failures;
+        long retryAtMillis;
+        // 窗口是否已包含会话的完整历史
+        boolean complete;
+        long bytes;
+        volatile long lastAccessMillis;
+    }
+}
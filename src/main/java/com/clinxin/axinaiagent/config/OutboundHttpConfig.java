@@ -0,0 +1,27 @@
+package com.clinxin.axinaiagent.config;
+
+import com.clinxin.axinaiagent.http.OutboundHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 出站 HTTP 客户端配置
+ */
+@Configuration
+public class OutboundHttpConfig {
+
+    @Bean
+    public OutboundHttpClient outboundHttpClient(@Value("${outbound-http.connect-timeout-ms:10000}") long connectTimeoutMs,
+                                                 @Value("${outbound-http.request-timeout-ms:30000}") long requestTimeoutMs,
+                                                 @Value("${outbound-http.max-attempts:3}") int maxAttempts,
+                                                 @Value("${outbound-http.retry-base-delay-ms:200}") long retryBaseDelayMs,
+                                                 @Value("${outbound-http.max-concurrent-per-host:8}") int maxConcurrentPerHost,
+                                                 MeterRegistry meterRegistry) {
+        return new OutboundHttpClient(Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(requestTimeoutMs),
+                maxAttempts, Duration.ofMillis(retryBaseDelayMs), maxConcurrentPerHost, meterRegistry);
+    }
+}
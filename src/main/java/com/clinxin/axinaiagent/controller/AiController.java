@@ -1,19 +1,27 @@
 package com.clinxin.axinaiagent.controller;
 
+import com.clinxin.axinaiagent.agent.AgentExecutor;
 import com.clinxin.axinaiagent.agent.AxinManus;
+import com.clinxin.axinaiagent.agent.BaseAgent;
+import com.clinxin.axinaiagent.agent.checkpoint.AgentCheckpointStore;
+import com.clinxin.axinaiagent.agent.checkpoint.AgentRunCheckpoint;
 import com.clinxin.axinaiagent.app.PlanApp;
+import com.clinxin.axinaiagent.exception.AgentBusyException;
 import jakarta.annotation.Resource;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.tool.ToolCallback;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import reactor.core.publisher.Flux;
 
 import java.io.IOException;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/ai")
@@ -28,6 +36,12 @@ public class AiController {
     @Resource
     private ChatModel dashscopeChatModel;
 
+    @Resource
+    private AgentExecutor agentExecutor;
+
+    @Resource
+    private AgentCheckpointStore agentCheckpointStore;
+
     /**
      * 同步调用 AI 计划大师应用
      *
@@ -105,6 +119,44 @@ public class AiController {
     @GetMapping("/manus/chat")
     public SseEmitter doChatWithManus(String message) {
         AxinManus axinManus = new AxinManus(alltools, dashscopeChatModel);
-        return axinManus.runStream(message);
+        // 每步保存检查点，运行 ID 通过 run 事件返回给客户端
+        axinManus.setCheckpointStore(agentCheckpointStore);
+        return axinManus.runStream(message, agentExecutor);
+    }
+
+    /**
+     * 恢复或重新接入 Manus 智能体的运行
+     * 运行仍在执行时接入当前运行，否则从检查点恢复；已输出的步骤结果会先回放，不会重复执行
+     *
+     * @param runId 运行 ID
+     * @return
+     */
+    @GetMapping("/manus/resume")
+    public SseEmitter resumeManus(String runId) throws IOException {
+        if (!AgentCheckpointStore.isValidRunId(runId)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "无效的运行 ID：" + runId);
+        }
+        // 1.运行仍在本节点执行，直接接入
+        BaseAgent liveRun = agentCheckpointStore.getLiveRun(runId);
+        if (liveRun != null) {
+            SseEmitter sseEmitter = new SseEmitter(300000L); // 5 分钟超时
+            if (liveRun.attach(sseEmitter)) {
+                return sseEmitter;
+            }
+            // 运行已取消，等待当前步骤结束并保存检查点
+            agentCheckpointStore.awaitRelease(runId, Duration.ofSeconds(60));
+        }
+        // 2.从检查点恢复
+        AxinManus axinManus = new AxinManus(alltools, dashscopeChatModel);
+        axinManus.setCheckpointStore(agentCheckpointStore);
+        if (!agentCheckpointStore.register(runId, axinManus)) {
+            throw new AgentBusyException("运行 " + runId + " 正在执行中，请稍后重试");
+        }
+        AgentRunCheckpoint checkpoint = agentCheckpointStore.load(runId);
+        if (checkpoint == null) {
+            agentCheckpointStore.release(runId, axinManus);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "运行不存在：" + runId);
+        }
+        return axinManus.resumeStream(checkpoint, agentExecutor);
     }
 }
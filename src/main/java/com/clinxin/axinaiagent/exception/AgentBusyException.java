@@ -0,0 +1,15 @@
+package com.clinxin.axinaiagent.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 智能体执行器已满载（对应 HTTP 429）
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class AgentBusyException extends RuntimeException {
+
+    public AgentBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.clinxin.axinaiagent.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带宽限制
+ *
+ * 按字节预约发送时间，超出速率时让调用线程等待；同一个实例可以被多个下载共享，作为总带宽预算。
+ */
+public class BandwidthLimiter {
+
+    // 允许的突发量（按时间计），空闲后可以立即消耗这么多时间的额度
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final long bytesPerSecond;
+
+    // 下一个字节可以发送的时间
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond 每秒字节数，不大于 0 时不限速
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * 获取发送指定字节数的额度，超出速率时等待
+     *
+     * @param bytes 字节数
+     */
+    public void acquire(long bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0 || bytes <= 0) {
+            return;
+        }
+        long waitNanos = reserve(bytes);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public boolean isUnlimited() {
+        return bytesPerSecond <= 0;
+    }
+
+    private synchronized long reserve(long bytes) {
+        long now = System.nanoTime();
+        long start = Math.max(nextFreeNanos, now - BURST_NANOS);
+        nextFreeNanos = start + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        return nextFreeNanos - now;
+    }
+}
@@ -0,0 +1,62 @@
+package com.clinxin.axinaiagent.http;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 单个主机的并发限制
+ *
+ * 与信号量类似，但许可不足时返回未完成的 Future 排队，而不是阻塞调用线程。
+ */
+class HostLimiter {
+
+    private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    private int available;
+
+    HostLimiter(int permits) {
+        this.available = permits;
+    }
+
+    /**
+     * 获取一个许可
+     *
+     * @return 获得许可时完成的 Future
+     */
+    CompletableFuture<Void> acquire() {
+        synchronized (this) {
+            if (available > 0) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+    }
+
+    /**
+     * 释放一个许可，有排队的请求时直接交给队首
+     */
+    void release() {
+        CompletableFuture<Void> next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                available++;
+                return;
+            }
+        }
+        // 在锁外完成，避免在持锁时执行后续请求
+        next.complete(null);
+    }
+
+    synchronized int getAvailable() {
+        return available;
+    }
+
+    synchronized int getQueued() {
+        return waiters.size();
+    }
+}
@@ -0,0 +1,21 @@
+package com.clinxin.axinaiagent.http;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * 响应状态码不是 2xx
+ */
+public class HttpStatusException extends IOException {
+
+    private final int statusCode;
+
+    public HttpStatusException(URI uri, int statusCode) {
+        super("HTTP " + statusCode + " from " + uri);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
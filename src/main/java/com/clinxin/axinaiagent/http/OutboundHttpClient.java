@@ -0,0 +1,395 @@
+package com.clinxin.axinaiagent.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLSession;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 工具共用的出站 HTTP 客户端
+ *
+ * 基于 JDK HttpClient（优先 HTTP/2，连接按主机复用），统一配置连接和读取超时，
+ * 安全方法（GET/HEAD/OPTIONS）或调用方声明为幂等的请求在网络错误或 429/502/503/504 时按带抖动的指数退避重试，
+ * 每个主机的并发请求数有上限（超出时异步排队，不占用线程），流式响应体（InputStream）在关闭前一直占用许可，
+ * 并按主机记录耗时直方图。
+ */
+@Slf4j
+public class OutboundHttpClient {
+
+    // 可以重试的响应状态码
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(429, 502, 503, 504);
+
+    // 默认可以重试的请求方法（安全方法），其他方法需调用方声明幂等后才重试
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; axin-ai-agent)";
+
+    private static volatile OutboundHttpClient defaultClient;
+
+    private final HttpClient httpClient;
+
+    private final Duration requestTimeout;
+
+    private final int maxAttempts;
+
+    private final Duration retryBaseDelay;
+
+    private final int maxConcurrentPerHost;
+
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+
+    // 按「主机 + 结果」缓存的耗时指标
+    private final Map<String, Timer> latencyTimers = new ConcurrentHashMap<>();
+
+    // 按主机缓存的重试次数指标
+    private final Map<String, Counter> retryCounters = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(Duration connectTimeout, Duration requestTimeout, int maxAttempts,
+                              Duration retryBaseDelay, int maxConcurrentPerHost) {
+        this(connectTimeout, requestTimeout, maxAttempts, retryBaseDelay, maxConcurrentPerHost, Metrics.globalRegistry);
+    }
+
+    /**
+     * @param connectTimeout       连接超时
+     * @param requestTimeout       请求超时（到收到响应头为止）
+     * @param maxAttempts          最多尝试次数（含首次）
+     * @param retryBaseDelay       重试的基础退避时间
+     * @param maxConcurrentPerHost 每个主机的最大并发请求数
+     * @param meterRegistry        指标注册表
+     */
+    public OutboundHttpClient(Duration connectTimeout, Duration requestTimeout, int maxAttempts,
+                              Duration retryBaseDelay, int maxConcurrentPerHost, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseDelay = retryBaseDelay;
+        this.maxConcurrentPerHost = maxConcurrentPerHost;
+    }
+
+    /**
+     * 默认配置的共享客户端，供未注入客户端的工具使用
+     */
+    public static OutboundHttpClient getDefault() {
+        if (defaultClient == null) {
+            synchronized (OutboundHttpClient.class) {
+                if (defaultClient == null) {
+                    defaultClient = new OutboundHttpClient(Duration.ofSeconds(10), Duration.ofSeconds(30),
+                            3, Duration.ofMillis(200), 8);
+                }
+            }
+        }
+        return defaultClient;
+    }
+
+    /**
+     * 创建 GET 请求构建器，已设置超时和默认请求头
+     *
+     * @param uri 请求地址
+     * @return 请求构建器
+     */
+    public HttpRequest.Builder newRequest(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("User-Agent", USER_AGENT)
+                .GET();
+    }
+
+    /**
+     * GET 请求并以字符串返回响应体
+     *
+     * @param uri     请求地址
+     * @param headers 请求头
+     * @return 响应体
+     * @throws HttpStatusException 响应状态码不是 2xx
+     */
+    public String getString(URI uri, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder builder = newRequest(uri);
+        headers.forEach(builder::header);
+        HttpResponse<String> response = send(builder.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        checkStatus(response);
+        return response.body();
+    }
+
+    /**
+     * 阻塞发送请求（在调用线程上等待异步结果）
+     *
+     * @param request     请求
+     * @param bodyHandler 响应体处理器
+     * @return 响应
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        return send(request, bodyHandler, false);
+    }
+
+    /**
+     * 阻塞发送请求（在调用线程上等待异步结果）
+     *
+     * @param request     请求
+     * @param bodyHandler 响应体处理器
+     * @param idempotent  调用方保证请求幂等（如带幂等键的 PUT/DELETE），失败时可以重试
+     * @return 响应
+     */
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                    boolean idempotent) throws IOException {
+        try {
+            return sendAsync(request, bodyHandler, idempotent).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + request.uri(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 异步发送请求，按主机限流并在可重试的失败时重试
+     *
+     * @param request     请求
+     * @param bodyHandler 响应体处理器
+     * @return 响应
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return sendAsync(request, bodyHandler, false);
+    }
+
+    /**
+     * 异步发送请求，按主机限流并在可重试的失败时重试
+     *
+     * @param request     请求
+     * @param bodyHandler 响应体处理器
+     * @param idempotent  调用方保证请求幂等（如带幂等键的 PUT/DELETE），失败时可以重试
+     * @return 响应
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                            boolean idempotent) {
+        return attempt(request, bodyHandler, idempotent, 1);
+    }
+
+    /**
+     * 状态码不是 2xx 时抛出异常（流式响应体会被关闭）
+     *
+     * @param response 响应
+     */
+    public static void checkStatus(HttpResponse<?> response) throws HttpStatusException {
+        if (response.statusCode() / 100 != 2) {
+            closeBody(response);
+            throw new HttpStatusException(response.uri(), response.statusCode());
+        }
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attempt(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler,
+                                                           boolean idempotent, int attempt) {
+        String host = hostOf(request.uri());
+        HostLimiter limiter = hostLimiters.computeIfAbsent(host, h -> new HostLimiter(maxConcurrentPerHost));
+        return limiter.acquire()
+                .thenCompose(ignored -> {
+                    long start = System.nanoTime();
+                    return httpClient.sendAsync(request, bodyHandler)
+                            .whenComplete((response, error) ->
+                                    recordLatency(host, response, error, System.nanoTime() - start))
+                            // 许可在响应完成时释放；流式响应体（InputStream）在收到响应头时即完成，许可在响应体关闭时释放
+                            .handle((response, error) -> holdPermit(response, error, limiter))
+                            .thenCompose(future -> future);
+                })
+                .handle((response, error) -> {
+                    Throwable cause = unwrap(error);
+                    if (attempt >= maxAttempts || !isRetryable(request, idempotent, response, cause)) {
+                        return error == null
+                                ? CompletableFuture.completedFuture(response)
+                                : CompletableFuture.<HttpResponse<T>>failedFuture(cause);
+                    }
+                    if (response != null) {
+                        closeBody(response);
+                    }
+                    long delayMillis = backoffMillis(attempt);
+                    retryCounters.computeIfAbsent(host, h -> meterRegistry.counter("tool.http.retries", "host", h))
+                            .increment();
+                    log.info("Retrying {} in {} ms (attempt {}/{}): {}", request.uri(), delayMillis, attempt + 1,
+                            maxAttempts, response != null ? "HTTP " + response.statusCode() : cause.toString());
+                    return CompletableFuture.supplyAsync(() -> null,
+                                    CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attempt(request, bodyHandler, idempotent, attempt + 1));
+                })
+                .thenCompose(future -> future);
+    }
+
+    /**
+     * 流式响应体关闭前一直占用主机许可，其他响应或失败时立即释放许可
+     *
+     * @return 响应（流式响应体被包装为关闭时释放许可的流）
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> CompletableFuture<HttpResponse<T>> holdPermit(HttpResponse<T> response, Throwable error,
+                                                                     HostLimiter limiter) {
+        if (response != null && response.body() instanceof InputStream body) {
+            return CompletableFuture.completedFuture(
+                    new BodyReplacedResponse<>(response, (T) new PermitReleasingInputStream(body, limiter)));
+        }
+        limiter.release();
+        return error == null ? CompletableFuture.completedFuture(response) : CompletableFuture.failedFuture(error);
+    }
+
+    /**
+     * 全抖动的指数退避：[0, base * 2^(attempt-1)] 之间随机
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = retryBaseDelay.toMillis() << Math.min(attempt - 1, 10);
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isRetryable(HttpRequest request, boolean idempotent, HttpResponse<?> response,
+                                       Throwable error) {
+        if (!idempotent && !SAFE_METHODS.contains(request.method())) {
+            return false;
+        }
+        if (response != null) {
+            return RETRYABLE_STATUS.contains(response.statusCode());
+        }
+        // 连接失败、超时等网络错误
+        return error instanceof IOException;
+    }
+
+    private void recordLatency(String host, HttpResponse<?> response, Throwable error, long nanos) {
+        String outcome = response != null ? String.valueOf(response.statusCode())
+                : unwrap(error) instanceof HttpTimeoutException ? "TIMEOUT" : "IO_ERROR";
+        latencyTimers.computeIfAbsent(host + ' ' + outcome, key -> Timer.builder("tool.http.latency")
+                        .tag("host", host)
+                        .tag("status", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getPort() == -1 ? String.valueOf(uri.getHost()) : uri.getHost() + ":" + uri.getPort();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 关闭未读取的流式响应体，释放连接
+     */
+    private static void closeBody(HttpResponse<?> response) {
+        Object body = response.body();
+        try {
+            if (body instanceof InputStream inputStream) {
+                inputStream.close();
+            } else if (body instanceof Closeable closeable) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            log.debug("Failed to close response body of {}", response.uri());
+        }
+    }
+
+    /**
+     * 关闭时释放主机许可的响应体（只释放一次）
+     */
+    private static class PermitReleasingInputStream extends FilterInputStream {
+
+        private final HostLimiter limiter;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingInputStream(InputStream in, HostLimiter limiter) {
+            super(in);
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    limiter.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * 替换了响应体的响应，其余信息委托给原响应
+     */
+    private record BodyReplacedResponse<T>(HttpResponse<T> delegate, T body) implements HttpResponse<T> {
+
+        @Override
+        public int statusCode() {
+            return delegate.statusCode();
+        }
+
+        @Override
+        public HttpRequest request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return delegate.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return delegate.headers();
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return delegate.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return delegate.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return delegate.version();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.clinxin.axinaiagent.http;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 可续传的流式下载
+ *
+ * 响应体经直接缓冲区写入 {目标文件}.part，完成后原子重命名为目标文件；
+ * 中断或失败时保留 .part，下次下载同一目标时用 Range 请求从断点继续。
+ * 支持总大小上限、单个下载限速和多个下载共享的总带宽限制。
+ */
+@Slf4j
+public class ResumableDownloader {
+
+    public static final String PART_SUFFIX = ".part";
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    // 进度日志的间隔
+    private static final long PROGRESS_LOG_BYTES = 16L * 1024 * 1024;
+
+    private final OutboundHttpClient httpClient;
+
+    // 所有下载共享的带宽预算
+    private final BandwidthLimiter globalLimiter;
+
+    // 正在下载的目标文件，同一目标不能同时下载
+    private final Set<Path> activeTargets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param httpClient           出站 HTTP 客户端
+     * @param globalBytesPerSecond 所有下载的总带宽（字节/秒），不大于 0 时不限制
+     */
+    public ResumableDownloader(OutboundHttpClient httpClient, long globalBytesPerSecond) {
+        this.httpClient = httpClient;
+        this.globalLimiter = new BandwidthLimiter(globalBytesPerSecond);
+    }
+
+    /**
+     * 下载到目标文件，存在未完成的 .part 文件时从断点继续
+     *
+     * @param uri            资源地址
+     * @param target         目标文件
+     * @param maxBytes       最大字节数，超出时终止并删除 .part
+     * @param bytesPerSecond 本次下载的带宽（字节/秒），不大于 0 时不限制
+     * @return 下载结果
+     */
+    public DownloadResult download(URI uri, Path target, long maxBytes, long bytesPerSecond) throws IOException {
+        Path normalizedTarget = target.toAbsolutePath().normalize();
+        if (!activeTargets.add(normalizedTarget)) {
+            throw new IOException("Already downloading to " + target);
+        }
+        try {
+            return doDownload(uri, normalizedTarget, maxBytes, new BandwidthLimiter(bytesPerSecond));
+        } finally {
+            activeTargets.remove(normalizedTarget);
+        }
+    }
+
+    private DownloadResult doDownload(URI uri, Path target, long maxBytes, BandwidthLimiter limiter) throws IOException {
+        long startNanos = System.nanoTime();
+        Path part = partFile(target);
+        long existing = Files.exists(part) ? Files.size(part) : 0;
+        if (existing > maxBytes) {
+            Files.delete(part);
+            existing = 0;
+        }
+        HttpResponse<InputStream> response = request(uri, existing);
+        if (response.statusCode() == 416 && existing > 0) {
+            // 断点超出了服务端文件的大小（文件已变化），从头下载
+            closeQuietly(response);
+            Files.delete(part);
+            existing = 0;
+            response = request(uri, 0);
+        }
+        OutboundHttpClient.checkStatus(response);
+        long offset = 0;
+        long totalBytes = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (response.statusCode() == 206) {
+            ContentRange contentRange = ContentRange.parse(response.headers().firstValue("Content-Range").orElse(""));
+            if (contentRange == null || contentRange.start() != existing) {
+                closeQuietly(response);
+                throw new IOException("Unexpected Content-Range from " + uri + ": "
+                        + response.headers().firstValue("Content-Range").orElse("<none>"));
+            }
+            offset = existing;
+            totalBytes = contentRange.total();
+        }
+        // 状态码 200 说明服务端不支持 Range，从头写入
+        if (totalBytes > maxBytes) {
+            closeQuietly(response);
+            Files.deleteIfExists(part);
+            throw new IOException("Resource size " + totalBytes + " exceeds limit " + maxBytes);
+        }
+        long position = transfer(response.body(), part, offset, maxBytes, limiter, uri);
+        if (totalBytes >= 0 && position != totalBytes) {
+            // 保留 .part，下次从断点继续
+            throw new IOException("Connection closed after " + position + " of " + totalBytes + " bytes");
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        DownloadResult result = new DownloadResult(target, position, offset, elapsedNanos / 1_000_000);
+        DistributionSummary.builder("tool.download.throughput")
+                .baseUnit("bytes/s")
+                .register(Metrics.globalRegistry)
+                .record((position - offset) * 1e9 / elapsedNanos);
+        log.info("Downloaded {} to {}: {} bytes (resumed from {}) in {} ms", uri, target, position, offset,
+                result.elapsedMillis());
+        return result;
+    }
+
+    /**
+     * 把响应体写入 .part 文件的指定位置
+     *
+     * @return 写入后的文件大小
+     */
+    private long transfer(InputStream body, Path part, long offset, long maxBytes, BandwidthLimiter limiter,
+                          URI uri) throws IOException {
+        long position = offset;
+        boolean exceeded = false;
+        try (ReadableByteChannel source = Channels.newChannel(body);
+             FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+            long nextProgress = offset + PROGRESS_LOG_BYTES;
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                if (position + read > maxBytes) {
+                    exceeded = true;
+                    break;
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+                Metrics.counter("tool.download.bytes").increment(read);
+                limiter.acquire(read);
+                globalLimiter.acquire(read);
+                if (position >= nextProgress) {
+                    log.info("Downloading {}: {} MB", uri, position / 1024 / 1024);
+                    nextProgress = position + PROGRESS_LOG_BYTES;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download of " + uri + " interrupted after " + position + " bytes");
+        }
+        if (exceeded) {
+            Files.deleteIfExists(part);
+            throw new IOException("Resource exceeds limit " + maxBytes + " bytes");
+        }
+        return position;
+    }
+
+    private HttpResponse<InputStream> request(URI uri, long offset) throws IOException {
+        HttpRequest.Builder builder = httpClient.newRequest(uri);
+        if (offset > 0) {
+            builder.header("Range", "bytes=" + offset + "-");
+        }
+        return httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    public static Path partFile(Path target) {
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+
+    private static void closeQuietly(HttpResponse<InputStream> response) {
+        try {
+            response.body().close();
+        } catch (IOException ignored) {
+            // 响应体未读取，关闭失败不影响结果
+        }
+    }
+
+    /**
+     * 下载结果
+     *
+     * @param path          目标文件
+     * @param bytes         文件大小
+     * @param resumedFrom   续传的起始位置（从头下载时为 0）
+     * @param elapsedMillis 耗时
+     */
+    public record DownloadResult(Path path, long bytes, long resumedFrom, long elapsedMillis) {
+    }
+
+    /**
+     * Content-Range 响应头（bytes start-end/total）
+     */
+    record ContentRange(long start, long end, long total) {
+
+        static ContentRange parse(String header) {
+            String value = header.trim();
+            if (!value.startsWith("bytes ")) {
+                return null;
+            }
+            try {
+                String[] rangeAndTotal = value.substring("bytes ".length()).split("/");
+                String[] startAndEnd = rangeAndTotal[0].split("-");
+                long total = rangeAndTotal.length > 1 && !"*".equals(rangeAndTotal[1].trim())
+                        ? Long.parseLong(rangeAndTotal[1].trim()) : -1;
+                return new ContentRange(Long.parseLong(startAndEnd[0].trim()), Long.parseLong(startAndEnd[1].trim()), total);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于 BM25 打分的内存倒排索引（关键词检索，与向量检索互补）
+ *
+ * 文档文本和 MyKeywordEnricher 生成的 excerpt_keywords 元信息经 CjkTokenizer 切分后建立倒排表，
+ * 关键词的词频乘以权重后计入。文档序号按添加顺序递增，倒排表只需追加：序号差值和词频以变长整数（varint）压缩存储，
+ * 常见情况下每条记录只占 2 字节。删除只打标记，词条的文档频率在重建前仍包含已删除的文档。
+ * 读写锁保护索引：检索并发执行，添加和删除互斥；分词在锁外完成。
+ */
+public class Bm25Index {
+
+    // MyKeywordEnricher（KeywordMetadataEnricher）写入的关键词元信息
+    static final String KEYWORDS_METADATA_KEY = "excerpt_keywords";
+
+    private final float k1;
+
+    private final float b;
+
+    // 关键词元信息中的词元相对正文的词频权重
+    private final int keywordBoost;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词元 -> 倒排表
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    // 文档序号 -> 文档
+    private Document[] documents = new Document[64];
+
+    // 文档序号 -> 加权后的词元数
+    private int[] lengths = new int[64];
+
+    private final BitSet deleted = new BitSet();
+
+    private final Map<String, Integer> documentsById = new HashMap<>();
+
+    // 已分配的文档序号数（含已删除）
+    private int count;
+
+    // 未删除文档的总长度
+    private long totalLength;
+
+    public Bm25Index() {
+        this(1.2f, 0.75f, 2);
+    }
+
+    /**
+     * @param k1           词频饱和参数
+     * @param b            文档长度归一化参数
+     * @param keywordBoost 关键词元信息的词频权重
+     */
+    public Bm25Index(float k1, float b, int keywordBoost) {
+        this.k1 = k1;
+        this.b = b;
+        this.keywordBoost = keywordBoost;
+    }
+
+    /**
+     * 添加文档（相同 id 的文档覆盖原文档）
+     */
+    public void add(List<Document> documentList) {
+        List<Map<String, Integer>> termFrequencies = new ArrayList<>(documentList.size());
+        for (Document document : documentList) {
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : CjkTokenizer.tokenize(document.getText())) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+            Object keywords = document.getMetadata().get(KEYWORDS_METADATA_KEY);
+            if (keywords != null) {
+                for (String token : CjkTokenizer.tokenize(keywords.toString())) {
+                    frequencies.merge(token, keywordBoost, Integer::sum);
+                }
+            }
+            termFrequencies.add(frequencies);
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documentList.size(); i++) {
+                Document document = documentList.get(i);
+                Integer previous = documentsById.get(document.getId());
+                if (previous != null) {
+                    remove(previous);
+                }
+                int doc = count++;
+                if (doc >= documents.length) {
+                    documents = Arrays.copyOf(documents, documents.length * 2);
+                    lengths = Arrays.copyOf(lengths, lengths.length * 2);
+                }
+                int length = 0;
+                for (Map.Entry<String, Integer> entry : termFrequencies.get(i).entrySet()) {
+                    postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(doc, entry.getValue());
+                    length += entry.getValue();
+                }
+                documents[doc] = document;
+                lengths[doc] = length;
+                totalLength += length;
+                documentsById.put(document.getId(), doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer doc = documentsById.remove(id);
+                if (doc != null) {
+                    remove(doc);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Filter.Expression filterExpression) {
+        List<String> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Integer> entry : documentsById.entrySet()) {
+                if (MetadataFilterEvaluator.matches(filterExpression, documents[entry.getValue()].getMetadata())) {
+                    ids.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(ids);
+    }
+
+    /**
+     * 关键词检索
+     *
+     * @param query            查询文本
+     * @param topK             返回的最大文档数
+     * @param filterExpression 元信息过滤条件（为空时不过滤）
+     * @return 按 BM25 得分降序排列的文档（得分写入 score）
+     */
+    public List<Document> search(String query, int topK, Filter.Expression filterExpression) {
+        // 查询中重复的词元只计一次
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(CjkTokenizer.tokenize(query)));
+        lock.readLock().lock();
+        try {
+            int live = documentsById.size();
+            if (live == 0 || terms.isEmpty() || topK <= 0) {
+                return List.of();
+            }
+            float averageLength = Math.max(1f, (float) totalLength / live);
+            float[] scores = new float[count];
+            BitSet matched = new BitSet(count);
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                int frequency = termPostings.documentFrequency;
+                float idf = (float) Math.log(1 + (Math.max(0, live - frequency) + 0.5) / (frequency + 0.5));
+                byte[] data = termPostings.data;
+                int position = 0;
+                int doc = 0;
+                while (position < termPostings.size) {
+                    long delta = readVarint(data, position);
+                    doc += (int) (delta >>> 32);
+                    long tf = readVarint(data, (int) delta);
+                    position = (int) tf;
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    int termFrequency = (int) (tf >>> 32);
+                    float norm = k1 * (1 - b + b * lengths[doc] / averageLength);
+                    scores[doc] += idf * termFrequency * (k1 + 1) / (termFrequency + norm);
+                    matched.set(doc);
+                }
+            }
+            OffHeapVectorIndex.TopK top = new OffHeapVectorIndex.TopK(topK);
+            for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                if (filterExpression == null || MetadataFilterEvaluator.matches(filterExpression, documents[doc].getMetadata())) {
+                    top.offer(doc, scores[doc]);
+                }
+            }
+            OffHeapVectorIndex.Hits hits = top.toHits();
+            List<Document> results = new ArrayList<>(hits.slots().length);
+            for (int i = 0; i < hits.slots().length; i++) {
+                Document document = documents[hits.slots()[i]];
+                results.add(Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(new HashMap<>(document.getMetadata()))
+                        .score((double) hits.scores()[i])
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 文档数（不含已删除）
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 倒排表记录数（含已删除的文档）
+     */
+    public long postingsCount() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Postings termPostings : postings.values()) {
+                total += termPostings.documentFrequency;
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 倒排表压缩后占用的字节数
+     */
+    public long postingsBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Postings termPostings : postings.values()) {
+                total += termPostings.size;
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void remove(int doc) {
+        deleted.set(doc);
+        totalLength -= lengths[doc];
+        documents[doc] = null;
+    }
+
+    /**
+     * 读取一个变长整数
+     *
+     * @return 高 32 位为数值，低 32 位为下一个字节的位置
+     */
+    private static long readVarint(byte[] data, int position) {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            current = data[position++];
+            value |= (current & 0x7F) << shift;
+            shift += 7;
+        } while (current < 0);
+        return ((long) value << 32) | position;
+    }
+
+    /**
+     * 一个词元的倒排表：依次为 [文档序号差值 varint][词频 varint]
+     */
+    private static final class Postings {
+
+        private byte[] data = new byte[8];
+
+        private int size;
+
+        private int documentFrequency;
+
+        private int lastDocument;
+
+        void add(int doc, int termFrequency) {
+            if (size + 10 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 10));
+            }
+            writeVarint(doc - lastDocument);
+            writeVarint(termFrequency);
+            lastDocument = doc;
+            documentFrequency++;
+        }
+
+        private void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.clinxin.axinaiagent.rag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 面向中文语料的分词器（关键词检索用）
+ *
+ * 连续的中日韩字符按相邻二元组切分（"制定计划" -> "制定" "定计" "计划"），单个孤立的汉字保留为一元组；
+ * 连续的字母和数字作为一个词并转为小写；其余字符（标点、空白等）视为分隔符。
+ * 二元组不依赖词典，查询和文档按同样方式切分即可匹配任意长度的中文词语。
+ */
+final class CjkTokenizer {
+
+    private CjkTokenizer() {
+    }
+
+    /**
+     * @param text 文本
+     * @return 按出现顺序排列的词元（可能重复）
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int start = i;
+                int previous = -1;
+                int count = 0;
+                while (i < length && isCjk(codePoint = text.codePointAt(i))) {
+                    if (previous >= 0) {
+                        tokens.add(text.substring(previous, i + Character.charCount(codePoint)));
+                    }
+                    previous = i;
+                    i += Character.charCount(codePoint);
+                    count++;
+                }
+                if (count == 1) {
+                    tokens.add(text.substring(start, i));
+                }
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int start = i;
+                while (i < length && Character.isLetterOrDigit(codePoint = text.codePointAt(i)) && !isCjk(codePoint)) {
+                    i += Character.charCount(codePoint);
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,432 @@
+package com.clinxin.axinaiagent.rag;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 分阶段、后台运行的向量库构建流水线
+ *
+ * 加载 -> 切分 -> 增强 -> 嵌入 -> 入库，阶段之间通过有界队列衔接，下游处理不过来时上游阻塞，每个阶段的线程数可单独配置。
+ * 切分后的文档按内容哈希与快照比对，未变化的直接入库；其余文档增强后按 token 数分批嵌入。
+ * 增强和嵌入失败的批次按指数退避重试，最终仍失败的批次跳过且不写入快照，下次启动时重新处理。
+ * 向量库在流水线启动时即可使用，构建完成前检索结果只包含已入库的文档，状态为降级（RUNNING）。
+ */
+@Slf4j
+public class EmbeddingIngestionPipeline implements AutoCloseable {
+
+    /**
+     * 流水线状态
+     */
+    public enum State {
+        // 构建中，检索结果可能不完整
+        RUNNING,
+        // 构建完成
+        READY,
+        // 加载文档失败
+        FAILED
+    }
+
+    /**
+     * 流水线参数
+     *
+     * @param batchSize            加载阶段每批的文档数
+     * @param queueCapacity        阶段之间队列可容纳的批次数
+     * @param splitThreads         切分线程数
+     * @param enrichThreads        增强线程数
+     * @param embedThreads         嵌入线程数
+     * @param indexThreads         入库线程数
+     * @param maxAttempts          增强、嵌入批次的最多尝试次数（含首次）
+     * @param retryBaseDelayMillis 首次重试前的等待时间（毫秒），之后每次翻倍
+     */
+    public record Settings(int batchSize, int queueCapacity, int splitThreads, int enrichThreads,
+                           int embedThreads, int indexThreads, int maxAttempts, long retryBaseDelayMillis) {
+    }
+
+    // 阶段结束标记（按引用比较）
+    private static final List<Document> END = new ArrayList<>(0);
+
+    private final EmbeddingModel embeddingModel;
+
+    // 为空时不使用快照
+    private final EmbeddingSnapshot snapshot;
+
+    private final Settings settings;
+
+    // 向量库通过它读取嵌入阶段算好的向量，不再调用远程模型
+    private final SnapshotEmbeddingModel snapshotEmbeddingModel;
+
+    private final VectorStore vectorStore;
+
+    private final BatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+
+    private final EmbeddingOptions embeddingOptions = EmbeddingOptionsBuilder.builder().build();
+
+    private final BlockingQueue<List<Document>> splitQueue;
+    private final BlockingQueue<List<Document>> enrichQueue;
+    private final BlockingQueue<List<Document>> embedQueue;
+    private final BlockingQueue<List<Document>> indexQueue;
+
+    // 文档 id -> 内容哈希，内容相同的文档只处理一次
+    private final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    // 已入库的文档，构建完成后写回快照
+    private final Queue<Document> indexed = new ConcurrentLinkedQueue<>();
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile State state = State.RUNNING;
+
+    private volatile Map<String, EmbeddingSnapshot.Entry> previous = Map.of();
+
+    private volatile long startedAt;
+
+    private volatile long finishedAt;
+
+    private final AtomicInteger loadedCount = new AtomicInteger();
+    private final AtomicInteger splitCount = new AtomicInteger();
+    private final AtomicInteger reusedCount = new AtomicInteger();
+    private final AtomicInteger enrichedCount = new AtomicInteger();
+    private final AtomicInteger embeddedCount = new AtomicInteger();
+    private final AtomicInteger indexedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    private final Counter retryCounter;
+    private final Counter failedCounter;
+    private final Timer enrichTimer;
+    private final Timer embedTimer;
+
+    /**
+     * @param embeddingModel     嵌入模型
+     * @param vectorStoreFactory 根据嵌入模型创建空的向量库
+     * @param snapshot           向量快照（为空时不使用）
+     * @param settings           流水线参数
+     * @param meterRegistry      指标注册表
+     */
+    public EmbeddingIngestionPipeline(EmbeddingModel embeddingModel, Function<EmbeddingModel, VectorStore> vectorStoreFactory,
+                                      EmbeddingSnapshot snapshot, Settings settings, MeterRegistry meterRegistry) {
+        this.embeddingModel = embeddingModel;
+        this.snapshot = snapshot;
+        this.settings = settings;
+        this.snapshotEmbeddingModel = new SnapshotEmbeddingModel(embeddingModel);
+        this.vectorStore = vectorStoreFactory.apply(snapshotEmbeddingModel);
+        this.splitQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.enrichQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.embedQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.indexQueue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        registerStageMeters(meterRegistry, "load", loadedCount, null);
+        registerStageMeters(meterRegistry, "split", splitCount, splitQueue);
+        registerStageMeters(meterRegistry, "reuse", reusedCount, null);
+        registerStageMeters(meterRegistry, "enrich", enrichedCount, enrichQueue);
+        registerStageMeters(meterRegistry, "embed", embeddedCount, embedQueue);
+        registerStageMeters(meterRegistry, "index", indexedCount, indexQueue);
+        Gauge.builder("rag.ingestion.ready", this, pipeline -> pipeline.state == State.READY ? 1 : 0).register(meterRegistry);
+        this.retryCounter = meterRegistry.counter("rag.ingestion.retries");
+        this.failedCounter = meterRegistry.counter("rag.ingestion.failed.documents");
+        this.enrichTimer = meterRegistry.timer("rag.ingestion.batch.duration", "stage", "enrich");
+        this.embedTimer = meterRegistry.timer("rag.ingestion.batch.duration", "stage", "embed");
+    }
+
+    /**
+     * 在后台启动流水线
+     *
+     * @param loader   加载原始文档
+     * @param splitter 文档切分器
+     * @param enricher 文档增强器（只对快照中没有的文档调用）
+     */
+    public synchronized void start(Supplier<List<Document>> loader, UnaryOperator<List<Document>> splitter,
+                                   UnaryOperator<List<Document>> enricher) {
+        if (startedAt != 0) {
+            throw new IllegalStateException("Ingestion pipeline already started");
+        }
+        startedAt = System.nanoTime();
+        AtomicInteger splitRemaining = new AtomicInteger(settings.splitThreads());
+        AtomicInteger enrichRemaining = new AtomicInteger(settings.enrichThreads());
+        AtomicInteger embedRemaining = new AtomicInteger(settings.embedThreads());
+        AtomicInteger indexRemaining = new AtomicInteger(settings.indexThreads());
+        startThreads("load", 1, () -> load(loader));
+        startThreads("split", settings.splitThreads(), () -> runStage("split", splitQueue, batch -> split(batch, splitter),
+                splitRemaining, enrichQueue, settings.enrichThreads()));
+        startThreads("enrich", settings.enrichThreads(), () -> runStage("enrich", enrichQueue, batch -> enrich(batch, enricher),
+                enrichRemaining, embedQueue, settings.embedThreads()));
+        // 快照命中的文档由切分阶段直接送入入库队列，嵌入阶段结束时切分阶段必然已经结束
+        startThreads("embed", settings.embedThreads(), () -> runStage("embed", embedQueue, this::embed,
+                embedRemaining, indexQueue, settings.indexThreads()));
+        startThreads("index", settings.indexThreads(), () -> runStage("index", indexQueue, this::index,
+                indexRemaining, null, 0));
+    }
+
+    /**
+     * @return 向量库（构建期间即可检索）
+     */
+    public VectorStore getVectorStore() {
+        return vectorStore;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return 各阶段的处理进度
+     */
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("state", state);
+        progress.put("loaded", loadedCount.get());
+        progress.put("split", splitCount.get());
+        progress.put("reused", reusedCount.get());
+        progress.put("enriched", enrichedCount.get());
+        progress.put("embedded", embeddedCount.get());
+        progress.put("indexed", indexedCount.get());
+        progress.put("failed", failedCount.get());
+        if (startedAt != 0) {
+            long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+            progress.put("elapsedMillis", (end - startedAt) / 1_000_000);
+        }
+        return progress;
+    }
+
+    /**
+     * 等待流水线结束
+     *
+     * @return 超时前是否已结束
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    @Override
+    public void close() {
+        if (done.getCount() > 0) {
+            log.info("Stopping vector store ingestion: {}", getProgress());
+        }
+        synchronized (this) {
+            threads.forEach(Thread::interrupt);
+        }
+    }
+
+    private void load(Supplier<List<Document>> loader) {
+        try {
+            if (snapshot != null) {
+                previous = snapshot.load();
+            }
+            List<Document> documents = loader.get();
+            loadedCount.addAndGet(documents.size());
+            for (int i = 0; i < documents.size(); i += settings.batchSize()) {
+                splitQueue.put(new ArrayList<>(documents.subList(i, Math.min(documents.size(), i + settings.batchSize()))));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            log.error("Failed to load documents for vector store", e);
+            state = State.FAILED;
+        }
+        signalEnd(splitQueue, settings.splitThreads());
+    }
+
+    private void split(List<Document> batch, UnaryOperator<List<Document>> splitter) throws InterruptedException {
+        List<Document> reused = new ArrayList<>();
+        List<Document> changed = new ArrayList<>();
+        List<Document> documents = splitter.apply(batch);
+        splitCount.addAndGet(documents.size());
+        for (Document document : documents) {
+            String key = EmbeddingSnapshot.contentKey(document.getText(), document.getMetadata());
+            String id = EmbeddingSnapshot.documentId(key);
+            if (keys.putIfAbsent(id, key) != null) {
+                continue;
+            }
+            EmbeddingSnapshot.Entry entry = previous.get(key);
+            if (entry != null) {
+                snapshotEmbeddingModel.put(id, entry.embedding());
+                reused.add(Document.builder().id(id).text(entry.text()).metadata(new HashMap<>(entry.metadata())).build());
+            } else {
+                changed.add(Document.builder().id(id).text(document.getText()).metadata(new HashMap<>(document.getMetadata())).build());
+            }
+        }
+        reusedCount.addAndGet(reused.size());
+        if (!reused.isEmpty()) {
+            indexQueue.put(reused);
+        }
+        if (!changed.isEmpty()) {
+            enrichQueue.put(changed);
+        }
+    }
+
+    private void enrich(List<Document> batch, UnaryOperator<List<Document>> enricher) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Document> enriched = withRetry("enrich", () -> enricher.apply(batch));
+        enrichTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        enrichedCount.addAndGet(enriched.size());
+        embedQueue.put(enriched);
+    }
+
+    private void embed(List<Document> batch) throws InterruptedException {
+        // 按 token 数分批，每批一次嵌入请求，失败时只重试该批
+        for (List<Document> request : batchingStrategy.batch(batch)) {
+            long start = System.nanoTime();
+            List<float[]> embeddings;
+            try {
+                embeddings = withRetry("embed", () -> embeddingModel.embed(request, embeddingOptions, batchingStrategy));
+            } catch (RuntimeException e) {
+                fail("embed", request, e);
+                continue;
+            }
+            embedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (int i = 0; i < request.size(); i++) {
+                snapshotEmbeddingModel.put(request.get(i).getId(), embeddings.get(i));
+            }
+            embeddedCount.addAndGet(request.size());
+            indexQueue.put(request);
+        }
+    }
+
+    private void index(List<Document> batch) {
+        vectorStore.add(batch);
+        indexed.addAll(batch);
+        indexedCount.addAndGet(batch.size());
+    }
+
+    /**
+     * 阶段工作线程：从输入队列取批次处理，直到收到结束标记；本阶段最后一个线程结束时通知下游
+     */
+    private void runStage(String stage, BlockingQueue<List<Document>> input, BatchHandler handler,
+                          AtomicInteger remaining, BlockingQueue<List<Document>> output, int downstreamThreads) {
+        try {
+            while (true) {
+                List<Document> batch = input.take();
+                if (batch == END) {
+                    break;
+                }
+                try {
+                    handler.handle(batch);
+                } catch (RuntimeException e) {
+                    // 单个批次失败不影响其他批次
+                    fail(stage, batch, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (remaining.decrementAndGet() == 0) {
+            if (output != null) {
+                signalEnd(output, downstreamThreads);
+            } else {
+                finish();
+            }
+        }
+    }
+
+    private void finish() {
+        if (snapshot != null && state != State.FAILED
+                && (embeddedCount.get() > 0 || previous.size() != indexedCount.get())) {
+            List<EmbeddingSnapshot.Entry> entries = new ArrayList<>(indexedCount.get());
+            for (Document document : indexed) {
+                entries.add(new EmbeddingSnapshot.Entry(keys.get(document.getId()), document.getText(),
+                        document.getMetadata(), snapshotEmbeddingModel.get(document.getId())));
+            }
+            try {
+                snapshot.save(entries);
+            } catch (IOException e) {
+                // 快照只影响下次启动的速度，写入失败不影响本次服务
+                log.warn("Failed to save vector snapshot", e);
+            }
+        }
+        // 向量已保存在向量库和快照中，释放这份副本
+        snapshotEmbeddingModel.clear();
+        indexed.clear();
+        finishedAt = System.nanoTime();
+        if (state != State.FAILED) {
+            state = State.READY;
+        }
+        log.info("Vector store ingestion {} in {} ms: {} documents indexed, {} reused from snapshot, "
+                        + "{} enriched and embedded, {} failed", state, (finishedAt - startedAt) / 1_000_000,
+                indexedCount.get(), reusedCount.get(), embeddedCount.get(), failedCount.get());
+        done.countDown();
+    }
+
+    private void fail(String stage, List<Document> batch, RuntimeException e) {
+        failedCount.addAndGet(batch.size());
+        failedCounter.increment(batch.size());
+        log.warn("Skip {} documents after {} failed, they will be retried on next start", batch.size(), stage, e);
+    }
+
+    private <T> T withRetry(String stage, Supplier<T> action) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                if (attempt >= settings.maxAttempts()) {
+                    throw e;
+                }
+                long delay = settings.retryBaseDelayMillis() << (attempt - 1);
+                retryCounter.increment();
+                log.warn("Vector store {} batch failed (attempt {}/{}), retrying in {} ms: {}",
+                        stage, attempt, settings.maxAttempts(), delay, e.getMessage());
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    private static void signalEnd(BlockingQueue<List<Document>> queue, int consumers) {
+        try {
+            for (int i = 0; i < consumers; i++) {
+                queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startThreads(String stage, int count, Runnable worker) {
+        Thread.Builder builder = Thread.ofPlatform().daemon().name("ingest-" + stage + "-", 0);
+        for (int i = 0; i < count; i++) {
+            threads.add(builder.start(worker));
+        }
+    }
+
+    private static void registerStageMeters(MeterRegistry meterRegistry, String stage, AtomicInteger processed,
+                                            BlockingQueue<List<Document>> input) {
+        Gauge.builder("rag.ingestion.documents", processed, AtomicInteger::get).tag("stage", stage).register(meterRegistry);
+        if (input != null) {
+            // 队列中等待处理的批次数，持续接近容量说明该阶段是瓶颈
+            Gauge.builder("rag.ingestion.queue.size", input, BlockingQueue::size).tag("stage", stage).register(meterRegistry);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler {
+        void handle(List<Document> batch) throws InterruptedException;
+    }
+}
@@ -0,0 +1,283 @@
+package com.clinxin.axinaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 向量库快照（按原始文档内容哈希保存增强后的文档与向量）
+ *
+ * 文件格式：[魔数 int][版本 int][指纹 UTF][向量维度 int][条数 int]，之后每条记录为
+ * [内容哈希 UTF][文本长度 int][文本 UTF-8][元信息条数 int]([键 UTF][类型 byte][值])*[向量 float*维度]，
+ * 最后是之前全部内容的 CRC32 校验和 long。
+ * 指纹描述增强与嵌入的方式（如模型、关键词个数），与当前不一致时整个快照作废。
+ * 写入时先写临时文件再原子替换；读取前先校验校验和，条数、维度和长度按文件大小检查后才分配数组，
+ * 读取失败时视为没有快照。
+ */
+@Slf4j
+public class EmbeddingSnapshot {
+
+    private static final int MAGIC = 0x41584553;
+
+    private static final int VERSION = 2;
+
+    // 每条记录的最小字节数（不含向量）：内容哈希长度 + 文本长度 + 元信息条数
+    private static final int MIN_RECORD_BYTES = 2 + 4 + 4;
+
+    private static final int CHECKSUM_BYTES = 8;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+
+    private final Path file;
+
+    private final String fingerprint;
+
+    /**
+     * @param file        快照文件
+     * @param fingerprint 增强与嵌入方式的指纹
+     */
+    public EmbeddingSnapshot(Path file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * 快照中的一条记录
+     *
+     * @param key       原始文档的内容哈希
+     * @param text      文档文本
+     * @param metadata  增强后的元信息
+     * @param embedding 向量
+     */
+    public record Entry(String key, String text, Map<String, Object> metadata, float[] embedding) {
+    }
+
+    /**
+     * 读取快照
+     *
+     * @return 内容哈希 -> 记录；快照不存在、损坏或指纹不一致时返回空
+     */
+    public Map<String, Entry> load() {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        try {
+            long size = Files.size(file);
+            if (!checksumMatches(size)) {
+                log.warn("Ignore vector snapshot {} with mismatched checksum", file);
+                return entries;
+            }
+            // 校验和之前的内容字节数，所有计数和长度都不能超过它
+            long limit = size - CHECKSUM_BYTES;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    log.warn("Ignore vector snapshot {} with unknown format", file);
+                    return entries;
+                }
+                String storedFingerprint = in.readUTF();
+                if (!fingerprint.equals(storedFingerprint)) {
+                    log.info("Vector snapshot {} was built by {}, rebuilding", file, storedFingerprint);
+                    return entries;
+                }
+                int dimensions = in.readInt();
+                int count = in.readInt();
+                if (dimensions < 0 || count < 0 || (long) count * (MIN_RECORD_BYTES + 4L * dimensions) > limit) {
+                    throw new IOException("Invalid snapshot header: " + count + " entries of " + dimensions + " dimensions");
+                }
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    String text = readString(in, limit);
+                    int metadataCount = in.readInt();
+                    if (metadataCount < 0 || metadataCount > limit) {
+                        throw new IOException("Invalid metadata count " + metadataCount);
+                    }
+                    Map<String, Object> metadata = new LinkedHashMap<>();
+                    for (int j = 0; j < metadataCount; j++) {
+                        String name = in.readUTF();
+                        metadata.put(name, readValue(in, limit));
+                    }
+                    float[] embedding = new float[dimensions];
+                    for (int j = 0; j < dimensions; j++) {
+                        embedding[j] = in.readFloat();
+                    }
+                    entries.put(key, new Entry(key, text, metadata, embedding));
+                }
+            }
+            return entries;
+        } catch (NoSuchFileException e) {
+            return entries;
+        } catch (IOException e) {
+            log.warn("Failed to read vector snapshot {}, rebuilding", file, e);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * 流式计算快照内容的 CRC32 并与文件末尾的校验和比较（不分配与内容大小相关的数组）
+     *
+     * @param size 文件大小
+     * @return 校验和是否一致
+     */
+    private boolean checksumMatches(long size) throws IOException {
+        if (size < CHECKSUM_BYTES) {
+            return false;
+        }
+        CRC32 checksum = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            byte[] buffer = new byte[8192];
+            long remaining = size - CHECKSUM_BYTES;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    return false;
+                }
+                checksum.update(buffer, 0, read);
+                remaining -= read;
+            }
+            return in.readLong() == checksum.getValue();
+        }
+    }
+
+    /**
+     * 用给定记录覆盖快照
+     *
+     * @param entries 记录（向量维度必须一致）
+     */
+    public void save(Collection<Entry> entries) throws IOException {
+        int dimensions = entries.isEmpty() ? 0 : entries.iterator().next().embedding().length;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), checksum))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(dimensions);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                if (entry.embedding().length != dimensions) {
+                    throw new IOException("Embedding dimensions differ: " + entry.embedding().length + " != " + dimensions);
+                }
+                out.writeUTF(entry.key());
+                writeString(out, entry.text());
+                out.writeInt(entry.metadata().size());
+                for (Map.Entry<String, Object> metadata : entry.metadata().entrySet()) {
+                    out.writeUTF(metadata.getKey());
+                    writeValue(out, metadata.getValue());
+                }
+                for (float value : entry.embedding()) {
+                    out.writeFloat(value);
+                }
+            }
+            // 参数在写入前求值，校验和只覆盖之前的内容
+            out.writeLong(checksum.getValue());
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 计算原始文档的内容哈希（文本与按键排序的元信息）
+     *
+     * @param text     文档文本
+     * @param metadata 元信息
+     * @return 十六进制 SHA-256
+     */
+    public static String contentKey(String text, Map<String, Object> metadata) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(new TreeMap<>(metadata).toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 由内容哈希生成稳定的文档 id
+     *
+     * @param key 内容哈希
+     * @return UUID 形式的文档 id
+     */
+    static String documentId(String key) {
+        return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        // writeUTF 限制 64 KB，文本按长度前缀写入
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return readString(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxBytes 允许的最大字节数（通常为文件大小），超出时视为数据损坏
+     */
+    static String readString(DataInputStream in, long maxBytes) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxBytes) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer || value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Float || value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean(bool);
+        } else {
+            // 其他类型按字符串保存
+            out.writeByte(TYPE_STRING);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    static Object readValue(DataInputStream in) throws IOException {
+        return readValue(in, Integer.MAX_VALUE);
+    }
+
+    static Object readValue(DataInputStream in, long maxBytes) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case TYPE_LONG -> in.readLong();
+            case TYPE_DOUBLE -> in.readDouble();
+            case TYPE_BOOLEAN -> in.readBoolean();
+            case TYPE_STRING -> readString(in, maxBytes);
+            default -> throw new IOException("Unknown metadata type " + type);
+        };
+    }
+}
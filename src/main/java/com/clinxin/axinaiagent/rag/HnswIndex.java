@@ -0,0 +1,727 @@
+package com.clinxin.axinaiagent.rag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW 近似最近邻索引（余弦相似度）
+ *
+ * 每个节点按指数分布随机分配层数，逐层贪心下降到目标层后用 efConstruction 大小的候选集搜索邻居，
+ * 按启发式规则选出最多 M 个邻居（第 0 层 2M 个）并双向连接；检索时从顶层贪心下降，在第 0 层用 efSearch 搜索。
+ * 删除只打墓碑标记，节点仍参与图遍历但不出现在结果中（墓碑由 HnswVectorStore 按比例重建索引清理）。
+ *
+ * 线程安全：插入和检索可以并发执行，节点的邻居列表由节点自身加锁；扩容时短暂阻塞所有访问。
+ * 持久化文件为 [头部][全部向量][图结构]，加载时按窗口分块读取向量区并复制到堆上的数组（检索直接访问堆上向量），
+ * 图结构直接恢复，重启无需重建索引。
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x41584857;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+
+    private static final int MAX_LEVEL = 16;
+
+    // 加载时每次读取的最大字节数
+    private static final int READ_WINDOW_BYTES = 16 * 1024 * 1024;
+
+    private final int dimensions;
+
+    private final int m;
+
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private volatile int efSearch;
+
+    private final double levelMultiplier;
+
+    // 扩容节点数组时持有写锁，其余对节点数组的写入持有读锁
+    private final ReentrantReadWriteLock growLock = new ReentrantReadWriteLock();
+
+    private volatile AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(1024);
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    private final AtomicInteger deletedCount = new AtomicInteger();
+
+    private final Object entryLock = new Object();
+
+    private volatile int entryPoint = -1;
+
+    private volatile int maxLevel = -1;
+
+    /**
+     * @param dimensions     向量维度
+     * @param m              每个节点在第 1 层及以上的最大邻居数（第 0 层为 2M）
+     * @param efConstruction 插入时的候选集大小
+     * @param efSearch       检索时的候选集大小（可随时调整）
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be at least 2");
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    /**
+     * 检索结果（按相似度降序）
+     *
+     * @param ids    节点 id
+     * @param scores 余弦相似度
+     */
+    public record Hits(int[] ids, float[] scores) {
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return 节点数（含已删除的节点）
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * @return 已删除（打了墓碑标记）的节点数
+     */
+    public int deletedCount() {
+        return deletedCount.get();
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * 插入向量
+     *
+     * @param vector 向量（不会被修改）
+     * @return 节点 id（从 0 递增）
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier));
+        Node node = new Node(normalize(vector), level, m, maxM0);
+        int id = count.getAndIncrement();
+        ensureCapacity(id + 1);
+        growLock.readLock().lock();
+        try {
+            nodes.set(id, node);
+        } finally {
+            growLock.readLock().unlock();
+        }
+        int entry;
+        int topLevel;
+        synchronized (entryLock) {
+            if (entryPoint < 0) {
+                entryPoint = id;
+                maxLevel = level;
+                return id;
+            }
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+        float[] query = node.vector;
+        for (int layer = topLevel; layer > level; layer--) {
+            entry = greedySearch(query, entry, layer);
+        }
+        for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+            ScoreHeap found = searchLayer(query, entry, efConstruction, layer);
+            int[] sortedIds = found.drainDescending();
+            int[] neighbors = selectNeighbors(query, sortedIds, m);
+            node.setNeighbors(layer, neighbors, neighbors.length);
+            int maxLinks = layer == 0 ? maxM0 : m;
+            for (int neighbor : neighbors) {
+                connect(node(neighbor), id, layer, maxLinks);
+            }
+            entry = sortedIds[0];
+        }
+        if (level > topLevel) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    maxLevel = level;
+                    entryPoint = id;
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * 打墓碑标记删除节点
+     *
+     * @param id 节点 id
+     */
+    public void markDeleted(int id) {
+        Node node = node(id);
+        if (node != null && !node.deleted) {
+            node.deleted = true;
+            deletedCount.incrementAndGet();
+        }
+    }
+
+    public boolean isDeleted(int id) {
+        Node node = node(id);
+        return node == null || node.deleted;
+    }
+
+    /**
+     * 近似检索
+     *
+     * @param query    查询向量
+     * @param topK     返回条数
+     * @param minScore 最低相似度
+     * @param filter   节点过滤条件（为空时不过滤）
+     * @return 按相似度降序的结果
+     */
+    public Hits search(float[] query, int topK, float minScore, IntPredicate filter) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + query.length);
+        }
+        int entry;
+        int topLevel;
+        // 入口节点与最高层需要成对读取
+        synchronized (entryLock) {
+            entry = entryPoint;
+            topLevel = maxLevel;
+        }
+        if (entry < 0 || topK <= 0) {
+            return new Hits(new int[0], new float[0]);
+        }
+        float[] normalized = normalize(query);
+        for (int layer = topLevel; layer > 0; layer--) {
+            entry = greedySearch(normalized, entry, layer);
+        }
+        int total = count.get();
+        int ef = Math.max(efSearch, topK);
+        while (true) {
+            ScoreHeap found = searchLayer(normalized, entry, ef, 0);
+            float[] scores = new float[found.size()];
+            int[] ids = found.drainDescending(scores);
+            Hits hits = collect(ids, scores, topK, minScore, filter);
+            // 删除或过滤掉的节点太多时扩大候选集，直到覆盖全部节点
+            if (hits.ids().length >= topK || ef >= total || (ids.length > 0 && scores[ids.length - 1] < minScore)) {
+                return hits;
+            }
+            ef = (int) Math.min(total, ef * 4L);
+        }
+    }
+
+    /**
+     * 精确检索（遍历全部节点，用于对比召回率）
+     */
+    public Hits exactSearch(float[] query, int topK, float minScore, IntPredicate filter) {
+        float[] normalized = normalize(query);
+        OffHeapVectorIndex.TopK top = new OffHeapVectorIndex.TopK(topK);
+        int total = count.get();
+        for (int id = 0; id < total; id++) {
+            Node node = node(id);
+            if (node == null || node.deleted || (filter != null && !filter.test(id))) {
+                continue;
+            }
+            float score = dot(normalized, node.vector);
+            if (score >= minScore) {
+                top.offer(id, score);
+            }
+        }
+        OffHeapVectorIndex.Hits hits = top.toHits();
+        return new Hits(hits.slots(), hits.scores());
+    }
+
+    /**
+     * 保存索引（调用方需保证保存期间没有插入）
+     *
+     * @param file 文件
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int total = count.get();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(total);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int id = 0; id < total; id++) {
+                for (float value : node(id).vector) {
+                    out.writeFloat(value);
+                }
+            }
+            for (int id = 0; id < total; id++) {
+                Node node = node(id);
+                out.writeBoolean(node.deleted);
+                out.writeByte(node.level());
+                for (int layer = 0; layer <= node.level(); layer++) {
+                    int[] neighbors = node.neighbors(layer);
+                    out.writeShort(neighbors.length);
+                    for (int neighbor : neighbors) {
+                        out.writeInt(neighbor);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 加载索引
+     *
+     * @param file     文件
+     * @param efSearch 检索时的候选集大小
+     * @return 索引
+     */
+    public static HnswIndex load(Path file, int efSearch) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unknown HNSW index format: " + file);
+            }
+            int dimensions = header.getInt();
+            HnswIndex index = new HnswIndex(dimensions, header.getInt(), header.getInt(), efSearch);
+            int total = header.getInt();
+            int entryPoint = header.getInt();
+            int maxLevel = header.getInt();
+            long vectorBytes = (long) dimensions * Float.BYTES;
+            if (dimensions <= 0 || total < 0 || HEADER_BYTES + total * vectorBytes > channel.size()) {
+                throw new IOException("Corrupt HNSW index header: " + file);
+            }
+            // 按窗口读取向量区（不使用内存映射，避免映射在 GC 前占用文件导致无法替换），每个窗口包含整数个向量
+            float[][] vectors = new float[total][];
+            int vectorsPerWindow = (int) Math.max(1, READ_WINDOW_BYTES / vectorBytes);
+            ByteBuffer window = ByteBuffer.allocate((int) (Math.min(vectorsPerWindow, Math.max(total, 1)) * vectorBytes));
+            for (int start = 0; start < total; start += vectorsPerWindow) {
+                int n = Math.min(vectorsPerWindow, total - start);
+                window.clear().limit((int) (n * vectorBytes));
+                readFully(channel, window, HEADER_BYTES + start * vectorBytes);
+                FloatBuffer floats = window.asFloatBuffer();
+                for (int i = 0; i < n; i++) {
+                    vectors[start + i] = new float[dimensions];
+                    floats.get(vectors[start + i]);
+                }
+            }
+            channel.position(HEADER_BYTES + total * vectorBytes);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            index.ensureCapacity(total);
+            for (int id = 0; id < total; id++) {
+                boolean deleted = in.readBoolean();
+                int level = in.readByte();
+                Node node = new Node(vectors[id], level, index.m, index.maxM0);
+                for (int layer = 0; layer <= level; layer++) {
+                    int[] neighbors = new int[in.readShort()];
+                    for (int i = 0; i < neighbors.length; i++) {
+                        neighbors[i] = in.readInt();
+                    }
+                    node.setNeighbors(layer, neighbors, neighbors.length);
+                }
+                node.deleted = deleted;
+                if (deleted) {
+                    index.deletedCount.incrementAndGet();
+                }
+                index.nodes.set(id, node);
+            }
+            index.count.set(total);
+            index.entryPoint = entryPoint;
+            index.maxLevel = maxLevel;
+            return index;
+        }
+    }
+
+    /**
+     * @param id 节点 id
+     * @return 归一化后的向量（不可修改）
+     */
+    float[] vector(int id) {
+        return node(id).vector;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of HNSW index file");
+            }
+        }
+        buffer.flip();
+    }
+
+    private Node node(int id) {
+        return nodes.get(id);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nodes.length()) {
+            return;
+        }
+        growLock.writeLock().lock();
+        try {
+            AtomicReferenceArray<Node> current = nodes;
+            if (capacity <= current.length()) {
+                return;
+            }
+            int length = current.length();
+            while (length < capacity) {
+                length *= 2;
+            }
+            AtomicReferenceArray<Node> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            nodes = grown;
+        } finally {
+            growLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在高层贪心移动到与查询最相似的节点
+     */
+    private int greedySearch(float[] query, int entry, int layer) {
+        int current = entry;
+        float best = dot(query, node(current).vector);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int neighbor : node(current).neighbors(layer)) {
+                float score = dot(query, node(neighbor).vector);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层做最佳优先搜索
+     *
+     * @return 最多 ef 个最相似的节点（小顶堆）
+     */
+    private ScoreHeap searchLayer(float[] query, int entry, int ef, int layer) {
+        BitSet visited = new BitSet(count.get());
+        ScoreHeap candidates = new ScoreHeap(true, ef);
+        ScoreHeap results = new ScoreHeap(false, ef + 1);
+        float entryScore = dot(query, node(entry).vector);
+        visited.set(entry);
+        candidates.push(entry, entryScore);
+        results.push(entry, entryScore);
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.peekScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.peekScore()) {
+                break;
+            }
+            Node node = node(candidate);
+            if (layer > node.level()) {
+                continue;
+            }
+            for (int neighbor : node.neighbors(layer)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                Node neighborNode = node(neighbor);
+                if (neighborNode == null) {
+                    continue;
+                }
+                float score = dot(query, neighborNode.vector);
+                if (results.size() < ef || score > results.peekScore()) {
+                    candidates.push(neighbor, score);
+                    results.push(neighbor, score);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式选择邻居：候选按相似度降序，只保留与已选邻居相比更接近基准点的候选，不足时用剩余候选补齐
+     */
+    private int[] selectNeighbors(float[] base, int[] sortedIds, int maxLinks) {
+        if (sortedIds.length <= maxLinks) {
+            return sortedIds;
+        }
+        int[] selected = new int[maxLinks];
+        int selectedCount = 0;
+        int[] skipped = new int[sortedIds.length];
+        int skippedCount = 0;
+        for (int candidate : sortedIds) {
+            if (selectedCount == maxLinks) {
+                break;
+            }
+            float[] candidateVector = node(candidate).vector;
+            float toBase = dot(base, candidateVector);
+            boolean keep = true;
+            for (int i = 0; i < selectedCount; i++) {
+                if (dot(candidateVector, node(selected[i]).vector) > toBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[selectedCount++] = candidate;
+            } else {
+                skipped[skippedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < skippedCount && selectedCount < maxLinks; i++) {
+            selected[selectedCount++] = skipped[i];
+        }
+        return Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 把新节点加入邻居的邻居列表，超出上限时按启发式规则重新选择
+     */
+    private void connect(Node neighbor, int id, int layer, int maxLinks) {
+        synchronized (neighbor) {
+            int size = neighbor.linkCounts[layer];
+            if (size < maxLinks) {
+                neighbor.links[layer][size] = id;
+                neighbor.linkCounts[layer] = size + 1;
+                return;
+            }
+            int[] candidates = Arrays.copyOf(neighbor.links[layer], size + 1);
+            candidates[size] = id;
+            float[] scores = new float[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                scores[i] = dot(neighbor.vector, node(candidates[i]).vector);
+            }
+            sortDescending(candidates, scores);
+            int[] selected = selectNeighbors(neighbor.vector, candidates, maxLinks);
+            neighbor.setNeighbors(layer, selected, selected.length);
+        }
+    }
+
+    private static void sortDescending(int[] ids, float[] scores) {
+        // 邻居数很少，插入排序即可
+        for (int i = 1; i < ids.length; i++) {
+            int id = ids[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                ids[j + 1] = ids[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            scores[j + 1] = score;
+        }
+    }
+
+    private Hits collect(int[] ids, float[] scores, int topK, float minScore, IntPredicate filter) {
+        int[] resultIds = new int[Math.min(topK, ids.length)];
+        float[] resultScores = new float[resultIds.length];
+        int n = 0;
+        for (int i = 0; i < ids.length && n < resultIds.length; i++) {
+            if (scores[i] < minScore) {
+                break;
+            }
+            if (node(ids[i]).deleted || (filter != null && !filter.test(ids[i]))) {
+                continue;
+            }
+            resultIds[n] = ids[i];
+            resultScores[n++] = scores[i];
+        }
+        return new Hits(Arrays.copyOf(resultIds, n), Arrays.copyOf(resultScores, n));
+    }
+
+    private static float[] normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        float norm = sum == 0 ? 0 : (float) (1 / Math.sqrt(sum));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * norm;
+        }
+        return normalized;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int upper = a.length & ~3;
+        int i = 0;
+        for (; i < upper; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * 图节点：归一化向量与每层的邻居列表
+     */
+    private static final class Node {
+
+        final float[] vector;
+
+        final int[][] links;
+
+        final int[] linkCounts;
+
+        volatile boolean deleted;
+
+        Node(float[] vector, int level, int m, int maxM0) {
+            this.vector = vector;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[layer == 0 ? maxM0 : m];
+            }
+        }
+
+        int level() {
+            return links.length - 1;
+        }
+
+        synchronized int[] neighbors(int layer) {
+            return Arrays.copyOf(links[layer], linkCounts[layer]);
+        }
+
+        synchronized void setNeighbors(int layer, int[] ids, int n) {
+            System.arraycopy(ids, 0, links[layer], 0, n);
+            linkCounts[layer] = n;
+        }
+    }
+
+    /**
+     * 基本类型的 (id, 得分) 堆，可作大顶堆或小顶堆
+     */
+    private static final class ScoreHeap {
+
+        private final boolean max;
+
+        private int[] ids;
+
+        private float[] scores;
+
+        private int size;
+
+        ScoreHeap(boolean max, int capacity) {
+            this.max = max;
+            this.ids = new int[Math.max(capacity, 4)];
+            this.scores = new float[ids.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int id, float score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                ids[index] = ids[parent];
+                scores[index] = scores[parent];
+                index = parent;
+            }
+            ids[index] = id;
+            scores[index] = score;
+        }
+
+        int pop() {
+            int top = ids[0];
+            size--;
+            int lastId = ids[size];
+            float lastScore = scores[size];
+            int index = 0;
+            while (true) {
+                int child = index * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                ids[index] = ids[child];
+                scores[index] = scores[child];
+                index = child;
+            }
+            ids[index] = lastId;
+            scores[index] = lastScore;
+            return top;
+        }
+
+        /**
+         * 取出全部元素（仅用于小顶堆），按得分降序
+         */
+        int[] drainDescending() {
+            return drainDescending(new float[size]);
+        }
+
+        int[] drainDescending(float[] sortedScores) {
+            int n = size;
+            int[] sorted = new int[n];
+            for (int i = n - 1; i >= 0; i--) {
+                sortedScores[i] = scores[0];
+                sorted[i] = pop();
+            }
+            return sorted;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+package com.clinxin.axinaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * 基于 HNSW 近似最近邻索引的本地向量库（无法使用 PGVector 时的大规模语料方案）
+ *
+ * 添加、删除和检索可以并发执行；相同 id 的文档重新添加时，旧节点打墓碑标记后插入新节点，
+ * 墓碑超过节点数的 compactThreshold 时用存活节点重建索引清理。
+ * 指定持久化目录时，每批添加或删除先追加到预写日志（WAL）并落盘，启动时加载索引快照后重放日志，
+ * 进程崩溃也不会丢失已返回的写入；日志超过 walCheckpointBytes 或 close() 时写出新快照并清空日志，重启无需重建索引。
+ * 可直接用于 QuestionAnswerAdvisor 和 VectorStoreDocumentRetriever，支持 Filter.Expression 元信息过滤。
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore, AutoCloseable {
+
+    private static final String INDEX_FILE = "index.hnsw";
+
+    private static final String DOCUMENTS_FILE = "documents.bin";
+
+    private static final String WAL_FILE = "wal.log";
+
+    private static final int DOCUMENTS_MAGIC = 0x41584844;
+
+    private static final byte WAL_ADD = 1;
+
+    private static final byte WAL_DELETE = 2;
+
+    private static final double DEFAULT_COMPACT_THRESHOLD = 0.3;
+
+    private static final long DEFAULT_WAL_CHECKPOINT_BYTES = 64L * 1024 * 1024;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final int m;
+
+    private final int efConstruction;
+
+    private final int efSearch;
+
+    // 持久化目录（为空时不持久化）
+    private final Path dir;
+
+    // 墓碑占节点数的比例达到该值时重建索引
+    private final double compactThreshold;
+
+    // 预写日志达到该字节数时写出快照并清空日志
+    private final long walCheckpointBytes;
+
+    // 添加、删除、检索持有读锁并发执行，保存和重建索引时持有写锁
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 预写日志（未指定持久化目录时为空），追加和清空时对其加锁
+    private final FileChannel wal;
+
+    // 同一时间只有一个线程执行写快照或重建索引
+    private final AtomicBoolean maintaining = new AtomicBoolean();
+
+    // 首次添加时按向量维度创建
+    private volatile HnswIndex index;
+
+    // 节点 id -> 文档（不含向量）
+    private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> nodesById = new ConcurrentHashMap<>();
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch, Path dir) {
+        this(embeddingModel, m, efConstruction, efSearch, dir, DEFAULT_COMPACT_THRESHOLD, DEFAULT_WAL_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * @param embeddingModel     嵌入模型
+     * @param m                  每个节点的最大邻居数
+     * @param efConstruction     插入时的候选集大小
+     * @param efSearch           检索时的候选集大小
+     * @param dir                持久化目录（为空时不持久化）
+     * @param compactThreshold   墓碑占节点数的比例达到该值时重建索引
+     * @param walCheckpointBytes 预写日志达到该字节数时写出快照并清空日志
+     */
+    public HnswVectorStore(EmbeddingModel embeddingModel, int m, int efConstruction, int efSearch, Path dir,
+                           double compactThreshold, long walCheckpointBytes) {
+        this.embeddingModel = embeddingModel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.dir = dir;
+        this.compactThreshold = compactThreshold;
+        this.walCheckpointBytes = walCheckpointBytes;
+        if (dir == null) {
+            wal = null;
+            return;
+        }
+        if (Files.exists(dir.resolve(INDEX_FILE)) && Files.exists(dir.resolve(DOCUMENTS_FILE))) {
+            try {
+                load();
+            } catch (IOException e) {
+                log.warn("Failed to load HNSW index from {}, starting empty", dir, e);
+                index = null;
+                documents.clear();
+                nodesById.clear();
+            }
+        }
+        try {
+            Files.createDirectories(dir);
+            wal = FileChannel.open(dir.resolve(WAL_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open HNSW write-ahead log in " + dir, e);
+        }
+        try {
+            replayWal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay HNSW write-ahead log in " + dir, e);
+        }
+    }
+
+    @Override
+    public void add(List<Document> documentList) {
+        if (documentList.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documentList, EmbeddingOptionsBuilder.builder().build(),
+                new TokenCountBatchingStrategy());
+        lock.readLock().lock();
+        try {
+            appendWal(addRecord(documentList, embeddings));
+            applyAdd(documentList, embeddings);
+        } finally {
+            lock.readLock().unlock();
+        }
+        maintain();
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.readLock().lock();
+        try {
+            appendWal(deleteRecord(idList));
+            applyDelete(idList);
+        } finally {
+            lock.readLock().unlock();
+        }
+        maintain();
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> ids = new ArrayList<>();
+        for (Document document : documents.values()) {
+            if (MetadataFilterEvaluator.matches(filterExpression, document.getMetadata())) {
+                ids.add(document.getId());
+            }
+        }
+        delete(ids);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (index == null) {
+            return List.of();
+        }
+        float[] query = embeddingModel.embed(request.getQuery());
+        Filter.Expression filterExpression = request.getFilterExpression();
+        IntPredicate filter = filterExpression == null ? null : node -> {
+            Document document = documents.get(node);
+            return document != null && MetadataFilterEvaluator.matches(filterExpression, document.getMetadata());
+        };
+        lock.readLock().lock();
+        try {
+            // 在读锁内读取索引，重建索引时节点 id 会整体变化
+            HnswIndex hnswIndex = index;
+            HnswIndex.Hits hits = hnswIndex.search(query, request.getTopK(), (float) request.getSimilarityThreshold(), filter);
+            List<Document> results = new ArrayList<>(hits.ids().length);
+            for (int i = 0; i < hits.ids().length; i++) {
+                Document document = documents.get(hits.ids()[i]);
+                if (document == null) {
+                    // 检索期间被并发删除
+                    continue;
+                }
+                double score = hits.scores()[i];
+                Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+                metadata.put("distance", 1 - score);
+                results.add(Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(metadata)
+                        .score(score)
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 文档数
+     */
+    public int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * @return 底层索引（尚未添加文档时为空）
+     */
+    public HnswIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * 用存活节点重建索引，清理墓碑（重建期间阻塞添加、删除和检索）
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            HnswIndex old = index;
+            if (old == null || old.deletedCount() == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            HnswIndex rebuilt = new HnswIndex(old.dimensions(), m, efConstruction, efSearch);
+            Map<Integer, Document> rebuiltDocuments = new HashMap<>();
+            // 按原节点顺序插入
+            for (Map.Entry<Integer, Document> entry : new TreeMap<>(documents).entrySet()) {
+                int node = rebuilt.add(old.vector(entry.getKey()));
+                rebuiltDocuments.put(node, entry.getValue());
+            }
+            documents.clear();
+            nodesById.clear();
+            for (Map.Entry<Integer, Document> entry : rebuiltDocuments.entrySet()) {
+                documents.put(entry.getKey(), entry.getValue());
+                nodesById.put(entry.getValue().getId(), entry.getKey());
+            }
+            index = rebuilt;
+            log.info("Compacted HNSW index from {} to {} nodes in {} ms", old.size(), rebuilt.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把索引和文档写入持久化目录并清空预写日志（墓碑过多时先重建索引）
+     */
+    public void save() throws IOException {
+        if (dir == null || index == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (needsCompaction()) {
+                compact();
+            }
+            Files.createDirectories(dir);
+            index.save(dir.resolve(INDEX_FILE));
+            Path file = dir.resolve(DOCUMENTS_FILE);
+            Path temp = file.resolveSibling(DOCUMENTS_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(DOCUMENTS_MAGIC);
+                out.writeInt(documents.size());
+                for (Map.Entry<Integer, Document> entry : documents.entrySet()) {
+                    out.writeInt(entry.getKey());
+                    writeDocument(out, entry.getValue());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // 快照已包含日志中的全部写入
+            synchronized (wal) {
+                wal.truncate(0);
+                wal.force(true);
+            }
+            log.info("Saved HNSW index with {} documents ({} tombstones) to {}",
+                    documents.size(), index.deletedCount(), dir);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            save();
+        } finally {
+            if (wal != null) {
+                wal.close();
+            }
+        }
+    }
+
+    /**
+     * 写入后按需重建索引或写出快照（在锁外执行，同一时间只有一个线程执行）
+     */
+    private void maintain() {
+        boolean checkpoint = wal != null && walSize() >= walCheckpointBytes;
+        if (!checkpoint && !needsCompaction()) {
+            return;
+        }
+        if (!maintaining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (dir != null) {
+                save();
+            } else {
+                compact();
+            }
+        } catch (IOException e) {
+            // 写入仍保留在预写日志中，下次保存时重试
+            log.warn("Failed to checkpoint HNSW index to {}", dir, e);
+        } finally {
+            maintaining.set(false);
+        }
+    }
+
+    private boolean needsCompaction() {
+        HnswIndex hnswIndex = index;
+        return hnswIndex != null && hnswIndex.deletedCount() > 0
+                && hnswIndex.deletedCount() >= compactThreshold * hnswIndex.size();
+    }
+
+    private long walSize() {
+        try {
+            return wal.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void applyAdd(List<Document> documentList, List<float[]> embeddings) {
+        HnswIndex hnswIndex = index(embeddings.get(0).length);
+        for (int i = 0; i < documentList.size(); i++) {
+            Document document = documentList.get(i);
+            int node = hnswIndex.add(embeddings.get(i));
+            documents.put(node, document);
+            Integer previous = nodesById.put(document.getId(), node);
+            if (previous != null) {
+                hnswIndex.markDeleted(previous);
+                documents.remove(previous);
+            }
+        }
+    }
+
+    private void applyDelete(List<String> idList) {
+        for (String id : idList) {
+            Integer node = nodesById.remove(id);
+            if (node != null) {
+                index.markDeleted(node);
+                documents.remove(node);
+            }
+        }
+    }
+
+    /**
+     * 追加一条日志记录并落盘：[长度 int][CRC32 int][内容]
+     */
+    private void appendWal(byte[] record) {
+        if (wal == null) {
+            return;
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+        buffer.putInt(record.length).putInt((int) checksum.getValue()).put(record).flip();
+        synchronized (wal) {
+            try {
+                wal.position(wal.size());
+                while (buffer.hasRemaining()) {
+                    wal.write(buffer);
+                }
+                wal.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append to HNSW write-ahead log", e);
+            }
+        }
+    }
+
+    private static byte[] addRecord(List<Document> documentList, List<float[]> embeddings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(WAL_ADD);
+            out.writeInt(documentList.size());
+            for (int i = 0; i < documentList.size(); i++) {
+                writeDocument(out, documentList.get(i));
+                float[] embedding = embeddings.get(i);
+                out.writeInt(embedding.length);
+                for (float value : embedding) {
+                    out.writeFloat(value);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deleteRecord(List<String> idList) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(WAL_DELETE);
+            out.writeInt(idList.size());
+            for (String id : idList) {
+                out.writeUTF(id);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 重放快照之后的日志；末尾不完整或校验失败的记录（崩溃时写了一半）被截掉
+     */
+    private void replayWal() throws IOException {
+        long size = wal.size();
+        long position = 0;
+        int replayed = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position + header.capacity() <= size) {
+            header.clear();
+            wal.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int expected = header.getInt();
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            while (record.hasRemaining() && wal.read(record, position + 8 + record.position()) >= 0) {
+                // 读满整条记录
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(record.array());
+            if ((int) checksum.getValue() != expected) {
+                break;
+            }
+            applyRecord(new DataInputStream(new ByteArrayInputStream(record.array())));
+            position += 8 + length;
+            replayed++;
+        }
+        if (position < size) {
+            log.warn("Truncating {} bytes of incomplete HNSW write-ahead log in {}", size - position, dir);
+            wal.truncate(position);
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} HNSW write-ahead log records from {}", replayed, dir);
+        }
+    }
+
+    private void applyRecord(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int count = in.readInt();
+        if (type == WAL_ADD) {
+            List<Document> documentList = new ArrayList<>(count);
+            List<float[]> embeddings = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                documentList.add(readDocument(in));
+                float[] embedding = new float[in.readInt()];
+                for (int j = 0; j < embedding.length; j++) {
+                    embedding[j] = in.readFloat();
+                }
+                embeddings.add(embedding);
+            }
+            if (!documentList.isEmpty()) {
+                applyAdd(documentList, embeddings);
+            }
+        } else if (type == WAL_DELETE) {
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(in.readUTF());
+            }
+            if (index != null) {
+                applyDelete(ids);
+            }
+        } else {
+            throw new IOException("Unknown HNSW write-ahead log record type " + type);
+        }
+    }
+
+    private static void writeDocument(DataOutputStream out, Document document) throws IOException {
+        out.writeUTF(document.getId());
+        EmbeddingSnapshot.writeString(out, document.getText());
+        out.writeInt(document.getMetadata().size());
+        for (Map.Entry<String, Object> metadata : document.getMetadata().entrySet()) {
+            out.writeUTF(metadata.getKey());
+            EmbeddingSnapshot.writeValue(out, metadata.getValue());
+        }
+    }
+
+    private static Document readDocument(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String text = EmbeddingSnapshot.readString(in);
+        int metadataCount = in.readInt();
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        for (int j = 0; j < metadataCount; j++) {
+            String name = in.readUTF();
+            metadata.put(name, EmbeddingSnapshot.readValue(in));
+        }
+        return Document.builder().id(id).text(text).metadata(metadata).build();
+    }
+
+    private HnswIndex index(int dimensions) {
+        HnswIndex hnswIndex = index;
+        if (hnswIndex == null) {
+            synchronized (this) {
+                hnswIndex = index;
+                if (hnswIndex == null) {
+                    hnswIndex = new HnswIndex(dimensions, m, efConstruction, efSearch);
+                    index = hnswIndex;
+                }
+            }
+        }
+        return hnswIndex;
+    }
+
+    private void load() throws IOException {
+        long start = System.nanoTime();
+        HnswIndex loaded = HnswIndex.load(dir.resolve(INDEX_FILE), efSearch);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(dir.resolve(DOCUMENTS_FILE))))) {
+            if (in.readInt() != DOCUMENTS_MAGIC) {
+                throw new IOException("Unknown HNSW documents format");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int node = in.readInt();
+                Document document = readDocument(in);
+                documents.put(node, document);
+                nodesById.put(document.getId(), node);
+            }
+        }
+        index = loaded;
+        log.info("Loaded HNSW index with {} documents from {} in {} ms",
+                documents.size(), dir, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,45 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * 本地 HNSW 向量库配置（无法使用 PGVector 时替代，开启 hnsw-vector-store.enabled 后生效）
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hnsw-vector-store", name = "enabled", havingValue = "true")
+public class HnswVectorStoreConfig {
+
+    @Value("${hnsw-vector-store.m:16}")
+    private int m;
+
+    @Value("${hnsw-vector-store.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${hnsw-vector-store.ef-search:64}")
+    private int efSearch;
+
+    @Value("${hnsw-vector-store.compact-threshold:0.3}")
+    private double compactThreshold;
+
+    @Value("${hnsw-vector-store.wal-checkpoint-mb:64}")
+    private long walCheckpointMb;
+
+    /**
+     * 本地 HNSW 向量库：写入先记预写日志，日志过大或关闭容器时把索引写回磁盘
+     *
+     * @param dashscopeEmbeddingModel 文档和查询使用的嵌入模型
+     * @return 持久化到 tmp/hnsw-vector-store 的向量库
+     */
+    @Bean(destroyMethod = "close")
+    public HnswVectorStore hnswVectorStore(EmbeddingModel dashscopeEmbeddingModel) {
+        return new HnswVectorStore(dashscopeEmbeddingModel, m, efConstruction, efSearch,
+                Paths.get(System.getProperty("user.dir"), "tmp", "hnsw-vector-store"),
+                compactThreshold, walCheckpointMb * 1024 * 1024);
+    }
+}
@@ -0,0 +1,145 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionTextParser;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量检索与 BM25 关键词检索混合的文档检索器
+ *
+ * 两路各取 candidates 个候选，按倒数排名融合（RRF）：文档得分为各路 1 / (rrfK + 排名) 之和，
+ * 只依赖排名，不需要把余弦相似度和 BM25 得分归一化到同一尺度。
+ * 相似度阈值只作用于向量检索；元信息过滤条件同时作用于两路，
+ * 与 {@link VectorStoreDocumentRetriever} 一样优先使用查询上下文中的 FILTER_EXPRESSION。
+ */
+public class HybridDocumentRetriever implements DocumentRetriever {
+
+    // RRF 平滑常数（常用取值 60），越大越削弱头部排名的优势
+    static final int DEFAULT_RRF_K = 60;
+
+    private final VectorStore vectorStore;
+
+    private final Bm25Index keywordIndex;
+
+    private final int topK;
+
+    // 每一路检索的候选数
+    private final int candidates;
+
+    private final double similarityThreshold;
+
+    private final Filter.Expression filterExpression;
+
+    private final int rrfK;
+
+    public HybridDocumentRetriever(VectorStore vectorStore, Bm25Index keywordIndex, int topK) {
+        this(vectorStore, keywordIndex, topK, topK * 4, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, DEFAULT_RRF_K);
+    }
+
+    /**
+     * @param vectorStore         向量库
+     * @param keywordIndex        关键词索引（与向量库包含相同的文档）
+     * @param topK                返回的文档数
+     * @param candidates          每一路检索的候选数
+     * @param similarityThreshold 向量检索的相似度阈值
+     * @param filterExpression    元信息过滤条件（为空时不过滤）
+     * @param rrfK                RRF 平滑常数
+     */
+    public HybridDocumentRetriever(VectorStore vectorStore, Bm25Index keywordIndex, int topK, int candidates,
+                                   double similarityThreshold, Filter.Expression filterExpression, int rrfK) {
+        this.vectorStore = vectorStore;
+        this.keywordIndex = keywordIndex;
+        this.topK = topK;
+        this.candidates = Math.max(topK, candidates);
+        this.similarityThreshold = similarityThreshold;
+        this.filterExpression = filterExpression;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        Filter.Expression requestFilter = filterExpression(query, filterExpression);
+        List<Document> keywordResults = keywordIndex.search(query.text(), candidates, requestFilter);
+        List<Document> vectorResults = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query.text())
+                .topK(candidates)
+                .similarityThreshold(similarityThreshold)
+                .filterExpression(requestFilter)
+                .build());
+        return fuse(List.of(vectorResults, keywordResults));
+    }
+
+    /**
+     * 计算本次请求的元信息过滤条件
+     *
+     * @param query             查询（上下文中可能带有 FILTER_EXPRESSION）
+     * @param defaultExpression 构造时指定的过滤条件
+     * @return 查询上下文中的过滤条件，没有时返回默认条件
+     */
+    static Filter.Expression filterExpression(Query query, Filter.Expression defaultExpression) {
+        Object contextExpression = query.context().get(VectorStoreDocumentRetriever.FILTER_EXPRESSION);
+        if (contextExpression instanceof Filter.Expression expression) {
+            return expression;
+        }
+        if (contextExpression != null && StringUtils.hasText(contextExpression.toString())) {
+            return new FilterExpressionTextParser().parse(contextExpression.toString());
+        }
+        return defaultExpression;
+    }
+
+    /**
+     * 按倒数排名融合多路检索结果
+     *
+     * @param rankings 每一路按相关度降序排列的结果
+     * @return 融合得分最高的 topK 个文档（得分写入 score，同一文档保留最先出现的版本）
+     */
+    List<Document> fuse(List<List<Document>> rankings) {
+        return fuse(rankings, rrfK, topK);
+    }
+
+    /**
+     * 按倒数排名融合多路检索结果
+     *
+     * @param rankings 每一路按相关度降序排列的结果
+     * @param rrfK     RRF 平滑常数
+     * @param topK     返回的文档数
+     * @return 融合得分最高的 topK 个文档（得分写入 score，同一文档保留最先出现的版本）
+     */
+    static List<Document> fuse(List<List<Document>> rankings, int rrfK, int topK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+            }
+        }
+        List<String> ids = new ArrayList<>(documents.keySet());
+        // 稳定排序：得分相同时保持向量检索在前的顺序
+        ids.sort((left, right) -> Double.compare(scores.get(right), scores.get(left)));
+        List<Document> results = new ArrayList<>(Math.min(topK, ids.size()));
+        for (String id : ids.subList(0, Math.min(topK, ids.size()))) {
+            Document document = documents.get(id);
+            results.add(Document.builder()
+                    .id(document.getId())
+                    .text(document.getText())
+                    .metadata(document.getMetadata())
+                    .score(scores.get(id))
+                    .build());
+        }
+        return results;
+    }
+}
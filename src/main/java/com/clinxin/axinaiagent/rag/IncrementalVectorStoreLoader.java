@@ -0,0 +1,104 @@
+package com.clinxin.axinaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 基于快照增量构建内存向量库
+ *
+ * 文档按原始内容哈希与快照比对：未变化的文档直接使用快照中增强后的元信息和向量，
+ * 只有新增或修改的文档才调用增强器和嵌入模型；构建完成后把当前全部文档写回快照，已删除的文档随之清除。
+ * 文档 id 由内容哈希生成，重启前后保持不变。向量库由工厂创建，默认使用 SimpleVectorStore。
+ */
+@Slf4j
+public class IncrementalVectorStoreLoader {
+
+    private final EmbeddingModel embeddingModel;
+
+    private final EmbeddingSnapshot snapshot;
+
+    // 根据嵌入模型创建空的向量库
+    private final Function<EmbeddingModel, VectorStore> vectorStoreFactory;
+
+    public IncrementalVectorStoreLoader(EmbeddingModel embeddingModel, EmbeddingSnapshot snapshot) {
+        this(embeddingModel, snapshot, model -> SimpleVectorStore.builder(model).build());
+    }
+
+    public IncrementalVectorStoreLoader(EmbeddingModel embeddingModel, EmbeddingSnapshot snapshot,
+                                        Function<EmbeddingModel, VectorStore> vectorStoreFactory) {
+        this.embeddingModel = embeddingModel;
+        this.snapshot = snapshot;
+        this.vectorStoreFactory = vectorStoreFactory;
+    }
+
+    /**
+     * 构建向量库
+     *
+     * @param documents 原始文档
+     * @param enricher  文档增强器（只对新增或修改的文档调用）
+     * @return 向量库
+     */
+    public VectorStore load(List<Document> documents, UnaryOperator<List<Document>> enricher) {
+        long start = System.nanoTime();
+        Map<String, EmbeddingSnapshot.Entry> previous = snapshot.load();
+        SnapshotEmbeddingModel snapshotEmbeddingModel = new SnapshotEmbeddingModel(embeddingModel);
+        // 文档 id -> 内容哈希，内容相同的文档只保留一份
+        Map<String, String> keys = new LinkedHashMap<>();
+        List<Document> unchanged = new ArrayList<>();
+        List<Document> changed = new ArrayList<>();
+        for (Document document : documents) {
+            String key = EmbeddingSnapshot.contentKey(document.getText(), document.getMetadata());
+            String id = EmbeddingSnapshot.documentId(key);
+            if (keys.putIfAbsent(id, key) != null) {
+                continue;
+            }
+            EmbeddingSnapshot.Entry entry = previous.get(key);
+            if (entry != null) {
+                unchanged.add(Document.builder().id(id).text(entry.text()).metadata(new HashMap<>(entry.metadata())).build());
+                snapshotEmbeddingModel.put(id, entry.embedding());
+            } else {
+                changed.add(Document.builder().id(id).text(document.getText()).metadata(new HashMap<>(document.getMetadata())).build());
+            }
+        }
+        List<Document> allDocuments = new ArrayList<>(unchanged);
+        if (!changed.isEmpty()) {
+            allDocuments.addAll(enricher.apply(changed));
+        }
+        VectorStore vectorStore = vectorStoreFactory.apply(snapshotEmbeddingModel);
+        if (!allDocuments.isEmpty()) {
+            vectorStore.add(allDocuments);
+        }
+        if (!changed.isEmpty() || previous.size() != allDocuments.size()) {
+            saveSnapshot(allDocuments, keys, snapshotEmbeddingModel);
+        }
+        log.info("Vector store ready in {} ms: {} documents, {} reused from snapshot, {} enriched and embedded",
+                (System.nanoTime() - start) / 1_000_000, allDocuments.size(), unchanged.size(), changed.size());
+        return vectorStore;
+    }
+
+    private void saveSnapshot(List<Document> documents, Map<String, String> keys, SnapshotEmbeddingModel embeddings) {
+        List<EmbeddingSnapshot.Entry> entries = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            entries.add(new EmbeddingSnapshot.Entry(keys.get(document.getId()), document.getText(),
+                    document.getMetadata(), embeddings.get(document.getId())));
+        }
+        try {
+            snapshot.save(entries);
+        } catch (IOException e) {
+            // 快照只影响下次启动的速度，写入失败不影响本次服务
+            log.warn("Failed to save vector snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.List;
+
+/**
+ * 同步维护关键词索引的向量库
+ *
+ * 添加和删除文档时同时更新 Bm25Index，相似度检索仍交给被包装的向量库，
+ * 供 HybridDocumentRetriever 融合两路检索结果。
+ */
+public class KeywordIndexedVectorStore implements VectorStore {
+
+    private final VectorStore delegate;
+
+    private final Bm25Index keywordIndex;
+
+    public KeywordIndexedVectorStore(VectorStore delegate, Bm25Index keywordIndex) {
+        this.delegate = delegate;
+        this.keywordIndex = keywordIndex;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+        keywordIndex.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+        keywordIndex.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+        keywordIndex.delete(filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return delegate.similaritySearch(request);
+    }
+
+    /**
+     * 读取文档入库时的向量
+     *
+     * @param id 文档 id
+     * @return 向量，文档不存在或被包装的向量库不保留可读取的向量时返回 null
+     */
+    public float[] getEmbedding(String id) {
+        return delegate instanceof OffHeapVectorStore offHeapVectorStore ? offHeapVectorStore.getEmbedding(id) : null;
+    }
+
+    /**
+     * @return 关键词索引
+     */
+    public Bm25Index getKeywordIndex() {
+        return keywordIndex;
+    }
+}
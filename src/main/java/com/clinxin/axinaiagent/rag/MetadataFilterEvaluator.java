@@ -0,0 +1,108 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * 在内存中对文档元信息求值 Filter.Expression（用于本地向量库的元信息过滤）
+ *
+ * 支持 AND、OR、NOT、EQ、NE、GT、GTE、LT、LTE、IN、NIN；数值统一按 double 比较，
+ * 元信息中缺少的键在比较时视为不匹配（NE、NIN 视为匹配）。
+ */
+final class MetadataFilterEvaluator {
+
+    private MetadataFilterEvaluator() {
+    }
+
+    /**
+     * 元信息是否满足过滤条件
+     *
+     * @param expression 过滤条件（为空时总是满足）
+     * @param metadata   元信息
+     * @return 是否满足
+     */
+    static boolean matches(Filter.Expression expression, Map<String, Object> metadata) {
+        if (expression == null) {
+            return true;
+        }
+        return switch (expression.type()) {
+            case AND -> matches(operand(expression.left()), metadata) && matches(operand(expression.right()), metadata);
+            case OR -> matches(operand(expression.left()), metadata) || matches(operand(expression.right()), metadata);
+            case NOT -> !matches(operand(expression.left()), metadata);
+            case EQ -> valueEquals(metadata.get(key(expression)), value(expression));
+            case NE -> !valueEquals(metadata.get(key(expression)), value(expression));
+            case GT -> compare(metadata.get(key(expression)), value(expression), result -> result > 0);
+            case GTE -> compare(metadata.get(key(expression)), value(expression), result -> result >= 0);
+            case LT -> compare(metadata.get(key(expression)), value(expression), result -> result < 0);
+            case LTE -> compare(metadata.get(key(expression)), value(expression), result -> result <= 0);
+            case IN -> contains(value(expression), metadata.get(key(expression)));
+            case NIN -> !contains(value(expression), metadata.get(key(expression)));
+            default -> throw new IllegalArgumentException("Unsupported filter expression type: " + expression.type());
+        };
+    }
+
+    private static Filter.Expression operand(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return group.content();
+        }
+        if (operand instanceof Filter.Expression expression) {
+            return expression;
+        }
+        throw new IllegalArgumentException("Expected a filter expression but got " + operand);
+    }
+
+    private static String key(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key)) {
+            throw new IllegalArgumentException("Expected a metadata key but got " + expression.left());
+        }
+        String name = key.key();
+        // 文本形式的过滤条件可能带引号
+        if (name.length() >= 2 && (name.startsWith("'") && name.endsWith("'") || name.startsWith("\"") && name.endsWith("\""))) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return name;
+    }
+
+    private static Object value(Filter.Expression expression) {
+        if (!(expression.right() instanceof Filter.Value value)) {
+            throw new IllegalArgumentException("Expected a value but got " + expression.right());
+        }
+        return value.value();
+    }
+
+    private static boolean valueEquals(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return a.doubleValue() == b.doubleValue();
+        }
+        return actual != null && Objects.equals(actual.toString(), String.valueOf(expected));
+    }
+
+    /**
+     * 比较元信息与给定值，无法比较（类型不同或缺少该键）时不匹配
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static boolean compare(Object actual, Object expected, IntPredicate test) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return test.test(Double.compare(a.doubleValue(), b.doubleValue()));
+        }
+        if (actual instanceof Comparable a && expected != null && actual.getClass() == expected.getClass()) {
+            return test.test(a.compareTo(expected));
+        }
+        return false;
+    }
+
+    private static boolean contains(Object values, Object actual) {
+        Collection<?> collection = values instanceof Collection<?> c ? c : Collections.singletonList(values);
+        for (Object value : collection) {
+            if (valueEquals(actual, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
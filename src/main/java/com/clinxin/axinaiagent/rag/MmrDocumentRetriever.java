@@ -0,0 +1,286 @@
+package com.clinxin.axinaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 基于最大边际相关性（MMR）的重排序检索器
+ *
+ * 被包装的检索器多取一些候选（over-fetch），这里在本地按 MMR 逐个挑选：
+ * 每一步选出 lambda × 相关性 − (1 − lambda) × 与已选文档的最大相似度 最高的候选，
+ * 相关性为候选得分除以最高得分（没有得分时按排名），相似度为入库时向量的余弦相似度，不调用重排序模型。
+ * 同一来源文件（filename 元信息）最多选 maxPerSource 个片段，选中文档的总 token 数不超过 tokenBudget
+ * （排名第一的文档总会保留），放不下的候选跳过，继续尝试后面更短的候选。
+ * 向量库不保留可读取的向量时（如 SimpleVectorStore），每次检索调用嵌入模型批量嵌入读取不到向量的候选，
+ * 首次发生时记录警告；没有嵌入模型时这些候选视为与其他文档不相似，只按相关性参与排序。
+ *
+ * 计算只使用与候选数等长的数组，与已选文档的最大相似度在每次选中后增量更新，
+ * 总计算量为 O(候选数 × topK × 向量维度)。
+ */
+@Slf4j
+public class MmrDocumentRetriever implements DocumentRetriever {
+
+    private static final TokenCountEstimator DEFAULT_TOKEN_COUNT_ESTIMATOR = new JTokkitTokenCountEstimator();
+
+    private static final String SOURCE_METADATA_KEY = "filename";
+
+    private final DocumentRetriever delegate;
+
+    private final Function<String, float[]> embeddings;
+
+    private final int topK;
+
+    private final double lambda;
+
+    private final int maxPerSource;
+
+    private final int tokenBudget;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    private final EmbeddingModel embeddingModel;
+
+    // 是否已记录过读取不到入库向量的警告
+    private final AtomicBoolean missingEmbeddingsLogged = new AtomicBoolean();
+
+    public MmrDocumentRetriever(DocumentRetriever delegate, VectorStore vectorStore, int topK, double lambda,
+                                int maxPerSource, int tokenBudget) {
+        this(delegate, vectorStore, null, topK, lambda, maxPerSource, tokenBudget);
+    }
+
+    public MmrDocumentRetriever(DocumentRetriever delegate, VectorStore vectorStore, EmbeddingModel embeddingModel,
+                                int topK, double lambda, int maxPerSource, int tokenBudget) {
+        this(delegate, storedEmbeddings(vectorStore), embeddingModel, topK, lambda, maxPerSource, tokenBudget,
+                DEFAULT_TOKEN_COUNT_ESTIMATOR);
+    }
+
+    public MmrDocumentRetriever(DocumentRetriever delegate, Function<String, float[]> embeddings, int topK,
+                                double lambda, int maxPerSource, int tokenBudget,
+                                TokenCountEstimator tokenCountEstimator) {
+        this(delegate, embeddings, null, topK, lambda, maxPerSource, tokenBudget, tokenCountEstimator);
+    }
+
+    /**
+     * @param delegate            返回候选文档的检索器（候选数应多于 topK）
+     * @param embeddings          文档 id -> 入库时的向量，读取不到时返回 null
+     * @param embeddingModel      读取不到入库向量时用于嵌入候选的模型，为 null 时只按相关性排序这些候选
+     * @param topK                最多返回的文档数
+     * @param lambda              相关性的权重（0 ~ 1），越小越偏向多样性
+     * @param maxPerSource        同一来源文件最多返回的片段数
+     * @param tokenBudget         返回文档的总 token 数上限
+     * @param tokenCountEstimator token 数估算器
+     */
+    public MmrDocumentRetriever(DocumentRetriever delegate, Function<String, float[]> embeddings,
+                                EmbeddingModel embeddingModel, int topK, double lambda, int maxPerSource,
+                                int tokenBudget, TokenCountEstimator tokenCountEstimator) {
+        if (lambda < 0 || lambda > 1) {
+            throw new IllegalArgumentException("lambda must be between 0 and 1: " + lambda);
+        }
+        this.delegate = delegate;
+        this.embeddings = embeddings;
+        this.topK = topK;
+        this.lambda = lambda;
+        this.maxPerSource = maxPerSource;
+        this.tokenBudget = tokenBudget;
+        this.tokenCountEstimator = tokenCountEstimator;
+        this.embeddingModel = embeddingModel;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        List<Document> candidates = delegate.retrieve(query);
+        long start = System.nanoTime();
+        List<Document> selected = rerank(candidates);
+        log.debug("MMR reranking selected {} of {} candidates in {} us", selected.size(), candidates.size(),
+                (System.nanoTime() - start) / 1_000);
+        return selected;
+    }
+
+    /**
+     * 按 MMR 从候选中挑选文档
+     *
+     * @param candidates 按相关性降序的候选
+     * @return 按选中顺序排列的文档
+     */
+    List<Document> rerank(List<Document> candidates) {
+        int n = candidates.size();
+        if (n == 0) {
+            return List.of();
+        }
+        float[][] vectors = new float[n][];
+        // 向量模长的倒数，读取不到向量时为 0
+        float[] inverseNorms = new float[n];
+        float[] relevance = new float[n];
+        // 与已选文档的最大相似度
+        float[] redundancy = new float[n];
+        // 已选中或已跳过
+        boolean[] visited = new boolean[n];
+        String[] sources = new String[n];
+        int[] chosen = new int[Math.min(topK, n)];
+
+        double maxScore = 0;
+        for (Document candidate : candidates) {
+            if (candidate.getScore() != null) {
+                maxScore = Math.max(maxScore, candidate.getScore());
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Document candidate = candidates.get(i);
+            Double score = candidate.getScore();
+            relevance[i] = maxScore > 0 && score != null ? (float) (score / maxScore) : (float) (n - i) / n;
+            vectors[i] = embeddings.apply(candidate.getId());
+            Object source = candidate.getMetadata().get(SOURCE_METADATA_KEY);
+            sources[i] = source == null ? null : source.toString();
+        }
+        embedMissing(candidates, vectors);
+        for (int i = 0; i < n; i++) {
+            inverseNorms[i] = inverseNorm(vectors[i]);
+        }
+
+        int chosenCount = 0;
+        int usedTokens = 0;
+        while (chosenCount < chosen.length) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (!visited[i]) {
+                    double score = lambda * relevance[i] - (1 - lambda) * redundancy[i];
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best = i;
+                    }
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            visited[best] = true;
+            if (countSource(sources, chosen, chosenCount, sources[best]) >= maxPerSource) {
+                continue;
+            }
+            int tokens = tokenCountEstimator.estimate(Objects.requireNonNullElse(candidates.get(best).getText(), ""));
+            if (chosenCount > 0 && usedTokens + tokens > tokenBudget) {
+                continue;
+            }
+            chosen[chosenCount++] = best;
+            usedTokens += tokens;
+            if (inverseNorms[best] > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (!visited[i] && inverseNorms[i] > 0) {
+                        float similarity = dot(vectors[best], vectors[i]) * inverseNorms[best] * inverseNorms[i];
+                        redundancy[i] = Math.max(redundancy[i], similarity);
+                    }
+                }
+            }
+        }
+
+        List<Document> selected = new ArrayList<>(chosenCount);
+        for (int i = 0; i < chosenCount; i++) {
+            selected.add(candidates.get(chosen[i]));
+        }
+        return selected;
+    }
+
+    /**
+     * 为读取不到入库向量的候选补上向量（一次批量调用嵌入模型），没有嵌入模型时保持为 null
+     */
+    private void embedMissing(List<Document> candidates, float[][] vectors) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] == null) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        if (embeddingModel == null) {
+            if (missingEmbeddingsLogged.compareAndSet(false, true)) {
+                log.warn("Stored embeddings are unavailable for {} of {} candidates and no embedding model is configured, "
+                        + "MMR reranking falls back to relevance order for them", missing.size(), vectors.length);
+            }
+            return;
+        }
+        if (missingEmbeddingsLogged.compareAndSet(false, true)) {
+            log.warn("Stored embeddings are unavailable for {} of {} candidates, embedding candidates on every query "
+                    + "for MMR reranking (use the off-heap vector store to avoid the extra calls)",
+                    missing.size(), vectors.length);
+        }
+        List<String> texts = new ArrayList<>(missing.size());
+        for (int i : missing) {
+            texts.add(Objects.requireNonNullElse(candidates.get(i).getText(), ""));
+        }
+        List<float[]> embedded = embeddingModel.embed(texts);
+        for (int i = 0; i < missing.size(); i++) {
+            vectors[missing.get(i)] = embedded.get(i);
+        }
+    }
+
+    private static int countSource(String[] sources, int[] chosen, int chosenCount, String source) {
+        if (source == null) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < chosenCount; i++) {
+            if (source.equals(sources[chosen[i]])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 向量模长的倒数（入库向量已归一化时为 1），向量为空或全零时返回 0
+     */
+    private static float inverseNorm(float[] vector) {
+        if (vector == null) {
+            return 0;
+        }
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        return sum == 0 ? 0 : (float) (1 / Math.sqrt(sum));
+    }
+
+    private static float dot(float[] a, float[] b) {
+        // 维度不一致（如更换嵌入模型期间）视为不相似
+        if (a.length != b.length) {
+            return 0;
+        }
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 从向量库读取入库时的向量：堆外向量库直接读取索引，其他向量库不保留可读取的向量，返回 null
+     * （此时由构造时传入的嵌入模型补上候选的向量）
+     *
+     * @param vectorStore 向量库
+     * @return 文档 id -> 向量
+     */
+    public static Function<String, float[]> storedEmbeddings(VectorStore vectorStore) {
+        if (vectorStore instanceof KeywordIndexedVectorStore keywordIndexedVectorStore) {
+            return keywordIndexedVectorStore::getEmbedding;
+        }
+        if (vectorStore instanceof OffHeapVectorStore offHeapVectorStore) {
+            return offHeapVectorStore::getEmbedding;
+        }
+        return id -> null;
+    }
+}
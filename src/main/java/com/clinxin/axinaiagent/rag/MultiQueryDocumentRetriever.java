@@ -0,0 +1,181 @@
+package com.clinxin.axinaiagent.rag;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 多查询扩展的并行检索器
+ *
+ * 用 QueryExpander 把问题扩展为多个查询，每个查询的向量检索和关键词检索（可选）作为独立分支并发执行：
+ * 原问题的分支与扩展同时开始，扩展完成后再启动扩展查询的分支。所有分支共享一个总耗时预算，
+ * 预算用完时取消扩展和未完成的分支，只使用已完成的结果；单个分支失败不影响其他分支。
+ * 各分支的结果先按 id 去重，再按规范化后的文本去重（同一段落以不同 id 入库的情况），最后按倒数排名融合。
+ * 查询上下文中的 FILTER_EXPRESSION 优先于构造时的过滤条件，作用于所有分支。
+ */
+@Slf4j
+public class MultiQueryDocumentRetriever implements DocumentRetriever {
+
+    // 检索以 I/O 为主（嵌入请求、向量库），每个分支使用独立的虚拟线程
+    private static final ExecutorService BRANCH_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("rag-branch-", 0).factory());
+
+    private final QueryExpander queryExpander;
+
+    private final VectorStore vectorStore;
+
+    private final Bm25Index keywordIndex;
+
+    private final int topK;
+
+    // 每个分支的候选数
+    private final int candidates;
+
+    private final double similarityThreshold;
+
+    private final Filter.Expression filterExpression;
+
+    private final Duration latencyBudget;
+
+    /**
+     * @param queryExpander       查询扩展器（返回的查询不必包含原问题）
+     * @param vectorStore         向量库
+     * @param keywordIndex        关键词索引（为空时只做向量检索）
+     * @param topK                返回的文档数
+     * @param candidates          每个分支的候选数
+     * @param similarityThreshold 向量检索的相似度阈值
+     * @param filterExpression    元信息过滤条件（为空时不过滤）
+     * @param latencyBudget       扩展和全部分支的总耗时预算
+     */
+    public MultiQueryDocumentRetriever(QueryExpander queryExpander, VectorStore vectorStore, Bm25Index keywordIndex,
+                                       int topK, int candidates, double similarityThreshold,
+                                       Filter.Expression filterExpression, Duration latencyBudget) {
+        this.queryExpander = queryExpander;
+        this.vectorStore = vectorStore;
+        this.keywordIndex = keywordIndex;
+        this.topK = topK;
+        this.candidates = Math.max(topK, candidates);
+        this.similarityThreshold = similarityThreshold;
+        this.filterExpression = filterExpression;
+        this.latencyBudget = latencyBudget;
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        long deadline = System.nanoTime() + latencyBudget.toNanos();
+        // 扩展出的查询不一定保留上下文，过滤条件按原问题计算一次
+        Filter.Expression requestFilter = HybridDocumentRetriever.filterExpression(query, filterExpression);
+        Future<List<Query>> expansion = BRANCH_EXECUTOR.submit(() -> queryExpander.expand(query));
+        List<Future<List<Document>>> branches = new ArrayList<>(submitBranches(query, requestFilter));
+        Set<String> searched = new HashSet<>();
+        searched.add(query.text().trim());
+        List<Query> expanded = await(expansion, deadline, "expansion");
+        if (expanded != null) {
+            for (Query expandedQuery : expanded) {
+                // 扩展结果可能包含原问题或重复的查询
+                if (searched.add(expandedQuery.text().trim())) {
+                    branches.addAll(submitBranches(expandedQuery, requestFilter));
+                }
+            }
+        }
+        List<List<Document>> rankings = new ArrayList<>(branches.size());
+        int cancelled = 0;
+        for (Future<List<Document>> branch : branches) {
+            List<Document> ranking = await(branch, deadline, "branch");
+            if (ranking != null) {
+                rankings.add(ranking);
+            } else if (branch.isCancelled()) {
+                cancelled++;
+            }
+        }
+        log.info("Multi-query retrieval: {} queries, {} of {} branches completed, {} cancelled",
+                searched.size(), rankings.size(), branches.size(), cancelled);
+        return HybridDocumentRetriever.fuse(deduplicate(rankings), HybridDocumentRetriever.DEFAULT_RRF_K, topK);
+    }
+
+    /**
+     * 启动一个查询的向量检索分支和关键词检索分支
+     */
+    private List<Future<List<Document>>> submitBranches(Query query, Filter.Expression filterExpression) {
+        List<Future<List<Document>>> branches = new ArrayList<>(2);
+        branches.add(BRANCH_EXECUTOR.submit(() -> vectorStore.similaritySearch(SearchRequest.builder()
+                .query(query.text())
+                .topK(candidates)
+                .similarityThreshold(similarityThreshold)
+                .filterExpression(filterExpression)
+                .build())));
+        if (keywordIndex != null) {
+            branches.add(BRANCH_EXECUTOR.submit(() -> keywordIndex.search(query.text(), candidates, filterExpression)));
+        }
+        return branches;
+    }
+
+    /**
+     * 在截止时间前等待结果，超时则取消
+     *
+     * @return 结果，超时或失败时返回 null
+     */
+    private static <T> T await(Future<T> future, long deadline, String stage) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Multi-query retrieval {} failed: {}", stage, e.getCause().getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * 去重：同一 id 或规范化后文本相同的文档统一为最先出现的版本，同一路结果中重复的文档只保留排名最高的一次
+     *
+     * @param rankings 各分支的结果
+     * @return 去重后的结果
+     */
+    static List<List<Document>> deduplicate(List<List<Document>> rankings) {
+        Map<String, Document> byId = new HashMap<>();
+        Map<String, Document> byContent = new HashMap<>();
+        List<List<Document>> deduplicated = new ArrayList<>(rankings.size());
+        for (List<Document> ranking : rankings) {
+            List<Document> unique = new ArrayList<>(ranking.size());
+            Set<String> seen = new HashSet<>();
+            for (Document document : ranking) {
+                Document canonical = byId.get(document.getId());
+                if (canonical == null) {
+                    String content = document.getText() == null ? "" : document.getText().strip().replaceAll("\\s+", " ");
+                    canonical = byContent.computeIfAbsent(content, key -> document);
+                    byId.put(document.getId(), canonical);
+                }
+                if (seen.add(canonical.getId())) {
+                    unique.add(canonical);
+                }
+            }
+            deduplicated.add(unique);
+        }
+        return deduplicated;
+    }
+}
@@ -14,11 +14,14 @@ import java.util.List;
 @Component
 public class MyKeywordEnricher {
 
+    // 每个文档提取的关键词个数
+    static final int KEYWORD_COUNT = 5;
+
     @Resource
     private ChatModel dashscopeChatModel;
 
     public List<Document> enrichDocuments(List<Document> documents) {
-        KeywordMetadataEnricher keywordMetadataEnricher = new KeywordMetadataEnricher(dashscopeChatModel, 5);
+        KeywordMetadataEnricher keywordMetadataEnricher = new KeywordMetadataEnricher(dashscopeChatModel, KEYWORD_COUNT);
         return keywordMetadataEnricher.apply(documents);
     }
 }
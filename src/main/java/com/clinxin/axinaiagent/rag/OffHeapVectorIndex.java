@@ -0,0 +1,315 @@
+package com.clinxin.axinaiagent.rag;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * 堆外暴力检索向量索引
+ *
+ * 向量归一化后以 float32 连续存放在直接内存的分块中（每块最多 CHUNK_VECTORS 个向量，最后一块按需倍增），
+ * 余弦相似度即点积；检索时顺序扫描所有存活槽位，用基本类型的小顶堆保留前 K 个结果。
+ * 删除的槽位进入空闲列表供后续添加复用。
+ *
+ * 非线程安全，由调用方加锁（见 OffHeapVectorStore）。
+ */
+public class OffHeapVectorIndex {
+
+    // 单个分块最多容纳的向量数
+    private static final int CHUNK_VECTORS = 16384;
+
+    // 最后一个分块的初始容量
+    private static final int INITIAL_CHUNK_VECTORS = 64;
+
+    private final int dimensions;
+
+    private final int vectorBytes;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    // 已分配的槽位数（含已删除的槽位）
+    private int slots;
+
+    private final BitSet live = new BitSet();
+
+    private int[] freeSlots = new int[16];
+
+    private int freeCount;
+
+    /**
+     * @param dimensions 向量维度
+     */
+    public OffHeapVectorIndex(int dimensions) {
+        this.dimensions = dimensions;
+        this.vectorBytes = dimensions * Float.BYTES;
+    }
+
+    /**
+     * 检索结果（按相似度降序）
+     *
+     * @param slots  槽位
+     * @param scores 余弦相似度
+     */
+    public record Hits(int[] slots, float[] scores) {
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * @return 存活的向量数
+     */
+    public int size() {
+        return live.cardinality();
+    }
+
+    /**
+     * 添加向量
+     *
+     * @param vector 向量（不会被修改）
+     * @return 槽位
+     */
+    public int add(float[] vector) {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : slots++;
+        set(slot, vector);
+        return slot;
+    }
+
+    /**
+     * 覆盖槽位上的向量
+     *
+     * @param slot   槽位
+     * @param vector 向量（不会被修改）
+     */
+    public void set(int slot, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        ByteBuffer chunk = chunkFor(slot);
+        int base = (slot % CHUNK_VECTORS) * vectorBytes;
+        float norm = norm(vector);
+        for (int i = 0; i < dimensions; i++) {
+            chunk.putFloat(base + i * Float.BYTES, vector[i] * norm);
+        }
+        live.set(slot);
+    }
+
+    /**
+     * 删除槽位，槽位会被后续添加复用
+     *
+     * @param slot 槽位
+     */
+    public void remove(int slot) {
+        if (!live.get(slot)) {
+            return;
+        }
+        live.clear(slot);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * 读取槽位上归一化后的向量
+     */
+    public float[] get(int slot) {
+        ByteBuffer chunk = chunks.get(slot / CHUNK_VECTORS);
+        int base = (slot % CHUNK_VECTORS) * vectorBytes;
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = chunk.getFloat(base + i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * 检索最相似的向量
+     *
+     * @param query    查询向量
+     * @param topK     返回条数
+     * @param minScore 最低相似度
+     * @param filter   槽位过滤条件（为空时不过滤）
+     * @return 按相似度降序的结果
+     */
+    public Hits search(float[] query, int topK, float minScore, IntPredicate filter) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions but got " + query.length);
+        }
+        float[] normalized = query.clone();
+        float norm = norm(normalized);
+        for (int i = 0; i < dimensions; i++) {
+            normalized[i] *= norm;
+        }
+        TopK top = new TopK(Math.max(0, topK));
+        if (topK <= 0) {
+            return top.toHits();
+        }
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            if (filter != null && !filter.test(slot)) {
+                continue;
+            }
+            float score = dot(chunks.get(slot / CHUNK_VECTORS), (slot % CHUNK_VECTORS) * vectorBytes, normalized);
+            if (score >= minScore) {
+                top.offer(slot, score);
+            }
+        }
+        return top.toHits();
+    }
+
+    /**
+     * 获取槽位所在的分块，必要时新建或扩容最后一个分块
+     */
+    private ByteBuffer chunkFor(int slot) {
+        int chunkIndex = slot / CHUNK_VECTORS;
+        int offset = slot % CHUNK_VECTORS;
+        while (chunks.size() <= chunkIndex) {
+            // 前一个分块扩到满容量后再新建分块
+            if (!chunks.isEmpty()) {
+                grow(chunks.size() - 1, CHUNK_VECTORS);
+            }
+            chunks.add(allocate(Math.min(INITIAL_CHUNK_VECTORS, CHUNK_VECTORS)));
+        }
+        ByteBuffer chunk = chunks.get(chunkIndex);
+        if ((offset + 1) * vectorBytes > chunk.capacity()) {
+            int capacity = chunk.capacity() / vectorBytes;
+            while (capacity <= offset) {
+                capacity *= 2;
+            }
+            chunk = grow(chunkIndex, Math.min(capacity, CHUNK_VECTORS));
+        }
+        return chunk;
+    }
+
+    private ByteBuffer grow(int chunkIndex, int vectors) {
+        ByteBuffer old = chunks.get(chunkIndex);
+        if (old.capacity() >= vectors * vectorBytes) {
+            return old;
+        }
+        ByteBuffer grown = allocate(vectors);
+        grown.put(0, old, 0, old.capacity());
+        chunks.set(chunkIndex, grown);
+        return grown;
+    }
+
+    private ByteBuffer allocate(int vectors) {
+        return ByteBuffer.allocateDirect(vectors * vectorBytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return 归一化系数（零向量返回 0）
+     */
+    private static float norm(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return sum == 0 ? 0 : (float) (1 / Math.sqrt(sum));
+    }
+
+    /**
+     * 点积，四路累加便于 JIT 展开和向量化
+     */
+    private static float dot(ByteBuffer chunk, int base, float[] query) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int n = query.length;
+        int upper = n & ~3;
+        int i = 0;
+        for (; i < upper; i += 4) {
+            int offset = base + i * Float.BYTES;
+            s0 += chunk.getFloat(offset) * query[i];
+            s1 += chunk.getFloat(offset + 4) * query[i + 1];
+            s2 += chunk.getFloat(offset + 8) * query[i + 2];
+            s3 += chunk.getFloat(offset + 12) * query[i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += chunk.getFloat(base + i * Float.BYTES) * query[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    /**
+     * 基本类型小顶堆，堆顶为当前第 K 名
+     */
+    static final class TopK {
+
+        private final int[] slots;
+
+        private final float[] scores;
+
+        private int size;
+
+        TopK(int k) {
+            this.slots = new int[k];
+            this.scores = new float[k];
+        }
+
+        void offer(int slot, float score) {
+            if (size < slots.length) {
+                slots[size] = slot;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                slots[0] = slot;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        Hits toHits() {
+            // 依次弹出堆顶，从后往前填充得到降序结果
+            int count = size;
+            int[] sortedSlots = new int[count];
+            float[] sortedScores = new float[count];
+            for (int i = count - 1; i >= 0; i--) {
+                sortedSlots[i] = slots[0];
+                sortedScores[i] = scores[0];
+                size--;
+                slots[0] = slots[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return new Hits(sortedSlots, sortedScores);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[parent] <= scores[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int left = index * 2 + 1;
+                if (left >= size) {
+                    return;
+                }
+                int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+                if (scores[index] <= scores[smallest]) {
+                    return;
+                }
+                swap(index, smallest);
+                index = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int slot = slots[a];
+            slots[a] = slots[b];
+            slots[b] = slot;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptionsBuilder;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于堆外暴力检索索引的内存向量库（替代 SimpleVectorStore）
+ *
+ * 向量保存在 OffHeapVectorIndex 的直接内存中，堆上只保留文档文本和元信息；
+ * 检索支持与 SimpleVectorStore 相同的 Filter.Expression 元信息过滤，返回结果带相似度得分和 distance 元信息。
+ * 读写锁保护索引：检索并发执行，添加和删除互斥；嵌入在锁外完成。
+ */
+public class OffHeapVectorStore implements VectorStore {
+
+    private final EmbeddingModel embeddingModel;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 首次添加时按向量维度创建
+    private OffHeapVectorIndex index;
+
+    // 槽位 -> 文档（不含向量）
+    private Document[] documents = new Document[64];
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+
+    public OffHeapVectorStore(EmbeddingModel embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    @Override
+    public void add(List<Document> documentList) {
+        if (documentList.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documentList, EmbeddingOptionsBuilder.builder().build(),
+                new TokenCountBatchingStrategy());
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                index = new OffHeapVectorIndex(embeddings.get(0).length);
+            }
+            for (int i = 0; i < documentList.size(); i++) {
+                Document document = documentList.get(i);
+                Integer slot = slotsById.get(document.getId());
+                if (slot != null) {
+                    // 相同 id 覆盖原文档
+                    index.set(slot, embeddings.get(i));
+                } else {
+                    slot = index.add(embeddings.get(i));
+                    slotsById.put(document.getId(), slot);
+                }
+                if (slot >= documents.length) {
+                    documents = Arrays.copyOf(documents, Math.max(slot + 1, documents.length * 2));
+                }
+                documents[slot] = document;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer slot = slotsById.remove(id);
+                if (slot != null) {
+                    index.remove(slot);
+                    documents[slot] = null;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Integer> entry : slotsById.entrySet()) {
+                if (MetadataFilterEvaluator.matches(filterExpression, documents[entry.getValue()].getMetadata())) {
+                    ids.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(ids);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = embeddingModel.embed(request.getQuery());
+        Filter.Expression filterExpression = request.getFilterExpression();
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return List.of();
+            }
+            Document[] snapshot = documents;
+            IntPredicate filter = filterExpression == null ? null
+                    : slot -> MetadataFilterEvaluator.matches(filterExpression, snapshot[slot].getMetadata());
+            OffHeapVectorIndex.Hits hits = index.search(query, request.getTopK(),
+                    (float) request.getSimilarityThreshold(), filter);
+            List<Document> results = new ArrayList<>(hits.slots().length);
+            for (int i = 0; i < hits.slots().length; i++) {
+                Document document = snapshot[hits.slots()[i]];
+                double score = hits.scores()[i];
+                Map<String, Object> metadata = new HashMap<>(document.getMetadata());
+                metadata.put("distance", 1 - score);
+                results.add(Document.builder()
+                        .id(document.getId())
+                        .text(document.getText())
+                        .metadata(metadata)
+                        .score(score)
+                        .build());
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 读取文档入库时的向量（已归一化），供检索后的重排序直接使用，不再调用嵌入模型
+     *
+     * @param id 文档 id
+     * @return 向量，文档不存在时返回 null
+     */
+    public float[] getEmbedding(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsById.get(id);
+            return slot == null ? null : index.get(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 文档数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
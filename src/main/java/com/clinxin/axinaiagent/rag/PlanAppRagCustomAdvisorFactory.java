@@ -29,11 +29,15 @@ public class PlanAppRagCustomAdvisorFactory {
                 .vectorStore(vectorStore)
                 .filterExpression(expression)
                 .similarityThreshold(0.2)
-                .topK(3)
+                .topK(12)
                 .build();
 
+        // 多取候选后按 MMR 选出 3 个：同一文件最多 2 个片段，总长度不超过 1500 token
+        MmrDocumentRetriever mmrDocumentRetriever = new MmrDocumentRetriever(documentRetriever, vectorStore,
+                3, 0.7, 2, 1500);
+
         return RetrievalAugmentationAdvisor.builder()
-                .documentRetriever(documentRetriever)
+                .documentRetriever(mmrDocumentRetriever)
                 .queryAugmenter(PlanAppContextualQueryAugmenterFactory.createInstance())
                 .build();
     }
@@ -1,15 +1,36 @@
 package com.clinxin.axinaiagent.rag;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.RetrievalAugmentationAdvisor;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.rag.generation.augmentation.ContextualQueryAugmenter;
+import org.springframework.ai.rag.preretrieval.query.expansion.MultiQueryExpander;
+import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * 计划大师向量数据库配置（初始化基于内存的向量数据库）
@@ -17,6 +38,9 @@ import java.util.List;
 @Configuration
 public class PlanAppVectorStoreConfig {
 
+    // 构建中的检索状态：结果只包含已入库的文档（需在 management.endpoint.health.status.order 中登记）
+    static final Status DEGRADED = new Status("DEGRADED", "Vector store is still being built");
+
     @Resource
     private PlanAppDocumenyLoader planAppDocumenyLoader;
 
@@ -26,19 +50,183 @@ public class PlanAppVectorStoreConfig {
     @Resource
     private MyKeywordEnricher myKeywordEnricher;
 
+    @Value("${plan-app.vector-store.snapshot-enabled:true}")
+    private boolean snapshotEnabled;
+
+    @Value("${spring.ai.dashscope.embedding.options.model:text-embedding-v1}")
+    private String embeddingModelName;
+
+    @Value("${spring.ai.dashscope.embedding.options.text-type:document}")
+    private String embeddingTextType;
+
+    @Value("${plan-app.vector-store.off-heap:true}")
+    private boolean offHeap;
+
+    @Value("${plan-app.ingestion.split-enabled:false}")
+    private boolean splitEnabled;
+
+    @Value("${plan-app.retrieval.hybrid:true}")
+    private boolean hybrid;
+
+    @Value("${plan-app.retrieval.top-k:4}")
+    private int topK;
+
+    @Value("${plan-app.retrieval.multi-query.enabled:false}")
+    private boolean multiQuery;
+
+    @Value("${plan-app.retrieval.multi-query.number-of-queries:3}")
+    private int numberOfQueries;
+
+    @Value("${plan-app.retrieval.multi-query.latency-budget-ms:3000}")
+    private long latencyBudgetMillis;
+
+    @Value("${plan-app.retrieval.rerank.enabled:true}")
+    private boolean rerank;
+
+    @Value("${plan-app.retrieval.rerank.candidates:12}")
+    private int rerankCandidates;
+
+    @Value("${plan-app.retrieval.rerank.lambda:0.7}")
+    private double rerankLambda;
+
+    @Value("${plan-app.retrieval.rerank.max-per-source:2}")
+    private int maxPerSource;
+
+    @Value("${plan-app.retrieval.rerank.token-budget:1500}")
+    private int tokenBudget;
+
+    @Value("${plan-app.rewrite.enabled:true}")
+    private boolean rewriteEnabled;
+
+    @Value("${plan-app.rewrite.mode:SPECULATIVE}")
+    private RewritingDocumentRetriever.Mode rewriteMode;
+
+    /**
+     * 计划大师文档的 BM25 关键词索引（随向量库一起添加和删除文档）
+     */
     @Bean
-    VectorStore planAppVectorStore(EmbeddingModel dashscopeEmbeddingModel) {
-        SimpleVectorStore simpleVectorStore = SimpleVectorStore
-                .builder(dashscopeEmbeddingModel)
+    Bm25Index planAppKeywordIndex() {
+        return new Bm25Index();
+    }
+
+    /**
+     * 知识库问答顾问：默认融合向量检索和关键词检索，关闭时只使用向量检索；
+     * 开启查询重写时检索前先改写问题（回答仍基于原问题）；
+     * 开启多查询扩展时改为扩展出多个查询并行检索（扩展已包含改写的作用，不再单独重写）；
+     * 开启重排序时先多取候选，再按 MMR 挑选内容不重复的 topK 个文档
+     */
+    @Bean
+    Advisor planAppRagAdvisor(VectorStore planAppVectorStore, Bm25Index planAppKeywordIndex, QueryRewriter queryRewriter,
+                              ChatModel dashscopeChatModel, EmbeddingModel dashscopeEmbeddingModel,
+                              MeterRegistry meterRegistry) {
+        // 重排序前的候选数
+        int candidates = rerank ? Math.max(topK, rerankCandidates) : topK;
+        DocumentRetriever documentRetriever;
+        if (multiQuery) {
+            QueryExpander queryExpander = MultiQueryExpander.builder()
+                    .chatClientBuilder(ChatClient.builder(dashscopeChatModel))
+                    .numberOfQueries(numberOfQueries)
+                    .build();
+            documentRetriever = new MultiQueryDocumentRetriever(queryExpander, planAppVectorStore,
+                    hybrid ? planAppKeywordIndex : null, candidates, candidates * 2,
+                    SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, Duration.ofMillis(latencyBudgetMillis));
+        } else if (hybrid) {
+            documentRetriever = new HybridDocumentRetriever(planAppVectorStore, planAppKeywordIndex, candidates);
+        } else {
+            documentRetriever = VectorStoreDocumentRetriever.builder().vectorStore(planAppVectorStore).topK(candidates).build();
+        }
+        if (rewriteEnabled && !multiQuery) {
+            documentRetriever = new RewritingDocumentRetriever(queryRewriter, documentRetriever, rewriteMode, candidates,
+                    meterRegistry);
+        }
+        if (rerank) {
+            // 关闭堆外向量库时读取不到入库向量，改为每次检索嵌入候选
+            documentRetriever = new MmrDocumentRetriever(documentRetriever, planAppVectorStore, dashscopeEmbeddingModel,
+                    topK, rerankLambda, maxPerSource, tokenBudget);
+        }
+        return RetrievalAugmentationAdvisor.builder()
+                .documentRetriever(documentRetriever)
+                // 与 QuestionAnswerAdvisor 一致，没有检索到文档时照常回答
+                .queryAugmenter(ContextualQueryAugmenter.builder().allowEmptyContext(true).build())
                 .build();
-        // 加载文档
-        List<Document> documents = planAppDocumenyLoader.loadMarkdownDocuments();
-        // 自主切分文档
-        // List<Document> splitDocument = myTokenTextSplitter.splitCustomized(documents);
+    }
+
+    /**
+     * 后台构建向量库的流水线（启动时不阻塞，构建完成前检索处于降级状态）
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "plan-app.ingestion", name = "enabled", havingValue = "true", matchIfMissing = true)
+    EmbeddingIngestionPipeline planAppIngestionPipeline(EmbeddingModel dashscopeEmbeddingModel, MeterRegistry meterRegistry,
+            @Value("${plan-app.ingestion.batch-size:16}") int batchSize,
+            @Value("${plan-app.ingestion.queue-capacity:4}") int queueCapacity,
+            @Value("${plan-app.ingestion.split-threads:1}") int splitThreads,
+            @Value("${plan-app.ingestion.enrich-threads:4}") int enrichThreads,
+            @Value("${plan-app.ingestion.embed-threads:2}") int embedThreads,
+            @Value("${plan-app.ingestion.index-threads:1}") int indexThreads,
+            @Value("${plan-app.ingestion.max-attempts:3}") int maxAttempts,
+            @Value("${plan-app.ingestion.retry-base-delay-ms:1000}") long retryBaseDelayMillis) {
+        EmbeddingIngestionPipeline.Settings settings = new EmbeddingIngestionPipeline.Settings(batchSize, queueCapacity,
+                splitThreads, enrichThreads, embedThreads, indexThreads, maxAttempts, retryBaseDelayMillis);
+        EmbeddingIngestionPipeline pipeline = new EmbeddingIngestionPipeline(dashscopeEmbeddingModel,
+                vectorStoreFactory(), snapshotEnabled ? snapshot(dashscopeEmbeddingModel) : null, settings, meterRegistry);
+        pipeline.start(planAppDocumenyLoader::loadMarkdownDocuments, splitter(), myKeywordEnricher::enrichDocuments);
+        return pipeline;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "plan-app.ingestion", name = "enabled", havingValue = "true", matchIfMissing = true)
+    HealthIndicator planAppVectorStoreHealthIndicator(EmbeddingIngestionPipeline planAppIngestionPipeline) {
+        return () -> {
+            Health.Builder builder = switch (planAppIngestionPipeline.getState()) {
+                case RUNNING -> Health.status(DEGRADED);
+                case READY -> Health.up();
+                case FAILED -> Health.down();
+            };
+            return builder.withDetails(planAppIngestionPipeline.getProgress()).build();
+        };
+    }
+
+    @Bean
+    VectorStore planAppVectorStore(EmbeddingModel dashscopeEmbeddingModel,
+                                   ObjectProvider<EmbeddingIngestionPipeline> planAppIngestionPipeline) {
+        EmbeddingIngestionPipeline pipeline = planAppIngestionPipeline.getIfAvailable();
+        if (pipeline != null) {
+            return pipeline.getVectorStore();
+        }
+        // 关闭后台构建时在启动线程上同步构建
+        Function<EmbeddingModel, VectorStore> vectorStoreFactory = vectorStoreFactory();
+        if (snapshotEnabled) {
+            // 从快照增量构建，只有新增或修改的文档才调用增强器和嵌入模型
+            return new IncrementalVectorStoreLoader(dashscopeEmbeddingModel, snapshot(dashscopeEmbeddingModel), vectorStoreFactory)
+                    .load(splitter().apply(planAppDocumenyLoader.loadMarkdownDocuments()), myKeywordEnricher::enrichDocuments);
+        }
+        VectorStore vectorStore = vectorStoreFactory.apply(dashscopeEmbeddingModel);
+        // 加载文档（开启切分时自主切分）
+        List<Document> documents = splitter().apply(planAppDocumenyLoader.loadMarkdownDocuments());
         // 自动补充关键词元信息
         List<Document> enrichDocuments = myKeywordEnricher.enrichDocuments(documents);
-        simpleVectorStore.add(enrichDocuments);
-        return simpleVectorStore;
+        vectorStore.add(enrichDocuments);
+        return vectorStore;
+    }
+
+    private Function<EmbeddingModel, VectorStore> vectorStoreFactory() {
+        // 默认使用堆外向量索引，关闭时退回 SimpleVectorStore；添加的文档同时写入关键词索引
+        Bm25Index keywordIndex = planAppKeywordIndex();
+        return embeddingModel -> new KeywordIndexedVectorStore(offHeap ? new OffHeapVectorStore(embeddingModel)
+                : SimpleVectorStore.builder(embeddingModel).build(), keywordIndex);
+    }
+
+    private UnaryOperator<List<Document>> splitter() {
+        return splitEnabled ? myTokenTextSplitter::splitCustomized : UnaryOperator.identity();
+    }
+
+    private EmbeddingSnapshot snapshot(EmbeddingModel embeddingModel) {
+        // 指纹包含影响增强和嵌入结果的配置（模型实现、模型名称与选项、向量维度等），变化时快照作废
+        String fingerprint = embeddingModel.getClass().getName() + ";model=" + embeddingModelName
+                + ";textType=" + embeddingTextType + ";dimensions=" + embeddingModel.dimensions()
+                + ";keywords=" + MyKeywordEnricher.KEYWORD_COUNT + (splitEnabled ? ";split=customized" : "");
+        return new EmbeddingSnapshot(
+                Paths.get(System.getProperty("user.dir"), "tmp", "vector-store", "plan-app.snapshot"), fingerprint);
     }
 }
 
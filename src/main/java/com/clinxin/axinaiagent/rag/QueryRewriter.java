@@ -1,26 +1,75 @@
 package com.clinxin.axinaiagent.rag;
 
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.rag.Query;
 import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
 import org.springframework.ai.rag.preretrieval.query.transformation.RewriteQueryTransformer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 查询重写器
+ *
+ * 重写是一次阻塞的模型调用，因此先经过两道过滤：
+ * 去除空白后不足 minChars 个字符的短问题、不含口语化词语（fillerWords）的问题已经足够具体，直接使用原问题；
+ * 其余问题的重写结果按规范化后的原问题缓存（LRU，最多 cacheSize 条）。
  */
 @Component
 public class QueryRewriter {
 
     private final QueryTransformer queryTransformer;
 
-    public QueryRewriter(ChatModel dashscopeChatModel) {
-        ChatClient.Builder builder = ChatClient.builder(dashscopeChatModel);
-        queryTransformer = RewriteQueryTransformer.builder()
-                .chatClientBuilder(builder)
-                .build();
+    private final int cacheSize;
+
+    private final int minChars;
+
+    private final List<String> fillerWords;
+
+    // 按访问顺序排列的 LRU 缓存，由 this 同步
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter skippedCounter;
+
+    private final Counter cachedCounter;
+
+    private final Counter rewrittenCounter;
+
+    @Autowired
+    public QueryRewriter(ChatModel dashscopeChatModel, MeterRegistry meterRegistry,
+                         @Value("${plan-app.rewrite.cache-size:1000}") int cacheSize,
+                         @Value("${plan-app.rewrite.min-chars:12}") int minChars,
+                         @Value("${plan-app.rewrite.filler-words:请问,帮我,我想,我该,怎么办,能不能,可不可以,有没有}")
+                         List<String> fillerWords) {
+        this(RewriteQueryTransformer.builder()
+                .chatClientBuilder(ChatClient.builder(dashscopeChatModel))
+                .build(), meterRegistry, cacheSize, minChars, fillerWords);
+    }
+
+    /**
+     * @param queryTransformer 实际执行重写的查询转换器
+     * @param meterRegistry    指标注册表
+     * @param cacheSize        重写结果缓存的最大条数
+     * @param minChars         需要重写的问题的最少字符数
+     * @param fillerWords      口语化词语，问题中出现时才重写
+     */
+    QueryRewriter(QueryTransformer queryTransformer, MeterRegistry meterRegistry, int cacheSize, int minChars,
+                  List<String> fillerWords) {
+        this.queryTransformer = queryTransformer;
+        this.cacheSize = cacheSize;
+        this.minChars = minChars;
+        this.fillerWords = List.copyOf(fillerWords);
+        this.skippedCounter = meterRegistry.counter("rag.rewrite", "result", "skipped");
+        this.cachedCounter = meterRegistry.counter("rag.rewrite", "result", "cached");
+        this.rewrittenCounter = meterRegistry.counter("rag.rewrite", "result", "rewritten");
     }
 
     /**
@@ -30,10 +79,65 @@ public class QueryRewriter {
      * @return
      */
     public String doQueryRewrite(String prompt) {
+        String quick = rewriteWithoutModel(prompt);
+        if (quick != null) {
+            return quick;
+        }
         Query query = new Query(prompt);
         // 执行查询重写
         Query transformedQuery = queryTransformer.transform(query);
+        rewrittenCounter.increment();
+        synchronized (this) {
+            cache.put(normalize(prompt), transformedQuery.text());
+            if (cache.size() > cacheSize) {
+                Map.Entry<String, String> eldest = cache.entrySet().iterator().next();
+                cache.remove(eldest.getKey());
+            }
+        }
         // 输出重写后的查询
         return transformedQuery.text();
     }
+
+    /**
+     * 不调用模型的重写：不需要重写的问题返回原问题，已缓存的问题返回缓存的重写结果
+     *
+     * @param prompt 原问题
+     * @return 重写后的问题，需要调用模型重写时返回 null
+     */
+    public String rewriteWithoutModel(String prompt) {
+        if (!shouldRewrite(prompt)) {
+            skippedCounter.increment();
+            return prompt;
+        }
+        String cached;
+        synchronized (this) {
+            cached = cache.get(normalize(prompt));
+        }
+        if (cached != null) {
+            cachedCounter.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * 问题是否需要重写（短问题和不含口语化词语的问题不重写）
+     */
+    boolean shouldRewrite(String prompt) {
+        if (prompt == null) {
+            return false;
+        }
+        String normalized = normalize(prompt);
+        String compact = normalized.replace(" ", "");
+        if (compact.codePointCount(0, compact.length()) < minChars) {
+            return false;
+        }
+        return fillerWords.stream().anyMatch(normalized::contains);
+    }
+
+    /**
+     * 规范化：去除首尾空白并合并连续空白
+     */
+    private static String normalize(String prompt) {
+        return prompt.trim().replaceAll("\\s+", " ");
+    }
 }
@@ -0,0 +1,156 @@
+package com.clinxin.axinaiagent.rag;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 先重写查询再检索的文档检索器
+ *
+ * 不需要重写的问题直接用原问题检索。其余问题按模式处理：
+ * SERIAL 等待重写完成后用改写后的问题检索；
+ * SPECULATIVE 在重写的同时用原问题检索，重写完成后再用改写后的问题检索，两次结果按倒数排名融合，
+ * 重写失败时退回原问题的结果。
+ * 已缓存重写结果的问题（见 QueryRewriter#rewriteWithoutModel）不发起模型调用，检索方式与未缓存时相同。
+ *
+ * 各阶段耗时记录到 rag.stage.duration（stage 为 rewrite、retrieve.original、retrieve.rewritten、retrieval）。
+ */
+@Slf4j
+public class RewritingDocumentRetriever implements DocumentRetriever {
+
+    // 检索以 I/O 为主（嵌入请求、向量库），每次投机检索使用独立的虚拟线程
+    private static final ExecutorService RETRIEVAL_EXECUTOR = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("rag-retrieve-", 0).factory());
+
+    /**
+     * 需要重写时的处理方式
+     */
+    public enum Mode {
+        SERIAL,
+        SPECULATIVE
+    }
+
+    private final QueryRewriter queryRewriter;
+
+    private final DocumentRetriever delegate;
+
+    private final Mode mode;
+
+    private final int topK;
+
+    private final Timer rewriteTimer;
+
+    private final Timer originalRetrieveTimer;
+
+    private final Timer rewrittenRetrieveTimer;
+
+    private final Timer retrievalTimer;
+
+    /**
+     * @param queryRewriter 查询重写器
+     * @param delegate      实际执行检索的文档检索器
+     * @param mode          需要重写时的处理方式
+     * @param topK          投机模式融合后返回的文档数
+     * @param meterRegistry 指标注册表
+     */
+    public RewritingDocumentRetriever(QueryRewriter queryRewriter, DocumentRetriever delegate, Mode mode, int topK,
+                                      MeterRegistry meterRegistry) {
+        this.queryRewriter = queryRewriter;
+        this.delegate = delegate;
+        this.mode = mode;
+        this.topK = topK;
+        this.rewriteTimer = stageTimer(meterRegistry, "rewrite");
+        this.originalRetrieveTimer = stageTimer(meterRegistry, "retrieve.original");
+        this.rewrittenRetrieveTimer = stageTimer(meterRegistry, "retrieve.rewritten");
+        this.retrievalTimer = stageTimer(meterRegistry, "retrieval");
+    }
+
+    @Override
+    public List<Document> retrieve(Query query) {
+        long start = System.nanoTime();
+        try {
+            String cached = queryRewriter.rewriteWithoutModel(query.text());
+            if (query.text().equals(cached)) {
+                return timed(originalRetrieveTimer, query);
+            }
+            return mode == Mode.SPECULATIVE ? speculative(query, cached) : serial(query, cached);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            retrievalTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("RAG retrieval took {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+    }
+
+    /**
+     * @param cached 缓存的重写结果（为空时调用模型重写）
+     */
+    private List<Document> serial(Query query, String cached) {
+        String rewritten = cached != null ? cached : rewrite(query.text());
+        return timed(rewrittenRetrieveTimer, query.mutate().text(rewritten).build());
+    }
+
+    /**
+     * @param cached 缓存的重写结果（为空时调用模型重写）
+     */
+    private List<Document> speculative(Query query, String cached) {
+        CompletableFuture<List<Document>> original = CompletableFuture.supplyAsync(
+                () -> timed(originalRetrieveTimer, query), RETRIEVAL_EXECUTOR);
+        String rewritten;
+        try {
+            rewritten = cached != null ? cached : rewrite(query.text());
+        } catch (RuntimeException e) {
+            log.warn("Query rewrite failed, using original query results: {}", e.getMessage());
+            return join(original);
+        }
+        if (rewritten.equals(query.text())) {
+            return join(original);
+        }
+        List<Document> rewrittenResults = timed(rewrittenRetrieveTimer, query.mutate().text(rewritten).build());
+        // 改写后的结果在前：得分相同时优先保留
+        return HybridDocumentRetriever.fuse(List.of(rewrittenResults, join(original)),
+                HybridDocumentRetriever.DEFAULT_RRF_K, topK);
+    }
+
+    private String rewrite(String text) {
+        long start = System.nanoTime();
+        try {
+            return queryRewriter.doQueryRewrite(text);
+        } finally {
+            rewriteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<Document> timed(Timer timer, Query query) {
+        long start = System.nanoTime();
+        try {
+            return delegate.retrieve(query);
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static List<Document> join(CompletableFuture<List<Document>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder("rag.stage.duration").tag("stage", stage).register(meterRegistry);
+    }
+}
@@ -0,0 +1,96 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 优先使用已知向量的嵌入模型
+ *
+ * 向量库添加文档时，按文档 id 返回快照中的向量，只有未知文档才调用真实的嵌入模型，
+ * 新算出的向量也记录下来用于写回快照。查询文本等其他调用直接交给真实模型。
+ */
+class SnapshotEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    // 文档 id -> 向量
+    private final Map<String, float[]> embeddings = new ConcurrentHashMap<>();
+
+    SnapshotEmbeddingModel(EmbeddingModel delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 登记已知向量
+     */
+    void put(String documentId, float[] embedding) {
+        embeddings.put(documentId, embedding);
+    }
+
+    /**
+     * 获取文档的向量（已知或新算出的）
+     */
+    float[] get(String documentId) {
+        return embeddings.get(documentId);
+    }
+
+    /**
+     * 清空已知向量（写回快照后释放内存）
+     */
+    void clear() {
+        embeddings.clear();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        float[] embedding = embeddings.get(document.getId());
+        if (embedding == null) {
+            // 不在 computeIfAbsent 中调用远程模型，避免长时间持有桶锁
+            embedding = delegate.embed(document);
+            embeddings.put(document.getId(), embedding);
+        }
+        return embedding;
+    }
+
+    @Override
+    public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+        List<Document> missing = documents.stream()
+                .filter(document -> !embeddings.containsKey(document.getId()))
+                .toList();
+        if (!missing.isEmpty()) {
+            // 未知文档仍按批次交给真实模型
+            List<float[]> computed = delegate.embed(missing, options, batchingStrategy);
+            for (int i = 0; i < missing.size(); i++) {
+                embeddings.put(missing.get(i).getId(), computed.get(i));
+            }
+        }
+        List<float[]> result = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            result.add(embeddings.get(document.getId()));
+        }
+        return result;
+    }
+
+    @Override
+    public int dimensions() {
+        // 默认实现会发起一次嵌入请求，有已知向量时直接返回其维度
+        for (float[] embedding : embeddings.values()) {
+            return embedding.length;
+        }
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,47 @@
+package com.clinxin.axinaiagent.tools;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.time.Duration;
+
+/**
+ * 带结果缓存的工具回调（未命中时委托给实际的工具回调执行）
+ */
+public class CachingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+
+    private final ToolResultCache toolResultCache;
+
+    private final Duration ttl;
+
+    public CachingToolCallback(ToolCallback delegate, ToolResultCache toolResultCache, Duration ttl) {
+        this.delegate = delegate;
+        this.toolResultCache = toolResultCache;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return toolResultCache.get(getToolDefinition().name(), toolInput, ttl, () -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return toolResultCache.get(getToolDefinition().name(), toolInput, ttl,
+                () -> delegate.call(toolInput, toolContext));
+    }
+}
@@ -0,0 +1,176 @@
+package com.clinxin.axinaiagent.tools;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 命令执行器
+ *
+ * 按平台选择 shell，在固定的工作目录中执行命令；stdout 和 stderr 由两个线程同时读取到定长缓冲区，
+ * 避免管道写满导致进程阻塞；超过时限或调用被取消时终止整个进程树。
+ */
+@Slf4j
+public class CommandExecutor {
+
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("win");
+
+    // 子进程输出使用的本地编码（Windows 命令行通常为 GBK）
+    private static final Charset NATIVE_CHARSET = Charset.forName(
+            System.getProperty("native.encoding", Charset.defaultCharset().name()));
+
+    // 不传给子进程的环境变量（密钥、令牌等）
+    private static final Pattern SECRET_ENV = Pattern.compile("(?i).*(KEY|SECRET|TOKEN|PASSWORD|CREDENTIAL).*");
+
+    // 进程结束后等待输出读取完成的时间
+    private static final long DRAIN_WAIT_MILLIS = 2000;
+
+    private final File workingDir;
+
+    private final Duration timeout;
+
+    private final int maxOutputChars;
+
+    /**
+     * @param workingDir     工作目录
+     * @param timeout        最长执行时间
+     * @param maxOutputChars stdout 和 stderr 各自保留的最大字符数
+     */
+    public CommandExecutor(File workingDir, Duration timeout, int maxOutputChars) {
+        this.workingDir = workingDir;
+        this.timeout = timeout;
+        this.maxOutputChars = maxOutputChars;
+    }
+
+    /**
+     * 执行命令
+     *
+     * @param command        命令
+     * @param outputListener 增量输出的监听器（stdout 和 stderr 都会推送）
+     * @return 执行结果
+     */
+    public CommandResult execute(String command, Consumer<String> outputListener) throws IOException {
+        workingDir.mkdirs();
+        ProcessBuilder builder = new ProcessBuilder(shellCommand(command)).directory(workingDir);
+        builder.environment().keySet().removeIf(name -> SECRET_ENV.matcher(name).matches());
+        Process process = builder.start();
+        // 不提供标准输入，等待输入的命令会直接读到结束
+        process.getOutputStream().close();
+        OutputRingBuffer stdout = new OutputRingBuffer(maxOutputChars);
+        OutputRingBuffer stderr = new OutputRingBuffer(maxOutputChars);
+        Thread stdoutDrainer = drain(process.getInputStream(), stdout, outputListener, "terminal-stdout");
+        Thread stderrDrainer = drain(process.getErrorStream(), stderr, outputListener, "terminal-stderr");
+        boolean timedOut = false;
+        try {
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+                log.warn("Command timed out after {}s, killing process tree: {}", timeout.toSeconds(), command);
+                destroyTree(process);
+            }
+            stdoutDrainer.join(DRAIN_WAIT_MILLIS);
+            stderrDrainer.join(DRAIN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            // 工具调用被取消
+            destroyTree(process);
+            Thread.currentThread().interrupt();
+            throw new IOException("Command cancelled: " + command, e);
+        } finally {
+            stopDraining(process, stdoutDrainer, stderrDrainer);
+        }
+        int exitCode = timedOut ? -1 : process.exitValue();
+        return new CommandResult(exitCode, timedOut, stdout.toString(), stderr.toString(),
+                stdout.getDropped(), stderr.getDropped());
+    }
+
+    /**
+     * 按平台包装为 shell 命令
+     *
+     * @param command 命令
+     * @return 进程参数
+     */
+    static List<String> shellCommand(String command) {
+        return WINDOWS ? List.of("cmd.exe", "/c", command) : List.of("/bin/sh", "-c", command);
+    }
+
+    /**
+     * 终止进程及其全部子进程
+     */
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * 等待超时后输出仍未结束（如后台孙进程继承了输出管道）时关闭管道并中断读取线程，避免线程泄漏
+     */
+    private static void stopDraining(Process process, Thread... drainers) {
+        boolean draining = false;
+        for (Thread drainer : drainers) {
+            draining |= drainer.isAlive();
+        }
+        if (!draining) {
+            return;
+        }
+        log.warn("Process output still open after {} ms, closing streams", DRAIN_WAIT_MILLIS);
+        closeQuietly(process.getInputStream());
+        closeQuietly(process.getErrorStream());
+        for (Thread drainer : drainers) {
+            drainer.interrupt();
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Failed to close process stream: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在后台线程中读取输出流
+     */
+    private static Thread drain(InputStream stream, OutputRingBuffer buffer, Consumer<String> outputListener,
+                                String name) {
+        return Thread.ofVirtual().name(name).start(() -> {
+            char[] chunk = new char[4096];
+            try (Reader reader = new InputStreamReader(stream, NATIVE_CHARSET)) {
+                int read;
+                while ((read = reader.read(chunk)) != -1) {
+                    buffer.append(chunk, 0, read);
+                    if (outputListener != null) {
+                        outputListener.accept(new String(chunk, 0, read));
+                    }
+                }
+            } catch (IOException e) {
+                // 进程被终止时流会被关闭
+                log.debug("Stopped reading {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 命令执行结果
+     *
+     * @param exitCode       退出码（超时时为 -1）
+     * @param timedOut       是否超时被终止
+     * @param stdout         标准输出（末尾部分）
+     * @param stderr         标准错误（末尾部分）
+     * @param droppedStdout  丢弃的标准输出字符数
+     * @param droppedStderr  丢弃的标准错误字符数
+     */
+    public record CommandResult(int exitCode, boolean timedOut, String stdout, String stderr,
+                                long droppedStdout, long droppedStderr) {
+    }
+}
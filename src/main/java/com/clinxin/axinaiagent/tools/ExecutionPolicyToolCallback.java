@@ -0,0 +1,74 @@
+package com.clinxin.axinaiagent.tools;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.time.Duration;
+
+/**
+ * 携带执行策略的工具回调（委托给实际的工具回调执行）
+ */
+public class ExecutionPolicyToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+
+    private final boolean parallel;
+
+    private final Duration timeout;
+
+    private final boolean readOnly;
+
+    public ExecutionPolicyToolCallback(ToolCallback delegate, boolean parallel, Duration timeout) {
+        this(delegate, parallel, timeout, false);
+    }
+
+    public ExecutionPolicyToolCallback(ToolCallback delegate, boolean parallel, Duration timeout, boolean readOnly) {
+        this.delegate = delegate;
+        this.parallel = parallel;
+        this.timeout = timeout;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return delegate.call(toolInput);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return delegate.call(toolInput, toolContext);
+    }
+
+    /**
+     * 是否允许并发执行
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * 单次调用的超时时间
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * 是否为只读（无副作用、可重复执行）的工具
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+}
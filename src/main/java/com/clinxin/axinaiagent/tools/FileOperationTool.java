@@ -1,39 +1,225 @@
 package com.clinxin.axinaiagent.tools;
 
-import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
 import com.clinxin.axinaiagent.constant.FileConstant;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
 /**
  * 文件操作工具类（提供文件读写功能）
+ *
+ * 所有文件都限制在 FILE_SAVE_DIR/file 目录下；读取和搜索按窗口分块读入后逐行扫描，输出有字符上限，
+ * 超出时提示从哪里继续读取；覆盖写入先写临时文件再原子替换。
  */
 public class FileOperationTool {
 
     private final String FILE_DIR = FileConstant.FILE_SAVE_DIR + "/file";
 
-    @Tool(description = "Read content from a file")
-    public String readFile(@ToolParam(description = "Name of file to read") String fileName) {
-        String filePath = FILE_DIR + "/" + fileName;
+    // 默认单次输出的最大字符数
+    private static final int DEFAULT_MAX_OUTPUT_CHARS = 16000;
+
+    // 默认单次读取的最大行数
+    private static final int DEFAULT_MAX_LINES = 500;
+
+    // 默认最多返回的匹配行数
+    private static final int DEFAULT_MAX_MATCHES = 100;
+
+    private final int maxOutputChars;
+
+    public FileOperationTool() {
+        this(DEFAULT_MAX_OUTPUT_CHARS);
+    }
+
+    /**
+     * @param maxOutputChars 单次输出的最大字符数
+     */
+    public FileOperationTool(int maxOutputChars) {
+        this.maxOutputChars = maxOutputChars;
+    }
+
+    public String readFile(String fileName) {
+        return readFile(fileName, null, null);
+    }
+
+    @ToolExecution(timeoutSeconds = 30, readOnly = true)
+    @Tool(description = "Read lines from a file. Large files are returned in windows; continue with the startLine given in the result")
+    public String readFile(@ToolParam(description = "Name of file to read") String fileName,
+                           @ToolParam(description = "First line to read, starting from 1", required = false) Long startLine,
+                           @ToolParam(description = "Maximum number of lines to read", required = false) Integer maxLines) {
+        long firstLine = startLine == null || startLine < 1 ? 1 : startLine;
+        int lineLimit = maxLines == null || maxLines < 1 ? DEFAULT_MAX_LINES : maxLines;
+        try {
+            Path path = resolve(fileName);
+            StringBuilder output = new StringBuilder();
+            long[] lastLine = {firstLine - 1};
+            boolean[] more = {false};
+            WindowedFileReader.forEachLine(path, (lineNumber, line) -> {
+                if (lineNumber < firstLine) {
+                    return true;
+                }
+                if (lineNumber >= firstLine + lineLimit) {
+                    more[0] = true;
+                    return false;
+                }
+                String text = WindowedFileReader.decode(line);
+                if (output.length() + text.length() + 1 > maxOutputChars && lineNumber > firstLine) {
+                    more[0] = true;
+                    return false;
+                }
+                output.append(StrUtil.maxLength(text, maxOutputChars)).append('\n');
+                lastLine[0] = lineNumber;
+                return true;
+            });
+            if (firstLine == 1 && !more[0]) {
+                // 整个文件一次读完，保持原始内容
+                return output.toString();
+            }
+            output.insert(0, "[Lines " + firstLine + "-" + lastLine[0] + " of " + fileName + ", "
+                    + Files.size(path) + " bytes]\n");
+            if (more[0]) {
+                output.append("[More lines available, continue with startLine=").append(lastLine[0] + 1).append(']');
+            }
+            return output.toString();
+        } catch (Exception e) {
+            return "Error reading file: " + e.getMessage();
+        }
+    }
+
+    @ToolExecution(timeoutSeconds = 30, readOnly = true)
+    @Tool(description = "Read a byte range of a file, useful for binary-like or single-line large files")
+    public String readFileRange(@ToolParam(description = "Name of file to read") String fileName,
+                                @ToolParam(description = "Byte offset to start reading from") long offset,
+                                @ToolParam(description = "Maximum number of bytes to read") int length) {
         try {
-            return FileUtil.readUtf8String(filePath);
+            Path path = resolve(fileName);
+            long size = Files.size(path);
+            // 字节数不超过字符上限，解码后的字符数也不会超过
+            int limit = Math.min(length, maxOutputChars);
+            String text = WindowedFileReader.readRange(path, Math.max(0, offset), limit);
+            long end = Math.max(0, offset) + limit;
+            return text + (end < size ? "\n[Bytes " + offset + "-" + end + " of " + size + "]" : "");
         } catch (Exception e) {
             return "Error reading file: " + e.getMessage();
         }
     }
 
+    @ToolExecution(timeoutSeconds = 60, readOnly = true)
+    @Tool(description = "Search a file for lines matching a regular expression, returning line numbers and matching lines")
+    public String grepFile(@ToolParam(description = "Name of file to search") String fileName,
+                           @ToolParam(description = "Regular expression to search for") String pattern,
+                           @ToolParam(description = "Maximum number of matching lines to return", required = false) Integer maxMatches) {
+        int matchLimit = maxMatches == null || maxMatches < 1 ? DEFAULT_MAX_MATCHES : maxMatches;
+        try {
+            Path path = resolve(fileName);
+            Pattern regex = Pattern.compile(pattern);
+            StringBuilder output = new StringBuilder();
+            int[] matches = {0};
+            boolean[] truncated = {false};
+            WindowedFileReader.forEachLine(path, (lineNumber, line) -> {
+                String text = WindowedFileReader.matchLine(line, regex);
+                if (text == null) {
+                    return true;
+                }
+                String entry = lineNumber + ": " + text + "\n";
+                if (matches[0] >= matchLimit || output.length() + entry.length() > maxOutputChars) {
+                    truncated[0] = true;
+                    return false;
+                }
+                output.append(entry);
+                matches[0]++;
+                return true;
+            });
+            if (matches[0] == 0) {
+                return "No lines matching " + pattern + " in " + fileName;
+            }
+            if (truncated[0]) {
+                output.append("[Stopped after ").append(matches[0]).append(" matches, narrow the pattern or read by line]");
+            }
+            return output.toString();
+        } catch (Exception e) {
+            return "Error searching file: " + e.getMessage();
+        }
+    }
+
+    public String writeFile(String fileName, String content) {
+        return writeFile(fileName, content, false);
+    }
+
+    @ToolExecution(parallel = false, timeoutSeconds = 30)
+    @Tool(description = "Write content to a file, replacing it or appending to it")
     public String writeFile(
             @ToolParam(description = "Name of the file to write") String fileName,
-            @ToolParam(description = "Content to write to the file") String content) {
-
-        String filePath = FILE_DIR + "/" + fileName;
+            @ToolParam(description = "Content to write to the file") String content,
+            @ToolParam(description = "Append to the end of the file instead of replacing it", required = false) Boolean append) {
         try {
+            Path path = resolve(fileName);
             // 创建目录
-            FileUtil.mkdir(FILE_DIR);
-            FileUtil.writeUtf8String(content, filePath);
-            return "File written successfully to: " + filePath;
+            Files.createDirectories(path.getParent());
+            if (Boolean.TRUE.equals(append)) {
+                Files.writeString(path, content, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } else {
+                // 先写临时文件再原子替换，写入中途失败不会破坏原文件
+                Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+                Files.writeString(temp, content, StandardCharsets.UTF_8);
+                try {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    // 文件系统不支持原子替换时退回普通替换
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return "File written successfully to: " + path;
         } catch (Exception e) {
             return "Error writing to file: " + e.getMessage();
         }
     }
+
+    /**
+     * 解析文件路径，不允许超出文件目录
+     *
+     * @param fileName 文件名（可包含子目录）
+     * @return 文件路径
+     */
+    Path resolve(String fileName) throws IOException {
+        Path root = Paths.get(FILE_DIR).toAbsolutePath().normalize();
+        Path path = root.resolve(fileName).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IOException("Access denied: " + fileName + " is outside the file directory");
+        }
+        // 按真实路径再检查一次，防止通过符号链接（包括尚不存在的文件所在的目录）逃逸
+        if (!realPath(path).startsWith(realPath(root))) {
+            throw new IOException("Access denied: " + fileName + " is outside the file directory");
+        }
+        return path;
+    }
+
+    /**
+     * 解析最近一个已存在的上级路径的真实路径，再拼接尚不存在的部分
+     *
+     * @param path 规范化后的绝对路径
+     * @return 真实路径
+     */
+    private static Path realPath(Path path) throws IOException {
+        Path existing = path;
+        while (existing != null && !Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+        }
+        if (existing == null) {
+            return path;
+        }
+        // 指向不存在目标的符号链接在这里抛出 NoSuchFileException，不会被当作普通的新文件
+        return existing.toRealPath().resolve(existing.relativize(path));
+    }
 }
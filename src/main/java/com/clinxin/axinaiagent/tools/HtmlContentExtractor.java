@@ -0,0 +1,321 @@
+package com.clinxin.axinaiagent.tools;
+
+import cn.hutool.core.util.StrUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 网页正文提取器
+ *
+ * 去除脚本、样式、导航、页眉页脚等无关内容，选出正文区域并转换为精简的 Markdown 文本，
+ * 再按 token 上限分页，避免整页 HTML 直接进入智能体的消息上下文。
+ */
+public class HtmlContentExtractor {
+
+    // 与正文无关、直接丢弃的元素
+    private static final String BOILERPLATE_SELECTOR = String.join(", ",
+            "script", "style", "noscript", "template", "svg", "canvas", "iframe", "object", "embed",
+            "form", "button", "input", "select", "textarea", "nav", "footer", "aside",
+            "[role=navigation]", "[role=banner]", "[role=contentinfo]", "[role=complementary]",
+            "[aria-hidden=true]", "[hidden]");
+
+    // 正文容器：其中的 header 是文章自己的标题区，予以保留，其他 header 视为页眉丢弃
+    private static final String CONTENT_CONTAINER_SELECTOR = "article, main, section, [role=main]";
+
+    // 可能包含正文的容器，按优先级排列
+    private static final String[] MAIN_CONTENT_SELECTORS = {"main", "[role=main]", "article", "#content", ".content"};
+
+    // 正文容器的最少文字数，不足时回退到整个 body
+    private static final int MIN_MAIN_CONTENT_CHARS = 200;
+
+    // 前后需要换段的块级元素
+    private static final Set<String> BLOCK_TAGS = Set.of("p", "div", "section", "article", "main", "blockquote",
+            "table", "ul", "ol", "dl", "figure", "figcaption", "details", "summary", "dd", "dt");
+
+    private static final Set<String> HEADING_TAGS = Set.of("h1", "h2", "h3", "h4", "h5", "h6");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final TokenCountEstimator DEFAULT_ESTIMATOR = new JTokkitTokenCountEstimator();
+
+    private final int maxPageTokens;
+
+    private final int maxChars;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    /**
+     * @param maxPageTokens 每页的最大 token 数
+     * @param maxChars      提取文本的最大字符数，超出部分截断
+     */
+    public HtmlContentExtractor(int maxPageTokens, int maxChars) {
+        this(maxPageTokens, maxChars, DEFAULT_ESTIMATOR);
+    }
+
+    public HtmlContentExtractor(int maxPageTokens, int maxChars, TokenCountEstimator tokenCountEstimator) {
+        this.maxPageTokens = maxPageTokens;
+        this.maxChars = maxChars;
+        this.tokenCountEstimator = tokenCountEstimator;
+    }
+
+    /**
+     * 提取正文并分页
+     *
+     * @param document 网页文档（会被修改）
+     * @return 分页后的正文，至少一页
+     */
+    public List<String> extractPages(Document document) {
+        return paginate(toMarkdown(document));
+    }
+
+    /**
+     * 提取正文并转换为 Markdown 文本
+     *
+     * @param document 网页文档（会被修改）
+     * @return 正文文本
+     */
+    public String toMarkdown(Document document) {
+        document.select(BOILERPLATE_SELECTOR).remove();
+        removePageHeaders(document);
+        Element content = selectMainContent(document);
+        MarkdownBuilder builder = new MarkdownBuilder(maxChars);
+        content.filter(builder);
+        String text = builder.toString();
+        String title = document.title();
+        if (StrUtil.isNotBlank(title) && !text.startsWith("# ")) {
+            text = "# " + title.trim() + "\n\n" + text;
+        }
+        return builder.truncated ? text + "\n\n[内容过长，已截断]" : text;
+    }
+
+    /**
+     * 按段落把文本切分成不超过 token 上限的若干页
+     *
+     * @param text 文本
+     * @return 分页结果，至少一页
+     */
+    public List<String> paginate(String text) {
+        List<String> pages = new ArrayList<>();
+        StringBuilder page = new StringBuilder();
+        int pageTokens = 0;
+        for (String block : text.split("\n\n")) {
+            if (block.isBlank()) {
+                continue;
+            }
+            int blockTokens = tokenCountEstimator.estimate(block);
+            if (blockTokens > maxPageTokens) {
+                // 单个段落超出上限时按比例切成多段
+                int pieceChars = Math.max(1, (int) ((long) block.length() * maxPageTokens / blockTokens));
+                for (int start = 0; start < block.length(); start += pieceChars) {
+                    String piece = block.substring(start, Math.min(block.length(), start + pieceChars));
+                    pageTokens = appendBlock(pages, page, pageTokens, piece, tokenCountEstimator.estimate(piece));
+                }
+                continue;
+            }
+            pageTokens = appendBlock(pages, page, pageTokens, block, blockTokens);
+        }
+        if (!page.isEmpty() || pages.isEmpty()) {
+            pages.add(page.toString());
+        }
+        return pages;
+    }
+
+    private int appendBlock(List<String> pages, StringBuilder page, int pageTokens, String block, int blockTokens) {
+        if (!page.isEmpty() && pageTokens + blockTokens > maxPageTokens) {
+            pages.add(page.toString());
+            page.setLength(0);
+            pageTokens = 0;
+        }
+        if (!page.isEmpty()) {
+            page.append("\n\n");
+        }
+        page.append(block);
+        return pageTokens + blockTokens;
+    }
+
+    /**
+     * 丢弃页眉（不在正文容器内的 header）
+     */
+    private static void removePageHeaders(Document document) {
+        for (Element header : document.select("header")) {
+            if (header.closest(CONTENT_CONTAINER_SELECTOR) == null) {
+                header.remove();
+            }
+        }
+    }
+
+    /**
+     * 选出正文区域，找不到足够长的正文容器时使用 body
+     */
+    private static Element selectMainContent(Document document) {
+        for (String selector : MAIN_CONTENT_SELECTORS) {
+            Element candidate = document.selectFirst(selector);
+            if (candidate != null && candidate.text().length() >= MIN_MAIN_CONTENT_CHARS) {
+                return candidate;
+            }
+        }
+        return document.body() != null ? document.body() : document;
+    }
+
+    /**
+     * 遍历节点生成 Markdown 文本
+     */
+    private static class MarkdownBuilder implements NodeFilter {
+
+        private final StringBuilder out = new StringBuilder();
+
+        private final int maxChars;
+
+        private boolean truncated;
+
+        MarkdownBuilder(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public FilterResult head(Node node, int depth) {
+            if (truncated || out.length() >= maxChars) {
+                truncated = true;
+                return FilterResult.STOP;
+            }
+            if (node instanceof TextNode textNode) {
+                appendText(textNode.text());
+                return FilterResult.CONTINUE;
+            }
+            if (!(node instanceof Element element)) {
+                return FilterResult.CONTINUE;
+            }
+            String tag = element.normalName();
+            switch (tag) {
+                case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                    newBlock();
+                    out.append("#".repeat(tag.charAt(1) - '0')).append(' ');
+                }
+                case "li" -> {
+                    newLine();
+                    out.append("- ");
+                }
+                case "tr" -> newLine();
+                case "td", "th" -> appendText(" ");
+                case "br" -> newLine();
+                case "pre" -> {
+                    newBlock();
+                    out.append("```\n");
+                    append(element.wholeText().strip());
+                    out.append("\n```");
+                    newBlock();
+                    return FilterResult.SKIP_CHILDREN;
+                }
+                case "img" -> {
+                    // 只保留有说明文字的图片
+                    String alt = element.attr("alt");
+                    if (StrUtil.isNotBlank(alt)) {
+                        appendText("[图片: " + alt.trim() + "]");
+                    }
+                }
+                default -> {
+                    if (BLOCK_TAGS.contains(tag)) {
+                        newBlock();
+                    }
+                }
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        @Override
+        public FilterResult tail(Node node, int depth) {
+            if (node instanceof Element element) {
+                String tag = element.normalName();
+                if (BLOCK_TAGS.contains(tag) || HEADING_TAGS.contains(tag)) {
+                    newBlock();
+                }
+            }
+            return FilterResult.CONTINUE;
+        }
+
+        private void appendText(String text) {
+            String normalized = WHITESPACE.matcher(text).replaceAll(" ");
+            if (normalized.isEmpty() || (normalized.equals(" ") && endsWithWhitespace())) {
+                return;
+            }
+            if (normalized.startsWith(" ") && endsWithWhitespace()) {
+                normalized = normalized.substring(1);
+            }
+            append(normalized);
+        }
+
+        /**
+         * 追加文本，超出字符上限的部分截断（单个超长文本节点也不会超出上限）
+         */
+        private void append(String text) {
+            int room = maxChars - out.length();
+            if (text.length() <= room) {
+                out.append(text);
+                return;
+            }
+            if (room > 0 && Character.isHighSurrogate(text.charAt(room - 1))) {
+                room--;
+            }
+            if (room > 0) {
+                out.append(text, 0, room);
+            }
+            truncated = true;
+        }
+
+        private boolean endsWithWhitespace() {
+            return out.isEmpty() || Character.isWhitespace(out.charAt(out.length() - 1));
+        }
+
+        private void newLine() {
+            trimTrailingSpaces();
+            if (!out.isEmpty() && out.charAt(out.length() - 1) != '\n') {
+                out.append('\n');
+            }
+        }
+
+        private void newBlock() {
+            if (endsWithMarker()) {
+                // 列表项、标题内的块级元素不再换段
+                return;
+            }
+            trimTrailingSpaces();
+            if (out.isEmpty()) {
+                return;
+            }
+            if (out.charAt(out.length() - 1) != '\n') {
+                out.append('\n');
+            }
+            if (out.length() < 2 || out.charAt(out.length() - 2) != '\n') {
+                out.append('\n');
+            }
+        }
+
+        private boolean endsWithMarker() {
+            int length = out.length();
+            return length >= 2 && out.charAt(length - 1) == ' '
+                    && (out.charAt(length - 2) == '-' || out.charAt(length - 2) == '#');
+        }
+
+        private void trimTrailingSpaces() {
+            while (!out.isEmpty() && out.charAt(out.length() - 1) == ' ') {
+                out.setLength(out.length() - 1);
+            }
+        }
+
+        @Override
+        public String toString() {
+            // 去掉只有列表符号的空行
+            return out.toString().replaceAll("(?m)^- *$\\n?", "").replaceAll("\n{3,}", "\n\n").strip();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.clinxin.axinaiagent.tools;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.List;
+import com.itextpdf.layout.element.ListItem;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.ListNumberingType;
+import com.itextpdf.layout.properties.UnitValue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Markdown 转 PDF 渲染器
+ *
+ * 逐行读取 Markdown，按块（标题、段落、列表、表格、代码块）添加到文档，不把全文放进一个元素；
+ * 文档开启即时刷新，写满的页面立即输出，长表格使用 iText 的大表格模式分批刷新，
+ * 因此内存占用与文档页数无关。字体程序在所有文档间共享，每个文档只创建轻量的 PdfFont。
+ * 渲染器无状态，可以被多个线程同时使用。
+ */
+@Slf4j
+public class MarkdownPdfRenderer {
+
+    // 内置中文字体（需要 font-asian）
+    private static final String CJK_FONT = "STSongStd-Light";
+
+    private static final String CJK_ENCODING = "UniGB-UCS2-H";
+
+    // 大表格每攒够这么多行刷新一次
+    private static final int TABLE_FLUSH_ROWS = 50;
+
+    // 代码块每攒够这么多行输出一段
+    private static final int CODE_FLUSH_LINES = 100;
+
+    private static final float[] HEADING_SIZES = {22, 18, 15, 13, 12, 11};
+
+    private static final Pattern HEADING = Pattern.compile("^(#{1,6})\\s+(.*)$");
+
+    private static final Pattern UNORDERED_ITEM = Pattern.compile("^\\s*[-*+]\\s+(.*)$");
+
+    private static final Pattern ORDERED_ITEM = Pattern.compile("^\\s*\\d+[.)]\\s+(.*)$");
+
+    private static final Pattern TABLE_SEPARATOR = Pattern.compile("^\\s*\\|?\\s*:?-{3,}:?\\s*(\\|\\s*:?-{3,}:?\\s*)*\\|?\\s*$");
+
+    private static final Pattern INLINE_MARKUP = Pattern.compile("\\*\\*|__|`");
+
+    // 字体程序缓存（FontProgram 可在文档间共享，PdfFont 不行），不可用的字体缓存为空
+    private static final Map<String, Optional<FontProgram>> FONT_PROGRAMS = new ConcurrentHashMap<>();
+
+    /**
+     * 渲染 Markdown 到输出流
+     *
+     * @param markdown Markdown 内容
+     * @param out      输出流
+     * @return 生成的页数
+     */
+    public int render(Reader markdown, OutputStream out) throws IOException {
+        try (PdfDocument pdf = new PdfDocument(new PdfWriter(out));
+             Document document = new Document(pdf, PageSize.A4, true)) {
+            document.setFont(createFont());
+            new BlockWriter(document).write(new BufferedReader(markdown));
+            return pdf.getNumberOfPages();
+        }
+    }
+
+    /**
+     * 为单个文档创建字体，中文字体不可用时退回 Helvetica
+     */
+    private static PdfFont createFont() throws IOException {
+        FontProgram cjk = fontProgram(CJK_FONT);
+        if (cjk != null) {
+            return PdfFontFactory.createFont(cjk, CJK_ENCODING);
+        }
+        return PdfFontFactory.createFont(fontProgram(StandardFonts.HELVETICA));
+    }
+
+    private static FontProgram fontProgram(String name) {
+        return FONT_PROGRAMS.computeIfAbsent(name, key -> {
+            try {
+                return Optional.of(FontProgramFactory.createFont(key));
+            } catch (Exception e) {
+                log.warn("Font {} is not available: {}", key, e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    private static String stripInline(String text) {
+        return INLINE_MARKUP.matcher(text).replaceAll("").trim();
+    }
+
+    /**
+     * 逐行解析 Markdown 并输出块，同一时刻只保留当前块的内容
+     */
+    private static class BlockWriter {
+
+        private final Document document;
+
+        private final StringBuilder paragraph = new StringBuilder();
+
+        private List list;
+
+        private boolean orderedList;
+
+        private Table table;
+
+        private int tableColumns;
+
+        private int tableRows;
+
+        private java.util.List<String> code;
+
+        BlockWriter(Document document) {
+            this.document = document;
+        }
+
+        void write(BufferedReader reader) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writeLine(line);
+            }
+            // 未闭合的代码块
+            flushCode();
+            flushAll();
+        }
+
+        private void writeLine(String line) {
+            if (code != null) {
+                if (line.trim().startsWith("```")) {
+                    flushCode();
+                    code = null;
+                } else {
+                    code.add(line);
+                    if (code.size() >= CODE_FLUSH_LINES) {
+                        flushCode();
+                    }
+                }
+                return;
+            }
+            String trimmed = line.trim();
+            if (trimmed.startsWith("```")) {
+                flushAll();
+                code = new ArrayList<>();
+                return;
+            }
+            if (trimmed.isEmpty()) {
+                flushAll();
+                return;
+            }
+            if (trimmed.equals("---") || trimmed.equals("\\newpage")) {
+                flushAll();
+                if (trimmed.equals("\\newpage")) {
+                    document.add(new AreaBreak());
+                }
+                return;
+            }
+            Matcher heading = HEADING.matcher(trimmed);
+            if (heading.matches()) {
+                flushAll();
+                int level = heading.group(1).length();
+                document.add(new Paragraph(stripInline(heading.group(2)))
+                        .setFontSize(HEADING_SIZES[level - 1])
+                        .simulateBold()
+                        .setMarginTop(level <= 2 ? 12 : 8));
+                return;
+            }
+            if (trimmed.startsWith("|")) {
+                writeTableRow(trimmed);
+                return;
+            }
+            Matcher unordered = UNORDERED_ITEM.matcher(line);
+            Matcher ordered = ORDERED_ITEM.matcher(line);
+            if (unordered.matches() || ordered.matches()) {
+                boolean isOrdered = !unordered.matches();
+                flushParagraph();
+                flushTable();
+                if (list != null && orderedList != isOrdered) {
+                    flushList();
+                }
+                if (list == null) {
+                    list = isOrdered ? new List(ListNumberingType.DECIMAL) : new List().setListSymbol("• ");
+                    orderedList = isOrdered;
+                }
+                list.add(new ListItem(stripInline((isOrdered ? ordered : unordered).group(1))));
+                return;
+            }
+            flushList();
+            flushTable();
+            if (!paragraph.isEmpty()) {
+                paragraph.append(' ');
+            }
+            paragraph.append(stripInline(trimmed));
+        }
+
+        private void writeTableRow(String row) {
+            if (TABLE_SEPARATOR.matcher(row).matches()) {
+                return;
+            }
+            String[] cells = splitRow(row);
+            if (table != null && cells.length != tableColumns) {
+                flushTable();
+            }
+            boolean header = table == null;
+            if (header) {
+                flushParagraph();
+                flushList();
+                tableColumns = cells.length;
+                // 大表格模式：已添加的行可以分批写出
+                table = new Table(UnitValue.createPercentArray(tableColumns), true).useAllAvailableWidth();
+                document.add(table);
+            }
+            for (String text : cells) {
+                Cell cell = new Cell().add(new Paragraph(stripInline(text)));
+                if (header) {
+                    table.addHeaderCell(cell.setBackgroundColor(ColorConstants.LIGHT_GRAY));
+                } else {
+                    table.addCell(cell);
+                }
+            }
+            if (!header && ++tableRows % TABLE_FLUSH_ROWS == 0) {
+                table.flush();
+            }
+        }
+
+        private static String[] splitRow(String row) {
+            String inner = row.trim();
+            if (inner.startsWith("|")) {
+                inner = inner.substring(1);
+            }
+            if (inner.endsWith("|")) {
+                inner = inner.substring(0, inner.length() - 1);
+            }
+            return inner.split("\\|", -1);
+        }
+
+        private void flushAll() {
+            flushParagraph();
+            flushList();
+            flushTable();
+        }
+
+        private void flushParagraph() {
+            if (!paragraph.isEmpty()) {
+                document.add(new Paragraph(paragraph.toString()));
+                paragraph.setLength(0);
+            }
+        }
+
+        private void flushList() {
+            if (list != null) {
+                document.add(list);
+                list = null;
+            }
+        }
+
+        private void flushTable() {
+            if (table != null) {
+                table.complete();
+                table = null;
+                tableRows = 0;
+            }
+        }
+
+        private void flushCode() {
+            if (code != null && !code.isEmpty()) {
+                document.add(new Paragraph(String.join("\n", code))
+                        .setFontSize(9)
+                        .setBackgroundColor(ColorConstants.LIGHT_GRAY)
+                        .setPadding(4));
+                code.clear();
+            }
+        }
+    }
+}
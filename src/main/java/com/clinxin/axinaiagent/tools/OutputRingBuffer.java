@@ -0,0 +1,64 @@
+package com.clinxin.axinaiagent.tools;
+
+/**
+ * 定长的输出环形缓冲区
+ *
+ * 只保留最后 capacity 个字符（命令的报错通常在末尾），并记录被丢弃的字符数。
+ */
+class OutputRingBuffer {
+
+    private final char[] buffer;
+
+    // 下一个写入位置
+    private int next;
+
+    private int size;
+
+    private long dropped;
+
+    OutputRingBuffer(int capacity) {
+        this.buffer = new char[Math.max(1, capacity)];
+    }
+
+    synchronized void append(char[] chars, int offset, int length) {
+        if (length >= buffer.length) {
+            // 新内容已超过容量，只保留其末尾
+            dropped += size + length - buffer.length;
+            System.arraycopy(chars, offset + length - buffer.length, buffer, 0, buffer.length);
+            next = 0;
+            size = buffer.length;
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[next] = chars[offset + i];
+            next = (next + 1) % buffer.length;
+        }
+        int overflow = size + length - buffer.length;
+        if (overflow > 0) {
+            dropped += overflow;
+            size = buffer.length;
+        } else {
+            size += length;
+        }
+    }
+
+    synchronized long getDropped() {
+        return dropped;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int start = (next - size + buffer.length) % buffer.length;
+        StringBuilder text = new StringBuilder(size);
+        if (start + size <= buffer.length) {
+            text.append(buffer, start, size);
+        } else {
+            text.append(buffer, start, buffer.length - start).append(buffer, 0, size - (buffer.length - start));
+        }
+        return text.toString();
+    }
+}
@@ -2,49 +2,55 @@ package com.clinxin.axinaiagent.tools;
 
 import cn.hutool.core.io.FileUtil;
 import com.clinxin.axinaiagent.constant.FileConstant;
-import com.itextpdf.kernel.font.PdfFont;
-import com.itextpdf.kernel.font.PdfFontFactory;
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfWriter;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Paragraph;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * PDF 生成工具
  */
 public class PDFGenerationTool {
 
-    @Tool(description = "Generate a PDF file with given content")
+    private final MarkdownPdfRenderer renderer = new MarkdownPdfRenderer();
+
+    // 正在生成的文件，同名文件不能同时生成
+    private final Set<String> activeFiles = ConcurrentHashMap.newKeySet();
+
+    @ToolExecution(timeoutSeconds = 60)
+    @Tool(description = "Generate a PDF file with given content. Markdown headings, lists, tables and code blocks are rendered")
     public String generatePDF(
             @ToolParam(description = "Name of the file to save the generated PDF") String fileName,
-            @ToolParam(description = "Content to be included in the PDF") String content) {
+            @ToolParam(description = "Content to be included in the PDF, in markdown") String content) {
         String fileDir = FileConstant.FILE_SAVE_DIR + "/pdf";
         String filePath = fileDir + "/" + fileName;
+        String key = new File(filePath).getAbsolutePath();
+        if (!activeFiles.add(key)) {
+            return "Error generating PDF: " + fileName + " is being generated by another call";
+        }
         try {
             // 创建目录
             FileUtil.mkdir(fileDir);
-            // 创建 PdfWriter 和 PdfDocument 对象
-            try (PdfWriter writer = new PdfWriter(filePath);
-                 PdfDocument pdf = new PdfDocument(writer);
-                 Document document = new Document(pdf)) {
-                // 自定义字体（需要人工下载字体文件到特定目录）
-//                String fontPath = Paths.get("src/main/resources/static/fonts/simsun.ttf")
-//                        .toAbsolutePath().toString();
-//                PdfFont font = PdfFontFactory.createFont(fontPath,
-//                        PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
-                // 使用内置中文字体
-                PdfFont font = PdfFontFactory.createFont("STSongStd-Light", "UniGB-UCS2-H");
-                document.setFont(font);
-                // 创建段落
-                Paragraph paragraph = new Paragraph(content);
-                // 添加段落并关闭文档
-                document.add(paragraph);
+            // 先写临时文件，完成后再替换，避免留下不完整的 PDF
+            Path target = new File(filePath).toPath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            int pages;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                pages = renderer.render(new StringReader(content), out);
             }
-            return "PDF generated successfully to: " + filePath;
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return "PDF generated successfully to: " + filePath + " (" + pages + " pages)";
         } catch (Exception e) {
             return "Error generating PDF: " + e.getMessage();
+        } finally {
+            activeFiles.remove(key);
         }
     }
 }
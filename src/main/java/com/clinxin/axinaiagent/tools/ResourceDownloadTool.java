@@ -1,28 +1,57 @@
 package com.clinxin.axinaiagent.tools;
 
 import cn.hutool.core.io.FileUtil;
-import cn.hutool.http.HttpUtil;
 import com.clinxin.axinaiagent.constant.FileConstant;
+import com.clinxin.axinaiagent.http.OutboundHttpClient;
+import com.clinxin.axinaiagent.http.ResumableDownloader;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
 import java.io.File;
+import java.net.URI;
 
 /**
  * 资源下载工具
  */
 public class ResourceDownloadTool {
 
-    @Tool(description = "Download a resource from a given URL")
+    // 默认单个资源上限 100 MB
+    private static final long DEFAULT_MAX_BYTES = 100L * 1024 * 1024;
+
+    private final ResumableDownloader downloader;
+
+    private final long maxBytes;
+
+    private final long bytesPerSecond;
+
+    public ResourceDownloadTool() {
+        this(new ResumableDownloader(OutboundHttpClient.getDefault(), 0), DEFAULT_MAX_BYTES, 0);
+    }
+
+    /**
+     * @param downloader     下载器
+     * @param maxBytes       单个资源的最大字节数
+     * @param bytesPerSecond 单个下载的带宽（字节/秒），不大于 0 时不限制
+     */
+    public ResourceDownloadTool(ResumableDownloader downloader, long maxBytes, long bytesPerSecond) {
+        this.downloader = downloader;
+        this.maxBytes = maxBytes;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @ToolExecution(timeoutSeconds = 120)
+    @Tool(description = "Download a resource from a given URL. An interrupted download resumes when called again with the same file name")
     public String downloadResource(@ToolParam(description = "URL of the resource to download") String url, @ToolParam(description = "Name of the file to save the downloaded resource") String fileName) {
         String fileDir = FileConstant.FILE_SAVE_DIR + "/download";
         String filePath = fileDir + "/" + fileName;
         try {
             // 创建目录
             FileUtil.mkdir(fileDir);
-            // 使用 Hutool 的 downloadFile 方法下载资源
-            HttpUtil.downloadFile(url, new File(filePath));
-            return "Resource downloaded successfully to: " + filePath;
+            // 流式写入 .part 文件，完成后重命名
+            ResumableDownloader.DownloadResult result = downloader.download(URI.create(url),
+                    new File(filePath).toPath(), maxBytes, bytesPerSecond);
+            return "Resource downloaded successfully to: " + filePath + " (" + result.bytes() + " bytes"
+                    + (result.resumedFrom() > 0 ? ", resumed from " + result.resumedFrom() : "") + ")";
         } catch (Exception e) {
             return "Error downloading resource: " + e.getMessage();
         }
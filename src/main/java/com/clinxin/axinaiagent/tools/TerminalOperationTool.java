@@ -1,34 +1,67 @@
 package com.clinxin.axinaiagent.tools;
 
+import com.clinxin.axinaiagent.constant.FileConstant;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.time.Duration;
 
+/**
+ * 终端操作工具
+ */
 public class TerminalOperationTool {
 
+    // 默认时限略短于工具调用超时，超时时仍能返回已有输出
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(50);
+
+    private static final int DEFAULT_MAX_OUTPUT_CHARS = 16000;
+
+    private final CommandExecutor commandExecutor;
+
+    public TerminalOperationTool() {
+        this(DEFAULT_TIMEOUT, DEFAULT_MAX_OUTPUT_CHARS);
+    }
+
+    /**
+     * @param timeout        命令的最长执行时间
+     * @param maxOutputChars stdout 和 stderr 各自保留的最大字符数
+     */
+    public TerminalOperationTool(Duration timeout, int maxOutputChars) {
+        this.commandExecutor = new CommandExecutor(new File(FileConstant.FILE_SAVE_DIR, "terminal"),
+                timeout, maxOutputChars);
+    }
+
+    @ToolExecution(parallel = false, timeoutSeconds = 60)
     @Tool(description = "Execute a command in the terminal")
     public String executeTerminalCommand(@ToolParam(description = "Command to execute in the terminal") String command) {
         StringBuilder output = new StringBuilder();
         try {
-            ProcessBuilder builder = new ProcessBuilder("cmd.exe", "/c", command);
-//            Process process = Runtime.getRuntime().exec(command);
-            Process process = builder.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
+            CommandExecutor.CommandResult result = commandExecutor.execute(command, ToolProgress.currentListener());
+            appendOutput(output, result.stdout(), result.droppedStdout());
+            if (!result.stderr().isEmpty()) {
+                output.append("[stderr]\n");
+                appendOutput(output, result.stderr(), result.droppedStderr());
             }
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                output.append("Command execution failed with exit code: ").append(exitCode);
+            if (result.timedOut()) {
+                output.append("Command timed out and was killed");
+            } else if (result.exitCode() != 0) {
+                output.append("Command execution failed with exit code: ").append(result.exitCode());
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             output.append("Error executing command: ").append(e.getMessage());
         }
         return output.toString();
     }
+
+    private static void appendOutput(StringBuilder output, String text, long dropped) {
+        if (dropped > 0) {
+            output.append("[... ").append(dropped).append(" earlier characters omitted ...]\n");
+        }
+        output.append(text);
+        if (!text.isEmpty() && !text.endsWith("\n")) {
+            output.append('\n');
+        }
+    }
 }
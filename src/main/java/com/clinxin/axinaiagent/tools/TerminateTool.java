@@ -7,6 +7,7 @@ import org.springframework.ai.tool.annotation.Tool;
  */
 public class TerminateTool {
 
+    @ToolExecution(parallel = false)
     @Tool(description = """  
             Terminate the interaction when the request is met OR if the assistant cannot proceed further with the task.  
             "When you have finished all the tasks, call this tool to end the work.  
@@ -0,0 +1,34 @@
+package com.clinxin.axinaiagent.tools;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 工具执行策略（标注在 @Tool 方法上）
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ToolExecution {
+
+    /**
+     * 是否允许与同一步中的其他工具调用并发执行
+     */
+    boolean parallel() default true;
+
+    /**
+     * 单次调用的超时时间（秒）
+     */
+    long timeoutSeconds() default 60;
+
+    /**
+     * 结果缓存时间（秒），0 表示不缓存（仅用于无副作用的查询类工具）
+     */
+    long cacheTtlSeconds() default 0;
+
+    /**
+     * 是否为只读（无副作用、可重复执行）的工具，只有只读工具会在流式思考完成前提前开始执行
+     */
+    boolean readOnly() default false;
+}
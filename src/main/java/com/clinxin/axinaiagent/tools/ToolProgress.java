@@ -0,0 +1,48 @@
+package com.clinxin.axinaiagent.tools;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 工具执行过程中的增量输出
+ *
+ * 调用方在执行工具的线程上绑定监听器，耗时较长的工具（如终端命令）通过它推送中间输出；
+ * 未绑定监听器时中间输出被忽略。
+ */
+public final class ToolProgress {
+
+    private static final ThreadLocal<Consumer<String>> LISTENER = new ThreadLocal<>();
+
+    private ToolProgress() {
+    }
+
+    /**
+     * 绑定监听器后执行工具调用
+     *
+     * @param listener 增量输出监听器
+     * @param call     工具调用
+     * @return 工具结果
+     */
+    public static <T> T withListener(Consumer<String> listener, Supplier<T> call) {
+        Consumer<String> previous = LISTENER.get();
+        LISTENER.set(listener);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                LISTENER.remove();
+            } else {
+                LISTENER.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程绑定的监听器
+     *
+     * @return 监听器，未绑定时返回 null
+     */
+    public static Consumer<String> currentListener() {
+        return LISTENER.get();
+    }
+}
@@ -1,30 +1,78 @@
 package com.clinxin.axinaiagent.tools;
 
+import cn.hutool.core.util.StrUtil;
+import com.clinxin.axinaiagent.http.OutboundHttpClient;
+import com.clinxin.axinaiagent.http.ResumableDownloader;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 工具注册
  */
 @Configuration
 public class ToolRegistration {
 
+    // 未声明执行策略的工具默认超时时间
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
     @Value("${search-api.api-key}")
     private String searchApiKey;
 
+    @Value("${web-scraping.max-body-bytes:2097152}")
+    private int scrapingMaxBodyBytes;
+
+    @Value("${web-scraping.page-tokens:2000}")
+    private int scrapingPageTokens;
+
+    @Value("${web-scraping.max-chars:200000}")
+    private int scrapingMaxChars;
+
+    @Value("${resource-download.max-bytes:104857600}")
+    private long downloadMaxBytes;
+
+    @Value("${resource-download.bytes-per-second:0}")
+    private long downloadBytesPerSecond;
+
+    @Value("${resource-download.global-bytes-per-second:0}")
+    private long downloadGlobalBytesPerSecond;
+
+    @Value("${terminal.timeout-seconds:50}")
+    private long terminalTimeoutSeconds;
+
+    @Value("${terminal.max-output-chars:16000}")
+    private int terminalMaxOutputChars;
+
+    @Value("${file-tool.max-output-chars:16000}")
+    private int fileMaxOutputChars;
+
+    @Value("${tool-cache.enabled:true}")
+    private boolean toolCacheEnabled;
+
     @Bean
-    public ToolCallback[] allTools() {
-        FileOperationTool fileOperationTool = new FileOperationTool();
-        WebSearchTool webSearchTool = new WebSearchTool(searchApiKey);
-        WebScrapingTool webScrapingTool = new WebScrapingTool();
-        ResourceDownloadTool resourceDownloadTool = new ResourceDownloadTool();
-        TerminalOperationTool terminalOperationTool = new TerminalOperationTool();
+    public ToolCallback[] allTools(ToolResultCache toolResultCache, OutboundHttpClient outboundHttpClient) {
+        FileOperationTool fileOperationTool = new FileOperationTool(fileMaxOutputChars);
+        WebSearchTool webSearchTool = new WebSearchTool(searchApiKey, outboundHttpClient);
+        WebScrapingTool webScrapingTool = new WebScrapingTool(scrapingMaxBodyBytes, scrapingPageTokens, scrapingMaxChars,
+                outboundHttpClient);
+        ResourceDownloadTool resourceDownloadTool = new ResourceDownloadTool(
+                new ResumableDownloader(outboundHttpClient, downloadGlobalBytesPerSecond),
+                downloadMaxBytes, downloadBytesPerSecond);
+        TerminalOperationTool terminalOperationTool = new TerminalOperationTool(
+                Duration.ofSeconds(terminalTimeoutSeconds), terminalMaxOutputChars);
         PDFGenerationTool pdfGenerationTool = new PDFGenerationTool();
         TerminateTool terminateTool = new TerminateTool();
-        return ToolCallbacks.from(
+        return withExecutionPolicy(toolCacheEnabled ? toolResultCache : null,
                 fileOperationTool,
                 webSearchTool,
                 webScrapingTool,
@@ -34,4 +82,49 @@ public class ToolRegistration {
                 terminateTool
         );
     }
+
+    /**
+     * 创建工具回调，并按 @ToolExecution 注解附加执行策略
+     *
+     * @param toolObjects 工具对象
+     * @return 工具回调
+     */
+    static ToolCallback[] withExecutionPolicy(Object... toolObjects) {
+        return withExecutionPolicy(null, toolObjects);
+    }
+
+    /**
+     * 创建工具回调，按 @ToolExecution 注解附加执行策略，声明了缓存时间的工具附加结果缓存
+     *
+     * @param toolResultCache 工具结果缓存（为空时不缓存）
+     * @param toolObjects     工具对象
+     * @return 工具回调
+     */
+    static ToolCallback[] withExecutionPolicy(ToolResultCache toolResultCache, Object... toolObjects) {
+        List<ToolCallback> toolCallbacks = new ArrayList<>();
+        for (Object toolObject : toolObjects) {
+            Map<String, ToolExecution> executions = new HashMap<>();
+            for (Method method : toolObject.getClass().getDeclaredMethods()) {
+                Tool tool = method.getAnnotation(Tool.class);
+                ToolExecution execution = method.getAnnotation(ToolExecution.class);
+                if (tool != null && execution != null) {
+                    executions.put(StrUtil.blankToDefault(tool.name(), method.getName()), execution);
+                }
+            }
+            for (ToolCallback toolCallback : ToolCallbacks.from(toolObject)) {
+                ToolExecution execution = executions.get(toolCallback.getToolDefinition().name());
+                if (execution == null) {
+                    toolCallbacks.add(new ExecutionPolicyToolCallback(toolCallback, true, DEFAULT_TIMEOUT));
+                    continue;
+                }
+                if (toolResultCache != null && execution.cacheTtlSeconds() > 0) {
+                    toolCallback = new CachingToolCallback(toolCallback, toolResultCache,
+                            Duration.ofSeconds(execution.cacheTtlSeconds()));
+                }
+                toolCallbacks.add(new ExecutionPolicyToolCallback(toolCallback,
+                        execution.parallel(), Duration.ofSeconds(execution.timeoutSeconds()), execution.readOnly()));
+            }
+        }
+        return toolCallbacks.toArray(new ToolCallback[0]);
+    }
 }
@@ -0,0 +1,393 @@
+package com.clinxin.axinaiagent.tools;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 工具结果缓存
+ *
+ * 按「工具名 + 规范化参数」缓存查询类工具的结果，每个工具有独立的过期时间；
+ * 总条数和总字节数有上限（LRU 淘汰），可选持久化到磁盘以便重启后复用；
+ * 并发的相同调用只执行一次，其余调用等待同一结果。
+ */
+@Component
+@Slf4j
+public class ToolResultCache {
+
+    private static final String PERSIST_SUFFIX = ".json";
+
+    // 持久化文件的分段锁数量
+    private static final int PERSIST_LOCK_STRIPES = 64;
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    // 持久化目录，为空时不持久化
+    private final File persistDir;
+
+    private final MeterRegistry meterRegistry;
+
+    // 按访问顺序排列的 LRU 缓存，由 this 同步
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes = 0;
+
+    // 执行中的调用，相同的并发调用共享同一结果
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, ToolStats> toolStats = new ConcurrentHashMap<>();
+
+    // 同一个键的持久化文件写入和删除互斥（磁盘 I/O 不占用缓存锁）
+    private final Object[] persistLocks = new Object[PERSIST_LOCK_STRIPES];
+
+    public ToolResultCache(@Value("${tool-cache.max-entries:1000}") int maxEntries,
+                           @Value("${tool-cache.max-bytes:33554432}") long maxBytes,
+                           @Value("${tool-cache.persist-dir:}") String persistDir,
+                           MeterRegistry meterRegistry) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.persistDir = StrUtil.isBlank(persistDir) ? null : new File(persistDir);
+        this.meterRegistry = meterRegistry;
+        for (int i = 0; i < persistLocks.length; i++) {
+            persistLocks[i] = new Object();
+        }
+        Gauge.builder("tool.cache.entries", this, ToolResultCache::size).register(meterRegistry);
+        Gauge.builder("tool.cache.bytes", this, ToolResultCache::getTotalBytes).register(meterRegistry);
+        if (this.persistDir != null) {
+            this.persistDir.mkdirs();
+            loadPersisted();
+        }
+    }
+
+    /**
+     * 获取工具结果，未命中时执行调用并缓存
+     *
+     * @param toolName  工具名称
+     * @param toolInput 工具参数（JSON）
+     * @param ttl       缓存时间
+     * @param loader    实际的工具调用
+     * @return 工具结果
+     */
+    public String get(String toolName, String toolInput, Duration ttl, Supplier<String> loader) {
+        ToolStats stats = statsFor(toolName);
+        String key = key(toolName, toolInput);
+        String cached = lookup(key);
+        if (cached != null) {
+            stats.hits.increment();
+            return cached;
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 相同的调用正在执行，等待其结果
+            stats.coalesced.increment();
+            return await(existing);
+        }
+        try {
+            // 抢到执行权前可能刚有调用完成并写入缓存
+            cached = lookup(key);
+            if (cached != null) {
+                stats.hits.increment();
+                future.complete(cached);
+                return cached;
+            }
+            stats.misses.increment();
+            String result = loader.get();
+            if (isCacheable(result)) {
+                put(key, toolName, result, System.currentTimeMillis() + ttl.toMillis(), true);
+            }
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            // 等待中的相同调用也收到该异常，避免永久阻塞
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 工具的缓存命中率（合并到执行中调用的请求也算命中）
+     *
+     * @param toolName 工具名称
+     * @return 命中率
+     */
+    public double getHitRatio(String toolName) {
+        ToolStats stats = toolStats.get(toolName);
+        return stats == null ? 0 : stats.hitRatio();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 缓存键：工具名 + 规范化参数的 SHA-256
+     *
+     * @param toolName  工具名称
+     * @param toolInput 工具参数
+     * @return 缓存键
+     */
+    static String key(String toolName, String toolInput) {
+        return DigestUtil.sha256Hex(toolName + '\u0000' + normalize(toolInput));
+    }
+
+    /**
+     * 规范化参数：JSON 字段按名称排序，字符串去除首尾空白并合并连续空白
+     *
+     * @param toolInput 工具参数
+     * @return 规范化后的参数
+     */
+    static String normalize(String toolInput) {
+        if (StrUtil.isBlank(toolInput)) {
+            return "";
+        }
+        String trimmed = toolInput.trim();
+        if (!JSONUtil.isTypeJSON(trimmed)) {
+            return collapseWhitespace(trimmed);
+        }
+        try {
+            return canonical(JSONUtil.parse(trimmed));
+        } catch (Exception e) {
+            return collapseWhitespace(trimmed);
+        }
+    }
+
+    private static String canonical(Object value) {
+        if (value instanceof JSONObject jsonObject) {
+            return new TreeMap<>(jsonObject).entrySet().stream()
+                    .map(entry -> JSONUtil.quote(entry.getKey()) + ":" + canonical(entry.getValue()))
+                    .collect(Collectors.joining(",", "{", "}"));
+        }
+        if (value instanceof JSONArray jsonArray) {
+            return jsonArray.stream()
+                    .map(ToolResultCache::canonical)
+                    .collect(Collectors.joining(",", "[", "]"));
+        }
+        if (value instanceof CharSequence text) {
+            return JSONUtil.quote(collapseWhitespace(text.toString().trim()));
+        }
+        return String.valueOf(value);
+    }
+
+    private static String collapseWhitespace(String text) {
+        return text.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 出错的结果不缓存（工具以 Error 开头的文本返回错误）
+     */
+    private static boolean isCacheable(String result) {
+        return result != null && !StrUtil.startWithIgnoreCase(result, "Error");
+    }
+
+    private String await(CompletableFuture<String> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for identical tool call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private String lookup(String key) {
+        synchronized (this) {
+            CacheEntry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                return entry.value;
+            }
+            remove(key);
+        }
+        deletePersisted(key);
+        return null;
+    }
+
+    private void put(String key, String toolName, String value, long expiresAt, boolean persist) {
+        CacheEntry entry = new CacheEntry(toolName, value, expiresAt, (long) value.length() * 2 + key.length());
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += entry.bytes;
+            // 超出条数或字节上限时淘汰最久未访问的条目
+            Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                totalBytes -= eldest.getValue().bytes;
+                iterator.remove();
+                evicted.add(eldest.getKey());
+            }
+        }
+        for (String evictedKey : evicted) {
+            deletePersisted(evictedKey);
+        }
+        if (persist) {
+            persist(key, entry);
+        }
+    }
+
+    private CacheEntry remove(String key) {
+        CacheEntry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+        return removed;
+    }
+
+    private ToolStats statsFor(String toolName) {
+        return toolStats.computeIfAbsent(toolName, name -> {
+            ToolStats stats = new ToolStats(
+                    meterRegistry.counter("tool.cache.hits", "tool", name),
+                    meterRegistry.counter("tool.cache.misses", "tool", name),
+                    meterRegistry.counter("tool.cache.coalesced", "tool", name));
+            Gauge.builder("tool.cache.hit.ratio", stats, ToolStats::hitRatio)
+                    .tag("tool", name)
+                    .register(meterRegistry);
+            return stats;
+        });
+    }
+
+    /**
+     * 持久化一个条目（先写临时文件再原子替换），条目已被替换或淘汰时不再写入
+     */
+    private void persist(String key, CacheEntry entry) {
+        if (persistDir == null) {
+            return;
+        }
+        JSONObject json = new JSONObject();
+        json.set("tool", entry.toolName);
+        json.set("expiresAt", entry.expiresAt);
+        json.set("value", entry.value);
+        Path target = new File(persistDir, key + PERSIST_SUFFIX).toPath();
+        Path temp = new File(persistDir, key + PERSIST_SUFFIX + ".tmp").toPath();
+        synchronized (persistLock(key)) {
+            synchronized (this) {
+                if (entries.get(key) != entry) {
+                    return;
+                }
+            }
+            try {
+                Files.writeString(temp, json.toString(), StandardCharsets.UTF_8);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("持久化工具结果缓存失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 删除已过期或被淘汰的条目的持久化文件，期间有新的相同调用写入缓存时保留文件
+     */
+    private void deletePersisted(String key) {
+        if (persistDir == null) {
+            return;
+        }
+        synchronized (persistLock(key)) {
+            synchronized (this) {
+                if (entries.containsKey(key)) {
+                    return;
+                }
+            }
+            new File(persistDir, key + PERSIST_SUFFIX).delete();
+        }
+    }
+
+    private Object persistLock(String key) {
+        return persistLocks[Math.floorMod(key.hashCode(), persistLocks.length)];
+    }
+
+    /**
+     * 启动时加载磁盘上未过期的条目
+     */
+    private void loadPersisted() {
+        File[] files = persistDir.listFiles((dir, name) -> name.endsWith(PERSIST_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        for (File file : files) {
+            String key = file.getName().substring(0, file.getName().length() - PERSIST_SUFFIX.length());
+            try {
+                JSONObject json = JSONUtil.parseObj(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+                long expiresAt = json.getLong("expiresAt");
+                if (expiresAt <= now) {
+                    file.delete();
+                    continue;
+                }
+                put(key, json.getStr("tool"), json.getStr("value"), expiresAt, false);
+                loaded++;
+            } catch (Exception e) {
+                log.warn("读取工具结果缓存文件失败，已删除: {}", file.getName());
+                file.delete();
+            }
+        }
+        log.info("已加载 {} 条持久化的工具结果缓存", loaded);
+    }
+
+    /**
+     * 缓存条目
+     */
+    private record CacheEntry(String toolName, String value, long expiresAt, long bytes) {
+    }
+
+    /**
+     * 单个工具的命中统计
+     */
+    private record ToolStats(Counter hits, Counter misses, Counter coalesced) {
+
+        double hitRatio() {
+            double hit = hits.count() + coalesced.count();
+            double total = hit + misses.count();
+            return total == 0 ? 0 : hit / total;
+        }
+    }
+}
@@ -1,22 +1,149 @@
 package com.clinxin.axinaiagent.tools;
 
+import com.clinxin.axinaiagent.http.OutboundHttpClient;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.List;
+
 /**
  * 网页抓取工具
+ *
+ * 返回提取后的正文 Markdown 而不是原始 HTML，正文较长时分页返回。
+ * 结果（含页码）由工具结果缓存按 @ToolExecution 的 cacheTtlSeconds 缓存。
  */
 public class WebScrapingTool {
 
-    @Tool(description = "Scrap the content of a web page")
-    public String scrapWebPage(@ToolParam(description = "URL of the web page to scrap") String url) {
+    // 默认下载上限 2 MB，超出部分不读取
+    private static final int DEFAULT_MAX_BODY_BYTES = 2 * 1024 * 1024;
+
+    // 默认每页 2000 token
+    private static final int DEFAULT_PAGE_TOKENS = 2000;
+
+    // 默认提取文本上限
+    private static final int DEFAULT_MAX_CHARS = 200_000;
+
+    private final int maxBodyBytes;
+
+    private final HtmlContentExtractor extractor;
+
+    private final OutboundHttpClient httpClient;
+
+    public WebScrapingTool() {
+        this(DEFAULT_MAX_BODY_BYTES, DEFAULT_PAGE_TOKENS, DEFAULT_MAX_CHARS, OutboundHttpClient.getDefault());
+    }
+
+    /**
+     * @param maxBodyBytes 下载的最大字节数
+     * @param pageTokens   每页的最大 token 数
+     * @param maxChars     提取文本的最大字符数
+     * @param httpClient   出站 HTTP 客户端
+     */
+    public WebScrapingTool(int maxBodyBytes, int pageTokens, int maxChars, OutboundHttpClient httpClient) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.extractor = new HtmlContentExtractor(pageTokens, maxChars);
+        this.httpClient = httpClient;
+    }
+
+    public String scrapWebPage(String url) {
+        return scrapWebPage(url, 1);
+    }
+
+    @ToolExecution(timeoutSeconds = 30, cacheTtlSeconds = 600, readOnly = true)
+    @Tool(description = "Scrap the readable main content of a web page as markdown. Long pages are split into pages; request later pages with the page parameter")
+    public String scrapWebPage(@ToolParam(description = "URL of the web page to scrap") String url,
+                               @ToolParam(description = "Page number of the content, starting from 1", required = false) Integer page) {
+        int pageNumber = page == null || page < 1 ? 1 : page;
         try {
-            Document document = Jsoup.connect(url).get();
-            return document.html();
+            List<String> pages = getPages(url);
+            if (pageNumber > pages.size()) {
+                return "Error scrap web page: page " + pageNumber + " out of range, total pages " + pages.size();
+            }
+            String content = pages.get(pageNumber - 1);
+            if (pages.size() == 1) {
+                return content;
+            }
+            StringBuilder result = new StringBuilder()
+                    .append("[Page ").append(pageNumber).append('/').append(pages.size()).append("]\n\n")
+                    .append(content);
+            if (pageNumber < pages.size()) {
+                result.append("\n\n[More content available, call again with page=").append(pageNumber + 1).append(']');
+            }
+            return result.toString();
         } catch (Exception e) {
             return "Error scrap web page: " + e.getMessage();
         }
     }
+
+    /**
+     * 下载网页并提取分页正文
+     */
+    private List<String> getPages(String url) throws Exception {
+        HttpResponse<InputStream> response = httpClient.send(httpClient.newRequest(URI.create(url)).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        OutboundHttpClient.checkStatus(response);
+        Document document;
+        // 边下载边解析，超过上限的部分不再读取
+        try (InputStream body = new LimitedInputStream(response.body(), maxBodyBytes)) {
+            document = Jsoup.parse(body, charsetOf(response), url);
+        }
+        return extractor.extractPages(document);
+    }
+
+    /**
+     * 响应头中声明的字符集，未声明时由 jsoup 根据页面 meta 判断
+     */
+    private static String charsetOf(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charset = contentType.substring(index + "charset=".length()).split(";")[0].trim();
+        return charset.replace("\"", "");
+    }
+
+    /**
+     * 最多读取指定字节数的输入流，之后视为结束
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
 }
@@ -4,9 +4,11 @@ import cn.hutool.http.HttpUtil;
 import cn.hutool.json.JSONArray;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
+import com.clinxin.axinaiagent.http.OutboundHttpClient;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,10 +24,18 @@ public class WebSearchTool {
 
     private final String apiKey;
 
+    private final OutboundHttpClient httpClient;
+
     public WebSearchTool(String apiKey) {
+        this(apiKey, OutboundHttpClient.getDefault());
+    }
+
+    public WebSearchTool(String apiKey, OutboundHttpClient httpClient) {
         this.apiKey = apiKey;
+        this.httpClient = httpClient;
     }
 
+    @ToolExecution(timeoutSeconds = 30, cacheTtlSeconds = 1800, readOnly = true)
     @Tool(description = "Search for information from Baidu Search Engine")
     public String searchWeb(
             @ToolParam(description = "Search query keyword") String query) {
@@ -34,7 +44,7 @@ public class WebSearchTool {
         paramMap.put("api_key", apiKey);
         paramMap.put("engine", "baidu");
         try {
-            String response = HttpUtil.get(SEARCH_API_URL, paramMap);
+            String response = httpClient.getString(URI.create(SEARCH_API_URL + "?" + HttpUtil.toParams(paramMap)), Map.of());
             // 取出返回结果的前 5 条
             JSONObject jsonObject = JSONUtil.parseObj(response);
             // 提取 organic_results 部分
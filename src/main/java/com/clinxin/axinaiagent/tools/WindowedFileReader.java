@@ -0,0 +1,198 @@
+package com.clinxin.axinaiagent.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Pattern;
+
+/**
+ * 按窗口分块的文件读取
+ *
+ * 文件按固定大小的窗口读入同一个缓冲区后逐行扫描，只有需要输出的行才解码为字符串，
+ * 因此读取大文件的某一段或搜索匹配行时不会把整个文件载入堆内存。
+ * 不使用内存映射：映射要等到 GC 才释放，Windows 上映射未释放时无法替换或截断刚读取过的文件。
+ */
+final class WindowedFileReader {
+
+    // 每次读取的窗口大小
+    private static final int WINDOW_BYTES = 1024 * 1024;
+
+    // 单行最多解码的字节数，超出部分截断
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private WindowedFileReader() {
+    }
+
+    /**
+     * 行访问器
+     */
+    interface LineVisitor {
+
+        /**
+         * @param lineNumber 行号（从 1 开始）
+         * @param line       行内容（不含换行符，缓冲区会被复用，只在本次回调内有效）
+         * @return 是否继续读取
+         */
+        boolean visit(long lineNumber, ByteBuffer line);
+    }
+
+    /**
+     * 逐行扫描文件
+     *
+     * @param path    文件
+     * @param visitor 行访问器
+     */
+    static void forEachLine(Path path, LineVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long lineNumber = 1;
+            // 上一个窗口以超长行的一部分结尾，本窗口先跳过该行剩余部分
+            boolean skipRestOfLine = false;
+            ByteBuffer window = ByteBuffer.allocate((int) Math.min(WINDOW_BYTES, size));
+            while (position < size) {
+                int windowSize = read(channel, window, position, (int) Math.min(WINDOW_BYTES, size - position));
+                if (windowSize == 0) {
+                    // 读取期间文件被截断
+                    return;
+                }
+                boolean lastWindow = position + windowSize >= size;
+                int lineStart = 0;
+                for (int i = 0; i < windowSize; i++) {
+                    if (window.get(i) != '\n') {
+                        continue;
+                    }
+                    if (skipRestOfLine) {
+                        skipRestOfLine = false;
+                    } else if (!visitor.visit(lineNumber, line(window, lineStart, i))) {
+                        return;
+                    }
+                    lineNumber++;
+                    lineStart = i + 1;
+                }
+                if (lastWindow) {
+                    if (lineStart < windowSize && !skipRestOfLine) {
+                        visitor.visit(lineNumber, line(window, lineStart, windowSize));
+                    }
+                    return;
+                }
+                if (lineStart == 0) {
+                    // 整个窗口都没有换行：输出开头部分，剩余部分跳过
+                    if (!skipRestOfLine && !visitor.visit(lineNumber, line(window, 0, windowSize))) {
+                        return;
+                    }
+                    skipRestOfLine = true;
+                    position += windowSize;
+                } else {
+                    // 下一个窗口从未结束的行开始
+                    position += lineStart;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读取指定字节范围，首尾被截断的多字节字符会被去掉
+     *
+     * @param path   文件
+     * @param offset 起始字节
+     * @param length 最多读取的字节数
+     * @return 文本
+     */
+    static String readRange(Path path, long offset, int length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (offset >= size || length <= 0) {
+                return "";
+            }
+            int requested = (int) Math.min(length, size - offset);
+            ByteBuffer buffer = ByteBuffer.allocate(requested);
+            int count = read(channel, buffer, offset, requested);
+            int start = 0;
+            // 跳过开头的 UTF-8 后续字节
+            while (start < count && start < 3 && (buffer.get(start) & 0xC0) == 0x80) {
+                start++;
+            }
+            int end = count;
+            if (offset + count < size) {
+                end = completeCharEnd(buffer, start, count);
+            }
+            return decode(buffer.slice(start, end - start));
+        }
+    }
+
+    /**
+     * 行内容是否匹配
+     *
+     * @param line    行内容
+     * @param pattern 正则
+     * @return 匹配时返回解码后的行，否则返回 null
+     */
+    static String matchLine(ByteBuffer line, Pattern pattern) {
+        String text = decode(line);
+        return pattern.matcher(text).find() ? text : null;
+    }
+
+    /**
+     * 以 UTF-8 解码，非法字节替换为占位符，超长的行截断
+     *
+     * @param bytes 字节
+     * @return 文本
+     */
+    static String decode(ByteBuffer bytes) {
+        ByteBuffer limited = bytes.remaining() > MAX_LINE_BYTES ? bytes.slice(bytes.position(), MAX_LINE_BYTES) : bytes;
+        try {
+            String text = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(limited)
+                    .toString();
+            return limited == bytes ? text : text + " ...[line truncated]";
+        } catch (IOException e) {
+            // REPLACE 模式下不会抛出
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 从指定位置读满缓冲区，直到读够字节数或到达文件末尾
+     *
+     * @return 实际读取的字节数
+     */
+    private static int read(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    private static ByteBuffer line(ByteBuffer window, int start, int end) {
+        // 兼容 Windows 换行
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        return window.slice(start, end - start);
+    }
+
+    /**
+     * 去掉末尾不完整的 UTF-8 字符
+     */
+    private static int completeCharEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = end - 1; i >= Math.max(start, end - 4); i--) {
+            int b = buffer.get(i) & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                continue;
+            }
+            int expected = b < 0x80 ? 1 : b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : 2;
+            return end - i >= expected ? end : i;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,182 @@
+package com.clinxin.axinaiagent.advisor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.advisor.api.AdvisedRequest;
+import org.springframework.ai.chat.client.advisor.api.AdvisedResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAroundAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY;
+
+public class SemanticCacheAdvisorTest {
+
+    private static final String SYSTEM_PROMPT = "你是一位计划大师";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // 与 PlanAppSemanticCacheConfig 一致：基础对话只在会话内缓存，知识库问答在会话间共享
+    private final SemanticCacheAdvisor advisor = new SemanticCacheAdvisor(new BigramEmbeddingModel(),
+            new SemanticResponseCache(100, 1024 * 1024), 0.8f,
+            Map.of("chat", new SemanticCacheAdvisor.Route(Duration.ofMinutes(1), true),
+                    "rag", new SemanticCacheAdvisor.Route(Duration.ofMinutes(1), false)),
+            List.of("刚才", "上面"), meterRegistry);
+
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    private final CallAroundAdvisorChain callChain = request -> answer("回答 " + modelCalls.incrementAndGet());
+
+    private final StreamAroundAdvisorChain streamChain = request -> {
+        int call = modelCalls.incrementAndGet();
+        return Flux.just(answer("流式"), answer("回答 " + call));
+    };
+
+    @Test
+    void callHitSkipsModel() {
+        AdvisedResponse first = advisor.aroundCall(request("rag", "u1", "怎么设定任务优先级？"), callChain);
+        Assertions.assertEquals("回答 1", text(first));
+        Assertions.assertNull(first.adviseContext().get(SemanticCacheAdvisor.CACHE_HIT_KEY));
+
+        // 相似的问题在其他会话中同样命中
+        AdvisedResponse second = advisor.aroundCall(request("rag", "u2", "怎么设定任务优先级呢？"), callChain);
+        Assertions.assertEquals("回答 1", text(second));
+        Assertions.assertEquals(true, second.adviseContext().get(SemanticCacheAdvisor.CACHE_HIT_KEY));
+        Assertions.assertEquals(1, modelCalls.get());
+        Assertions.assertEquals(1, count("semantic.cache.hits", "rag"));
+        Assertions.assertEquals(1, count("semantic.cache.misses", "rag"));
+    }
+
+    @Test
+    void streamStoresAggregatedAnswer() {
+        List<AdvisedResponse> streamed = advisor.aroundStream(request("rag", "u1", "如何克服拖延？"), streamChain)
+                .collectList().block();
+        Assertions.assertEquals(2, streamed.size());
+
+        // 命中时一次性返回完整的回答，流式和非流式请求共用缓存
+        List<AdvisedResponse> cached = advisor.aroundStream(request("rag", "u2", "如何克服拖延？"), streamChain)
+                .collectList().block();
+        Assertions.assertEquals(1, cached.size());
+        Assertions.assertEquals("流式回答 1", text(cached.get(0)));
+        Assertions.assertEquals("流式回答 1", text(advisor.aroundCall(request("rag", "u3", "如何克服拖延？"), callChain)));
+        Assertions.assertEquals(1, modelCalls.get());
+    }
+
+    @Test
+    void followUpsReferringToHistoryBypassCache() {
+        List<Message> history = List.of(new UserMessage("帮我安排明天的计划"), new AssistantMessage("好的"));
+        advisor.aroundCall(request("rag", "u1", "刚才的计划再详细一点", history), callChain);
+        advisor.aroundCall(request("rag", "u1", "刚才的计划再详细一点", history), callChain);
+        Assertions.assertEquals(2, modelCalls.get());
+        Assertions.assertEquals(2, count("semantic.cache.bypassed", "rag"));
+
+        // 没有指代词的追问只在当前会话内缓存
+        advisor.aroundCall(request("rag", "u1", "周末怎么安排", history), callChain);
+        Assertions.assertEquals("回答 3", text(advisor.aroundCall(request("rag", "u1", "周末怎么安排", history), callChain)));
+        Assertions.assertEquals("回答 4", text(advisor.aroundCall(request("rag", "u2", "周末怎么安排", history), callChain)));
+        // 第一轮问题不受会话内条目影响
+        Assertions.assertEquals("回答 5", text(advisor.aroundCall(request("rag", "u3", "周末怎么安排"), callChain)));
+        Assertions.assertEquals(5, modelCalls.get());
+    }
+
+    @Test
+    void routesAndConversationsAreIsolated() {
+        advisor.aroundCall(request("chat", "u1", "我叫小王，帮我制定减肥计划"), callChain);
+        Assertions.assertEquals("回答 1", text(advisor.aroundCall(request("chat", "u1", "我叫小王，帮我制定减肥计划"), callChain)));
+        // 基础对话的第一轮问题也不在会话间共享
+        Assertions.assertEquals("回答 2", text(advisor.aroundCall(request("chat", "u2", "我叫小王，帮我制定减肥计划"), callChain)));
+        // 路由之间、系统提示词不同的请求之间互不命中
+        Assertions.assertEquals("回答 3", text(advisor.aroundCall(request("rag", "u1", "我叫小王，帮我制定减肥计划"), callChain)));
+        AdvisedRequest otherPrompt = AdvisedRequest.from(request("chat", "u1", "我叫小王，帮我制定减肥计划"))
+                .systemText("你是一位恋爱顾问")
+                .build();
+        Assertions.assertEquals("回答 4", text(advisor.aroundCall(otherPrompt, callChain)));
+        // 未声明路由的请求不经过缓存
+        advisor.aroundCall(request(null, "u1", "我叫小王，帮我制定减肥计划"), callChain);
+        Assertions.assertEquals("回答 6", text(advisor.aroundCall(request(null, "u1", "我叫小王，帮我制定减肥计划"), callChain)));
+    }
+
+    private double count(String name, String route) {
+        return meterRegistry.get(name).tag("route", route).counter().count();
+    }
+
+    private static AdvisedRequest request(String route, String conversationId, String userText) {
+        return request(route, conversationId, userText, List.of());
+    }
+
+    private static AdvisedRequest request(String route, String conversationId, String userText, List<Message> history) {
+        Map<String, Object> adviseContext = new HashMap<>();
+        adviseContext.put(CHAT_MEMORY_CONVERSATION_ID_KEY, conversationId);
+        if (route != null) {
+            adviseContext.put(SemanticCacheAdvisor.ROUTE_KEY, route);
+        }
+        return AdvisedRequest.builder()
+                .chatModel(prompt -> {
+                    throw new IllegalStateException("the advisor chain stands in for the model");
+                })
+                .userText(userText)
+                .systemText(SYSTEM_PROMPT)
+                .messages(history)
+                .adviseContext(adviseContext)
+                .build();
+    }
+
+    private static AdvisedResponse answer(String text) {
+        Generation generation = new Generation(new AssistantMessage(text),
+                ChatGenerationMetadata.builder().finishReason("STOP").build());
+        return new AdvisedResponse(new ChatResponse(List.of(generation)), Map.of());
+    }
+
+    private static String text(AdvisedResponse response) {
+        return response.response().getResult().getOutput().getText();
+    }
+
+    /**
+     * 按相邻字符二元组生成确定性向量的嵌入模型
+     */
+    private static class BigramEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[256];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), vector.length)] += 1;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.clinxin.axinaiagent.advisor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+public class SemanticResponseCacheTest {
+
+    @Test
+    void similarQueriesHitWithinPartition() {
+        SemanticResponseCache cache = new SemanticResponseCache(100, 1024 * 1024);
+        cache.put("chat", "怎么设定任务优先级？", vector(1, 0, 0), "先分重要和紧急", Duration.ofMinutes(1), 1200);
+
+        // 只有空白和大小写不同的问题无需嵌入即可命中
+        SemanticResponseCache.Hit exact = cache.lookupExact("chat", "  怎么设定任务优先级？ ");
+        Assertions.assertEquals("先分重要和紧急", exact.answer());
+        Assertions.assertEquals(1200, exact.latencyMillis());
+
+        SemanticResponseCache.Hit similar = cache.lookupSimilar("chat", vector(0.95f, 0.1f, 0), 0.9f);
+        Assertions.assertEquals("先分重要和紧急", similar.answer());
+        Assertions.assertTrue(similar.similarity() > 0.9f && similar.similarity() < 1f);
+        Assertions.assertNull(cache.lookupSimilar("chat", vector(0.5f, 0.5f, 0), 0.9f));
+        // 其他分区的条目不会命中
+        Assertions.assertNull(cache.lookupExact("rag", "怎么设定任务优先级？"));
+        Assertions.assertNull(cache.lookupSimilar("rag", vector(1, 0, 0), 0.9f));
+    }
+
+    @Test
+    void expiredEntriesAreSkipped() throws InterruptedException {
+        SemanticResponseCache cache = new SemanticResponseCache(100, 1024 * 1024);
+        cache.put("chat", "如何克服拖延？", vector(0, 1, 0), "拆分任务", Duration.ofMillis(50), 800);
+        Thread.sleep(100);
+        Assertions.assertNull(cache.lookupSimilar("chat", vector(0, 1, 0), 0.9f));
+        Assertions.assertNull(cache.lookupExact("chat", "如何克服拖延？"));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() {
+        SemanticResponseCache cache = new SemanticResponseCache(2, 1024 * 1024);
+        cache.put("chat", "问题 1", vector(1, 0, 0), "回答 1", Duration.ofMinutes(1), 0);
+        cache.put("chat", "问题 2", vector(0, 1, 0), "回答 2", Duration.ofMinutes(1), 0);
+        // 访问问题 1 后写入问题 3，淘汰问题 2
+        Assertions.assertNotNull(cache.lookupExact("chat", "问题 1"));
+        cache.put("chat", "问题 3", vector(0, 0, 1), "回答 3", Duration.ofMinutes(1), 0);
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertNull(cache.lookupSimilar("chat", vector(0, 1, 0), 0.9f));
+        Assertions.assertEquals("回答 1", cache.lookupSimilar("chat", vector(1, 0, 0), 0.9f).answer());
+
+        // 字节上限：每个条目约 40 字节，上限只容纳两个
+        SemanticResponseCache small = new SemanticResponseCache(100, 100);
+        for (int i = 0; i < 5; i++) {
+            small.put("chat", "问题 " + i, vector(i, 1, 0), "回答 " + i, Duration.ofMinutes(1), 0);
+        }
+        Assertions.assertEquals(2, small.size());
+        Assertions.assertTrue(small.getTotalBytes() <= 100);
+        Assertions.assertEquals("回答 4", small.lookupExact("chat", "问题 4").answer());
+    }
+
+    @Test
+    void samePartitionAndQueryReplacesEntry() {
+        SemanticResponseCache cache = new SemanticResponseCache(100, 1024 * 1024);
+        cache.put("chat", "问题", vector(1, 0, 0), "旧回答", Duration.ofMinutes(1), 0);
+        long bytes = cache.getTotalBytes();
+        cache.put("chat", "问题", vector(1, 0, 0), "新回答", Duration.ofMinutes(1), 0);
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(bytes, cache.getTotalBytes());
+        Assertions.assertEquals("新回答", cache.lookupSimilar("chat", vector(1, 0, 0), 0.9f).answer());
+    }
+
+    private static float[] vector(float... values) {
+        return values;
+    }
+}
@@ -0,0 +1,47 @@
+package com.clinxin.axinaiagent.agent;
+
+import com.clinxin.axinaiagent.exception.AgentBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class AgentExecutorTest {
+
+    @Test
+    void rejectWhenSaturatedAndCancel() throws Exception {
+        AgentExecutor agentExecutor = new AgentExecutor(1, 1, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Runnable blockingRun = () -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        };
+        // 1 个运行中 + 1 个排队，第 3 个被拒绝
+        Future<?> running = agentExecutor.submit(blockingRun);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<?> queued = agentExecutor.submit(blockingRun);
+        Assertions.assertThrows(AgentBusyException.class, () -> agentExecutor.submit(blockingRun));
+        Assertions.assertEquals(1, agentExecutor.getQueueDepth());
+
+        // 取消会中断运行中的虚拟线程，并释放名额
+        running.cancel(true);
+        Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        queued.cancel(true);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (agentExecutor.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, agentExecutor.getQueueDepth());
+        Assertions.assertNotNull(agentExecutor.submit(() -> {
+        }));
+        agentExecutor.shutdown();
+    }
+}
@@ -0,0 +1,117 @@
+package com.clinxin.axinaiagent.agent;
+
+import com.clinxin.axinaiagent.agent.checkpoint.AgentCheckpointStore;
+import com.clinxin.axinaiagent.agent.checkpoint.AgentRunCheckpoint;
+import com.clinxin.axinaiagent.agent.model.AgentState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class BaseAgentTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void disconnectedRunCanBeResumed() throws Exception {
+        AgentCheckpointStore store = new AgentCheckpointStore(tempDir.toString(), 4096, 24);
+        AgentExecutor agentExecutor = new AgentExecutor(2, 2, new SimpleMeterRegistry());
+        CountDownLatch disconnected = new CountDownLatch(1);
+        StepAgent agent = new StepAgent(disconnected);
+        agent.setCheckpointStore(store);
+        agent.runStream("帮我调研杭州的旅游攻略", agentExecutor);
+        String runId = awaitLiveRun(store, agent);
+
+        // 第 1 步执行期间客户端断开，输出结果时失败
+        DisconnectingEmitter emitter = new DisconnectingEmitter();
+        Assertions.assertTrue(agent.attach(emitter));
+        emitter.disconnected = true;
+        disconnected.countDown();
+        Assertions.assertTrue(store.awaitRelease(runId, Duration.ofSeconds(5)));
+
+        // 检查点按运行中保存，已输出失败的结果也保留用于回放
+        AgentRunCheckpoint checkpoint = store.load(runId);
+        Assertions.assertEquals(AgentState.RUNNING, checkpoint.getState());
+        Assertions.assertEquals(1, checkpoint.getCurrentStep());
+        Assertions.assertEquals(List.of("Step 1: 第 1 步完成"), checkpoint.getStepResults());
+        Assertions.assertEquals(List.of(1), agent.executedSteps);
+
+        // 恢复后从第 2 步继续，不重复执行第 1 步
+        StepAgent resumed = new StepAgent(new CountDownLatch(0));
+        resumed.setCheckpointStore(store);
+        Assertions.assertTrue(store.register(runId, resumed));
+        resumed.resumeStream(checkpoint, agentExecutor);
+        Assertions.assertTrue(store.awaitRelease(runId, Duration.ofSeconds(5)));
+        Assertions.assertEquals(List.of(2, 3), resumed.executedSteps);
+        AgentRunCheckpoint finished = store.load(runId);
+        Assertions.assertEquals(AgentState.FINISHED, finished.getState());
+        Assertions.assertEquals(List.of("Step 1: 第 1 步完成", "Step 2: 第 2 步完成", "Step 3: 第 3 步完成",
+                "执行结束，达到最大步骤（3）"), finished.getStepResults());
+
+        agentExecutor.shutdown();
+        store.shutdown();
+    }
+
+    private static String awaitLiveRun(AgentCheckpointStore store, BaseAgent agent) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            String runId = agent.getRunId();
+            if (runId != null && store.getLiveRun(runId) == agent) {
+                return runId;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("run was not registered");
+    }
+
+    private static class StepAgent extends BaseAgent {
+
+        final List<Integer> executedSteps = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch gate;
+
+        StepAgent(CountDownLatch gate) {
+            this.gate = gate;
+            setMaxSteps(3);
+        }
+
+        @Override
+        public String step() {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executedSteps.add(getCurrentStep());
+            getMessageList().add(new AssistantMessage("第 " + getCurrentStep() + " 步"));
+            return "第 " + getCurrentStep() + " 步完成";
+        }
+    }
+
+    /**
+     * 客户端断开后发送失败的连接
+     */
+    private static class DisconnectingEmitter extends SseEmitter {
+
+        volatile boolean disconnected;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (disconnected) {
+                throw new IOException("Broken pipe");
+            }
+            super.send(builder);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.clinxin.axinaiagent.agent;
+
+import com.clinxin.axinaiagent.tools.ExecutionPolicyToolCallback;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbacks;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+class ParallelToolCallExecutorTest {
+
+    static class SlowTools {
+
+        @Tool(description = "Slow echo")
+        public String slowEcho(@ToolParam(description = "text") String text) throws InterruptedException {
+            Thread.sleep(500);
+            return text;
+        }
+
+        @Tool(description = "Hang forever")
+        public String hang() throws InterruptedException {
+            Thread.sleep(60_000);
+            return "never";
+        }
+    }
+
+    @Test
+    void executeInParallelAndKeepOrder() {
+        ToolCallback[] toolCallbacks = Arrays.stream(ToolCallbacks.from(new SlowTools()))
+                .map(toolCallback -> new ExecutionPolicyToolCallback(toolCallback, true, Duration.ofSeconds(1)))
+                .toArray(ToolCallback[]::new);
+        ParallelToolCallExecutor executor = new ParallelToolCallExecutor(toolCallbacks);
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), List.of(
+                new AssistantMessage.ToolCall("1", "function", "slowEcho", "{\"text\":\"a\"}"),
+                new AssistantMessage.ToolCall("2", "function", "hang", "{}"),
+                new AssistantMessage.ToolCall("3", "function", "slowEcho", "{\"text\":\"b\"}"),
+                new AssistantMessage.ToolCall("4", "function", "slowEcho", "{\"text\":\"c\"}")));
+        long start = System.currentTimeMillis();
+        ToolResponseMessage toolResponseMessage = executor.execute(assistantMessage);
+        long elapsed = System.currentTimeMillis() - start;
+        // 串行需要 1.5 秒以上加上超时时间，并行时只受最长的超时约束
+        Assertions.assertTrue(elapsed < 2000, "elapsed " + elapsed);
+        List<ToolResponseMessage.ToolResponse> responses = toolResponseMessage.getResponses();
+        Assertions.assertEquals(List.of("1", "2", "3", "4"), responses.stream().map(ToolResponseMessage.ToolResponse::id).toList());
+        Assertions.assertTrue(responses.get(0).responseData().contains("a"));
+        Assertions.assertTrue(responses.get(1).responseData().contains("timed out"));
+        Assertions.assertTrue(responses.get(3).responseData().contains("c"));
+    }
+
+    @Test
+    void onlyReadOnlyParallelToolsArePrestartable() {
+        ToolCallback[] tools = ToolCallbacks.from(new SlowTools());
+        ParallelToolCallExecutor executor = new ParallelToolCallExecutor(new ToolCallback[]{
+                new ExecutionPolicyToolCallback(tools[0], true, Duration.ofSeconds(1), true),
+                new ExecutionPolicyToolCallback(tools[1], true, Duration.ofSeconds(1))});
+        String readOnlyName = tools[0].getToolDefinition().name();
+        String sideEffectName = tools[1].getToolDefinition().name();
+        Assertions.assertTrue(executor.isPrestartable(
+                new AssistantMessage.ToolCall("1", "function", readOnlyName, "{}")));
+        Assertions.assertFalse(executor.isPrestartable(
+                new AssistantMessage.ToolCall("2", "function", sideEffectName, "{}")));
+        // 未注册的工具不提前执行
+        Assertions.assertFalse(executor.isPrestartable(
+                new AssistantMessage.ToolCall("3", "function", "unknown", "{}")));
+        ParallelToolCallExecutor serial = new ParallelToolCallExecutor(new ToolCallback[]{
+                new ExecutionPolicyToolCallback(tools[0], false, Duration.ofSeconds(1), true)});
+        Assertions.assertFalse(serial.isPrestartable(
+                new AssistantMessage.ToolCall("4", "function", readOnlyName, "{}")));
+    }
+}
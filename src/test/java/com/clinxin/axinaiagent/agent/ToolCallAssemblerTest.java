@@ -0,0 +1,38 @@
+package com.clinxin.axinaiagent.agent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+
+import java.util.List;
+
+class ToolCallAssemblerTest {
+
+    @Test
+    void mergeIncrementalDeltas() {
+        ToolCallAssembler assembler = new ToolCallAssembler();
+        Assertions.assertTrue(assembler.merge(List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "searchWeb", "{\"query\":"))).isEmpty());
+        // 参数拼接成完整 JSON 后即可提前执行
+        Assertions.assertEquals(List.of(0), assembler.merge(List.of(
+                new AssistantMessage.ToolCall("", "", "", "\"杭州\"}"))));
+        Assertions.assertTrue(assembler.merge(List.of(
+                new AssistantMessage.ToolCall("call-2", "function", "scrapeWebPage", "{\"url\""))).isEmpty());
+        Assertions.assertEquals(List.of(1), assembler.finish());
+        List<AssistantMessage.ToolCall> toolCalls = assembler.toolCalls();
+        Assertions.assertEquals(2, toolCalls.size());
+        Assertions.assertEquals("{\"query\":\"杭州\"}", toolCalls.get(0).arguments());
+        Assertions.assertEquals("scrapeWebPage", toolCalls.get(1).name());
+    }
+
+    @Test
+    void mergeCumulativeDeltas() {
+        ToolCallAssembler assembler = new ToolCallAssembler();
+        assembler.merge(List.of(new AssistantMessage.ToolCall("call-1", "function", "searchWeb", "{\"query\"")));
+        // 部分模型每个分片返回累计参数
+        Assertions.assertEquals(List.of(0), assembler.merge(List.of(
+                new AssistantMessage.ToolCall("call-1", "function", "searchWeb", "{\"query\":\"杭州\"}"))));
+        Assertions.assertEquals("{\"query\":\"杭州\"}", assembler.get(0).arguments());
+        Assertions.assertTrue(assembler.finish().isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package com.clinxin.axinaiagent.agent.checkpoint;
+
+import com.clinxin.axinaiagent.agent.BaseAgent;
+import com.clinxin.axinaiagent.agent.model.AgentState;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+class AgentCheckpointStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void saveAndResume() throws Exception {
+        AgentCheckpointStore store = new AgentCheckpointStore(tempDir.toString(), 4096, 24);
+        String runId = "run-1";
+        List<Message> messageList = new ArrayList<>();
+        List<String> stepResults = new ArrayList<>();
+        messageList.add(new UserMessage("帮我调研杭州的旅游攻略"));
+        store.save(runId, AgentState.RUNNING, 0, messageList, stepResults);
+        for (int step = 1; step <= 5; step++) {
+            messageList.add(new AssistantMessage("第 " + step + " 步"));
+            stepResults.add("Step " + step + ": 完成");
+            store.save(runId, AgentState.RUNNING, step, messageList, stepResults);
+        }
+        // 上下文被整理后写入完整快照
+        messageList.subList(1, 4).clear();
+        messageList.add(1, new UserMessage("[历史步骤摘要]\n第 1-3 步"));
+        messageList.add(new AssistantMessage("第 6 步"));
+        stepResults.add("Step 6: 完成");
+        store.save(runId, AgentState.RUNNING, 6, messageList, stepResults);
+        store.shutdown();
+
+        // 重启后读取检查点
+        AgentCheckpointStore reopened = new AgentCheckpointStore(tempDir.toString(), 4096, 24);
+        AgentRunCheckpoint checkpoint = reopened.load(runId);
+        Assertions.assertEquals(AgentState.RUNNING, checkpoint.getState());
+        Assertions.assertEquals(6, checkpoint.getCurrentStep());
+        Assertions.assertEquals(texts(messageList), texts(checkpoint.getMessageList()));
+        Assertions.assertEquals(stepResults, checkpoint.getStepResults());
+
+        // 恢复后继续追加
+        List<Message> resumed = new ArrayList<>(checkpoint.getMessageList());
+        List<String> resumedResults = new ArrayList<>(checkpoint.getStepResults());
+        resumed.add(new AssistantMessage("第 7 步"));
+        resumedResults.add("Step 7: 完成");
+        reopened.save(runId, AgentState.FINISHED, 7, resumed, resumedResults);
+        AgentRunCheckpoint finished = reopened.load(runId);
+        Assertions.assertEquals(AgentState.FINISHED, finished.getState());
+        Assertions.assertEquals(texts(resumed), texts(finished.getMessageList()));
+        Assertions.assertEquals(7, finished.getStepResults().size());
+
+        reopened.delete(runId);
+        Assertions.assertNull(reopened.load(runId));
+        reopened.shutdown();
+    }
+
+    @Test
+    void onlyOneExecutorPerRun() {
+        AgentCheckpointStore store = new AgentCheckpointStore(tempDir.toString(), 4096, 24);
+        BaseAgent first = new TestAgent();
+        BaseAgent second = new TestAgent();
+        Assertions.assertTrue(store.register("run-2", first));
+        Assertions.assertFalse(store.register("run-2", second));
+        Assertions.assertSame(first, store.getLiveRun("run-2"));
+        // 非执行者释放无效
+        store.release("run-2", second);
+        Assertions.assertSame(first, store.getLiveRun("run-2"));
+        store.release("run-2", first);
+        Assertions.assertTrue(store.awaitRelease("run-2", Duration.ofMillis(10)));
+        Assertions.assertNull(store.getLiveRun("run-2"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.register("../run", first));
+        store.shutdown();
+    }
+
+    private static List<String> texts(List<Message> messages) {
+        return messages.stream().map(Message::getText).toList();
+    }
+
+    private static class TestAgent extends BaseAgent {
+        @Override
+        public String step() {
+            return "";
+        }
+    }
+}
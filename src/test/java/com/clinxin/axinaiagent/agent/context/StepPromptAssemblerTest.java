@@ -0,0 +1,183 @@
+package com.clinxin.axinaiagent.agent.context;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.clinxin.axinaiagent.tools.TerminateTool;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.ToolCallbacks;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
+class StepPromptAssemblerTest {
+
+    private static final String SYSTEM_PROMPT = """
+            You are AxinManus, an all-capable AI assistant, aimed at solving any task presented by the user.
+            You have various tools at your disposal that you can call upon to efficiently complete complex requests.
+            """;
+
+    private static final String NEXT_STEP_PROMPT = """
+            Based on user needs, proactively select the most appropriate tool or combination of tools.
+            For complex tasks, you can break down the problem and use different tools step by step to solve it.
+            After using each tool, clearly explain the execution results and suggest the next steps.
+            If you want to stop the interaction at any point, use the `terminate` tool/function call.
+            """;
+
+    @Test
+    void stepPromptIsEphemeralAndPrefixStable() {
+        ToolCallback[] tools = ToolCallbacks.from(new TerminateTool());
+        StepPromptAssembler assembler = new StepPromptAssembler(null);
+        List<Message> messageList = new ArrayList<>(List.of(new UserMessage("帮我调研杭州的旅游攻略")));
+        Prompt prompt = assembler.assemble(SYSTEM_PROMPT, tools, messageList, NEXT_STEP_PROMPT);
+        Assertions.assertEquals(2, prompt.getInstructions().size());
+        Assertions.assertEquals(NEXT_STEP_PROMPT, prompt.getInstructions().get(1).getText());
+        // 步骤提示不写入消息上下文
+        Assertions.assertEquals(1, messageList.size());
+        String prefixHash = assembler.getPrefixHash();
+        assembler.assemble(SYSTEM_PROMPT, tools, messageList, NEXT_STEP_PROMPT);
+        Assertions.assertEquals(prefixHash, assembler.getPrefixHash());
+        Assertions.assertEquals(prefixHash, StepPromptAssembler.hashPrefix(SYSTEM_PROMPT, ToolCallbacks.from(new TerminateTool())));
+        Assertions.assertNotEquals(prefixHash, StepPromptAssembler.hashPrefix(SYSTEM_PROMPT + " ", tools));
+    }
+
+    /**
+     * 录制的 20 步 AxinManus 执行记录（src/test/resources/trace）上的对比：
+     * 每步把步骤提示写入上下文（组装前）vs 临时的末尾步骤提示（组装后），并校验各步的静态前缀逐字节一致
+     */
+    @Test
+    void recordedTwentyStepTrace() throws IOException {
+        JSONObject trace = readTrace("axin-manus-20-steps.json");
+        String systemPrompt = trace.getStr("systemPrompt");
+        String nextStepPrompt = trace.getStr("nextStepPrompt");
+        JSONArray steps = trace.getJSONArray("steps");
+        Assertions.assertEquals(20, steps.size());
+
+        TokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+        StepPromptAssembler assembler = new StepPromptAssembler(null);
+        List<Message> storedHistory = new ArrayList<>(List.of(new UserMessage(trace.getStr("task"))));
+        List<Message> ephemeralHistory = new ArrayList<>(storedHistory);
+        long storedTokens = 0;
+        long ephemeralTokens = 0;
+        Set<String> prefixHashes = new HashSet<>();
+        for (int step = 0; step < steps.size(); step++) {
+            JSONObject recorded = steps.getJSONObject(step);
+            // 每步重新构造工具定义，哈希按内容而不是引用比较
+            ToolCallback[] tools = tools(trace.getJSONArray("tools"));
+            storedHistory.add(new UserMessage(nextStepPrompt));
+            storedTokens += countTokens(estimator, systemPrompt, tools, storedHistory);
+            Prompt prompt = assembler.assemble(systemPrompt, tools, ephemeralHistory, nextStepPrompt);
+            ephemeralTokens += countTokens(estimator, systemPrompt, tools, prompt.getInstructions());
+            Assertions.assertEquals(recorded.getStr("prefixHash"), assembler.getPrefixHash(), "step " + (step + 1));
+            prefixHashes.add(assembler.getPrefixHash());
+            for (Message message : recordedMessages(recorded)) {
+                storedHistory.add(message);
+                ephemeralHistory.add(message);
+            }
+        }
+        log.info("Recorded 20-step trace: {} prompt tokens before assembly, {} after ({} saved, {}%)",
+                storedTokens, ephemeralTokens, storedTokens - ephemeralTokens,
+                (storedTokens - ephemeralTokens) * 100 / storedTokens);
+        Assertions.assertEquals(1, prefixHashes.size());
+        // 第 i 步多发送 i 份步骤提示，合计多 190 份
+        Assertions.assertEquals(190L * estimator.estimate(nextStepPrompt), storedTokens - ephemeralTokens);
+    }
+
+    private static long countTokens(TokenCountEstimator estimator, String systemPrompt, ToolCallback[] tools,
+                                    List<Message> messages) {
+        long tokens = estimator.estimate(systemPrompt);
+        for (ToolCallback tool : tools) {
+            ToolDefinition definition = tool.getToolDefinition();
+            tokens += estimator.estimate(definition.name()) + estimator.estimate(definition.description())
+                    + estimator.estimate(definition.inputSchema());
+        }
+        for (Message message : messages) {
+            if (message instanceof ToolResponseMessage toolResponseMessage) {
+                for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                    tokens += estimator.estimate(response.responseData());
+                }
+            } else if (message instanceof AssistantMessage assistantMessage) {
+                tokens += estimator.estimate(assistantMessage.getText());
+                for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                    tokens += estimator.estimate(toolCall.arguments());
+                }
+            } else {
+                tokens += estimator.estimate(message.getText());
+            }
+        }
+        return tokens;
+    }
+
+    private static JSONObject readTrace(String name) throws IOException {
+        try (InputStream in = StepPromptAssemblerTest.class.getResourceAsStream("/trace/" + name)) {
+            Assertions.assertNotNull(in, "missing trace " + name);
+            return JSONUtil.parseObj(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 按录制的工具定义构造工具（只用于组装提示词，不会被调用）
+     */
+    private static ToolCallback[] tools(JSONArray definitions) {
+        ToolCallback[] tools = new ToolCallback[definitions.size()];
+        for (int i = 0; i < tools.length; i++) {
+            JSONObject definition = definitions.getJSONObject(i);
+            ToolDefinition toolDefinition = ToolDefinition.builder()
+                    .name(definition.getStr("name"))
+                    .description(definition.getStr("description"))
+                    .inputSchema(definition.getStr("inputSchema"))
+                    .build();
+            tools[i] = new ToolCallback() {
+                @Override
+                public ToolDefinition getToolDefinition() {
+                    return toolDefinition;
+                }
+
+                @Override
+                public String call(String toolInput) {
+                    throw new UnsupportedOperationException("recorded tool " + toolDefinition.name());
+                }
+            };
+        }
+        return tools;
+    }
+
+    /**
+     * 执行记录中的一步：助手消息（含工具调用）及工具结果
+     */
+    private static List<Message> recordedMessages(JSONObject step) {
+        JSONObject assistant = step.getJSONObject("assistant");
+        List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        for (Object call : assistant.getJSONArray("toolCalls")) {
+            JSONObject toolCall = (JSONObject) call;
+            toolCalls.add(new AssistantMessage.ToolCall(toolCall.getStr("id"), "function", toolCall.getStr("name"),
+                    toolCall.getStr("arguments")));
+        }
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        for (Object response : step.getJSONArray("toolResponses")) {
+            JSONObject toolResponse = (JSONObject) response;
+            responses.add(new ToolResponseMessage.ToolResponse(toolResponse.getStr("id"), toolResponse.getStr("name"),
+                    toolResponse.getStr("responseData")));
+        }
+        return List.of(new AssistantMessage(assistant.getStr("text"), Map.of(), toolCalls),
+                new ToolResponseMessage(responses));
+    }
+}
@@ -0,0 +1,81 @@
+package com.clinxin.axinaiagent.agent.context;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class TokenBudgetContextWindowManagerTest {
+
+    private static final String SYSTEM_PROMPT = "You are AxinManus, an all-capable AI assistant.";
+
+    @Test
+    void compressOldToolResponses() {
+        List<Message> messageList = buildTrace(10);
+        List<Message> recent = new ArrayList<>(messageList.subList(messageList.size() - 9, messageList.size()));
+        TokenBudgetContextWindowManager manager = new TokenBudgetContextWindowManager(9000, 3, 800);
+        ContextWindowStats stats = manager.compact(messageList, SYSTEM_PROMPT);
+        Assertions.assertTrue(stats.tokensAfter() < stats.tokensBefore());
+        Assertions.assertTrue(stats.tokensAfter() <= 9000);
+        // 只压缩工具结果，消息数不变
+        Assertions.assertEquals(stats.messagesBefore(), stats.messagesAfter());
+        ToolResponseMessage oldest = (ToolResponseMessage) messageList.get(3);
+        Assertions.assertTrue(oldest.getResponses().get(0).responseData().contains("内容已压缩"));
+        assertGoalAndRecentKept(messageList, recent);
+    }
+
+    @Test
+    void summarizeOldSteps() {
+        List<Message> messageList = buildTrace(10);
+        List<Message> recent = new ArrayList<>(messageList.subList(messageList.size() - 9, messageList.size()));
+        TokenBudgetContextWindowManager manager = new TokenBudgetContextWindowManager(4000, 3, 800);
+        ContextWindowStats stats = manager.compact(messageList, SYSTEM_PROMPT);
+        Assertions.assertTrue(stats.tokensAfter() < stats.tokensBefore());
+        // 用户目标 + 摘要 + 最近 3 步
+        Assertions.assertEquals(2 + recent.size(), messageList.size());
+        Assertions.assertTrue(messageList.get(1).getText().startsWith(TokenBudgetContextWindowManager.SUMMARY_PREFIX));
+        Assertions.assertTrue(messageList.get(1).getText().contains("searchWeb"));
+        assertGoalAndRecentKept(messageList, recent);
+
+        // 后续步骤继续增长时滚动合并到同一条摘要
+        messageList.addAll(buildTrace(3).subList(1, 10));
+        manager.compact(messageList, SYSTEM_PROMPT);
+        long summaries = messageList.stream()
+                .filter(message -> message.getText() != null
+                        && message.getText().startsWith(TokenBudgetContextWindowManager.SUMMARY_PREFIX))
+                .count();
+        Assertions.assertEquals(1, summaries);
+    }
+
+    private static void assertGoalAndRecentKept(List<Message> messageList, List<Message> recent) {
+        Assertions.assertEquals("帮我调研杭州的旅游攻略", messageList.get(0).getText());
+        List<Message> tail = messageList.subList(messageList.size() - recent.size(), messageList.size());
+        for (int i = 0; i < recent.size(); i++) {
+            Assertions.assertSame(recent.get(i), tail.get(i));
+        }
+    }
+
+    /**
+     * 构造执行记录：用户目标 + 每步（步骤提示、工具调用、约 1000 tokens 的工具结果）
+     */
+    private static List<Message> buildTrace(int steps) {
+        List<Message> messageList = new ArrayList<>();
+        messageList.add(new UserMessage("帮我调研杭州的旅游攻略"));
+        String page = "<div class=\"item\">data</div> ".repeat(200);
+        for (int i = 0; i < steps; i++) {
+            messageList.add(new UserMessage("Based on user needs, proactively select the most appropriate tool."));
+            AssistantMessage.ToolCall toolCall = new AssistantMessage.ToolCall("call-" + i, "function",
+                    "searchWeb", "{\"query\":\"杭州 攻略 " + i + "\"}");
+            messageList.add(new AssistantMessage("第 " + i + " 步", Map.of(), List.of(toolCall)));
+            messageList.add(new ToolResponseMessage(List.of(
+                    new ToolResponseMessage.ToolResponse("call-" + i, "searchWeb", page))));
+        }
+        return messageList;
+    }
+}
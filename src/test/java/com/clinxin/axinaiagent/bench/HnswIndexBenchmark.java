@@ -0,0 +1,144 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.rag.HnswIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HNSW 单次 top-10 检索耗时：不同 efSearch 下的近似检索，对照组为遍历全部节点的精确检索
+ *
+ * 数据为 20k 个 256 维、围绕 100 个中心的高斯混合向量（接近真实文本向量的聚类分布），
+ * 召回率由 HnswIndexTest 校验，这里只测耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HnswIndexBenchmark {
+
+    private static final int DIMENSIONS = 256;
+
+    private static final int SIZE = 20_000;
+
+    private static final int QUERIES = 100;
+
+    @State(Scope.Benchmark)
+    public static class Approximate {
+
+        @Param({"16", "32", "64", "128", "256"})
+        public int efSearch;
+
+        HnswIndex index;
+
+        float[][] queries;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(4);
+            index = build(random);
+            index.setEfSearch(efSearch);
+            queries = queries(random);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Exact {
+
+        HnswIndex index;
+
+        float[][] queries;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(4);
+            index = build(random);
+            queries = queries(random);
+        }
+    }
+
+    /**
+     * 每次检索轮换使用不同的查询
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            next = 0;
+        }
+
+        int next() {
+            next = (next + 1) % QUERIES;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public HnswIndex.Hits search(Approximate state, Cursor cursor) {
+        return state.index.search(state.queries[cursor.next()], 10, -1, null);
+    }
+
+    @Benchmark
+    public HnswIndex.Hits exactSearch(Exact state, Cursor cursor) {
+        return state.index.exactSearch(state.queries[cursor.next()], 10, -1, null);
+    }
+
+    private static HnswIndex build(Random random) {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100, 16);
+        for (int i = 0; i < SIZE; i++) {
+            index.add(clusteredVector(random));
+        }
+        return index;
+    }
+
+    private static float[][] queries(Random random) {
+        float[][] queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = clusteredVector(random);
+        }
+        return queries;
+    }
+
+    /**
+     * 围绕 100 个固定中心的高斯混合分布
+     */
+    private static float[] clusteredVector(Random random) {
+        float[] center = randomVector(new Random(random.nextInt(100)));
+        float[] vector = randomVector(random);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] += center[i];
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HnswIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
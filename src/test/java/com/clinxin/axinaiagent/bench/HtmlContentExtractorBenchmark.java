@@ -0,0 +1,84 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.tools.HtmlContentExtractor;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网页正文提取吞吐量（页/秒）：每次解析一个保存下来的网页（src/test/resources/html）并提取分页文本
+ *
+ * 计入 Jsoup 解析耗时，与 WebScrapingTool 的处理一致，分页和字符上限取 application.yml 的默认值。
+ * 各网页的输入字节数和输出字符数在运行前输出，提取结果的正确性由 HtmlContentExtractorTest 校验
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlContentExtractorBenchmark {
+
+    private static final String[] FIXTURES = {
+            "travel-blog.html", "news-article.html", "docs-page.html", "forum-thread.html"};
+
+    @State(Scope.Benchmark)
+    public static class Page {
+
+        @Param({"travel-blog.html", "news-article.html", "docs-page.html", "forum-thread.html"})
+        public String fixture;
+
+        HtmlContentExtractor extractor;
+
+        String html;
+
+        @Setup
+        public void setUp() throws IOException {
+            extractor = new HtmlContentExtractor(2000, 200_000);
+            html = readFixture(fixture);
+        }
+    }
+
+    @Benchmark
+    public List<String> extract(Page state) {
+        return state.extractor.extractPages(Jsoup.parse(state.html));
+    }
+
+    private static String readFixture(String name) throws IOException {
+        try (InputStream in = HtmlContentExtractorBenchmark.class.getResourceAsStream("/html/" + name)) {
+            if (in == null) {
+                throw new IOException("Fixture not found on classpath: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        HtmlContentExtractor extractor = new HtmlContentExtractor(2000, 200_000);
+        System.out.printf("%-20s %12s %12s %6s%n", "fixture", "input bytes", "output chars", "pages");
+        for (String fixture : FIXTURES) {
+            String html = readFixture(fixture);
+            List<String> pages = extractor.extractPages(Jsoup.parse(html));
+            System.out.printf("%-20s %12d %12d %6d%n", fixture, html.getBytes(StandardCharsets.UTF_8).length,
+                    String.join("\n\n", pages).length(), pages.size());
+        }
+        new Runner(new OptionsBuilder().include(HtmlContentExtractorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
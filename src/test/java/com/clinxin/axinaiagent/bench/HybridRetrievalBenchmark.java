@@ -0,0 +1,117 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.rag.Bm25Index;
+import com.clinxin.axinaiagent.rag.HybridDocumentRetriever;
+import com.clinxin.axinaiagent.rag.KeywordIndexedVectorStore;
+import com.clinxin.axinaiagent.rag.OffHeapVectorStore;
+import com.clinxin.axinaiagent.rag.ScaledCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BM25、向量与混合检索在合成放大语料（ScaledCorpus）上的单次 top-10 查询耗时
+ *
+ * 查询为姓名查询和主题查询各一半，与 HybridDocumentRetrieverTest 使用相同的语料和种子，召回率由该测试校验。
+ * 语料从 src/main/resources/document 读取，需要在项目根目录下运行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HybridRetrievalBenchmark {
+
+    private static final int QUERIES = 100;
+
+    @State(Scope.Benchmark)
+    public static class Corpus {
+
+        @Param({"20000", "100000"})
+        public int size;
+
+        Bm25Index keywordIndex;
+
+        KeywordIndexedVectorStore vectorStore;
+
+        HybridDocumentRetriever hybrid;
+
+        List<String> queries;
+
+        @Setup
+        public void setUp() throws IOException {
+            ScaledCorpus corpus = new ScaledCorpus(size, 7);
+            keywordIndex = new Bm25Index();
+            vectorStore = new KeywordIndexedVectorStore(
+                    new OffHeapVectorStore(new ScaledCorpus.BigramEmbeddingModel()), keywordIndex);
+            List<Document> documents = corpus.documents();
+            for (int i = 0; i < size; i += 1_000) {
+                vectorStore.add(documents.subList(i, Math.min(size, i + 1_000)));
+            }
+            hybrid = new HybridDocumentRetriever(vectorStore, keywordIndex, 10);
+            queries = new ArrayList<>(corpus.nameQueries(QUERIES / 2).texts());
+            queries.addAll(corpus.topicQueries(QUERIES / 2).texts());
+        }
+    }
+
+    /**
+     * 每次检索轮换使用不同的查询
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            next = 0;
+        }
+
+        int next() {
+            next = (next + 1) % QUERIES;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<Document> bm25(Corpus state, Cursor cursor) {
+        return state.keywordIndex.search(state.queries.get(cursor.next()), 10, null);
+    }
+
+    @Benchmark
+    public List<Document> vector(Corpus state, Cursor cursor) {
+        return state.vectorStore.similaritySearch(SearchRequest.builder()
+                .query(state.queries.get(cursor.next()))
+                .topK(10)
+                .build());
+    }
+
+    @Benchmark
+    public List<Document> hybrid(Corpus state, Cursor cursor) {
+        return state.hybrid.retrieve(new Query(state.queries.get(cursor.next())));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HybridRetrievalBenchmark.class.getSimpleName()).build()).run();
+    }
+}
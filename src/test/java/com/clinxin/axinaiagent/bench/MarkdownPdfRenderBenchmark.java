@@ -0,0 +1,73 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.tools.MarkdownPdfRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Markdown 转 PDF 基准：10 / 100 / 1000 页报告的渲染耗时，内存分配由 GC profiler 输出
+ *
+ * 堆内存上限固定为 256 MB，1000 页能在该上限内完成即说明渲染是逐页输出、不随页数累积
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+@State(Scope.Benchmark)
+public class MarkdownPdfRenderBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int pageCount;
+
+    private final MarkdownPdfRenderer renderer = new MarkdownPdfRenderer();
+
+    private String report;
+
+    @Setup
+    public void setUp() {
+        StringBuilder markdown = new StringBuilder();
+        for (int page = 0; page < pageCount; page++) {
+            markdown.append("## 第 ").append(page + 1).append(" 节\n\n");
+            for (int i = 0; i < 3; i++) {
+                markdown.append("这是用于测试分页输出的段落内容，包含中文和 English words。".repeat(4)).append("\n\n");
+            }
+            markdown.append("- 要点一\n- 要点二\n\n| 项目 | 数值 |\n| --- | --- |\n");
+            for (int row = 0; row < 5; row++) {
+                markdown.append("| 项目 ").append(row).append(" | ").append(row * 10).append(" |\n");
+            }
+            markdown.append("\n\\newpage\n");
+        }
+        report = markdown.toString();
+    }
+
+    @Benchmark
+    public int render() throws IOException {
+        return renderer.render(new StringReader(report), OutputStream.nullOutputStream());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MarkdownPdfRenderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
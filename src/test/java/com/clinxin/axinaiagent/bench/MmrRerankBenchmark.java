@@ -0,0 +1,78 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.rag.MmrDocumentRetriever;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MMR 重排序基准：从若干 1536 维候选中选出 8 个
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MmrRerankBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+
+    @Param({"50", "200"})
+    public int candidateCount;
+
+    private MmrDocumentRetriever retriever;
+
+    private final Query query = new Query("q");
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<String, float[]> embeddings = new HashMap<>();
+        List<Document> candidates = new ArrayList<>();
+        for (int i = 0; i < candidateCount; i++) {
+            float[] vector = new float[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            String id = "doc-" + i;
+            embeddings.put(id, vector);
+            candidates.add(Document.builder().id(id).text(id)
+                    .metadata(Map.of("filename", "file-" + (i % 10) + ".md"))
+                    .score(1.0 - i * 0.001)
+                    .build());
+        }
+        retriever = new MmrDocumentRetriever(q -> candidates, embeddings::get, 8, 0.7, 2, 10_000,
+                new JTokkitTokenCountEstimator());
+    }
+
+    @Benchmark
+    public List<Document> rerank() {
+        return retriever.retrieve(query);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MmrRerankBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.rag.OffHeapVectorIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 堆外向量索引的单次 top-10 查询耗时，对照组为堆上数组逐个计算余弦相似度后排序（SimpleVectorStore 的方式）
+ *
+ * 1536 维下 1M 向量约占 6 GB，两组各自使用独立的状态，只有运行到对应基准时才构建
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-XX:MaxDirectMemorySize=8g"})
+public class OffHeapVectorIndexBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+
+    private static final int TOP_K = 10;
+
+    @State(Scope.Benchmark)
+    public static class OffHeapIndex {
+
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        OffHeapVectorIndex index;
+
+        float[] query;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(7);
+            index = new OffHeapVectorIndex(DIMENSIONS);
+            for (int i = 0; i < size; i++) {
+                index.add(randomVector(random));
+            }
+            query = randomVector(random);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class HeapVectors {
+
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        float[][] vectors;
+
+        float[] query;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(7);
+            vectors = new float[size][];
+            for (int i = 0; i < size; i++) {
+                vectors[i] = randomVector(random);
+            }
+            query = randomVector(random);
+        }
+    }
+
+    @Benchmark
+    public OffHeapVectorIndex.Hits offHeapSearch(OffHeapIndex state) {
+        return state.index.search(state.query, TOP_K, -1, null);
+    }
+
+    @Benchmark
+    public List<Integer> scalarSearch(HeapVectors state) {
+        float[][] vectors = state.vectors;
+        double[][] scored = new double[vectors.length][];
+        for (int i = 0; i < vectors.length; i++) {
+            scored[i] = new double[]{i, cosine(vectors[i], state.query)};
+        }
+        Arrays.sort(scored, Comparator.comparingDouble(s -> -s[1]));
+        return Arrays.stream(scored).limit(TOP_K).map(s -> (int) s[0]).toList();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OffHeapVectorIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package com.clinxin.axinaiagent.bench;
+
+import com.clinxin.axinaiagent.rag.OffHeapVectorStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OffHeapVectorStore 与 SimpleVectorStore 在 10k / 100k / 1M 文档下的 top-10 查询耗时
+ *
+ * 向量由按字符二元组哈希的 256 维模型生成，两个向量库各自使用独立的状态，只有运行到对应基准时才构建
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g", "-XX:MaxDirectMemorySize=4g"})
+public class OffHeapVectorStoreBenchmark {
+
+    private static final SearchRequest REQUEST = SearchRequest.builder().query("计划 42").topK(10).build();
+
+    @State(Scope.Benchmark)
+    public static class OffHeap {
+
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        VectorStore vectorStore;
+
+        @Setup
+        public void setUp() {
+            vectorStore = new OffHeapVectorStore(new HashEmbeddingModel());
+            vectorStore.add(documents(size));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Simple {
+
+        @Param({"10000", "100000", "1000000"})
+        public int size;
+
+        VectorStore vectorStore;
+
+        @Setup
+        public void setUp() {
+            vectorStore = SimpleVectorStore.builder(new HashEmbeddingModel()).build();
+            vectorStore.add(documents(size));
+        }
+    }
+
+    @Benchmark
+    public List<Document> offHeapVectorStore(OffHeap state) {
+        return state.vectorStore.similaritySearch(REQUEST);
+    }
+
+    @Benchmark
+    public List<Document> simpleVectorStore(Simple state) {
+        return state.vectorStore.similaritySearch(REQUEST);
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String status = i % 2 == 0 ? "计划之前" : "计划之后";
+            documents.add(new Document("计划 " + i + " 旅行 预算 " + (i * 7 % 101),
+                    Map.of("status", status, "index", i)));
+        }
+        return documents;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OffHeapVectorStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * 按字符哈希生成确定性向量的嵌入模型
+     */
+    private static class HashEmbeddingModel implements EmbeddingModel {
+
+        private static final int DIMENSIONS = 256;
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                // 相邻字符组成的二元组
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), DIMENSIONS)] += 1;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.clinxin.axinaiagent.chatmemory;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+class FileBasedChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void addAndGetLastN() {
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString(), 512, 1000, 60);
+        String chatId = "chat-1";
+        for (int i = 0; i < 50; i++) {
+            chatMemory.add(chatId, List.of(new UserMessage("问题 " + i), new AssistantMessage("回答 " + i)));
+        }
+        List<Message> messages = chatMemory.get(chatId, 10);
+        Assertions.assertEquals(10, messages.size());
+        Assertions.assertEquals("问题 45", messages.get(0).getText());
+        Assertions.assertEquals("回答 49", messages.get(9).getText());
+        chatMemory.close();
+
+        // 重新打开后仍能读取
+        FileBasedChatMemory reopened = new FileBasedChatMemory(tempDir.toString(), 512, 1000, 60);
+        Assertions.assertEquals(100, reopened.get(chatId, Integer.MAX_VALUE).size());
+        reopened.clear(chatId);
+        Assertions.assertTrue(reopened.get(chatId, 10).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void compactionKeepsFullHistoryUnlessRetentionIsSet() throws Exception {
+        ConversationLog conversationLog = new ConversationLog(tempDir.resolve("log").toFile(), 64);
+        for (int i = 0; i < 100; i++) {
+            conversationLog.append(List.of(("record-" + i).getBytes(StandardCharsets.UTF_8)), false);
+        }
+        int segments = conversationLog.segmentCount();
+        conversationLog.compact(0);
+        // 不指定保留条数时只合并分段
+        Assertions.assertEquals(100, conversationLog.size());
+        Assertions.assertTrue(conversationLog.segmentCount() < segments);
+        Assertions.assertEquals("record-0",
+                new String(conversationLog.readLast(100).get(0), StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(100, new ConversationLog(tempDir.resolve("log").toFile(), 64).size());
+
+        // 指定保留条数时丢弃窗口之外的旧分段
+        ConversationLog retained = new ConversationLog(tempDir.resolve("retained").toFile(), 64);
+        for (int i = 0; i < 100; i++) {
+            retained.append(List.of(("record-" + i).getBytes(StandardCharsets.UTF_8)), false);
+        }
+        retained.compact(10);
+        Assertions.assertTrue(retained.size() >= 10 && retained.size() < 100);
+        Assertions.assertEquals("record-99", new String(retained.readLast(1).get(0), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void leftoverCompactingFilesAreRemovedOnLoad() throws Exception {
+        Path dir = tempDir.resolve("log");
+        ConversationLog conversationLog = new ConversationLog(dir.toFile(), 1024);
+        conversationLog.append(List.of("record".getBytes(StandardCharsets.UTF_8)), true);
+        Path leftover = dir.resolve("00000000000000000000.log.compacting");
+        Files.write(leftover, new byte[16]);
+        ConversationLog reopened = new ConversationLog(dir.toFile(), 1024);
+        Assertions.assertFalse(Files.exists(leftover));
+        Assertions.assertEquals(1, reopened.size());
+    }
+
+    @Test
+    void unknownConversationsAreNotOpened() {
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString());
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(chatMemory.get("missing-" + i, 10).isEmpty());
+        }
+        Assertions.assertEquals(0, chatMemory.openConversationCount());
+        Assertions.assertFalse(Files.exists(tempDir.resolve("missing-0")));
+        chatMemory.close();
+    }
+
+    @Test
+    void conversationIdsCannotEscapeBaseDir() throws Exception {
+        Path baseDir = Files.createDirectory(tempDir.resolve("memory"));
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(baseDir.toString());
+        for (String chatId : List.of("../escape", "..", "a/b", "/tmp/x", "对话 1")) {
+            chatMemory.add(chatId, List.of(new UserMessage(chatId)));
+            Assertions.assertEquals(chatId, chatMemory.get(chatId, 1).get(0).getText());
+        }
+        try (Stream<Path> siblings = Files.list(tempDir)) {
+            Assertions.assertEquals(List.of(baseDir), siblings.toList());
+        }
+        try (Stream<Path> children = Files.list(baseDir)) {
+            Assertions.assertEquals(5, children.count());
+        }
+        // 安全的 id 原样作为目录名，与已有数据兼容
+        Assertions.assertEquals("chat-1_A", FileBasedChatMemory.toFileName("chat-1_A"));
+        Assertions.assertNotEquals(FileBasedChatMemory.toFileName("a/b"), FileBasedChatMemory.toFileName("a%2Fb"));
+        Assertions.assertTrue(FileBasedChatMemory.toFileName("x".repeat(500)).length() < 100);
+        chatMemory.close();
+    }
+
+    @Test
+    void migrateLegacyFilesOfUnescapedIds() throws Exception {
+        // 旧版以未转义的 {conversationId}.kryo 保存整个消息列表
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+        String chatId = "zhangsan@example.com:plan.v1";
+        try (Output output = new Output(new FileOutputStream(tempDir.resolve(chatId + ".kryo").toFile()))) {
+            kryo.writeObject(output, new ArrayList<>(List.of(new UserMessage("旧问题"), new AssistantMessage("旧回答"))));
+        }
+        // 会逃出保存目录的 id 不读取目录外的同名文件
+        Path baseDir = Files.createDirectory(tempDir.resolve("memory"));
+        Files.copy(tempDir.resolve(chatId + ".kryo"), tempDir.resolve("outside.kryo"));
+
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString());
+        chatMemory.add(chatId, List.of(new UserMessage("新问题")));
+        Assertions.assertEquals(List.of("旧问题", "旧回答", "新问题"),
+                chatMemory.get(chatId, 10).stream().map(Message::getText).toList());
+        Assertions.assertFalse(Files.exists(tempDir.resolve(chatId + ".kryo")));
+        Assertions.assertTrue(Files.isDirectory(tempDir.resolve(FileBasedChatMemory.toFileName(chatId))));
+        chatMemory.close();
+
+        FileBasedChatMemory nested = new FileBasedChatMemory(baseDir.toString());
+        Assertions.assertTrue(nested.get("../outside", 10).isEmpty());
+        nested.clear("../outside");
+        Assertions.assertTrue(Files.exists(tempDir.resolve("outside.kryo")));
+        nested.close();
+    }
+
+    @Test
+    void concurrentWriters() throws Exception {
+        FileBasedChatMemory chatMemory = new FileBasedChatMemory(tempDir.toString(), 4096, 100000, 1);
+        int writers = 64;
+        int conversations = 8;
+        int messagesPerWriter = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(writers)) {
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    String chatId = "chat-" + (writer % conversations);
+                    for (int i = 0; i < messagesPerWriter; i++) {
+                        chatMemory.add(chatId, List.of(new UserMessage(writer + ":" + i)));
+                        // 穿插读取，与写入和后台压缩并发
+                        chatMemory.get(chatId, 10);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        // 每个会话的消息不丢失、不损坏，且每个写入者内部保持顺序
+        int perConversation = writers / conversations * messagesPerWriter;
+        for (int c = 0; c < conversations; c++) {
+            List<Message> messages = chatMemory.get("chat-" + c, Integer.MAX_VALUE);
+            Assertions.assertEquals(perConversation, messages.size());
+            Set<String> texts = new HashSet<>();
+            int[] lastIndex = new int[writers];
+            Arrays.fill(lastIndex, -1);
+            for (Message message : messages) {
+                String[] parts = message.getText().split(":");
+                int writer = Integer.parseInt(parts[0]);
+                int index = Integer.parseInt(parts[1]);
+                Assertions.assertEquals(c, writer % conversations);
+                Assertions.assertTrue(index > lastIndex[writer]);
+                lastIndex[writer] = index;
+                texts.add(message.getText());
+            }
+            Assertions.assertEquals(perConversation, texts.size());
+        }
+        chatMemory.close();
+    }
+}
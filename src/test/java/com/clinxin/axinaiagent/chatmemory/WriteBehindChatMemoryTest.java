@@ -0,0 +1,136 @@
+package com.clinxin.axinaiagent.chatmemory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class WriteBehindChatMemoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void cacheHitAndFlushOnClose() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.NEVER, 0);
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(fileBasedChatMemory, meterRegistry,
+                1024 * 1024, 60_000, 100, 1000, 60_000);
+        String chatId = "chat-1";
+        // 首次读取未命中，之后的读写都在缓存中完成
+        Assertions.assertTrue(chatMemory.get(chatId, 10).isEmpty());
+        for (int i = 0; i < 5; i++) {
+            chatMemory.add(chatId, List.of(new UserMessage("问题 " + i), new AssistantMessage("回答 " + i)));
+            Assertions.assertEquals(Math.min(10, 2 * (i + 1)), chatMemory.get(chatId, 10).size());
+        }
+        Assertions.assertEquals(1.0, meterRegistry.counter("chat.memory.cache.misses").count());
+        Assertions.assertEquals(5.0, meterRegistry.counter("chat.memory.cache.hits").count());
+        chatMemory.close();
+
+        // 关闭时已同步落盘
+        FileBasedChatMemory reopened = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.NEVER, 0);
+        List<Message> messages = reopened.get(chatId, 100);
+        Assertions.assertEquals(10, messages.size());
+        Assertions.assertEquals("回答 4", messages.get(9).getText());
+        reopened.close();
+    }
+
+    @Test
+    void failedFlushIsRetriedWithoutLosingMessages() {
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.NEVER, 0) {
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                if (failuresLeft.getAndDecrement() > 0) {
+                    throw new UncheckedIOException(new IOException("磁盘暂时不可用"));
+                }
+                super.add(conversationId, messages);
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(fileBasedChatMemory, meterRegistry,
+                1024 * 1024, 60_000, 2, 1000, 60_000);
+        String chatId = "chat-1";
+        chatMemory.add(chatId, List.of(new UserMessage("问题 0"), new AssistantMessage("回答 0")));
+        chatMemory.flushAll();
+        Assertions.assertEquals(2, chatMemory.getPendingMessages());
+        Assertions.assertEquals(1, chatMemory.getRetryingConversations());
+
+        // 缓存窗口只有 2 条，读取更多时落盘再次失败，未落盘的消息仍接在磁盘内容之后返回
+        chatMemory.add(chatId, List.of(new UserMessage("问题 1")));
+        List<Message> messages = chatMemory.get(chatId, 10);
+        Assertions.assertEquals(List.of("问题 0", "回答 0", "问题 1"), messages.stream().map(Message::getText).toList());
+        Assertions.assertEquals(3, chatMemory.getPendingMessages());
+        Assertions.assertEquals(2.0, meterRegistry.counter("chat.memory.flush.failures").count());
+
+        // 恢复后按原顺序落盘
+        chatMemory.close();
+        Assertions.assertEquals(0, chatMemory.getPendingMessages());
+        FileBasedChatMemory reopened = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.NEVER, 0);
+        Assertions.assertEquals(List.of("问题 0", "回答 0", "问题 1"),
+                reopened.get(chatId, 10).stream().map(Message::getText).toList());
+        reopened.close();
+    }
+
+    @Test
+    void writeThroughFailureKeepsNothingForRetry() {
+        AtomicInteger failuresLeft = new AtomicInteger(1);
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.ALWAYS, 0) {
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                if (failuresLeft.getAndDecrement() > 0) {
+                    throw new UncheckedIOException(new IOException("磁盘暂时不可用"));
+                }
+                super.add(conversationId, messages);
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(fileBasedChatMemory, meterRegistry,
+                1024 * 1024, 60_000, 100, 1000, 60_000);
+        String chatId = "chat-1";
+        List<Message> batch = List.of(new UserMessage("问题 0"), new AssistantMessage("回答 0"));
+        Assertions.assertThrows(IllegalStateException.class, () -> chatMemory.add(chatId, batch));
+        // 失败的批次不留在缓存和待落盘队列中
+        Assertions.assertEquals(0, chatMemory.getPendingMessages());
+        Assertions.assertTrue(chatMemory.get(chatId, 10).isEmpty());
+        Assertions.assertEquals(1.0, meterRegistry.counter("chat.memory.flush.failures").count());
+
+        // 调用方重试后只写入一次
+        chatMemory.add(chatId, batch);
+        Assertions.assertEquals(List.of("问题 0", "回答 0"), chatMemory.get(chatId, 10).stream().map(Message::getText).toList());
+        chatMemory.close();
+        FileBasedChatMemory reopened = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.NEVER, 0);
+        Assertions.assertEquals(List.of("问题 0", "回答 0"),
+                reopened.get(chatId, 10).stream().map(Message::getText).toList());
+        reopened.close();
+    }
+
+    @Test
+    void evictBySize() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileBasedChatMemory fileBasedChatMemory = new FileBasedChatMemory(tempDir.toString(), FsyncPolicy.NEVER, 0);
+        // 只够缓存少量消息
+        WriteBehindChatMemory chatMemory = new WriteBehindChatMemory(fileBasedChatMemory, meterRegistry,
+                2048, 60_000, 100, 1000, 60_000);
+        for (int c = 0; c < 20; c++) {
+            chatMemory.add("chat-" + c, List.of(new UserMessage("计划内容 ".repeat(20) + c)));
+        }
+        Assertions.assertTrue(meterRegistry.counter("chat.memory.cache.evictions").count() > 0);
+        // 被淘汰的会话已经落盘，仍可读取
+        for (int c = 0; c < 20; c++) {
+            List<Message> messages = chatMemory.get("chat-" + c, 10);
+            Assertions.assertEquals(1, messages.size());
+            Assertions.assertTrue(messages.get(0).getText().endsWith(String.valueOf(c)));
+        }
+        chatMemory.close();
+    }
+}
@@ -0,0 +1,181 @@
+package com.clinxin.axinaiagent.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 使用本地 HTTP 服务测试出站客户端
+ */
+public class OutboundHttpClientTest {
+
+    private HttpServer server;
+
+    private URI baseUri;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void retryOnServiceUnavailable() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/flaky", exchange -> {
+            if (requests.incrementAndGet() < 3) {
+                respond(exchange, 503, "busy");
+            } else {
+                respond(exchange, 200, "ok");
+            }
+        });
+        OutboundHttpClient client = newClient(3, Duration.ofSeconds(5), 8);
+        Assertions.assertEquals("ok", client.getString(baseUri.resolve("/flaky"), Map.of()));
+        Assertions.assertEquals(3, requests.get());
+    }
+
+    @Test
+    void doNotRetryClientErrorOrPost() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/missing", exchange -> {
+            requests.incrementAndGet();
+            respond(exchange, 404, "not found");
+        });
+        server.createContext("/post", exchange -> {
+            requests.incrementAndGet();
+            respond(exchange, 503, "busy");
+        });
+        OutboundHttpClient client = newClient(3, Duration.ofSeconds(5), 8);
+        HttpStatusException exception = Assertions.assertThrows(HttpStatusException.class,
+                () -> client.getString(baseUri.resolve("/missing"), Map.of()));
+        Assertions.assertEquals(404, exception.getStatusCode());
+        Assertions.assertEquals(1, requests.get());
+
+        HttpRequest post = client.newRequest(baseUri.resolve("/post"))
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+        HttpResponse<String> response = client.send(post, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(503, response.statusCode());
+        Assertions.assertEquals(2, requests.get());
+    }
+
+    @Test
+    void retryPutOnlyWhenDeclaredIdempotent() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/put", exchange -> {
+            requests.incrementAndGet();
+            respond(exchange, 503, "busy");
+        });
+        OutboundHttpClient client = newClient(3, Duration.ofSeconds(5), 8);
+        HttpRequest put = client.newRequest(baseUri.resolve("/put"))
+                .PUT(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+        Assertions.assertEquals(503, client.send(put, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(1, requests.get());
+
+        Assertions.assertEquals(503, client.send(put, HttpResponse.BodyHandlers.ofString(), true).statusCode());
+        Assertions.assertEquals(4, requests.get());
+    }
+
+    @Test
+    void streamingBodyHoldsHostPermitUntilClosed() throws Exception {
+        server.createContext("/stream", exchange -> respond(exchange, 200, "data"));
+        OutboundHttpClient client = newClient(1, Duration.ofSeconds(5), 1);
+        HttpResponse<InputStream> first = client.send(client.newRequest(baseUri.resolve("/stream")).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<HttpResponse<String>> second = client.sendAsync(
+                client.newRequest(baseUri.resolve("/stream")).build(), HttpResponse.BodyHandlers.ofString());
+        // 第一个响应体未关闭，第二个请求排队等待许可
+        Assertions.assertThrows(TimeoutException.class, () -> second.get(300, TimeUnit.MILLISECONDS));
+        try (InputStream body = first.body()) {
+            Assertions.assertEquals("data", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Assertions.assertEquals("data", second.get(5, TimeUnit.SECONDS).body());
+    }
+
+    @Test
+    void timeoutIsRetriedThenReported() {
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/slow", exchange -> {
+            requests.incrementAndGet();
+            sleep(1000);
+            respond(exchange, 200, "late");
+        });
+        OutboundHttpClient client = newClient(2, Duration.ofMillis(200), 8);
+        Assertions.assertThrows(HttpTimeoutException.class,
+                () -> client.getString(baseUri.resolve("/slow"), Map.of()));
+        Assertions.assertEquals(2, requests.get());
+    }
+
+    @Test
+    void limitConcurrentRequestsPerHost() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        server.createContext("/work", exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            sleep(100);
+            active.decrementAndGet();
+            respond(exchange, 200, "done");
+        });
+        OutboundHttpClient client = newClient(1, Duration.ofSeconds(5), 2);
+        List<CompletableFuture<HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(client.sendAsync(client.newRequest(baseUri.resolve("/work")).build(),
+                    HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> future : futures) {
+            Assertions.assertEquals("done", future.join().body());
+        }
+        Assertions.assertTrue(maxActive.get() <= 2, "max concurrent requests " + maxActive.get());
+    }
+
+    private static OutboundHttpClient newClient(int maxAttempts, Duration requestTimeout, int maxConcurrentPerHost) {
+        return new OutboundHttpClient(Duration.ofSeconds(2), requestTimeout, maxAttempts, Duration.ofMillis(10),
+                maxConcurrentPerHost);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.clinxin.axinaiagent.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/**
+ * 使用本地 HTTP 服务测试可续传下载
+ */
+public class ResumableDownloaderTest {
+
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+    private final byte[] content = new byte[FILE_SIZE];
+
+    private final List<String> rangeHeaders = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+
+    private URI baseUri;
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(42).nextBytes(content);
+        dir = Files.createTempDirectory("download-test");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/file", this::serveWithRange);
+        server.createContext("/no-range", exchange -> send(exchange, 200, 0, content.length, null));
+        server.start();
+        baseUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+        try (var files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void downloadWholeFile() throws IOException {
+        Path target = dir.resolve("a.bin");
+        ResumableDownloader.DownloadResult result = newDownloader(0).download(baseUri.resolve("/file"), target,
+                FILE_SIZE, 0);
+        Assertions.assertEquals(FILE_SIZE, result.bytes());
+        Assertions.assertEquals(0, result.resumedFrom());
+        Assertions.assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+        Assertions.assertFalse(Files.exists(ResumableDownloader.partFile(target)));
+    }
+
+    @Test
+    void resumeFromPartFile() throws IOException {
+        Path target = dir.resolve("b.bin");
+        Files.write(ResumableDownloader.partFile(target), Arrays.copyOf(content, 1024 * 1024));
+        ResumableDownloader.DownloadResult result = newDownloader(0).download(baseUri.resolve("/file"), target,
+                FILE_SIZE, 0);
+        Assertions.assertEquals(1024 * 1024, result.resumedFrom());
+        Assertions.assertEquals(List.of("bytes=1048576-"), rangeHeaders);
+        Assertions.assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+    }
+
+    @Test
+    void restartWhenRangeIgnored() throws IOException {
+        Path target = dir.resolve("c.bin");
+        Files.write(ResumableDownloader.partFile(target), new byte[1000]);
+        ResumableDownloader.DownloadResult result = newDownloader(0).download(baseUri.resolve("/no-range"), target,
+                FILE_SIZE, 0);
+        Assertions.assertEquals(0, result.resumedFrom());
+        Assertions.assertTrue(Arrays.equals(content, Files.readAllBytes(target)));
+    }
+
+    @Test
+    void rejectOversizedResource() {
+        Path target = dir.resolve("d.bin");
+        Assertions.assertThrows(IOException.class,
+                () -> newDownloader(0).download(baseUri.resolve("/file"), target, FILE_SIZE - 1, 0));
+        Assertions.assertFalse(Files.exists(target));
+        Assertions.assertFalse(Files.exists(ResumableDownloader.partFile(target)));
+    }
+
+    @Test
+    void limitPerDownloadAndGlobalBandwidth() throws Exception {
+        // 单个下载限速 8 MB/s：4 MB 至少约 0.5 秒
+        long start = System.nanoTime();
+        newDownloader(0).download(baseUri.resolve("/file"), dir.resolve("e.bin"), FILE_SIZE, 8L * 1024 * 1024);
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 400);
+
+        // 两个并发下载共享 16 MB/s：共 8 MB 至少约 0.5 秒
+        ResumableDownloader downloader = newDownloader(16L * 1024 * 1024);
+        start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture[2];
+        for (int i = 0; i < futures.length; i++) {
+            Path target = dir.resolve("f" + i + ".bin");
+            futures[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    downloader.download(baseUri.resolve("/file"), target, FILE_SIZE, 0);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 400);
+        Assertions.assertTrue(Arrays.equals(content, Files.readAllBytes(dir.resolve("f1.bin"))));
+    }
+
+    private static ResumableDownloader newDownloader(long globalBytesPerSecond) {
+        OutboundHttpClient httpClient = new OutboundHttpClient(Duration.ofSeconds(2), Duration.ofSeconds(10), 1,
+                Duration.ofMillis(10), 8);
+        return new ResumableDownloader(httpClient, globalBytesPerSecond);
+    }
+
+    private void serveWithRange(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null) {
+            send(exchange, 200, 0, content.length, null);
+            return;
+        }
+        rangeHeaders.add(range);
+        int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+        if (start >= content.length) {
+            exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+            exchange.sendResponseHeaders(416, -1);
+            exchange.close();
+            return;
+        }
+        send(exchange, 206, start, content.length - start,
+                "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+    }
+
+    private void send(HttpExchange exchange, int status, int offset, int length, String contentRange) throws IOException {
+        if (contentRange != null) {
+            exchange.getResponseHeaders().set("Content-Range", contentRange);
+        }
+        exchange.sendResponseHeaders(status, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content, offset, length);
+        }
+    }
+}
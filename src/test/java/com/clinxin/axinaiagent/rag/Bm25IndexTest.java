@@ -0,0 +1,70 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class Bm25IndexTest {
+
+    @Test
+    void tokenizeCjkIntoBigrams() {
+        Assertions.assertEquals(List.of("制定", "定计", "计划", "smart", "目标", "5", "分钟", "法"),
+                CjkTokenizer.tokenize("制定计划：SMART目标，5分钟，法"));
+        Assertions.assertEquals(List.of(), CjkTokenizer.tokenize("，。 ！"));
+    }
+
+    @Test
+    void rankByBm25AndMatchEnrichedKeywords() {
+        Bm25Index index = new Bm25Index();
+        index.add(List.of(
+                new Document("a", "将大任务分解为小步骤，减少拖延。拖延往往来自焦虑。", Map.of("status", "计划前")),
+                new Document("b", "应用艾森豪威尔矩阵区分任务的重要和紧急程度。", Map.of("status", "计划前")),
+                new Document("c", "每周回顾计划执行情况，调整下周安排。", Map.of("status", "计划后",
+                        Bm25Index.KEYWORDS_METADATA_KEY, "复盘, 周回顾, 番茄工作法")),
+                new Document("d", "偶尔拖延也没关系，关键是及时调整计划。", Map.of("status", "计划中"))));
+
+        List<Document> results = index.search("如何克服拖延", 10, null);
+        Assertions.assertEquals(List.of("a", "d"), results.stream().map(Document::getId).toList());
+        Assertions.assertTrue(results.get(0).getScore() > results.get(1).getScore());
+
+        // 只出现在增强后的关键词元信息中
+        Assertions.assertEquals("c", index.search("番茄工作法", 10, null).get(0).getId());
+
+        List<Document> filtered = index.search("拖延", 10, new FilterExpressionBuilder().eq("status", "计划中").build());
+        Assertions.assertEquals(List.of("d"), filtered.stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void deleteAndReplaceDocuments() {
+        Bm25Index index = new Bm25Index();
+        index.add(List.of(new Document("a", "时间日志记录一周的安排", Map.of()),
+                new Document("b", "时间审计评估可用时间", Map.of())));
+        index.delete(List.of("b"));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertEquals(List.of("a"), index.search("时间", 10, null).stream().map(Document::getId).toList());
+
+        index.add(List.of(new Document("a", "里程碑设定", Map.of())));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertTrue(index.search("时间", 10, null).isEmpty());
+        Assertions.assertEquals("里程碑设定", index.search("里程碑", 10, null).get(0).getText());
+    }
+
+    @Test
+    void compressPostings() {
+        Bm25Index index = new Bm25Index();
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            documents.add(new Document("d" + i, "第" + (i % 100) + "条 明确目标和优先级，合理分配时间", Map.of()));
+        }
+        index.add(documents);
+        // 未压缩时每条记录需要 8 字节（文档序号和词频各一个 int）
+        double bytesPerPosting = (double) index.postingsBytes() / index.postingsCount();
+        Assertions.assertTrue(bytesPerPosting < 2.5);
+        Assertions.assertEquals(10_000, index.search("优先级", 20_000, null).size());
+    }
+}
@@ -0,0 +1,165 @@
+package com.clinxin.axinaiagent.rag;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+public class EmbeddingIngestionPipelineTest {
+
+    private static final EmbeddingIngestionPipeline.Settings SETTINGS =
+            new EmbeddingIngestionPipeline.Settings(8, 2, 1, 4, 2, 1, 3, 10);
+
+    @TempDir
+    Path tempDir;
+
+    private final FlakyEmbeddingModel embeddingModel = new FlakyEmbeddingModel();
+
+    private final AtomicInteger enriched = new AtomicInteger();
+
+    private final UnaryOperator<List<Document>> enricher = documents -> {
+        for (Document document : documents) {
+            // 模拟一次大模型调用
+            sleep(10);
+            document.getMetadata().put("excerpt_keywords", "关键词");
+            enriched.incrementAndGet();
+        }
+        return documents;
+    };
+
+    @Test
+    void buildsInBackgroundAndRetriesFailedBatches() throws InterruptedException {
+        embeddingModel.failures.set(2);
+        embeddingModel.failingText = "文档 0 的内容";
+        EmbeddingIngestionPipeline pipeline = pipeline(new EmbeddingSnapshot(tempDir.resolve("plan.snapshot"), "test"));
+        long start = System.nanoTime();
+        pipeline.start(() -> documents(100), UnaryOperator.identity(), enricher);
+        // 启动不阻塞，构建期间处于降级状态
+        Assertions.assertTrue((System.nanoTime() - start) / 1_000_000 < 100);
+        Assertions.assertEquals(EmbeddingIngestionPipeline.State.RUNNING, pipeline.getState());
+        pipeline.getVectorStore().similaritySearch(SearchRequest.builder().query("文档 7").topK(1).build());
+
+        Assertions.assertTrue(pipeline.awaitCompletion(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(EmbeddingIngestionPipeline.State.READY, pipeline.getState());
+        Map<String, Object> progress = pipeline.getProgress();
+        Assertions.assertEquals(100, progress.get("indexed"));
+        Assertions.assertEquals(0, progress.get("failed"));
+        Assertions.assertEquals(100, enriched.get());
+
+        Document document = pipeline.getVectorStore().similaritySearch(SearchRequest.builder().query("文档 7 的内容").topK(1).build()).get(0);
+        Assertions.assertEquals("文档 7 的内容", document.getText());
+        Assertions.assertEquals("关键词", document.getMetadata().get("excerpt_keywords"));
+    }
+
+    @Test
+    void reusesSnapshotAndRetriesSkippedBatchesOnNextStart() throws InterruptedException {
+        EmbeddingSnapshot snapshot = new EmbeddingSnapshot(tempDir.resolve("plan.snapshot"), "test");
+        // 重试次数用尽的批次被跳过，其余文档照常入库
+        embeddingModel.failures.set(1_000);
+        embeddingModel.failingText = "文档 13 的内容";
+        EmbeddingIngestionPipeline cold = pipeline(snapshot);
+        cold.start(() -> documents(50), UnaryOperator.identity(), enricher);
+        Assertions.assertTrue(cold.awaitCompletion(30, TimeUnit.SECONDS));
+        int failed = (int) cold.getProgress().get("failed");
+        Assertions.assertTrue(failed > 0);
+        Assertions.assertEquals(50 - failed, cold.getProgress().get("indexed"));
+
+        embeddingModel.failures.set(0);
+        enriched.set(0);
+        embeddingModel.embedded.set(0);
+        EmbeddingIngestionPipeline warm = pipeline(snapshot);
+        warm.start(() -> documents(50), UnaryOperator.identity(), enricher);
+        Assertions.assertTrue(warm.awaitCompletion(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(50, warm.getProgress().get("indexed"));
+        Assertions.assertEquals(50 - failed, warm.getProgress().get("reused"));
+        Assertions.assertEquals(failed, enriched.get());
+        Assertions.assertEquals(failed, embeddingModel.embedded.get());
+    }
+
+    @Test
+    void failedLoadMarksPipelineFailed() throws InterruptedException {
+        EmbeddingIngestionPipeline pipeline = pipeline(null);
+        pipeline.start(() -> {
+            throw new IllegalStateException("加载失败");
+        }, UnaryOperator.identity(), enricher);
+        Assertions.assertTrue(pipeline.awaitCompletion(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(EmbeddingIngestionPipeline.State.FAILED, pipeline.getState());
+    }
+
+    private EmbeddingIngestionPipeline pipeline(EmbeddingSnapshot snapshot) {
+        return new EmbeddingIngestionPipeline(embeddingModel, OffHeapVectorStore::new, snapshot, SETTINGS,
+                new SimpleMeterRegistry());
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("文档 " + i + " 的内容", Map.of("filename", "doc" + i + ".md")));
+        }
+        return documents;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 按文本生成确定性向量的模型，可以让前若干次请求（或包含指定文本的请求）失败
+     */
+    private static class FlakyEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicInteger embedded = new AtomicInteger();
+
+        private volatile String failingText;
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<String> texts = request.getInstructions();
+            boolean matches = failingText == null || texts.contains(failingText);
+            if (matches && failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new IllegalStateException("嵌入服务暂时不可用");
+            }
+            // 模拟一次远程嵌入请求
+            sleep(5);
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            embedded.addAndGet(texts.size());
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return call(new EmbeddingRequest(List.of(document.getText()), null)).getResults().get(0).getOutput();
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[32];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), vector.length)] += 1;
+            }
+            return vector;
+        }
+    }
+}
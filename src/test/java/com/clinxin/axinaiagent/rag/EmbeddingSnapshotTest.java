@@ -0,0 +1,90 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+public class EmbeddingSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTrip() throws IOException {
+        Path file = tempDir.resolve("vector-store/plan.snapshot");
+        EmbeddingSnapshot snapshot = new EmbeddingSnapshot(file, "model-a");
+        String longText = "计划".repeat(40_000);
+        snapshot.save(List.of(
+                new EmbeddingSnapshot.Entry("k1", "第一篇", Map.of("filename", "a.md", "excerpt_keywords", "旅行,计划"),
+                        new float[]{0.1f, -0.2f, 0.3f}),
+                new EmbeddingSnapshot.Entry("k2", longText, Map.of("page", 3, "score", 0.5, "draft", true),
+                        new float[]{1f, 2f, 3f})));
+        Map<String, EmbeddingSnapshot.Entry> entries = snapshot.load();
+        Assertions.assertEquals(List.of("k1", "k2"), List.copyOf(entries.keySet()));
+        Assertions.assertEquals("第一篇", entries.get("k1").text());
+        Assertions.assertEquals("旅行,计划", entries.get("k1").metadata().get("excerpt_keywords"));
+        Assertions.assertArrayEquals(new float[]{0.1f, -0.2f, 0.3f}, entries.get("k1").embedding());
+        Assertions.assertEquals(longText, entries.get("k2").text());
+        Assertions.assertEquals(3L, entries.get("k2").metadata().get("page"));
+        Assertions.assertEquals(0.5, entries.get("k2").metadata().get("score"));
+        Assertions.assertEquals(true, entries.get("k2").metadata().get("draft"));
+    }
+
+    @Test
+    void ignoreSnapshotWithOtherFingerprintOrCorruptData() throws IOException {
+        Path file = tempDir.resolve("plan.snapshot");
+        new EmbeddingSnapshot(file, "model-a").save(List.of(
+                new EmbeddingSnapshot.Entry("k1", "text", Map.of(), new float[]{1f})));
+        Assertions.assertTrue(new EmbeddingSnapshot(file, "model-b").load().isEmpty());
+        Assertions.assertEquals(1, new EmbeddingSnapshot(file, "model-a").load().size());
+        // 截断的快照视为不存在
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+        Assertions.assertTrue(new EmbeddingSnapshot(file, "model-a").load().isEmpty());
+        Assertions.assertTrue(new EmbeddingSnapshot(tempDir.resolve("missing"), "model-a").load().isEmpty());
+    }
+
+    @Test
+    void ignoreSnapshotWithBadChecksumOrImpossibleCounts() throws IOException {
+        Path file = tempDir.resolve("plan.snapshot");
+        EmbeddingSnapshot snapshot = new EmbeddingSnapshot(file, "model-a");
+        snapshot.save(List.of(new EmbeddingSnapshot.Entry("k1", "text", Map.of(), new float[]{1f, 2f})));
+        byte[] bytes = Files.readAllBytes(file);
+
+        // 内容被改动而长度不变
+        byte[] flipped = bytes.clone();
+        flipped[flipped.length - 9] ^= 1;
+        Files.write(file, flipped);
+        Assertions.assertTrue(snapshot.load().isEmpty());
+
+        // 校验和正确但条数远超文件大小，不会按条数分配
+        ByteBuffer forged = ByteBuffer.wrap(bytes.clone());
+        int countOffset = 4 + 4 + 2 + "model-a".length() + 4;
+        forged.putInt(countOffset, Integer.MAX_VALUE);
+        CRC32 checksum = new CRC32();
+        checksum.update(forged.array(), 0, bytes.length - 8);
+        forged.putLong(bytes.length - 8, checksum.getValue());
+        Files.write(file, forged.array());
+        Assertions.assertTrue(snapshot.load().isEmpty());
+
+        Files.write(file, bytes);
+        Assertions.assertEquals(1, snapshot.load().size());
+    }
+
+    @Test
+    void contentKeyDependsOnTextAndMetadata() {
+        String key = EmbeddingSnapshot.contentKey("text", Map.of("a", "1", "b", "2"));
+        Assertions.assertEquals(key, EmbeddingSnapshot.contentKey("text", Map.of("b", "2", "a", "1")));
+        Assertions.assertNotEquals(key, EmbeddingSnapshot.contentKey("text!", Map.of("a", "1", "b", "2")));
+        Assertions.assertNotEquals(key, EmbeddingSnapshot.contentKey("text", Map.of("a", "1")));
+    }
+}
@@ -0,0 +1,184 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSIONS = 64;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void highRecallAgainstExactSearch() {
+        Random random = new Random(1);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 200, 64);
+        for (int i = 0; i < 5_000; i++) {
+            index.add(clusteredVector(random, DIMENSIONS));
+        }
+        Assertions.assertTrue(recallAt10(index, random, 50) >= 0.9);
+    }
+
+    @Test
+    void concurrentInserts() throws Exception {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 12, 100, 64);
+        int threads = 8;
+        int perThread = 1_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < perThread; i++) {
+                        index.add(clusteredVector(random, DIMENSIONS));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals(threads * perThread, index.size());
+        Assertions.assertTrue(recallAt10(index, new Random(99), 50) >= 0.9);
+    }
+
+    @Test
+    void tombstonesAndFilterAreExcluded() {
+        Random random = new Random(2);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64, 16);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            float[] vector = randomVector(random);
+            vectors.add(vector);
+            index.add(vector);
+        }
+        float[] query = vectors.get(10);
+        Assertions.assertEquals(10, index.search(query, 1, -1, null).ids()[0]);
+        index.markDeleted(10);
+        Assertions.assertTrue(index.isDeleted(10));
+        Assertions.assertNotEquals(10, index.search(query, 1, -1, null).ids()[0]);
+        // 只有很少节点满足过滤条件时仍能返回足够的结果
+        HnswIndex.Hits hits = index.search(query, 5, -1, id -> id % 200 == 0);
+        Assertions.assertEquals(5, hits.ids().length);
+        for (int id : hits.ids()) {
+            Assertions.assertEquals(0, id % 200);
+        }
+    }
+
+    @Test
+    void saveAndLoadWithoutRebuild() throws IOException {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 64, 32);
+        for (int i = 0; i < 3_000; i++) {
+            index.add(randomVector(random));
+        }
+        index.markDeleted(7);
+        Path file = tempDir.resolve("index.hnsw");
+        index.save(file);
+        HnswIndex loaded = HnswIndex.load(file, 32);
+        Assertions.assertEquals(index.size(), loaded.size());
+        Assertions.assertEquals(1, loaded.deletedCount());
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            Assertions.assertArrayEquals(index.search(query, 10, -1, null).scores(),
+                    loaded.search(query, 10, -1, null).scores());
+        }
+        // 加载后可继续插入
+        loaded.add(randomVector(random));
+        Assertions.assertEquals(3_001, loaded.size());
+    }
+
+    /**
+     * 扩大 efSearch 时召回率不下降，且能接近精确检索（耗时见 HnswIndexBenchmark）
+     */
+    @Test
+    void recallImprovesWithEfSearch() {
+        Random random = new Random(4);
+        int dimensions = 256;
+        HnswIndex index = new HnswIndex(dimensions, 16, 100, 16);
+        for (int i = 0; i < 5_000; i++) {
+            index.add(clusteredVector(random, dimensions));
+        }
+        List<float[]> queries = new ArrayList<>();
+        List<int[]> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            float[] query = clusteredVector(random, dimensions);
+            queries.add(query);
+            expected.add(index.exactSearch(query, 10, -1, null).ids());
+        }
+        double low = recall(index, 16, queries, expected);
+        double high = recall(index, 256, queries, expected);
+        Assertions.assertTrue(high >= low, "recall@10 dropped from " + low + " to " + high);
+        Assertions.assertTrue(high >= 0.95, "recall@10 at efSearch=256 was " + high);
+    }
+
+    private static double recall(HnswIndex index, int efSearch, List<float[]> queries, List<int[]> expected) {
+        index.setEfSearch(efSearch);
+        int found = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            found += overlap(expected.get(i), index.search(queries.get(i), 10, -1, null).ids());
+        }
+        return found / (queries.size() * 10.0);
+    }
+
+    private static double recallAt10(HnswIndex index, Random random, int queries) {
+        int found = 0;
+        for (int i = 0; i < queries; i++) {
+            float[] query = clusteredVector(random, DIMENSIONS);
+            found += overlap(index.exactSearch(query, 10, -1, null).ids(), index.search(query, 10, -1, null).ids());
+        }
+        return found / (queries * 10.0);
+    }
+
+    private static int overlap(int[] expected, int[] actual) {
+        int found = 0;
+        for (int e : expected) {
+            for (int a : actual) {
+                if (e == a) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 围绕 100 个固定中心的高斯混合分布
+     */
+    private static float[] clusteredVector(Random random, int dimensions) {
+        float[] center = randomVector(new Random(random.nextInt(100)), dimensions);
+        float[] vector = randomVector(random, dimensions);
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] += center[i];
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        return randomVector(random, DIMENSIONS);
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,160 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class HnswVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final BigramEmbeddingModel embeddingModel = new BigramEmbeddingModel();
+
+    @Test
+    void retrieveThroughDocumentRetrieverWithFilter() {
+        HnswVectorStore vectorStore = new HnswVectorStore(embeddingModel, 8, 64, 32, null);
+        vectorStore.add(documents(200));
+        VectorStoreDocumentRetriever retriever = VectorStoreDocumentRetriever.builder()
+                .vectorStore(vectorStore)
+                .filterExpression(new FilterExpressionBuilder().eq("status", "计划之后").build())
+                .similarityThreshold(0.2)
+                .topK(3)
+                .build();
+        List<Document> results = retriever.retrieve(new Query("计划 41 的安排"));
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertEquals("计划 41 的安排", results.get(0).getText());
+        results.forEach(document -> Assertions.assertEquals("计划之后", document.getMetadata().get("status")));
+    }
+
+    @Test
+    void replaceAndDeleteLeaveTombstones() {
+        HnswVectorStore vectorStore = new HnswVectorStore(embeddingModel, 8, 64, 32, null);
+        List<Document> documents = documents(20);
+        vectorStore.add(documents);
+        vectorStore.add(List.of(new Document(documents.get(0).getId(), "替换后的内容", Map.of("status", "新"))));
+        vectorStore.delete(List.of(documents.get(1).getId()));
+        Assertions.assertEquals(19, vectorStore.size());
+        Assertions.assertEquals(2, vectorStore.getIndex().deletedCount());
+        Document top = vectorStore.similaritySearch(SearchRequest.builder().query("替换后的内容").topK(1).build()).get(0);
+        Assertions.assertEquals(documents.get(0).getId(), top.getId());
+        Assertions.assertTrue(vectorStore.similaritySearch(SearchRequest.builder().query("计划 1 的安排").topK(20).build())
+                .stream().noneMatch(document -> document.getId().equals(documents.get(1).getId())));
+    }
+
+    @Test
+    void reloadFromDiskWithoutReembedding() throws IOException {
+        HnswVectorStore vectorStore = new HnswVectorStore(embeddingModel, 8, 64, 32, tempDir);
+        vectorStore.add(documents(100));
+        vectorStore.close();
+
+        int embedded = embeddingModel.documentCalls;
+        HnswVectorStore reloaded = new HnswVectorStore(embeddingModel, 8, 64, 32, tempDir);
+        Assertions.assertEquals(100, reloaded.size());
+        Assertions.assertEquals(embedded, embeddingModel.documentCalls);
+        SearchRequest request = SearchRequest.builder().query("计划 7 的安排").topK(1).build();
+        Document document = reloaded.similaritySearch(request).get(0);
+        Assertions.assertEquals("计划 7 的安排", document.getText());
+        Assertions.assertEquals(7L, document.getMetadata().get("index"));
+    }
+
+    @Test
+    void crashRecoveryReplaysWriteAheadLog() throws IOException {
+        // 不调用 close()，模拟进程崩溃
+        HnswVectorStore crashed = new HnswVectorStore(embeddingModel, 8, 64, 32, tempDir);
+        List<Document> documents = documents(50);
+        crashed.add(documents);
+        crashed.delete(List.of(documents.get(3).getId()));
+        // 崩溃时写了一半的记录
+        Files.write(tempDir.resolve("wal.log"), new byte[]{0, 0, 1, 0, 7}, StandardOpenOption.APPEND);
+
+        int embedded = embeddingModel.documentCalls;
+        HnswVectorStore recovered = new HnswVectorStore(embeddingModel, 8, 64, 32, tempDir);
+        Assertions.assertEquals(49, recovered.size());
+        Assertions.assertEquals(embedded, embeddingModel.documentCalls);
+        Document top = recovered.similaritySearch(SearchRequest.builder().query("计划 7 的安排").topK(1).build()).get(0);
+        Assertions.assertEquals("计划 7 的安排", top.getText());
+
+        // 写出快照后日志清空，再次加载结果不变
+        recovered.add(List.of(new Document("新增的计划", Map.of())));
+        recovered.close();
+        Assertions.assertEquals(0, Files.size(tempDir.resolve("wal.log")));
+        Assertions.assertEquals(50, new HnswVectorStore(embeddingModel, 8, 64, 32, tempDir).size());
+    }
+
+    @Test
+    void tombstonesAreCompacted() {
+        HnswVectorStore vectorStore = new HnswVectorStore(embeddingModel, 8, 64, 32, null, 0.3, Long.MAX_VALUE);
+        List<Document> documents = documents(20);
+        vectorStore.add(documents);
+        vectorStore.delete(documents.subList(0, 5).stream().map(Document::getId).toList());
+        // 5 / 20 未达到阈值
+        Assertions.assertEquals(5, vectorStore.getIndex().deletedCount());
+        vectorStore.delete(List.of(documents.get(5).getId()));
+        Assertions.assertEquals(0, vectorStore.getIndex().deletedCount());
+        Assertions.assertEquals(14, vectorStore.getIndex().size());
+        Assertions.assertEquals(14, vectorStore.size());
+        Document top = vectorStore.similaritySearch(SearchRequest.builder().query("计划 12 的安排").topK(1).build()).get(0);
+        Assertions.assertEquals(documents.get(12).getId(), top.getId());
+        Assertions.assertEquals(12L, ((Number) top.getMetadata().get("index")).longValue());
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("计划 " + i + " 的安排",
+                    Map.of("status", i % 2 == 0 ? "计划之前" : "计划之后", "index", i)));
+        }
+        return documents;
+    }
+
+    /**
+     * 按相邻字符二元组生成确定性向量的嵌入模型
+     */
+    private static class BigramEmbeddingModel implements EmbeddingModel {
+
+        private int documentCalls;
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            documentCalls += texts.size();
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            documentCalls++;
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[128];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), vector.length)] += 1;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+public class IncrementalVectorStoreLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final CountingEmbeddingModel embeddingModel = new CountingEmbeddingModel();
+
+    private final AtomicInteger enriched = new AtomicInteger();
+
+    private final UnaryOperator<List<Document>> enricher = documents -> {
+        for (Document document : documents) {
+            // 模拟一次大模型调用
+            sleep(20);
+            document.getMetadata().put("excerpt_keywords", "关键词");
+            enriched.incrementAndGet();
+        }
+        return documents;
+    };
+
+    @Test
+    void onlyChangedDocumentsAreEnrichedAndEmbedded() {
+        EmbeddingSnapshot snapshot = new EmbeddingSnapshot(tempDir.resolve("plan.snapshot"), "test");
+        List<Document> documents = documents(50);
+
+        VectorStore cold = new IncrementalVectorStoreLoader(embeddingModel, snapshot).load(documents, enricher);
+        Assertions.assertEquals(50, enriched.get());
+        Assertions.assertEquals(50, embeddingModel.embedded.get());
+
+        enriched.set(0);
+        embeddingModel.embedded.set(0);
+        VectorStore warm = new IncrementalVectorStoreLoader(embeddingModel, snapshot).load(documents(50), enricher);
+        Assertions.assertEquals(0, enriched.get());
+        Assertions.assertEquals(0, embeddingModel.embedded.get());
+
+        // 快照恢复的文档保留增强后的元信息，检索结果与冷启动一致
+        SearchRequest request = SearchRequest.builder().query("文档 7").topK(1).build();
+        Document expected = cold.similaritySearch(request).get(0);
+        Document actual = warm.similaritySearch(request).get(0);
+        Assertions.assertEquals(expected.getId(), actual.getId());
+        Assertions.assertEquals("关键词", actual.getMetadata().get("excerpt_keywords"));
+
+        // 修改一篇、新增一篇
+        List<Document> changed = documents(51);
+        changed.set(3, new Document("文档 3 已修改", Map.of("filename", "doc3.md")));
+        new IncrementalVectorStoreLoader(embeddingModel, snapshot).load(changed, enricher);
+        Assertions.assertEquals(2, enriched.get());
+        Assertions.assertEquals(2, embeddingModel.embedded.get());
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("文档 " + i + " 的内容", Map.of("filename", "doc" + i + ".md")));
+        }
+        return documents;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 按文本生成确定性向量并统计文档嵌入次数的模型
+     */
+    private static class CountingEmbeddingModel implements EmbeddingModel {
+
+        private final AtomicInteger embedded = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            // 模拟一次远程嵌入请求
+            sleep(10);
+            embedded.incrementAndGet();
+            return vector(document.getText());
+        }
+
+        @Override
+        public List<float[]> embed(List<Document> documents, EmbeddingOptions options, BatchingStrategy batchingStrategy) {
+            return documents.stream().map(this::embed).toList();
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[8];
+            for (int i = 0; i < text.length(); i++) {
+                vector[i % vector.length] += text.charAt(i) % 31;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MmrDocumentRetrieverTest {
+
+    private final Map<String, float[]> embeddings = new HashMap<>();
+
+    @Test
+    void nearDuplicatesGiveWayToDiverseDocuments() {
+        List<Document> candidates = List.of(
+                candidate("a1", "a.md", 0.90, new float[]{1, 0, 0}),
+                candidate("a2", "b.md", 0.88, new float[]{0.99f, 0.1f, 0}),
+                candidate("c", "c.md", 0.70, new float[]{0, 1, 0}));
+        Assertions.assertEquals(List.of("a1", "c"), ids(retriever(candidates, 0.5).retrieve(new Query("q"))));
+        // lambda 为 1 时只看相关性
+        Assertions.assertEquals(List.of("a1", "a2"), ids(retriever(candidates, 1.0).retrieve(new Query("q"))));
+    }
+
+    @Test
+    void chunksPerSourceFileAreCapped() {
+        List<Document> candidates = List.of(
+                candidate("a1", "a.md", 0.9, new float[]{1, 0, 0}),
+                candidate("a2", "a.md", 0.8, new float[]{0, 1, 0}),
+                candidate("a3", "a.md", 0.7, new float[]{0, 0, 1}),
+                candidate("b1", "b.md", 0.3, new float[]{1, 1, 0}));
+        MmrDocumentRetriever retriever = new MmrDocumentRetriever(query -> candidates, embeddings::get, 3, 0.7, 2,
+                10_000, new JTokkitTokenCountEstimator());
+        Assertions.assertEquals(List.of("a1", "a2", "b1"), ids(retriever.retrieve(new Query("q"))));
+    }
+
+    @Test
+    void documentsArePackedIntoTokenBudget() {
+        List<Document> candidates = List.of(
+                document("first", words(200), 0.9),
+                document("long", words(300), 0.8),
+                document("short", words(20), 0.7));
+        MmrDocumentRetriever retriever = new MmrDocumentRetriever(query -> candidates, embeddings::get, 3, 0.7, 3,
+                450, new JTokkitTokenCountEstimator());
+        // 放不下的长文档跳过，后面更短的文档仍可加入
+        Assertions.assertEquals(List.of("first", "short"), ids(retriever.retrieve(new Query("q"))));
+        // 排名第一的文档超出预算也会保留
+        MmrDocumentRetriever tight = new MmrDocumentRetriever(query -> candidates, embeddings::get, 3, 0.7, 3,
+                10, new JTokkitTokenCountEstimator());
+        Assertions.assertEquals(List.of("first"), ids(tight.retrieve(new Query("q"))));
+    }
+
+    @Test
+    void documentsWithoutEmbeddingsKeepRelevanceOrder() {
+        List<Document> candidates = List.of(
+                new Document("x", "x", Map.of()),
+                new Document("y", "y", Map.of()),
+                new Document("z", "z", Map.of()));
+        MmrDocumentRetriever retriever = new MmrDocumentRetriever(query -> candidates, id -> null, 2, 0.5, 2,
+                10_000, new JTokkitTokenCountEstimator());
+        Assertions.assertEquals(List.of("x", "y"), ids(retriever.retrieve(new Query("q"))));
+    }
+
+    /**
+     * off-heap: false 时的配置：SimpleVectorStore 不保留可读取的向量，改为调用嵌入模型嵌入候选
+     */
+    @Test
+    void simpleVectorStoreFallsBackToEmbeddingCandidates() {
+        AtomicInteger embeddedTexts = new AtomicInteger();
+        EmbeddingModel embeddingModel = new ScaledCorpus.BigramEmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                embeddedTexts.addAndGet(request.getInstructions().size());
+                return super.call(request);
+            }
+        };
+        KeywordIndexedVectorStore vectorStore = new KeywordIndexedVectorStore(
+                SimpleVectorStore.builder(embeddingModel).build(), new Bm25Index());
+        vectorStore.add(List.of(
+                new Document("a1", "西湖苏堤步行路线：从北山街出发，经花港观鱼到南屏晚钟", Map.of("filename", "a.md")),
+                new Document("a2", "西湖苏堤步行路线：从北山街出发，经花港观鱼到南屏晚钟。", Map.of("filename", "b.md")),
+                new Document("c", "西湖游船路线：从湖滨码头乘船到三潭印月", Map.of("filename", "c.md"))));
+        DocumentRetriever candidates = VectorStoreDocumentRetriever.builder().vectorStore(vectorStore).topK(3).build();
+        Query query = new Query("西湖苏堤步行路线");
+
+        // 不传嵌入模型时只能按相关性排序，近似重复的 a2 被选中
+        MmrDocumentRetriever relevanceOnly = new MmrDocumentRetriever(candidates, vectorStore, 2, 0.5, 3, 10_000);
+        Assertions.assertEquals(List.of("a1", "a2"), ids(relevanceOnly.retrieve(query)));
+
+        MmrDocumentRetriever retriever = new MmrDocumentRetriever(candidates, vectorStore, embeddingModel, 2, 0.5, 3,
+                10_000);
+        embeddedTexts.set(0);
+        Assertions.assertEquals(List.of("a1", "c"), ids(retriever.retrieve(query)));
+        // 查询一次，三个候选一次批量嵌入
+        Assertions.assertEquals(1 + 3, embeddedTexts.get());
+    }
+
+    private Document candidate(String id, String filename, double score, float[] embedding) {
+        embeddings.put(id, embedding);
+        return Document.builder().id(id).text(id).metadata(Map.of("filename", filename)).score(score).build();
+    }
+
+    private static Document document(String id, String text, double score) {
+        return Document.builder().id(id).text(text).metadata(Map.of("filename", id + ".md")).score(score).build();
+    }
+
+    private MmrDocumentRetriever retriever(List<Document> candidates, double lambda) {
+        return new MmrDocumentRetriever(query -> candidates, embeddings::get, 2, lambda, 3, 10_000,
+                new JTokkitTokenCountEstimator());
+    }
+
+    private static String words(int count) {
+        return "hello" + " hello".repeat(count - 1);
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+}
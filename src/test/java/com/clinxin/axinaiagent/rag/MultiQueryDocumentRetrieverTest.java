@@ -0,0 +1,202 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.expansion.QueryExpander;
+import org.springframework.ai.rag.retrieval.search.VectorStoreDocumentRetriever;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MultiQueryDocumentRetrieverTest {
+
+    private static final List<String> TEXTS = List.of(
+            "番茄工作法：工作 25 分钟后休息 5 分钟",
+            "四象限法则：按重要和紧急程度给任务排序",
+            "拖延的常见原因是任务目标不够具体",
+            "每天睡前列出第二天最重要的三件事");
+
+    private final SlowVectorStore vectorStore = new SlowVectorStore();
+
+    private final Bm25Index keywordIndex = new Bm25Index();
+
+    MultiQueryDocumentRetrieverTest() {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < TEXTS.size(); i++) {
+            documents.add(new Document("doc-" + i, TEXTS.get(i), Map.of()));
+        }
+        // 同一段落以不同 id 重复入库
+        documents.add(new Document("doc-copy", " 四象限法则：按重要和紧急程度给任务排序 ", Map.of()));
+        vectorStore.add(documents);
+        keywordIndex.add(documents);
+    }
+
+    @Test
+    void deduplicateByIdAndContent() {
+        Document first = new Document("a", "同一段落", Map.of());
+        Document copy = new Document("b", "同一段落\n", Map.of());
+        Document other = new Document("c", "另一段落", Map.of());
+        List<List<Document>> deduplicated = MultiQueryDocumentRetriever.deduplicate(List.of(
+                List.of(first, other),
+                List.of(copy, new Document("a", "同一段落", Map.of()), other)));
+        Assertions.assertEquals(List.of("a", "c"), deduplicated.get(0).stream().map(Document::getId).toList());
+        // 内容相同的 b 统一为 a，同一路中重复的 a 只保留一次
+        Assertions.assertEquals(List.of("a", "c"), deduplicated.get(1).stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void expandedQueriesAreSearchedConcurrently() {
+        // 3 个向量检索分支都开始后才一起返回：串行执行时会超时
+        vectorStore.rendezvous = new CountDownLatch(3);
+        QueryExpander queryExpander = query -> List.of(
+                new Query("如何给任务排序"), new Query("怎样克服拖延"), new Query(query.text()));
+        MultiQueryDocumentRetriever retriever = new MultiQueryDocumentRetriever(queryExpander, vectorStore,
+                keywordIndex, 3, 4, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, Duration.ofSeconds(10));
+        List<Document> documents = retriever.retrieve(new Query("怎么安排每天的任务"));
+        // 3 个不同的查询各检索一次（重复的原问题不再检索）
+        Assertions.assertEquals(3, vectorStore.searches.get());
+        Assertions.assertEquals(0, vectorStore.missedRendezvous.get());
+        Assertions.assertEquals(3, documents.size());
+        Assertions.assertEquals(3, documents.stream().map(Document::getText).map(String::strip).distinct().count());
+    }
+
+    @Test
+    void honorFilterExpressionFromQueryContext() {
+        OffHeapVectorStore filteredStore = new OffHeapVectorStore(new BigramEmbeddingModel());
+        Bm25Index filteredIndex = new Bm25Index();
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < TEXTS.size(); i++) {
+            documents.add(new Document("doc-" + i, TEXTS.get(i), Map.of("status", i < 2 ? "计划之前" : "计划之后")));
+        }
+        filteredStore.add(documents);
+        filteredIndex.add(documents);
+        QueryExpander queryExpander = query -> List.of(new Query("如何给任务排序"), new Query("番茄工作法"));
+        MultiQueryDocumentRetriever retriever = new MultiQueryDocumentRetriever(queryExpander, filteredStore,
+                filteredIndex, 4, 4, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, Duration.ofSeconds(5));
+        Query query = Query.builder().text("四象限法则")
+                .context(Map.of(VectorStoreDocumentRetriever.FILTER_EXPRESSION,
+                        new FilterExpressionBuilder().eq("status", "计划之后").build()))
+                .build();
+        List<Document> results = retriever.retrieve(query);
+        // 扩展查询的分支同样只返回满足过滤条件的文档
+        Assertions.assertEquals(2, results.size());
+        results.forEach(document -> Assertions.assertEquals("计划之后", document.getMetadata().get("status")));
+    }
+
+    @Test
+    void slowBranchesAreCancelledWhenBudgetRunsOut() {
+        vectorStore.slowQuery = "怎样克服拖延";
+        QueryExpander queryExpander = query -> List.of(new Query("怎样克服拖延"));
+        MultiQueryDocumentRetriever retriever = new MultiQueryDocumentRetriever(queryExpander, vectorStore,
+                keywordIndex, 3, 4, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, Duration.ofMillis(500));
+        long start = System.nanoTime();
+        List<Document> documents = retriever.retrieve(new Query("四象限法则"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertTrue(elapsedMillis < 1_000, "took " + elapsedMillis + " ms");
+        // 慢分支被取消，其余分支的结果照常返回
+        Assertions.assertEquals("四象限法则：按重要和紧急程度给任务排序", documents.get(0).getText().strip());
+    }
+
+    @Test
+    void slowExpansionFallsBackToOriginalQuery() {
+        QueryExpander queryExpander = query -> {
+            sleep(5_000);
+            return List.of(new Query("不会被检索"));
+        };
+        MultiQueryDocumentRetriever retriever = new MultiQueryDocumentRetriever(queryExpander, vectorStore,
+                null, 3, 4, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, Duration.ofMillis(500));
+        long start = System.nanoTime();
+        List<Document> documents = retriever.retrieve(new Query("番茄工作法"));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertTrue(elapsedMillis < 1_000, "took " + elapsedMillis + " ms");
+        Assertions.assertEquals(1, vectorStore.searches.get());
+        Assertions.assertFalse(documents.isEmpty());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 每次检索耗时 200ms 的向量库，指定的查询耗时 5 秒；设置 rendezvous 时等所有检索都开始后再返回
+     */
+    private static class SlowVectorStore extends OffHeapVectorStore {
+
+        private final AtomicInteger searches = new AtomicInteger();
+
+        private final AtomicInteger missedRendezvous = new AtomicInteger();
+
+        private volatile String slowQuery;
+
+        private volatile CountDownLatch rendezvous;
+
+        SlowVectorStore() {
+            super(new BigramEmbeddingModel());
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            searches.incrementAndGet();
+            CountDownLatch latch = rendezvous;
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    if (!latch.await(5, TimeUnit.SECONDS)) {
+                        missedRendezvous.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                sleep(request.getQuery().equals(slowQuery) ? 5_000 : 200);
+            }
+            return super.similaritySearch(request);
+        }
+    }
+
+    /**
+     * 按相邻字符二元组生成确定性向量的嵌入模型
+     */
+    private static class BigramEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[128];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), vector.length)] += 1;
+            }
+            return vector;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class OffHeapVectorIndexTest {
+
+    private static final int DIMENSIONS = 67;
+
+    @Test
+    void topKMatchesExactScan() {
+        Random random = new Random(42);
+        // 跨越多个分块
+        int count = 40_000;
+        OffHeapVectorIndex index = new OffHeapVectorIndex(DIMENSIONS);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = randomVector(random, DIMENSIONS);
+            vectors.add(vector);
+            Assertions.assertEquals(i, index.add(vector));
+        }
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random, DIMENSIONS);
+            OffHeapVectorIndex.Hits hits = index.search(query, 10, -1, null);
+            int[] expected = IntStream.range(0, count).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -cosine(vectors.get(i), query)))
+                    .limit(10).mapToInt(Integer::intValue).toArray();
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals(expected[i], hits.slots()[i]);
+                Assertions.assertEquals(cosine(vectors.get(expected[i]), query), hits.scores()[i], 1e-4);
+            }
+        }
+    }
+
+    @Test
+    void filterThresholdAndDelete() {
+        OffHeapVectorIndex index = new OffHeapVectorIndex(2);
+        int a = index.add(new float[]{1, 0});
+        int b = index.add(new float[]{0.9f, 0.1f});
+        int c = index.add(new float[]{0, 1});
+        OffHeapVectorIndex.Hits hits = index.search(new float[]{2, 0}, 5, 0.5f, null);
+        // 第三个向量与查询正交，低于阈值
+        Assertions.assertEquals(2, hits.slots().length);
+        Assertions.assertEquals(1.0, hits.scores()[0], 1e-6);
+        Assertions.assertEquals(a, hits.slots()[0]);
+
+        hits = index.search(new float[]{1, 0}, 5, -1, slot -> slot != a);
+        Assertions.assertEquals(b, hits.slots()[0]);
+        Assertions.assertEquals(c, hits.slots()[1]);
+
+        index.remove(a);
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertEquals(b, index.search(new float[]{1, 0}, 1, -1, null).slots()[0]);
+        // 删除的槽位被复用
+        Assertions.assertEquals(a, index.add(new float[]{-1, 0}));
+        Assertions.assertEquals(0, index.search(new float[]{0, 0}, 3, -1, null).scores()[0], 0);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.add(new float[3]));
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
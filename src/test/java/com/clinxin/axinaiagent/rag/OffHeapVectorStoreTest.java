@@ -0,0 +1,122 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class OffHeapVectorStoreTest {
+
+    private final HashEmbeddingModel embeddingModel = new HashEmbeddingModel();
+
+    @Test
+    void sameResultsAsSimpleVectorStore() {
+        List<Document> documents = documents(500);
+        OffHeapVectorStore offHeapVectorStore = new OffHeapVectorStore(embeddingModel);
+        SimpleVectorStore simpleVectorStore = SimpleVectorStore.builder(embeddingModel).build();
+        offHeapVectorStore.add(documents);
+        simpleVectorStore.add(documents);
+        for (String query : List.of("计划 12", "旅行 300", "预算 77")) {
+            SearchRequest request = SearchRequest.builder().query(query).topK(5).build();
+            List<Document> expected = simpleVectorStore.similaritySearch(request);
+            List<Document> actual = offHeapVectorStore.similaritySearch(request);
+            // 得分相同的文档顺序可能不同，逐个比较得分
+            for (int i = 0; i < expected.size(); i++) {
+                Assertions.assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-5);
+            }
+        }
+    }
+
+    @Test
+    void filterByMetadataLikeRagAdvisor() {
+        OffHeapVectorStore vectorStore = new OffHeapVectorStore(embeddingModel);
+        vectorStore.add(documents(100));
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        SearchRequest request = SearchRequest.builder()
+                .query("计划 3")
+                .topK(10)
+                .filterExpression(b.eq("status", "计划之后").build())
+                .build();
+        List<Document> results = vectorStore.similaritySearch(request);
+        Assertions.assertEquals(10, results.size());
+        results.forEach(document -> Assertions.assertEquals("计划之后", document.getMetadata().get("status")));
+
+        request = SearchRequest.builder()
+                .query("计划 3")
+                .topK(100)
+                .filterExpression(b.and(b.in("status", "计划之前", "计划之后"), b.gte("index", 90)).build())
+                .build();
+        Assertions.assertEquals(10, vectorStore.similaritySearch(request).size());
+
+        request = SearchRequest.builder().query("计划 3").topK(100).filterExpression("index < 10 && status == '计划之前'").build();
+        Assertions.assertEquals(5, vectorStore.similaritySearch(request).size());
+    }
+
+    @Test
+    void deleteAndReplace() {
+        OffHeapVectorStore vectorStore = new OffHeapVectorStore(embeddingModel);
+        List<Document> documents = documents(10);
+        vectorStore.add(documents);
+        vectorStore.delete(List.of(documents.get(0).getId(), documents.get(1).getId()));
+        Assertions.assertEquals(8, vectorStore.size());
+        vectorStore.delete(new FilterExpressionBuilder().eq("status", "计划之后").build());
+        Assertions.assertEquals(4, vectorStore.size());
+        vectorStore.add(List.of(new Document(documents.get(2).getId(), "替换后的内容", Map.of("status", "新"))));
+        Assertions.assertEquals(4, vectorStore.size());
+        Document top = vectorStore.similaritySearch(SearchRequest.builder().query("替换后的内容").topK(1).build()).get(0);
+        Assertions.assertEquals(documents.get(2).getId(), top.getId());
+        Assertions.assertEquals(1.0, top.getScore(), 1e-5);
+    }
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String status = i % 2 == 0 ? "计划之前" : "计划之后";
+            documents.add(new Document("计划 " + i + " 旅行 预算 " + (i * 7 % 101),
+                    Map.of("status", status, "index", i)));
+        }
+        return documents;
+    }
+
+    /**
+     * 按字符哈希生成确定性向量的嵌入模型
+     */
+    private static class HashEmbeddingModel implements EmbeddingModel {
+
+        private static final int DIMENSIONS = 256;
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                // 相邻字符组成的二元组
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), DIMENSIONS)] += 1;
+            }
+            return vector;
+        }
+    }
+}
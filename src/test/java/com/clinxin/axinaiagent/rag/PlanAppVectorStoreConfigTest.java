@@ -0,0 +1,39 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.actuate.health.SimpleHttpCodeStatusMapper;
+import org.springframework.boot.actuate.health.SimpleStatusAggregator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.Map;
+import java.util.Properties;
+
+public class PlanAppVectorStoreConfigTest {
+
+    @Test
+    void degradedStatusIsRegisteredWithAggregator() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties properties = yaml.getObject();
+        Assertions.assertNotNull(properties);
+
+        String order = properties.getProperty("management.endpoint.health.status.order");
+        Assertions.assertNotNull(order);
+        SimpleStatusAggregator aggregator = new SimpleStatusAggregator(order.split(","));
+        // 构建中的向量库拉低整体状态，但不掩盖真正的故障
+        Assertions.assertEquals(PlanAppVectorStoreConfig.DEGRADED,
+                aggregator.getAggregateStatus(Status.UP, PlanAppVectorStoreConfig.DEGRADED));
+        Assertions.assertEquals(Status.DOWN,
+                aggregator.getAggregateStatus(Status.DOWN, PlanAppVectorStoreConfig.DEGRADED));
+
+        String prefix = "management.endpoint.health.status.http-mapping.";
+        SimpleHttpCodeStatusMapper mapper = new SimpleHttpCodeStatusMapper(Map.of(
+                "degraded", Integer.valueOf(properties.getProperty(prefix + "degraded")),
+                "down", Integer.valueOf(properties.getProperty(prefix + "down"))));
+        Assertions.assertEquals(200, mapper.getStatusCode(PlanAppVectorStoreConfig.DEGRADED));
+        Assertions.assertEquals(503, mapper.getStatusCode(Status.DOWN));
+    }
+}
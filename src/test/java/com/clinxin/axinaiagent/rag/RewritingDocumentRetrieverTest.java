@@ -0,0 +1,113 @@
+package com.clinxin.axinaiagent.rag;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.rag.Query;
+import org.springframework.ai.rag.preretrieval.query.transformation.QueryTransformer;
+import org.springframework.ai.rag.retrieval.search.DocumentRetriever;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RewritingDocumentRetrieverTest {
+
+    private static final String VAGUE_QUESTION = "马上国庆放假了，但是我还没有做好国庆七天的计划，怎么办？";
+
+    private static final String REWRITTEN_QUESTION = "国庆七天假期计划";
+
+    private final AtomicInteger rewrites = new AtomicInteger();
+
+    // 记录每次检索使用的查询
+    private final List<String> retrieved = Collections.synchronizedList(new ArrayList<>());
+
+    private final DocumentRetriever delegate = query -> {
+        retrieved.add(query.text());
+        return List.of(new Document(query.text().equals(REWRITTEN_QUESTION) ? "rewritten" : "original",
+                query.text(), Map.of()));
+    };
+
+    @Test
+    void specificAndShortQueriesSkipRewrite() {
+        QueryRewriter queryRewriter = queryRewriter();
+        RewritingDocumentRetriever retriever = new RewritingDocumentRetriever(queryRewriter, delegate,
+                RewritingDocumentRetriever.Mode.SPECULATIVE, 4, new SimpleMeterRegistry());
+        retriever.retrieve(new Query("番茄工作法"));
+        retriever.retrieve(new Query("番茄工作法的具体步骤和常见的注意事项有哪些"));
+        Assertions.assertEquals(0, rewrites.get());
+        Assertions.assertEquals(List.of("番茄工作法", "番茄工作法的具体步骤和常见的注意事项有哪些"), retrieved);
+        Assertions.assertTrue(queryRewriter.shouldRewrite(VAGUE_QUESTION));
+    }
+
+    @Test
+    void speculativeRetrievalOverlapsRewrite() {
+        // 重写等到原问题的检索开始后才返回：串行执行时会超时
+        CountDownLatch originalStarted = new CountDownLatch(1);
+        QueryRewriter queryRewriter = new QueryRewriter((QueryTransformer) query -> {
+            rewrites.incrementAndGet();
+            try {
+                Assertions.assertTrue(originalStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Query(REWRITTEN_QUESTION);
+        }, new SimpleMeterRegistry(), 10, 12, List.of("请问", "怎么办"));
+        DocumentRetriever signalling = query -> {
+            if (query.text().equals(VAGUE_QUESTION)) {
+                originalStarted.countDown();
+            }
+            return delegate.retrieve(query);
+        };
+        RewritingDocumentRetriever retriever = new RewritingDocumentRetriever(queryRewriter, signalling,
+                RewritingDocumentRetriever.Mode.SPECULATIVE, 4, new SimpleMeterRegistry());
+        List<Document> documents = retriever.retrieve(new Query(VAGUE_QUESTION));
+        // 两次检索的结果融合，改写后的结果在前
+        Assertions.assertEquals(List.of("rewritten", "original"), documents.stream().map(Document::getId).toList());
+
+        // 重写结果已缓存：不再调用模型，检索和融合方式与未缓存时相同
+        retrieved.clear();
+        List<Document> cached = retriever.retrieve(new Query(" " + VAGUE_QUESTION + " "));
+        Assertions.assertEquals(1, rewrites.get());
+        Assertions.assertEquals(Set.of(REWRITTEN_QUESTION, " " + VAGUE_QUESTION + " "), Set.copyOf(retrieved));
+        Assertions.assertEquals(List.of("rewritten", "original"), cached.stream().map(Document::getId).toList());
+    }
+
+    @Test
+    void serialModeRetrievesOnceWithRewrittenQuery() {
+        RewritingDocumentRetriever retriever = new RewritingDocumentRetriever(queryRewriter(), delegate,
+                RewritingDocumentRetriever.Mode.SERIAL, 4, new SimpleMeterRegistry());
+        List<Document> documents = retriever.retrieve(new Query(VAGUE_QUESTION));
+        Assertions.assertEquals(List.of(REWRITTEN_QUESTION), retrieved);
+        Assertions.assertEquals("rewritten", documents.get(0).getId());
+
+        // 缓存命中时同样只按改写后的问题检索一次
+        retriever.retrieve(new Query(VAGUE_QUESTION));
+        Assertions.assertEquals(1, rewrites.get());
+        Assertions.assertEquals(List.of(REWRITTEN_QUESTION, REWRITTEN_QUESTION), retrieved);
+    }
+
+    @Test
+    void failedRewriteFallsBackToOriginalResults() {
+        QueryRewriter queryRewriter = new QueryRewriter((QueryTransformer) query -> {
+            throw new IllegalStateException("模型服务不可用");
+        }, new SimpleMeterRegistry(), 10, 12, List.of("怎么办"));
+        RewritingDocumentRetriever retriever = new RewritingDocumentRetriever(queryRewriter, delegate,
+                RewritingDocumentRetriever.Mode.SPECULATIVE, 4, new SimpleMeterRegistry());
+        List<Document> documents = retriever.retrieve(new Query(VAGUE_QUESTION));
+        Assertions.assertEquals(List.of("original"), documents.stream().map(Document::getId).toList());
+    }
+
+    private QueryRewriter queryRewriter() {
+        return new QueryRewriter((QueryTransformer) query -> {
+            rewrites.incrementAndGet();
+            return new Query(REWRITTEN_QUESTION);
+        }, new SimpleMeterRegistry(), 10, 12, List.of("请问", "怎么办"));
+    }
+}
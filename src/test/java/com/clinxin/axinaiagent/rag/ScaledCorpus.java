@@ -0,0 +1,176 @@
+package com.clinxin.axinaiagent.rag;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 按 document/*.md 合成放大的语料（HybridDocumentRetrieverTest 测召回率，HybridRetrievalBenchmark 测耗时）
+ *
+ * 每篇合成文档由一个原始问答段落打乱句子顺序、混入其他段落的一句话，再附上一个随机生成的联系人姓名。
+ * 姓名查询的相关文档为联系人相同的文档，主题查询（段落的问题）的相关文档为来自同一段落的文档。
+ * 原始文档按相对于工作目录的 src/main/resources/document 读取，需要在项目根目录下运行。
+ */
+public class ScaledCorpus {
+
+    private final List<String> sections;
+
+    private final List<Document> documents;
+
+    private final Random random;
+
+    /**
+     * 一组查询及各自的相关文档
+     *
+     * @param texts    查询文本
+     * @param relevant 每个查询的相关文档 id
+     */
+    public record Queries(List<String> texts, List<Set<String>> relevant) {
+    }
+
+    /**
+     * @param size 文档数
+     * @param seed 随机种子（相同的种子生成相同的文档和查询）
+     */
+    public ScaledCorpus(int size, long seed) throws IOException {
+        this.sections = loadSections();
+        if (sections.isEmpty()) {
+            throw new IllegalStateException("No sections found under src/main/resources/document");
+        }
+        this.random = new Random(seed);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int j = 0; j < 3; j++) {
+                name.append((char) (0x4E00 + random.nextInt(0x5000)));
+            }
+            names.add(name.toString());
+        }
+        List<Document> documents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int section = random.nextInt(sections.size());
+            List<String> sentences = new ArrayList<>(sentences(sections.get(section)));
+            Collections.shuffle(sentences, random);
+            sentences.add(random.nextInt(sentences.size() + 1),
+                    sentences(sections.get(random.nextInt(sections.size()))).get(0));
+            String name = names.get(random.nextInt(names.size()));
+            documents.add(new Document("doc-" + i, String.join("", sentences) + "联系人：" + name,
+                    Map.of("section", section, "name", name)));
+        }
+        this.documents = List.copyOf(documents);
+    }
+
+    public List<Document> documents() {
+        return documents;
+    }
+
+    /**
+     * 联系人姓名查询（精确的罕见词）
+     *
+     * @param count 查询数
+     */
+    public Queries nameQueries(int count) {
+        List<String> texts = new ArrayList<>(count);
+        List<Set<String>> relevant = new ArrayList<>(count);
+        for (int q = 0; q < count; q++) {
+            Object name = documents.get(random.nextInt(documents.size())).getMetadata().get("name");
+            texts.add((String) name);
+            relevant.add(matching("name", name));
+        }
+        return new Queries(texts, relevant);
+    }
+
+    /**
+     * 段落的问题作为查询（主题）
+     *
+     * @param count 查询数
+     */
+    public Queries topicQueries(int count) {
+        List<String> texts = new ArrayList<>(count);
+        List<Set<String>> relevant = new ArrayList<>(count);
+        for (int q = 0; q < count; q++) {
+            int section = random.nextInt(sections.size());
+            texts.add(sentences(sections.get(section)).get(0));
+            relevant.add(matching("section", section));
+        }
+        return new Queries(texts, relevant);
+    }
+
+    private Set<String> matching(String key, Object value) {
+        Set<String> ids = new HashSet<>();
+        for (Document document : documents) {
+            if (value.equals(document.getMetadata().get(key))) {
+                ids.add(document.getId());
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> loadSections() throws IOException {
+        List<String> sections = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Paths.get("src", "main", "resources", "document"))) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".md")).sorted().toList()) {
+                for (String section : Files.readString(file).split("####")) {
+                    if (!section.startsWith("#") && !section.isBlank()) {
+                        sections.add(section.strip());
+                    }
+                }
+            }
+        }
+        return sections;
+    }
+
+    private static List<String> sentences(String section) {
+        List<String> sentences = new ArrayList<>();
+        for (String sentence : section.split("(?<=[。？！\\n])")) {
+            if (!sentence.isBlank()) {
+                sentences.add(sentence.strip());
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * 按相邻字符二元组生成确定性向量的嵌入模型
+     */
+    public static class BigramEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            List<String> texts = request.getInstructions();
+            for (int i = 0; i < texts.size(); i++) {
+                embeddings.add(new Embedding(vector(texts.get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            float[] vector = new float[256];
+            for (int i = 0; i + 1 < text.length(); i++) {
+                vector[Math.floorMod(text.charAt(i) * 31 + text.charAt(i + 1), vector.length)] += 1;
+            }
+            return vector;
+        }
+    }
+}
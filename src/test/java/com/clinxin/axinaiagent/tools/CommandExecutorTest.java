@@ -0,0 +1,71 @@
+package com.clinxin.axinaiagent.tools;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@DisabledOnOs(OS.WINDOWS)
+public class CommandExecutorTest {
+
+    @Test
+    void drainBothStreamsWithoutDeadlock() throws IOException {
+        CommandExecutor executor = newExecutor(Duration.ofSeconds(20), 1000);
+        AtomicInteger streamed = new AtomicInteger();
+        // stdout 和 stderr 各输出约 1 MB，远超管道缓冲区
+        CommandExecutor.CommandResult result = executor.execute(
+                "i=0; while [ $i -lt 20000 ]; do echo \"out line $i padding padding padding\"; "
+                        + "echo \"err line $i padding padding padding\" >&2; i=$((i+1)); done; exit 3",
+                chunk -> streamed.addAndGet(chunk.length()));
+        Assertions.assertEquals(3, result.exitCode());
+        Assertions.assertFalse(result.timedOut());
+        Assertions.assertTrue(result.stdout().length() <= 1000);
+        Assertions.assertTrue(result.stdout().contains("out line 19999"));
+        Assertions.assertTrue(result.stderr().contains("err line 19999"));
+        Assertions.assertTrue(result.droppedStdout() > 0);
+        Assertions.assertEquals(result.stdout().length() + result.droppedStdout()
+                + result.stderr().length() + result.droppedStderr(), streamed.get());
+    }
+
+    @Test
+    void killProcessTreeOnTimeout() throws IOException {
+        CommandExecutor executor = newExecutor(Duration.ofMillis(500), 1000);
+        long start = System.nanoTime();
+        CommandExecutor.CommandResult result = executor.execute("echo started; sleep 30 & sleep 30; wait", null);
+        Assertions.assertTrue(result.timedOut());
+        Assertions.assertTrue(result.stdout().contains("started"));
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toSeconds() < 10);
+    }
+
+    @Test
+    void runInWorkingDirectoryWithoutSecrets() throws IOException {
+        File dir = Files.createTempDirectory("terminal-test").toFile();
+        CommandExecutor executor = new CommandExecutor(dir, Duration.ofSeconds(10), 1000);
+        Assertions.assertEquals(dir.getCanonicalPath(), executor.execute("pwd -P", null).stdout().trim());
+        CommandExecutor.CommandResult result = executor.execute(
+                "env | cut -d= -f1 | grep -ciE 'key|secret|token|password|credential'", null);
+        Assertions.assertEquals("0", result.stdout().trim());
+    }
+
+    @Test
+    void ringBufferKeepsTail() {
+        OutputRingBuffer buffer = new OutputRingBuffer(5);
+        buffer.append("abc".toCharArray(), 0, 3);
+        buffer.append("defg".toCharArray(), 0, 4);
+        Assertions.assertEquals("cdefg", buffer.toString());
+        Assertions.assertEquals(2, buffer.getDropped());
+        buffer.append("0123456789".toCharArray(), 0, 10);
+        Assertions.assertEquals("56789", buffer.toString());
+        Assertions.assertEquals(12, buffer.getDropped());
+    }
+
+    private static CommandExecutor newExecutor(Duration timeout, int maxOutputChars) throws IOException {
+        return new CommandExecutor(Files.createTempDirectory("terminal-test").toFile(), timeout, maxOutputChars);
+    }
+}
@@ -0,0 +1,169 @@
+package com.clinxin.axinaiagent.tools;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class HtmlContentExtractorTest {
+
+    private final TokenCountEstimator estimator = new JTokkitTokenCountEstimator();
+
+    @Test
+    void extractMainContent() {
+        String html = """
+                <html><head><title>杭州旅游攻略</title><style>body{color:red}</style></head>
+                <body>
+                <header><nav><a href="/">首页</a><a href="/about">关于</a></nav></header>
+                <main>
+                  <h1>杭州三日游</h1>
+                  <p>第一天游览西湖，沿苏堤步行到花港观鱼，傍晚在断桥看日落。</p>
+                  <ul><li>灵隐寺</li><li><p>龙井村</p></li></ul>
+                  <pre>day1: 西湖
+                day2: 灵隐寺</pre>
+                  <p>%s</p>
+                </main>
+                <aside>广告位</aside>
+                <script>var tracking = 1;</script>
+                <footer>版权所有</footer>
+                </body></html>
+                """.formatted("西湖十景各有特色。".repeat(30));
+        String markdown = new HtmlContentExtractor(2000, 200_000).toMarkdown(Jsoup.parse(html));
+        Assertions.assertTrue(markdown.startsWith("# 杭州三日游"));
+        Assertions.assertTrue(markdown.contains("- 灵隐寺\n- 龙井村"));
+        Assertions.assertTrue(markdown.contains("```\nday1: 西湖"));
+        Assertions.assertFalse(markdown.contains("首页"));
+        Assertions.assertFalse(markdown.contains("广告位"));
+        Assertions.assertFalse(markdown.contains("tracking"));
+        Assertions.assertFalse(markdown.contains("版权所有"));
+    }
+
+    @Test
+    void paginateWithinTokenBudget() {
+        HtmlContentExtractor extractor = new HtmlContentExtractor(300, 200_000, estimator);
+        Document document = Jsoup.parse(buildPage(200));
+        List<String> pages = extractor.extractPages(document);
+        Assertions.assertTrue(pages.size() > 1);
+        for (String page : pages) {
+            Assertions.assertTrue(estimator.estimate(page) <= 300, "page exceeds token budget");
+        }
+        // 单个超长段落也会被切开
+        List<String> longParagraph = extractor.paginate("很长的段落".repeat(2000));
+        Assertions.assertTrue(longParagraph.size() > 1);
+    }
+
+    @Test
+    void truncateAtCharLimit() {
+        String markdown = new HtmlContentExtractor(2000, 1000, estimator).toMarkdown(Jsoup.parse(buildPage(200)));
+        Assertions.assertTrue(markdown.length() < 1200);
+        Assertions.assertTrue(markdown.endsWith("[内容过长，已截断]"));
+    }
+
+    @Test
+    void truncateInsideSingleTextNode() {
+        String html = "<html><body><p>" + "很长的文本".repeat(20_000) + "</p><p>之后的段落</p></body></html>";
+        String markdown = new HtmlContentExtractor(2000, 1000, estimator).toMarkdown(Jsoup.parse(html));
+        Assertions.assertTrue(markdown.length() < 1100, "length " + markdown.length());
+        Assertions.assertTrue(markdown.endsWith("[内容过长，已截断]"));
+        Assertions.assertFalse(markdown.contains("之后的段落"));
+    }
+
+    @Test
+    void keepArticleHeaders() {
+        String html = """
+                <html><body>
+                <div class="site"><header>站点页眉</header></div>
+                <article>
+                  <header><h1>文章标题</h1><p>作者：小明</p></header>
+                  <p>%s</p>
+                </article>
+                </body></html>
+                """.formatted("正文内容。".repeat(60));
+        String markdown = new HtmlContentExtractor(2000, 200_000, estimator).toMarkdown(Jsoup.parse(html));
+        Assertions.assertTrue(markdown.startsWith("# 文章标题"));
+        Assertions.assertTrue(markdown.contains("作者：小明"));
+        Assertions.assertFalse(markdown.contains("站点页眉"));
+    }
+
+    /**
+     * 保存下来的真实结构网页（src/test/resources/html），各页面的提取耗时见 HtmlContentExtractorBenchmark
+     */
+    @Test
+    void extractSavedPages() throws IOException {
+        List<SavedPage> savedPages = List.of(
+                new SavedPage("travel-blog.html", "# 杭州三日游完整攻略：西湖、灵隐寺与龙井村",
+                        List.of("## 第二天：灵隐寺与龙井村", "登塔看日落是整天的高潮"),
+                        List.of("近期文章", "本站使用 Cookie", "dataLayer", "小林的旅行笔记 版权所有")),
+                // 没有 main / article，正文在 #content 中
+                new SavedPage("news-article.html", "# 国庆假期全市接待游客1230万人次",
+                        List.of("同比增长百分之八点六", "（责任编辑：王敏）"),
+                        List.of("滚动新闻", "相关新闻", "热榜", "下载客户端")),
+                new SavedPage("docs-page.html", "# 快速开始",
+                        List.of("```\nbrew install planner", "- 导出日历：planner export --format ics"),
+                        List.of("本页目录", "更新日志", "algolia", "搜索文档")),
+                new SavedPage("forum-thread.html", "# 如何克服拖延症，按计划完成任务？",
+                        List.of("## 3 个回答", "我自己用的是番茄工作法"),
+                        List.of("相关问题", "下载 App", "voteupCount", "手机号")));
+        HtmlContentExtractor extractor = new HtmlContentExtractor(2000, 200_000, estimator);
+        for (SavedPage savedPage : savedPages) {
+            String html = readFixture(savedPage.name());
+            String output = String.join("\n\n", extractor.extractPages(Jsoup.parse(html)));
+            Assertions.assertTrue(output.startsWith(savedPage.heading()), savedPage.name());
+            for (String expected : savedPage.kept()) {
+                Assertions.assertTrue(output.contains(expected), savedPage.name() + " lost " + expected);
+            }
+            for (String boilerplate : savedPage.dropped()) {
+                Assertions.assertFalse(output.contains(boilerplate), savedPage.name() + " kept " + boilerplate);
+            }
+            // 脚本、样式和导航占网页的绝大部分
+            Assertions.assertTrue(output.length() < html.length() / 20,
+                    savedPage.name() + ": " + output.length() + " of " + html.length() + " chars");
+        }
+    }
+
+    /**
+     * 测试用网页及其提取结果的期望
+     *
+     * @param name    src/test/resources/html 下的文件名
+     * @param heading 输出的开头
+     * @param kept    输出中应保留的正文
+     * @param dropped 输出中不应出现的导航、广告、脚本等内容
+     */
+    private record SavedPage(String name, String heading, List<String> kept, List<String> dropped) {
+    }
+
+    private static String readFixture(String name) throws IOException {
+        try (InputStream in = HtmlContentExtractorTest.class.getResourceAsStream("/html/" + name)) {
+            Assertions.assertNotNull(in, "missing fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 构造带有大量脚本、样式和导航的网页
+     */
+    private static String buildPage(int paragraphs) {
+        StringBuilder html = new StringBuilder("<html><head><title>测试页面</title>");
+        html.append("<style>").append(".item{margin:0;padding:0}".repeat(200)).append("</style>");
+        html.append("<script>").append("window.dataLayer.push({event:'view'});".repeat(200)).append("</script>");
+        html.append("</head><body><nav>");
+        for (int i = 0; i < 50; i++) {
+            html.append("<a class=\"nav-link\" href=\"/category/").append(i).append("\">分类").append(i).append("</a>");
+        }
+        html.append("</nav><article>");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<div class=\"paragraph-wrapper\"><p class=\"text\" data-index=\"").append(i).append("\">")
+                    .append("第").append(i).append("段：这是用于测试正文提取的内容，包含一些中文和 English words。")
+                    .append("</p></div>");
+        }
+        html.append("</article><footer>版权所有</footer></body></html>");
+        return html.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.clinxin.axinaiagent.tools;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class MarkdownPdfRendererTest {
+
+    private final MarkdownPdfRenderer renderer = new MarkdownPdfRenderer();
+
+    @Test
+    void renderMarkdownBlocks() throws IOException {
+        String markdown = """
+                # 杭州三日游
+
+                第一天游览**西湖**，
+                傍晚在断桥看日落。
+
+                - 灵隐寺
+                - 龙井村
+
+                1. 出发
+                2. 返回
+
+                | 日期 | 景点 |
+                | --- | --- |
+                | 第一天 | 西湖 |
+                | 第二天 | 灵隐寺 |
+
+                ```
+                day1: 西湖
+                ```
+                """;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assertions.assertEquals(1, renderer.render(new StringReader(markdown), out));
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())))) {
+            String text = PdfTextExtractor.getTextFromPage(pdf.getPage(1));
+            Assertions.assertTrue(text.contains("杭州三日游"));
+            Assertions.assertTrue(text.contains("灵隐寺"));
+            Assertions.assertFalse(text.contains("**"));
+            Assertions.assertFalse(text.contains("---"));
+        }
+    }
+
+    @Test
+    void renderConcurrently() {
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return renderer.render(new StringReader(buildReport(20)), OutputStream.nullOutputStream());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            Assertions.assertTrue(future.join() >= 20);
+        }
+    }
+
+    /**
+     * 多页报告逐页输出，页数不少于分页符数（耗时和内存见 MarkdownPdfRenderBenchmark）
+     */
+    @Test
+    void renderManyPages() throws IOException {
+        Assertions.assertTrue(renderer.render(new StringReader(buildReport(100)), OutputStream.nullOutputStream()) >= 100);
+    }
+
+    /**
+     * 构造大约指定页数的报告（每页一个标题、若干段落、列表和表格）
+     */
+    private static String buildReport(int pageCount) {
+        StringBuilder markdown = new StringBuilder();
+        for (int page = 0; page < pageCount; page++) {
+            markdown.append("## 第 ").append(page + 1).append(" 节\n\n");
+            for (int i = 0; i < 3; i++) {
+                markdown.append("这是用于测试分页输出的段落内容，包含中文和 English words。".repeat(4)).append("\n\n");
+            }
+            markdown.append("- 要点一\n- 要点二\n\n| 项目 | 数值 |\n| --- | --- |\n");
+            for (int row = 0; row < 5; row++) {
+                markdown.append("| 项目 ").append(row).append(" | ").append(row * 10).append(" |\n");
+            }
+            markdown.append("\n\\newpage\n");
+        }
+        return markdown.toString();
+    }
+}
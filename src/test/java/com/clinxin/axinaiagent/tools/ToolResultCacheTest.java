@@ -0,0 +1,97 @@
+package com.clinxin.axinaiagent.tools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ToolResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void normalizedArgumentsShareEntry() {
+        ToolResultCache cache = new ToolResultCache(100, 1024 * 1024, "", new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+        cache.get("searchWeb", "{\"query\":\"杭州  旅游\",\"page\":1}", Duration.ofMinutes(1),
+                () -> "结果 " + calls.incrementAndGet());
+        String result = cache.get("searchWeb", " {\"page\":1, \"query\":\" 杭州 旅游 \"} ", Duration.ofMinutes(1),
+                () -> "结果 " + calls.incrementAndGet());
+        Assertions.assertEquals("结果 1", result);
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(0.5, cache.getHitRatio("searchWeb"));
+        // 不同工具的相同参数互不影响
+        cache.get("searchImage", "{\"query\":\"杭州 旅游\"}", Duration.ofMinutes(1), () -> "图片");
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    @Test
+    void expiredAndErrorResultsAreNotReused() throws Exception {
+        ToolResultCache cache = new ToolResultCache(100, 1024 * 1024, "", new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+        cache.get("scrapWebPage", "{\"url\":\"https://a.com\"}", Duration.ofMillis(50), () -> "页面 " + calls.incrementAndGet());
+        Thread.sleep(100);
+        Assertions.assertEquals("页面 2", cache.get("scrapWebPage", "{\"url\":\"https://a.com\"}",
+                Duration.ofMillis(50), () -> "页面 " + calls.incrementAndGet()));
+        cache.get("searchWeb", "{\"query\":\"x\"}", Duration.ofMinutes(1), () -> "Error searching Baidu: timeout");
+        Assertions.assertEquals("ok", cache.get("searchWeb", "{\"query\":\"x\"}", Duration.ofMinutes(1), () -> "ok"));
+    }
+
+    @Test
+    void concurrentIdenticalCallsRunOnce() throws Exception {
+        ToolResultCache cache = new ToolResultCache(100, 1024 * 1024, "", new SimpleMeterRegistry());
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(16)) {
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get("searchWeb", "{\"query\":\"杭州\"}", Duration.ofMinutes(1), () -> {
+                        calls.incrementAndGet();
+                        try {
+                            Thread.sleep(200);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "结果";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                Assertions.assertEquals("结果", future.get());
+            }
+        }
+        Assertions.assertEquals(1, calls.get());
+    }
+
+    @Test
+    void boundedAndPersisted() {
+        String persistDir = tempDir.toString();
+        ToolResultCache cache = new ToolResultCache(3, 1024 * 1024, persistDir, new SimpleMeterRegistry());
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            cache.get("searchWeb", "{\"query\":\"q" + i + "\"}", Duration.ofMinutes(1), () -> "结果 " + index);
+        }
+        Assertions.assertEquals(3, cache.size());
+        // 重启后从磁盘加载未淘汰的条目
+        ToolResultCache reloaded = new ToolResultCache(3, 1024 * 1024, persistDir, new SimpleMeterRegistry());
+        Assertions.assertEquals(3, reloaded.size());
+        Assertions.assertEquals("结果 4", reloaded.get("searchWeb", "{\"query\":\"q4\"}", Duration.ofMinutes(1),
+                () -> "重新调用"));
+        Assertions.assertEquals("重新调用", reloaded.get("searchWeb", "{\"query\":\"q0\"}", Duration.ofMinutes(1),
+                () -> "重新调用"));
+    }
+}
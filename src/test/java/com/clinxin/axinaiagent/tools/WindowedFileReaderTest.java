@@ -0,0 +1,137 @@
+package com.clinxin.axinaiagent.tools;
+
+import com.clinxin.axinaiagent.constant.FileConstant;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class WindowedFileReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readLinesWithCrlfAndLastLineWithoutNewline() throws IOException {
+        Path file = tempDir.resolve("lines.txt");
+        Files.writeString(file, "第一行\r\nsecond\n\nlast", StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        WindowedFileReader.forEachLine(file, (lineNumber, line) -> lines.add(lineNumber + ":" + WindowedFileReader.decode(line)));
+        Assertions.assertEquals(List.of("1:第一行", "2:second", "3:", "4:last"), lines);
+    }
+
+    @Test
+    void stopWhenVisitorReturnsFalse() throws IOException {
+        Path file = tempDir.resolve("stop.txt");
+        Files.writeString(file, "a\nb\nc\n");
+        List<Long> visited = new ArrayList<>();
+        WindowedFileReader.forEachLine(file, (lineNumber, line) -> {
+            visited.add(lineNumber);
+            return lineNumber < 2;
+        });
+        Assertions.assertEquals(List.of(1L, 2L), visited);
+    }
+
+    @Test
+    void linesCrossingReadWindows() throws IOException {
+        // 约 20 MB，跨越多个读取窗口
+        Path file = tempDir.resolve("large.txt");
+        int lineCount = 400_000;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 1; i <= lineCount; i++) {
+                writer.write("line " + i + " padding padding padding padding padding\n");
+            }
+        }
+        long[] count = {0};
+        boolean[] ordered = {true};
+        WindowedFileReader.forEachLine(file, (lineNumber, line) -> {
+            ordered[0] &= WindowedFileReader.decode(line).startsWith("line " + lineNumber + " ");
+            count[0]++;
+            return true;
+        });
+        Assertions.assertEquals(lineCount, count[0]);
+        Assertions.assertTrue(ordered[0]);
+    }
+
+    @Test
+    void truncateOverlongLine() throws IOException {
+        Path file = tempDir.resolve("long.txt");
+        Files.writeString(file, "x".repeat(100_000) + "\nnext\n");
+        List<String> lines = new ArrayList<>();
+        WindowedFileReader.forEachLine(file, (lineNumber, line) -> lines.add(WindowedFileReader.decode(line)));
+        Assertions.assertEquals(2, lines.size());
+        Assertions.assertTrue(lines.get(0).endsWith("...[line truncated]"));
+        Assertions.assertEquals("next", lines.get(1));
+    }
+
+    @Test
+    void readRangeTrimsPartialCharacters() throws IOException {
+        Path file = tempDir.resolve("range.txt");
+        // 每个中文字符 3 字节
+        Files.writeString(file, "中文内容", StandardCharsets.UTF_8);
+        Assertions.assertEquals("文", WindowedFileReader.readRange(file, 2, 6));
+        Assertions.assertEquals("中文内容", WindowedFileReader.readRange(file, 0, 100));
+        Assertions.assertEquals("", WindowedFileReader.readRange(file, 100, 10));
+    }
+
+    @Test
+    void matchLine() throws IOException {
+        Path file = tempDir.resolve("grep.txt");
+        Files.writeString(file, "INFO start\nERROR disk full\nINFO done\nERROR timeout\n");
+        Pattern pattern = Pattern.compile("^ERROR");
+        List<String> matches = new ArrayList<>();
+        WindowedFileReader.forEachLine(file, (lineNumber, line) -> {
+            String text = WindowedFileReader.matchLine(line, pattern);
+            if (text != null) {
+                matches.add(lineNumber + ": " + text);
+            }
+            return true;
+        });
+        Assertions.assertEquals(List.of("2: ERROR disk full", "4: ERROR timeout"), matches);
+    }
+
+    @Test
+    void rejectPathsOutsideFileDirectory() {
+        FileOperationTool fileOperationTool = new FileOperationTool();
+        Assertions.assertTrue(fileOperationTool.readFile("../../pom.xml").startsWith("Error"));
+        Assertions.assertTrue(fileOperationTool.writeFile("../escape.txt", "x").startsWith("Error"));
+    }
+
+    @Test
+    void rejectNewFilesUnderSymlinkedDirectory() throws IOException {
+        Path fileDir = Path.of(FileConstant.FILE_SAVE_DIR, "file");
+        Files.createDirectories(fileDir);
+        Path link = fileDir.resolve("escape-" + System.nanoTime());
+        Files.createSymbolicLink(link, tempDir);
+        try {
+            FileOperationTool fileOperationTool = new FileOperationTool();
+            String name = link.getFileName() + "/new.txt";
+            Assertions.assertTrue(fileOperationTool.writeFile(name, "x").startsWith("Error"));
+            Assertions.assertFalse(Files.exists(tempDir.resolve("new.txt")));
+        } finally {
+            Files.delete(link);
+        }
+    }
+
+    @Test
+    void rejectDanglingSymlink() throws IOException {
+        Path fileDir = Path.of(FileConstant.FILE_SAVE_DIR, "file");
+        Files.createDirectories(fileDir);
+        Path link = fileDir.resolve("dangling-" + System.nanoTime());
+        Files.createSymbolicLink(link, tempDir.resolve("missing.txt"));
+        try {
+            Assertions.assertTrue(new FileOperationTool().writeFile(link.getFileName().toString(), "x").startsWith("Error"));
+            Assertions.assertFalse(Files.exists(tempDir.resolve("missing.txt")));
+        } finally {
+            Files.delete(link);
+        }
+    }
+}